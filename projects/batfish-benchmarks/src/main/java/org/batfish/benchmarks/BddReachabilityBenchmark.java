@@ -0,0 +1,31 @@
+package org.batfish.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.batfish.bddreachability.BDDReachabilityAnalysisFactory;
+import org.batfish.symbolic.bdd.BDDPacket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures construction of a {@link BDDReachabilityAnalysisFactory}, which encodes the forwarding
+ * behavior of the whole snapshot as BDDs. Each invocation uses a fresh {@link BDDPacket}, so that
+ * BDD node tables do not carry over between invocations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+public class BddReachabilityBenchmark {
+
+  @Benchmark
+  public BDDReachabilityAnalysisFactory constructFactory(LoadedSnapshot snapshot) {
+    return new BDDReachabilityAnalysisFactory(
+        new BDDPacket(), snapshot._configurations, snapshot._dataPlane.getForwardingAnalysis());
+  }
+}
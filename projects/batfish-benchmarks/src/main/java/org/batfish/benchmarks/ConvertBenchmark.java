@@ -0,0 +1,95 @@
+package org.batfish.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.SerializationUtils;
+import org.batfish.common.BatfishException;
+import org.batfish.common.BfConsts;
+import org.batfish.common.Warnings;
+import org.batfish.config.Settings;
+import org.batfish.datamodel.ConfigurationFormat;
+import org.batfish.job.ConvertConfigurationJob;
+import org.batfish.job.ParseVendorConfigurationJob;
+import org.batfish.vendor.VendorConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link ConvertConfigurationJob}: converting every parsed vendor configuration of a
+ * snapshot to vendor-independent form. Conversion may modify the vendor configuration, so each
+ * invocation converts fresh copies made outside the measured time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+public class ConvertBenchmark {
+
+  @Param({"networks/example", "networks/example-juniper", "networks/dc-as-reuse"})
+  public String snapshot;
+
+  private List<VendorConfiguration> _parsed;
+
+  private Settings _settings;
+
+  private List<VendorConfiguration> _toConvert;
+
+  @Benchmark
+  public void convert(Blackhole blackhole) {
+    for (VendorConfiguration vendorConfiguration : _toConvert) {
+      blackhole.consume(
+          new ConvertConfigurationJob(
+                  _settings, vendorConfiguration, vendorConfiguration.getFilename())
+              .call()
+              .getConfigurations());
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void copyVendorConfigurations() {
+    ImmutableList.Builder<VendorConfiguration> copies = ImmutableList.builder();
+    _parsed.forEach(vc -> copies.add(SerializationUtils.clone(vc)));
+    _toConvert = copies.build();
+  }
+
+  @Setup
+  public void setup() throws Exception {
+    _settings = Snapshots.newJobSettings();
+    ImmutableList.Builder<VendorConfiguration> parsed = ImmutableList.builder();
+    SortedMap<String, String> files =
+        Snapshots.readFiles(
+            Snapshots.resolve(snapshot).resolve(BfConsts.RELPATH_CONFIGURATIONS_DIR));
+    for (Entry<String, String> file : files.entrySet()) {
+      VendorConfiguration vendorConfiguration =
+          new ParseVendorConfigurationJob(
+                  _settings,
+                  file.getValue(),
+                  file.getKey(),
+                  new Warnings(),
+                  ConfigurationFormat.UNKNOWN)
+              .call()
+              .getVendorConfiguration();
+      if (vendorConfiguration == null) {
+        throw new BatfishException("Failed to parse " + file.getKey());
+      }
+      parsed.add(vendorConfiguration);
+    }
+    _parsed = parsed.build();
+  }
+}
@@ -0,0 +1,48 @@
+package org.batfish.benchmarks;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.SerializationUtils;
+import org.batfish.common.plugin.DataPlanePlugin.ComputeDataPlaneResult;
+import org.batfish.datamodel.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures data plane computation (by {@code IncrementalBdpEngine}, through the data plane plugin)
+ * from already-loaded configurations and topology. Computation attaches state to the
+ * configurations, so each invocation uses fresh copies made outside the measured time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+public class DataPlaneBenchmark {
+
+  private SortedMap<String, Configuration> _configurations;
+
+  @Benchmark
+  public ComputeDataPlaneResult computeDataPlane(LoadedSnapshot snapshot) {
+    return snapshot
+        ._batfish
+        .getDataPlanePlugin()
+        .computeDataPlane(false, _configurations, snapshot._topology);
+  }
+
+  @Setup(Level.Invocation)
+  public void copyConfigurations(LoadedSnapshot snapshot) {
+    _configurations = SerializationUtils.clone(new TreeMap<>(snapshot._configurations));
+  }
+}
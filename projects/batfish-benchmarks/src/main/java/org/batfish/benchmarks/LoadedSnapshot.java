@@ -0,0 +1,55 @@
+package org.batfish.benchmarks;
+
+import java.io.IOException;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.apache.commons.lang3.SerializationUtils;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.DataPlane;
+import org.batfish.datamodel.Topology;
+import org.batfish.main.Batfish;
+import org.junit.rules.TemporaryFolder;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * A sample snapshot that has been parsed, converted and had its data plane computed, for
+ * benchmarks of the phases that follow. All of this happens once per trial, outside the measured
+ * time.
+ */
+@State(Scope.Benchmark)
+public class LoadedSnapshot {
+
+  @Param({"networks/example", "networks/example-juniper"})
+  public String snapshot;
+
+  Batfish _batfish;
+
+  SortedMap<String, Configuration> _configurations;
+
+  DataPlane _dataPlane;
+
+  TemporaryFolder _tempFolder;
+
+  Topology _topology;
+
+  @Setup
+  public void setup() throws IOException {
+    _tempFolder = new TemporaryFolder();
+    _tempFolder.create();
+    _batfish = Snapshots.newBatfish(Snapshots.resolve(snapshot), _tempFolder);
+    // Copy before the data plane computation, which attaches state to the loaded configurations.
+    _configurations = SerializationUtils.clone(new TreeMap<>(_batfish.loadConfigurations()));
+    _batfish.computeDataPlane(false);
+    _dataPlane = _batfish.loadDataPlane();
+    _topology = _batfish.getEnvironmentTopology();
+  }
+
+  @TearDown
+  public void deleteTempFolder() {
+    _tempFolder.delete();
+  }
+}
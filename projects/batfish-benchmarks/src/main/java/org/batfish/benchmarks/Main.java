@@ -0,0 +1,42 @@
+package org.batfish.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import org.openjdk.jmh.runner.RunnerException;
+
+/**
+ * Runs the Batfish benchmarks. Accepts the usual JMH command line (run with {@code -h} for
+ * details), but unless told otherwise writes results as JSON to {@code jmh-result.json} so that
+ * they can be tracked across versions.
+ *
+ * <p>For example, to benchmark the data plane of one of the sample networks:
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar DataPlaneBenchmark -p snapshot=networks/example
+ * </pre>
+ */
+public final class Main {
+
+  static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+  /** Returns {@code args}, plus JSON result options if the caller did not choose a format. */
+  static String[] withDefaultResultFormat(String[] args) {
+    List<String> argList = Arrays.asList(args);
+    if (argList.contains("-rf") || argList.contains("-rff")) {
+      return args;
+    }
+    return ImmutableList.<String>builder()
+        .add("-rf", "json", "-rff", DEFAULT_RESULT_FILE)
+        .addAll(argList)
+        .build()
+        .toArray(new String[0]);
+  }
+
+  public static void main(String[] args) throws IOException, RunnerException {
+    org.openjdk.jmh.Main.main(withDefaultResultFormat(args));
+  }
+
+  private Main() {}
+}
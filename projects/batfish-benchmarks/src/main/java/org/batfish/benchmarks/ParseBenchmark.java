@@ -0,0 +1,68 @@
+package org.batfish.benchmarks;
+
+import java.io.IOException;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+import org.batfish.common.BfConsts;
+import org.batfish.common.Warnings;
+import org.batfish.config.Settings;
+import org.batfish.datamodel.ConfigurationFormat;
+import org.batfish.job.ParseVendorConfigurationJob;
+import org.batfish.job.ParseVendorConfigurationResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link ParseVendorConfigurationJob}: parsing and extracting every configuration file of
+ * a snapshot, one after another. The default snapshots each use a single vendor (Cisco IOS,
+ * Juniper and Arista respectively), so each result is the parse time for one vendor.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+public class ParseBenchmark {
+
+  @Param({"networks/example", "networks/example-juniper", "networks/dc-as-reuse"})
+  public String snapshot;
+
+  private SortedMap<String, String> _files;
+
+  private Settings _settings;
+
+  @Benchmark
+  public void parse(Blackhole blackhole) throws Exception {
+    for (Entry<String, String> file : _files.entrySet()) {
+      ParseVendorConfigurationResult result =
+          new ParseVendorConfigurationJob(
+                  _settings,
+                  file.getValue(),
+                  file.getKey(),
+                  new Warnings(),
+                  ConfigurationFormat.UNKNOWN)
+              .call();
+      blackhole.consume(result.getVendorConfiguration());
+    }
+  }
+
+  @Setup
+  public void setup() throws IOException {
+    _settings = Snapshots.newJobSettings();
+    _files =
+        Snapshots.readFiles(
+            Snapshots.resolve(snapshot).resolve(BfConsts.RELPATH_CONFIGURATIONS_DIR));
+  }
+}
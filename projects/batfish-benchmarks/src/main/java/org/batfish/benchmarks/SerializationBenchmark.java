@@ -0,0 +1,83 @@
+package org.batfish.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import org.batfish.common.util.CompactSerialization;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures serializing the vendor-independent configurations of a snapshot to memory, and reading
+ * them back, with {@link CompactSerialization} and with Java serialization over an LZ4 frame.
+ * Unlike {@link StorageBenchmark}, this leaves out the file system, so it isolates the cost of the
+ * encodings themselves.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+public class SerializationBenchmark {
+
+  @Param({"LZ4", "COMPACT"})
+  public String format;
+
+  /** The configurations, in a serializable map */
+  private Serializable _configurations;
+
+  private byte[] _serialized;
+
+  @Benchmark
+  public Object deserialize() throws IOException, ClassNotFoundException {
+    ByteArrayInputStream in = new ByteArrayInputStream(_serialized);
+    if (format.equals("COMPACT")) {
+      return CompactSerialization.deserialize(
+          in, Serializable.class, Thread.currentThread().getContextClassLoader());
+    }
+    try (ObjectInputStream ois = new ObjectInputStream(new LZ4FrameInputStream(in))) {
+      return ois.readObject();
+    }
+  }
+
+  @Benchmark
+  public byte[] serialize() throws IOException {
+    return serialize(_configurations);
+  }
+
+  private byte[] serialize(Serializable object) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    if (format.equals("COMPACT")) {
+      CompactSerialization.serialize(object, out);
+    } else {
+      try (ObjectOutputStream oos = new ObjectOutputStream(new LZ4FrameOutputStream(out))) {
+        oos.writeObject(object);
+      }
+    }
+    return out.toByteArray();
+  }
+
+  @Setup
+  public void setup(LoadedSnapshot snapshot) throws IOException {
+    _configurations = new TreeMap<>(snapshot._configurations);
+    // So that there is something to deserialize.
+    _serialized = serialize();
+  }
+}
@@ -0,0 +1,115 @@
+package org.batfish.benchmarks;
+
+import com.google.common.collect.ImmutableSortedMap;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.SortedMap;
+import org.batfish.common.BatfishException;
+import org.batfish.common.BatfishLogger;
+import org.batfish.common.BfConsts;
+import org.batfish.config.Settings;
+import org.batfish.main.Batfish;
+import org.batfish.main.BatfishTestUtils;
+import org.batfish.main.TestrigText;
+import org.junit.rules.TemporaryFolder;
+
+/** Loads the sample snapshots under {@code networks} and {@code test_rigs} for benchmarking. */
+final class Snapshots {
+
+  /**
+   * System property naming the directory that sample snapshot paths are relative to. Defaults to
+   * the nearest enclosing directory of the working directory that contains {@code networks}.
+   */
+  static final String ROOT_PROPERTY = "batfish.benchmarks.root";
+
+  /** Returns a {@link Batfish} for the given snapshot directory, with its files in a new folder. */
+  static Batfish newBatfish(Path snapshotDir, TemporaryFolder tempFolder) throws IOException {
+    Batfish batfish =
+        BatfishTestUtils.getBatfishFromTestrigText(readTestrigText(snapshotDir), tempFolder);
+    // Benchmarks should measure work, not logging.
+    batfish.getLogger().setLogLevel(BatfishLogger.LEVELSTR_WARN);
+    return batfish;
+  }
+
+  /** Returns settings suitable for running individual Batfish jobs. */
+  static Settings newJobSettings() {
+    return new Settings(
+        new String[] {"-" + BfConsts.ARG_LOG_LEVEL + "=" + BatfishLogger.LEVELSTR_WARN});
+  }
+
+  /** Returns the text of each file in {@code dir}, keyed by file name, or nothing if absent. */
+  static SortedMap<String, String> readFiles(Path dir) throws IOException {
+    ImmutableSortedMap.Builder<String, String> files = ImmutableSortedMap.naturalOrder();
+    if (!Files.isDirectory(dir)) {
+      return files.build();
+    }
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+      for (Path file : stream) {
+        if (Files.isRegularFile(file)) {
+          files.put(
+              file.getFileName().toString(),
+              new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        }
+      }
+    }
+    return files.build();
+  }
+
+  private static TestrigText readTestrigText(Path snapshotDir) throws IOException {
+    TestrigText text =
+        TestrigText.builder()
+            .setAwsText(readFiles(snapshotDir.resolve(BfConsts.RELPATH_AWS_CONFIGS_DIR)))
+            .setConfigurationText(
+                readFiles(snapshotDir.resolve(BfConsts.RELPATH_CONFIGURATIONS_DIR)))
+            .setHostsText(readFiles(snapshotDir.resolve(BfConsts.RELPATH_HOST_CONFIGS_DIR)))
+            .setIptablesFilesText(readFiles(snapshotDir.resolve("iptables")))
+            .build();
+    Path layer1Topology = snapshotDir.resolve(BfConsts.RELPATH_TESTRIG_L1_TOPOLOGY_PATH);
+    if (Files.isRegularFile(layer1Topology)) {
+      text.setLayer1TopologyText(
+          new String(Files.readAllBytes(layer1Topology), StandardCharsets.UTF_8));
+    }
+    Path legacyTopology = snapshotDir.resolve(BfConsts.RELPATH_TESTRIG_LEGACY_TOPOLOGY_PATH);
+    if (Files.isRegularFile(legacyTopology)) {
+      text.setLegacyTopologyText(
+          new String(Files.readAllBytes(legacyTopology), StandardCharsets.UTF_8));
+    }
+    return text;
+  }
+
+  /**
+   * Returns the directory of the sample snapshot at {@code relativePath}, e.g. {@code
+   * networks/example}.
+   *
+   * @throws BatfishException if the snapshot cannot be found
+   */
+  static Path resolve(String relativePath) {
+    String root = System.getProperty(ROOT_PROPERTY);
+    if (root != null) {
+      return checkSnapshot(Paths.get(root).resolve(relativePath));
+    }
+    for (Path dir = Paths.get("").toAbsolutePath(); dir != null; dir = dir.getParent()) {
+      if (Files.isDirectory(dir.resolve("networks"))) {
+        return checkSnapshot(dir.resolve(relativePath));
+      }
+    }
+    throw new BatfishException(
+        String.format(
+            "Could not find sample snapshot '%s': set -D%s to the repository root",
+            relativePath, ROOT_PROPERTY));
+  }
+
+  private static Path checkSnapshot(Path snapshotDir) {
+    if (!Files.isDirectory(snapshotDir.resolve(BfConsts.RELPATH_CONFIGURATIONS_DIR))) {
+      throw new BatfishException(
+          String.format("'%s' is not a snapshot: it has no configs directory", snapshotDir));
+    }
+    return snapshotDir;
+  }
+
+  private Snapshots() {}
+}
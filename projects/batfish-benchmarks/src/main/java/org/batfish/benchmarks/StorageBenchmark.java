@@ -0,0 +1,81 @@
+package org.batfish.benchmarks;
+
+import java.io.IOException;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.batfish.common.BatfishLogger;
+import org.batfish.common.plugin.PluginConsumer.Format;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.answers.ConvertConfigurationAnswerElement;
+import org.batfish.main.BatfishStorage;
+import org.junit.rules.TemporaryFolder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures storing the vendor-independent configurations of a snapshot with {@link
+ * BatfishStorage}, and loading all of them back, in each supported storage format.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+public class StorageBenchmark {
+
+  private static final String TESTRIG = "benchmark";
+
+  @Param({"LZ4", "COMPACT", "BLOCK_LZ4"})
+  public String format;
+
+  private SortedMap<String, Configuration> _configurations;
+
+  private BatfishStorage _storage;
+
+  private TemporaryFolder _tempFolder;
+
+  @Benchmark
+  public void deserialize(Blackhole blackhole) {
+    // Configurations are loaded lazily, so load each of them explicitly.
+    _storage.loadConfigurations(TESTRIG).values().forEach(blackhole::consume);
+  }
+
+  @Benchmark
+  public void serialize() {
+    _storage.storeConfigurations(
+        _configurations, new ConvertConfigurationAnswerElement(), TESTRIG);
+  }
+
+  @Setup
+  public void setup(LoadedSnapshot snapshot) throws IOException {
+    _configurations = snapshot._configurations;
+    _tempFolder = new TemporaryFolder();
+    _tempFolder.create();
+    _storage =
+        new BatfishStorage(
+            _tempFolder.getRoot().toPath(),
+            new BatfishLogger(BatfishLogger.LEVELSTR_WARN, false),
+            (name, size) -> new AtomicInteger(),
+            Format.valueOf(format));
+    // So that there is something to deserialize.
+    serialize();
+  }
+
+  @TearDown
+  public void deleteTempFolder() {
+    _tempFolder.delete();
+  }
+}
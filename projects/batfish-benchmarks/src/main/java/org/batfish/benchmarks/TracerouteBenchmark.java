@@ -0,0 +1,72 @@
+package org.batfish.benchmarks;
+
+import com.google.common.collect.ImmutableSet;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.Flow;
+import org.batfish.datamodel.FlowTrace;
+import org.batfish.datamodel.Interface;
+import org.batfish.datamodel.InterfaceAddress;
+import org.batfish.datamodel.Ip;
+import org.batfish.dataplane.TracerouteEngineImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link TracerouteEngineImpl#processFlows}: tracing a flow from every node's default VRF
+ * to every interface address in the snapshot.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+public class TracerouteBenchmark {
+
+  private static final String TAG = "benchmark";
+
+  private Set<Flow> _flows;
+
+  @Benchmark
+  public SortedMap<Flow, Set<FlowTrace>> processFlows(LoadedSnapshot snapshot) {
+    return TracerouteEngineImpl.getInstance()
+        .processFlows(snapshot._dataPlane, _flows, snapshot._dataPlane.getFibs(), false);
+  }
+
+  @Setup
+  public void setup(LoadedSnapshot snapshot) {
+    ImmutableSet.Builder<Ip> dstIps = ImmutableSet.builder();
+    for (Configuration c : snapshot._configurations.values()) {
+      for (Interface i : c.getInterfaces().values()) {
+        if (i.getActive()) {
+          i.getAllAddresses().stream().map(InterfaceAddress::getIp).forEach(dstIps::add);
+        }
+      }
+    }
+    Set<Ip> allDstIps = dstIps.build();
+    ImmutableSet.Builder<Flow> flows = ImmutableSet.builder();
+    for (String node : snapshot._configurations.keySet()) {
+      for (Ip dstIp : allDstIps) {
+        flows.add(
+            Flow.builder()
+                .setIngressNode(node)
+                .setIngressVrf(Configuration.DEFAULT_VRF_NAME)
+                .setDstIp(dstIp)
+                .setTag(TAG)
+                .build());
+      }
+    }
+    _flows = flows.build();
+  }
+}
@@ -1,18 +1,29 @@
 package org.batfish.common.plugin;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
+import javax.annotation.Nullable;
+import org.batfish.common.BatfishException;
+import org.batfish.common.BdpOscillationException;
 import org.batfish.datamodel.AbstractRoute;
 import org.batfish.datamodel.BgpAdvertisement;
 import org.batfish.datamodel.Configuration;
 import org.batfish.datamodel.DataPlane;
+import org.batfish.datamodel.FailureScenario;
+import org.batfish.datamodel.Fib;
 import org.batfish.datamodel.Flow;
 import org.batfish.datamodel.FlowTrace;
 import org.batfish.datamodel.Topology;
 import org.batfish.datamodel.answers.DataPlaneAnswerElement;
+import org.batfish.datamodel.answers.FailureScenariosAnswerElement;
+import org.batfish.datamodel.answers.FailureScenariosAnswerElement.FibChange;
+import org.batfish.datamodel.answers.FailureScenariosAnswerElement.ScenarioResult;
 
 /**
  * Abstract class that defines the behavior expected for a Batfish plugin that implements data plane
@@ -47,9 +58,15 @@ public abstract class DataPlanePlugin extends BatfishPlugin implements IDataPlan
    */
   public static final class ComputeDataPlaneResult {
     public final DataPlaneAnswerElement _answerElement;
-    public final DataPlane _dataPlane;
 
-    public ComputeDataPlaneResult(DataPlaneAnswerElement answerElement, DataPlane dataPlane) {
+    /**
+     * The computed data plane, or {@code null} if this worker computed only its share of a data
+     * plane partitioned across workers, which is held by the worker leading the computation
+     */
+    @Nullable public final DataPlane _dataPlane;
+
+    public ComputeDataPlaneResult(
+        DataPlaneAnswerElement answerElement, @Nullable DataPlane dataPlane) {
       _answerElement = answerElement;
       _dataPlane = dataPlane;
     }
@@ -66,6 +83,63 @@ public abstract class DataPlanePlugin extends BatfishPlugin implements IDataPlan
   public abstract ComputeDataPlaneResult computeDataPlane(
       boolean differentialContext, Map<String, Configuration> configurations, Topology topology);
 
+  /**
+   * Compute the changes to the FIBs of the current environment under each of the given failure
+   * scenarios, computing as many scenarios at a time as the given memory budget allows.
+   *
+   * <p>This default computes the data plane without failures and then the data plane under each
+   * scenario from scratch with {@link #computeDataPlane(boolean, Map, Topology)}, one scenario at a
+   * time whatever the budget. Plugins that can share work between scenarios should override it.
+   *
+   * @param scenarios the scenarios, which must have distinct names
+   * @param budgetBytes the estimated heap size that the scenarios computed concurrently may use
+   */
+  public FailureScenariosAnswerElement computeFailureScenarios(
+      List<FailureScenario> scenarios, long budgetBytes) {
+    Set<String> names = new HashSet<>();
+    for (FailureScenario scenario : scenarios) {
+      if (!names.add(scenario.getName())) {
+        throw new BatfishException("Duplicate failure scenario name: " + scenario.getName());
+      }
+    }
+    Map<String, Configuration> configurations = _batfish.loadConfigurations();
+    Topology topology = _batfish.getEnvironmentTopology();
+    Map<String, Map<String, Fib>> baseFibs =
+        computeDataPlane(false, configurations, topology)._dataPlane.getFibs();
+    FailureScenariosAnswerElement answer = new FailureScenariosAnswerElement();
+    for (FailureScenario scenario : scenarios) {
+      answer
+          .getScenarios()
+          .put(
+              scenario.getName(),
+              computeFailureScenario(scenario, configurations, topology, baseFibs));
+    }
+    return answer;
+  }
+
+  private ScenarioResult computeFailureScenario(
+      FailureScenario scenario,
+      Map<String, Configuration> configurations,
+      Topology topology,
+      Map<String, Map<String, Fib>> baseFibs) {
+    Map<String, Configuration> scenarioConfigurations;
+    try {
+      scenarioConfigurations = scenario.applyTo(configurations);
+    } catch (BatfishException e) {
+      return new ScenarioResult(null, 0, e.getMessage());
+    }
+    try {
+      DataPlane dataPlane =
+          computeDataPlane(false, scenarioConfigurations, scenario.applyTo(topology))._dataPlane;
+      return new ScenarioResult(
+          FibChange.diffFibs(baseFibs, dataPlane.getFibs(), configurations.keySet()),
+          configurations.size(),
+          null);
+    } catch (BdpOscillationException e) {
+      return new ScenarioResult(null, configurations.size(), e.getMessage());
+    }
+  }
+
   protected void dataPlanePluginInitialize() {}
 
   public abstract Set<BgpAdvertisement> getAdvertisements();
@@ -79,6 +153,24 @@ public abstract class DataPlanePlugin extends BatfishPlugin implements IDataPlan
   public abstract SortedMap<String, SortedMap<String, SortedSet<AbstractRoute>>> getRoutes(
       DataPlane dataPlane);
 
+  /**
+   * Reads a data plane written by {@link #writeDataPlane(DataPlane, Path)} from {@code path}, or
+   * returns {@code null} if the file is not in a format specific to this plugin.
+   */
+  @Nullable
+  public DataPlane readDataPlane(Path path) throws IOException {
+    return null;
+  }
+
+  /**
+   * Writes {@code dataPlane} to {@code path} in a format specific to this plugin. Returns {@code
+   * false} without writing anything if this plugin has no such format for {@code dataPlane}, in
+   * which case the caller should serialize it instead.
+   */
+  public boolean writeDataPlane(DataPlane dataPlane, Path path) throws IOException {
+    return false;
+  }
+
   public abstract void processFlows(Set<Flow> flows, DataPlane dataPlane, boolean ignoreAcls);
 
   /** Return the name of this plugin */
@@ -1,5 +1,6 @@
 package org.batfish.common.plugin;
 
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -77,6 +78,12 @@ public interface IBatfish extends IPluginConsumer {
 
   String getContainerName();
 
+  /**
+   * Return the path at which the data plane computation for the current environment may save its
+   * progress, so that it can resume if it is interrupted
+   */
+  Path getDataPlaneCheckpointPath();
+
   DataPlanePlugin getDataPlanePlugin();
 
   String getDifferentialFlowTag();
@@ -133,6 +140,15 @@ public interface IBatfish extends IPluginConsumer {
 
   SortedMap<String, Configuration> loadConfigurations();
 
+  /**
+   * Returns the same configurations as {@link #loadConfigurations()}, first loading those of the
+   * given {@code nodes} in parallel. Callers that will only read a known subset of nodes should use
+   * this method so that other nodes need not be loaded.
+   */
+  default SortedMap<String, Configuration> loadConfigurations(Set<String> nodes) {
+    return loadConfigurations();
+  }
+
   ConvertConfigurationAnswerElement loadConvertConfigurationAnswerElementOrReparse();
 
   DataPlane loadDataPlane();
@@ -3,6 +3,7 @@ package org.batfish.common.plugin;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.function.BiConsumer;
 import org.batfish.datamodel.DataPlane;
 import org.batfish.datamodel.Fib;
 import org.batfish.datamodel.Flow;
@@ -15,4 +16,19 @@ import org.batfish.datamodel.FlowTrace;
 public interface ITracerouteEngine {
   SortedMap<Flow, Set<FlowTrace>> processFlows(
       DataPlane dataPlane, Set<Flow> flows, Map<String, Map<String, Fib>> fibs, boolean ignoreAcls);
+
+  /**
+   * Perform a traceroute like {@link #processFlows(DataPlane, Set, Map, boolean)}, but pass each
+   * trace of each flow to {@code traceConsumer} as soon as it is complete instead of collecting
+   * them, so that the traces of a large set of flows need not all be held in memory.
+   *
+   * <p>The consumer may be called from several threads at once, but never concurrently for the
+   * same flow. A flow may receive equal traces more than once.
+   */
+  void processFlows(
+      DataPlane dataPlane,
+      Set<Flow> flows,
+      Map<String, Map<String, Fib>> fibs,
+      boolean ignoreAcls,
+      BiConsumer<Flow, FlowTrace> traceConsumer);
 }
@@ -31,11 +31,15 @@ import net.jpountz.lz4.LZ4FrameInputStream;
 import net.jpountz.lz4.LZ4FrameOutputStream;
 import org.batfish.common.BatfishException;
 import org.batfish.common.util.BatfishObjectInputStream;
+import org.batfish.common.util.BlockCompressedSerialization;
+import org.batfish.common.util.CompactSerialization;
 
 public abstract class PluginConsumer implements IPluginConsumer {
 
   /** Supported formats we can deserialize from */
   public enum Format {
+    BLOCK_LZ4,
+    COMPACT,
     JAVA_SERIALIZED,
     LZ4,
     GZIP,
@@ -125,6 +129,11 @@ public abstract class PluginConsumer implements IPluginConsumer {
               new PushbackInputStream(gis, DEFAULT_HEADER_LENGTH_BYTES);
           f = detectFormat(pbUncompressed);
           return deserializeObject(pbUncompressed, outputClass, f);
+        } else if (f == Format.COMPACT) {
+          return CompactSerialization.deserialize(pbCompressed, outputClass, _currentClassLoader);
+        } else if (f == Format.BLOCK_LZ4) {
+          return BlockCompressedSerialization.deserialize(
+              inputFile, outputClass, _currentClassLoader, false);
         } else if (f == Format.LZ4) {
           InputStream lis = closer.register(new LZ4FrameInputStream(pbCompressed));
           // Update format after decompression
@@ -136,7 +145,7 @@ public abstract class PluginConsumer implements IPluginConsumer {
           return deserializeObject(pbCompressed, outputClass, f);
         }
       }
-    } catch (IOException e) {
+    } catch (IOException | ClassNotFoundException | ClassCastException e) {
       throw new BatfishException(
           String.format(
               "Failed to deserialize object of type %s from file %s",
@@ -157,6 +166,10 @@ public abstract class PluginConsumer implements IPluginConsumer {
     Format format;
     if (Arrays.equals(header, JAVA_SERIALIZED_OBJECT_HEADER)) {
       format = Format.JAVA_SERIALIZED;
+    } else if (Arrays.equals(header, CompactSerialization.MAGIC_BYTES)) {
+      format = Format.COMPACT;
+    } else if (Arrays.equals(header, BlockCompressedSerialization.MAGIC_BYTES)) {
+      format = Format.BLOCK_LZ4;
     } else if (Arrays.equals(header, LZ4_MAGIC_BYTES)) {
       format = Format.LZ4;
     } else if (Arrays.equals(Arrays.copyOf(header, GZIP_HEADER_LENGTH_BYTES), GZIP_MAGIC_BYTES)) {
@@ -0,0 +1,415 @@
+package org.batfish.common.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.io.CountingOutputStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.annotation.Nonnull;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+/**
+ * Block-compressed encoding for very large objects stored on disk by Batfish, such as data planes.
+ *
+ * <p>The Java serialization of the object is split into fixed-size blocks that are LZ4-compressed
+ * independently, so that compression and decompression of a single object run on many cores. A
+ * file consists of {@link #MAGIC_BYTES}, a single {@link #FORMAT_VERSION} byte, the compressed
+ * blocks, an index holding the compressed and uncompressed length of each block, and a trailer
+ * holding the offset of the index. Readers use the index to fetch and decompress blocks in
+ * parallel, a bounded number ahead of the block being deserialized.
+ */
+public final class BlockCompressedSerialization {
+
+  /** The header at the start of every block-compressed file. */
+  public static final byte[] MAGIC_BYTES = {'B', 'F', 'B', 'Z'};
+
+  /** The version of the block-compressed layout. Bump whenever the layout changes. */
+  public static final int FORMAT_VERSION = 1;
+
+  /** The default number of uncompressed bytes in each block. */
+  static final int DEFAULT_BLOCK_SIZE = 1 << 22;
+
+  /* LZ4 compressors and decompressors are thread-safe, so these are shared by all blocks. */
+  private static final LZ4Compressor COMPRESSOR = LZ4Factory.fastestInstance().fastCompressor();
+
+  private static final LZ4FastDecompressor DECOMPRESSOR =
+      LZ4Factory.fastestInstance().fastDecompressor();
+
+  /*
+   * Blocks are processed on a dedicated pool rather than the common fork-join pool, since callers
+   * (e.g. the parallel streams in Batfish#serializeObjects) may themselves be running there.
+   */
+  private static final ExecutorService EXECUTOR =
+      Executors.newFixedThreadPool(
+          Runtime.getRuntime().availableProcessors(),
+          new ThreadFactoryBuilder()
+              .setDaemon(true)
+              .setNameFormat("block-compression-%d")
+              .build());
+
+  private static final int HEADER_LENGTH = MAGIC_BYTES.length + 1;
+
+  /* The maximum number of blocks being compressed or decompressed ahead of the stream. */
+  private static final int MAX_BLOCKS_IN_FLIGHT = 2 * Runtime.getRuntime().availableProcessors();
+
+  /* Size of the trailer, which holds the offset of the index. */
+  private static final int TRAILER_LENGTH = Long.BYTES;
+
+  /** Writes {@code object} to {@code outputFile} in block-compressed format. */
+  public static void serialize(Serializable object, Path outputFile) throws IOException {
+    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(outputFile))) {
+      serialize(object, out, DEFAULT_BLOCK_SIZE, EXECUTOR);
+    }
+  }
+
+  /**
+   * Writes {@code object} to {@code out} in block-compressed format, compressing blocks of {@code
+   * blockSize} bytes on {@code executor}. The given stream is flushed but not closed.
+   */
+  static void serialize(Serializable object, OutputStream out, int blockSize, Executor executor)
+      throws IOException {
+    checkArgument(blockSize > 0, "Block size must be positive");
+    CountingOutputStream counting = new CountingOutputStream(out);
+    counting.write(MAGIC_BYTES);
+    counting.write(FORMAT_VERSION);
+    // Closing the object stream writes the last block, index, and trailer, but not close out.
+    try (ObjectOutputStream oos =
+        new ObjectOutputStream(new BlockOutputStream(counting, blockSize, executor))) {
+      oos.writeObject(object);
+    }
+    out.flush();
+  }
+
+  /**
+   * Reads an object of the given class from {@code inputFile}, which must be in block-compressed
+   * format. If {@code intern} is set, strings and value objects in the result are replaced by their
+   * canonical instances (see {@link ValueInterner}).
+   *
+   * @throws StreamCorruptedException if the file is not in a supported block-compressed format
+   */
+  @Nonnull
+  public static <S extends Serializable> S deserialize(
+      Path inputFile, Class<S> outputClass, ClassLoader loader, boolean intern)
+      throws IOException, ClassNotFoundException {
+    return deserialize(inputFile, outputClass, loader, intern, EXECUTOR);
+  }
+
+  @Nonnull
+  static <S extends Serializable> S deserialize(
+      Path inputFile, Class<S> outputClass, ClassLoader loader, boolean intern, Executor executor)
+      throws IOException, ClassNotFoundException {
+    try (FileChannel channel = FileChannel.open(inputFile, StandardOpenOption.READ);
+        BlockInputStream in = new BlockInputStream(channel, inputFile, executor);
+        ObjectInputStream ois =
+            intern
+                ? new InterningObjectInputStream(in, loader)
+                : new BatfishObjectInputStream(in, loader)) {
+      return outputClass.cast(ois.readObject());
+    }
+  }
+
+  /* Reads exactly dst.remaining() bytes at the given position of the channel. */
+  private static void readFully(FileChannel channel, ByteBuffer dst, long position)
+      throws IOException {
+    long pos = position;
+    while (dst.hasRemaining()) {
+      int read = channel.read(dst, pos);
+      if (read < 0) {
+        throw new EOFException("Unexpected end of block-compressed file");
+      }
+      pos += read;
+    }
+  }
+
+  /* Waits for the block, rethrowing any failure to compress or decompress it. */
+  private static <T> T join(CompletableFuture<T> block) throws IOException {
+    try {
+      return block.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof UncheckedIOException) {
+        throw ((UncheckedIOException) e.getCause()).getCause();
+      }
+      throw new IOException("Failed to process block", e.getCause());
+    }
+  }
+
+  /** Compresses the bytes written to it in blocks, in parallel, and writes them in order. */
+  private static final class BlockOutputStream extends OutputStream {
+
+    private byte[] _buffer;
+
+    private int _bufferLength;
+
+    private boolean _closed;
+
+    private final Executor _executor;
+
+    /* Compressed and uncompressed lengths of each block written so far, in order. */
+    private final ByteArrayOutputStream _index;
+
+    private int _numBlocks;
+
+    private final CountingOutputStream _out;
+
+    private final Deque<CompletableFuture<byte[]>> _pending;
+
+    private final Deque<Integer> _pendingLengths;
+
+    private BlockOutputStream(CountingOutputStream out, int blockSize, Executor executor) {
+      _out = out;
+      _executor = executor;
+      _buffer = new byte[blockSize];
+      _index = new ByteArrayOutputStream();
+      _pending = new ArrayDeque<>();
+      _pendingLengths = new ArrayDeque<>();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (_closed) {
+        return;
+      }
+      _closed = true;
+      submitBlock();
+      while (!_pending.isEmpty()) {
+        writeOldestBlock();
+      }
+      long indexOffset = _out.getCount();
+      // Not closed, since that would close the underlying stream.
+      DataOutputStream data = new DataOutputStream(_out);
+      data.writeInt(_numBlocks);
+      _index.writeTo(data);
+      data.writeLong(indexOffset);
+      data.flush();
+    }
+
+    /* Hands the buffered bytes to the executor for compression and starts a new buffer. */
+    private void submitBlock() throws IOException {
+      if (_bufferLength == 0) {
+        return;
+      }
+      byte[] block = _buffer;
+      int length = _bufferLength;
+      _pending.add(
+          CompletableFuture.supplyAsync(
+              () -> {
+                byte[] compressed = new byte[COMPRESSOR.maxCompressedLength(length)];
+                int compressedLength =
+                    COMPRESSOR.compress(block, 0, length, compressed, 0, compressed.length);
+                return Arrays.copyOf(compressed, compressedLength);
+              },
+              _executor));
+      _pendingLengths.add(length);
+      _buffer = new byte[_buffer.length];
+      _bufferLength = 0;
+      while (_pending.size() > MAX_BLOCKS_IN_FLIGHT) {
+        writeOldestBlock();
+      }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      _buffer[_bufferLength++] = (byte) b;
+      if (_bufferLength == _buffer.length) {
+        submitBlock();
+      }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      int offset = off;
+      int remaining = len;
+      while (remaining > 0) {
+        int n = Math.min(remaining, _buffer.length - _bufferLength);
+        System.arraycopy(b, offset, _buffer, _bufferLength, n);
+        _bufferLength += n;
+        offset += n;
+        remaining -= n;
+        if (_bufferLength == _buffer.length) {
+          submitBlock();
+        }
+      }
+    }
+
+    private void writeOldestBlock() throws IOException {
+      byte[] compressed = join(_pending.remove());
+      _out.write(compressed);
+      DataOutputStream index = new DataOutputStream(_index);
+      index.writeInt(compressed.length);
+      index.writeInt(_pendingLengths.remove());
+      _numBlocks++;
+    }
+  }
+
+  /**
+   * Reads the blocks of a block-compressed file in order, decompressing up to {@link
+   * #MAX_BLOCKS_IN_FLIGHT} of them in parallel ahead of the one being read.
+   */
+  private static final class BlockInputStream extends InputStream {
+
+    private byte[] _block;
+
+    private final FileChannel _channel;
+
+    private final int[] _compressedLengths;
+
+    private final Executor _executor;
+
+    private int _nextToSubmit;
+
+    private long _nextOffset;
+
+    private final Deque<CompletableFuture<byte[]>> _pending;
+
+    private int _position;
+
+    private final int[] _uncompressedLengths;
+
+    private BlockInputStream(FileChannel channel, Path path, Executor executor)
+        throws IOException {
+      _channel = channel;
+      _executor = executor;
+      long size = channel.size();
+      if (size < HEADER_LENGTH + TRAILER_LENGTH) {
+        throw new StreamCorruptedException("Truncated block-compressed file: " + path);
+      }
+      ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+      readFully(channel, header, 0);
+      header.flip();
+      byte[] magic = new byte[MAGIC_BYTES.length];
+      header.get(magic);
+      if (!Arrays.equals(magic, MAGIC_BYTES)) {
+        throw new StreamCorruptedException("Not a block-compressed file: " + path);
+      }
+      int version = header.get();
+      if (version != FORMAT_VERSION) {
+        throw new StreamCorruptedException(
+            String.format(
+                "Unsupported block-compressed version %d, expected %d", version, FORMAT_VERSION));
+      }
+      ByteBuffer trailer = ByteBuffer.allocate(TRAILER_LENGTH);
+      readFully(channel, trailer, size - TRAILER_LENGTH);
+      trailer.flip();
+      long indexOffset = trailer.getLong();
+      if (indexOffset < HEADER_LENGTH || indexOffset > size - TRAILER_LENGTH) {
+        throw new StreamCorruptedException("Invalid block-compressed index offset: " + path);
+      }
+      ByteBuffer index = ByteBuffer.allocate((int) (size - TRAILER_LENGTH - indexOffset));
+      readFully(channel, index, indexOffset);
+      index.flip();
+      int numBlocks = index.getInt();
+      _compressedLengths = new int[numBlocks];
+      _uncompressedLengths = new int[numBlocks];
+      for (int i = 0; i < numBlocks; i++) {
+        _compressedLengths[i] = index.getInt();
+        _uncompressedLengths[i] = index.getInt();
+      }
+      _nextOffset = HEADER_LENGTH;
+      _pending = new ArrayDeque<>();
+      _block = new byte[0];
+    }
+
+    /* Returns false at the end of the last block. */
+    private boolean ensureBlock() throws IOException {
+      while (_position == _block.length) {
+        fillPipeline();
+        if (_pending.isEmpty()) {
+          return false;
+        }
+        _block = join(_pending.remove());
+        _position = 0;
+        // Keep decompressing ahead while this block is read.
+        fillPipeline();
+      }
+      return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (!ensureBlock()) {
+        return -1;
+      }
+      return _block[_position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (!ensureBlock()) {
+        return -1;
+      }
+      int n = Math.min(len, _block.length - _position);
+      System.arraycopy(_block, _position, b, off, n);
+      _position += n;
+      return n;
+    }
+
+    private void fillPipeline() {
+      while (_pending.size() < MAX_BLOCKS_IN_FLIGHT && _nextToSubmit < _compressedLengths.length) {
+        submitBlock();
+      }
+    }
+
+    private void submitBlock() {
+      long offset = _nextOffset;
+      int compressedLength = _compressedLengths[_nextToSubmit];
+      int uncompressedLength = _uncompressedLengths[_nextToSubmit];
+      _pending.add(
+          CompletableFuture.supplyAsync(
+              () -> {
+                ByteBuffer compressed = ByteBuffer.allocate(compressedLength);
+                try {
+                  readFully(_channel, compressed, offset);
+                } catch (IOException e) {
+                  throw new UncheckedIOException(e);
+                }
+                byte[] block = new byte[uncompressedLength];
+                DECOMPRESSOR.decompress(compressed.array(), 0, block, 0, uncompressedLength);
+                return block;
+              },
+              _executor));
+      _nextOffset += compressedLength;
+      _nextToSubmit++;
+    }
+
+    @Override
+    public void close() {
+      // Blocks still in flight read from the channel, which the caller closes next. Let them
+      // finish, ignoring failures since nothing more will be read.
+      CompletableFuture.allOf(_pending.toArray(new CompletableFuture<?>[0]))
+          .exceptionally(e -> null)
+          .join();
+      _pending.clear();
+    }
+  }
+
+  private BlockCompressedSerialization() {}
+}
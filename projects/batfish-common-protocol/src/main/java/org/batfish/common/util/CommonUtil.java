@@ -123,6 +123,7 @@ import org.batfish.datamodel.SubRange;
 import org.batfish.datamodel.Topology;
 import org.batfish.datamodel.UniverseIpSpace;
 import org.batfish.datamodel.Vrf;
+import org.batfish.datamodel.collections.IpHashMap;
 import org.batfish.datamodel.collections.NodeInterfacePair;
 import org.batfish.datamodel.ospf.OspfArea;
 import org.batfish.datamodel.ospf.OspfNeighbor;
@@ -411,7 +412,8 @@ public class CommonUtil {
    */
   public static Map<Ip, Map<String, Set<String>>> computeIpInterfaceOwners(
       Map<String, Set<Interface>> enabledInterfaces, boolean excludeInactive) {
-    Map<Ip, Map<String, Set<String>>> ipOwners = new HashMap<>();
+    // Accumulate keyed by unboxed IPs, since there is an entry per interface address
+    IpHashMap<Map<String, Set<String>>> ipOwners = new IpHashMap<>();
     Map<Pair<InterfaceAddress, Integer>, Set<Interface>> vrrpGroups = new HashMap<>();
     enabledInterfaces.forEach(
         (hostname, interfaces) ->
@@ -446,7 +448,7 @@ public class CommonUtil {
                       .forEach(
                           ip ->
                               ipOwners
-                                  .computeIfAbsent(ip, k -> new HashMap<>())
+                                  .computeIfAbsent(ip.asLong(), k -> new HashMap<>())
                                   .computeIfAbsent(hostname, k -> new HashSet<>())
                                   .add(i.getName()));
                 }));
@@ -464,20 +466,22 @@ public class CommonUtil {
                           (Interface o) -> o.getVrrpGroups().get(groupNum).getPriority())
                       .thenComparing(o -> o.getAddress().getIp()));
           ipOwners
-              .computeIfAbsent(address.getIp(), k -> new HashMap<>())
+              .computeIfAbsent(address.getIp().asLong(), k -> new HashMap<>())
               .computeIfAbsent(vrrpMaster.getOwner().getHostname(), k -> new HashSet<>())
               .add(vrrpMaster.getName());
         });
 
     // freeze
-    return toImmutableMap(
-        ipOwners,
-        Entry::getKey,
-        ipOwnersEntry ->
-            toImmutableMap(
-                ipOwnersEntry.getValue(),
-                Entry::getKey, // hostname
-                hostIpOwnersEntry -> ImmutableSet.copyOf(hostIpOwnersEntry.getValue())));
+    ImmutableMap.Builder<Ip, Map<String, Set<String>>> frozenIpOwners = ImmutableMap.builder();
+    ipOwners.forEach(
+        (ip, owners) ->
+            frozenIpOwners.put(
+                new Ip(ip),
+                toImmutableMap(
+                    owners,
+                    Entry::getKey, // hostname
+                    hostIpOwnersEntry -> ImmutableSet.copyOf(hostIpOwnersEntry.getValue()))));
+    return frozenIpOwners.build();
   }
 
   /**
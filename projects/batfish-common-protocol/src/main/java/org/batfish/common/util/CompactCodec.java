@@ -0,0 +1,21 @@
+package org.batfish.common.util;
+
+import java.io.IOException;
+
+/**
+ * Writes and reads the values of one class in the compact encoding (see {@link
+ * CompactSerialization}). The class itself, and the identity of the value, are recorded by the
+ * caller.
+ */
+interface CompactCodec<T> {
+
+  /** Writes the contents of {@code value}, which is never {@code null}. */
+  void write(CompactWriter out, T value) throws IOException;
+
+  /**
+   * Reads a value written by {@link #write}. Codecs of mutable containers pass the new container
+   * to {@link CompactReader#registered(Object)} before reading its contents, so that the contents
+   * may refer back to it.
+   */
+  T read(CompactReader in) throws IOException, ClassNotFoundException;
+}
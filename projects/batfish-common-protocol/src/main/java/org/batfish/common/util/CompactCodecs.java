@@ -0,0 +1,792 @@
+package org.batfish.common.util;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.IntFunction;
+import javax.annotation.Nullable;
+import org.batfish.datamodel.InterfaceAddress;
+import org.batfish.datamodel.Ip;
+import org.batfish.datamodel.Prefix;
+import org.batfish.datamodel.PrefixRange;
+import org.batfish.datamodel.PrefixSpace;
+import org.batfish.datamodel.SubRange;
+
+/**
+ * The codecs used by {@link CompactWriter} and {@link CompactReader} for each class.
+ *
+ * <p>The collections of the JDK and Guava, arrays, enums, and the value types that make up most of
+ * a configuration have codecs written by hand below, which call constructors and factory methods
+ * rather than reflection. Any other serializable class without custom serialization methods gets
+ * a {@link FieldCodec}, which writes its serializable fields in the order of {@link
+ * ObjectStreamClass#getFields()}. Objects of the remaining serializable classes, which define
+ * e.g. {@code writeObject} or {@code readResolve}, are written with Java serialization.
+ */
+final class CompactCodecs {
+
+  /** How the objects of one class are written, and the class recorded in the stream for them. */
+  static final class Binding {
+
+    /* The codec, or null if objects of the class are written with Java serialization */
+    @Nullable final CompactCodec<?> _codec;
+
+    /* A hash of the serializable fields, checked when reading with a field codec, or else 0 */
+    final long _fingerprint;
+
+    /* The serialVersionUID, checked when reading with a field codec, or else 0 */
+    final long _serialVersionUid;
+
+    final Class<?> _streamClass;
+
+    private Binding(
+        Class<?> streamClass,
+        @Nullable CompactCodec<?> codec,
+        long serialVersionUid,
+        long fingerprint) {
+      _streamClass = streamClass;
+      _codec = codec;
+      _serialVersionUid = serialVersionUid;
+      _fingerprint = fingerprint;
+    }
+  }
+
+  /** Writes the contents of a value. */
+  private interface Encoder<T> {
+    void write(CompactWriter out, T value) throws IOException;
+  }
+
+  /** Reads the contents of a value. */
+  private interface Decoder<T> {
+    T read(CompactReader in) throws IOException, ClassNotFoundException;
+  }
+
+  /** Writes an enum constant by name, so that reordering constants does not change its value. */
+  private static final class EnumCodec<E extends Enum<E>> implements CompactCodec<E> {
+
+    private final Class<E> _type;
+
+    private EnumCodec(Class<E> type) {
+      _type = type;
+    }
+
+    @Override
+    public void write(CompactWriter out, E value) throws IOException {
+      out.writeString(value.name());
+    }
+
+    @Override
+    public E read(CompactReader in) throws IOException {
+      String name = in.readString();
+      try {
+        return Enum.valueOf(_type, name);
+      } catch (IllegalArgumentException e) {
+        throw new InvalidObjectException(
+            String.format("No constant %s in enum %s", name, _type.getName()));
+      }
+    }
+  }
+
+  /**
+   * Writes the serializable fields of a class without custom serialization methods, as Java
+   * serialization would, from the fields of its topmost serializable superclass down. Reading
+   * creates the object as Java serialization does, without running the constructors of the class
+   * or its serializable superclasses.
+   */
+  private static final class FieldCodec implements CompactCodec<Object> {
+
+    /* ObjectStreamClass#newInstance, which instantiates a class as Java serialization does */
+    private static final Method NEW_INSTANCE = getNewInstance();
+
+    @SuppressWarnings("PMD.AvoidAccessibilityAlteration")
+    private static Method getNewInstance() {
+      try {
+        Method method = ObjectStreamClass.class.getDeclaredMethod("newInstance");
+        method.setAccessible(true);
+        return method;
+      } catch (NoSuchMethodException e) {
+        throw new IllegalStateException("Cannot instantiate classes for deserialization", e);
+      }
+    }
+
+    /**
+     * Returns the binding of a field codec for {@code type}, or {@code null} if objects of the
+     * class must be written with Java serialization.
+     */
+    @Nullable
+    @SuppressWarnings("PMD.AvoidAccessibilityAlteration")
+    private static Binding bind(Class<?> type) {
+      if (Externalizable.class.isAssignableFrom(type) || Proxy.isProxyClass(type)) {
+        return null;
+      }
+      List<Class<?>> levels = new ArrayList<>();
+      for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+        if (!Serializable.class.isAssignableFrom(c)
+            || hasMethod(c, "writeReplace")
+            || hasMethod(c, "readResolve")
+            || hasMethod(c, "readObjectNoData")
+            || hasMethod(c, "writeObject", ObjectOutputStream.class)
+            || hasMethod(c, "readObject", ObjectInputStream.class)) {
+          return null;
+        }
+        levels.add(0, c);
+      }
+      List<Field> fields = new ArrayList<>();
+      Hasher hasher = Hashing.murmur3_128().newHasher();
+      for (Class<?> level : levels) {
+        ObjectStreamClass desc = ObjectStreamClass.lookup(level);
+        for (ObjectStreamField streamField : desc.getFields()) {
+          Field field;
+          try {
+            field = level.getDeclaredField(streamField.getName());
+          } catch (NoSuchFieldException e) {
+            // Declared in serialPersistentFields only, which requires custom serialization
+            return null;
+          }
+          if (Modifier.isStatic(field.getModifiers())) {
+            return null;
+          }
+          field.setAccessible(true);
+          fields.add(field);
+        }
+        hasher
+            .putString(level.getName(), StandardCharsets.UTF_8)
+            .putLong(CompactSerialization.fieldsFingerprint(desc));
+      }
+      ObjectStreamClass desc = ObjectStreamClass.lookup(type);
+      return new Binding(
+          type,
+          new FieldCodec(desc, fields),
+          desc.getSerialVersionUID(),
+          hasher.hash().asLong());
+    }
+
+    private static boolean hasMethod(Class<?> type, String name, Class<?>... parameterTypes) {
+      try {
+        type.getDeclaredMethod(name, parameterTypes);
+        return true;
+      } catch (NoSuchMethodException e) {
+        return false;
+      }
+    }
+
+    private final ObjectStreamClass _desc;
+
+    private final Field[] _fields;
+
+    private FieldCodec(ObjectStreamClass desc, List<Field> fields) {
+      _desc = desc;
+      _fields = fields.toArray(new Field[0]);
+    }
+
+    @Override
+    public void write(CompactWriter out, Object value) throws IOException {
+      try {
+        for (Field field : _fields) {
+          Class<?> type = field.getType();
+          if (!type.isPrimitive()) {
+            out.writeObject(field.get(value));
+          } else if (type == int.class) {
+            out.writeInt(field.getInt(value));
+          } else if (type == long.class) {
+            out.writeLong(field.getLong(value));
+          } else if (type == boolean.class) {
+            out.writeBoolean(field.getBoolean(value));
+          } else if (type == double.class) {
+            out.writeDouble(field.getDouble(value));
+          } else if (type == byte.class) {
+            out.writeByte(field.getByte(value));
+          } else if (type == short.class) {
+            out.writeInt(field.getShort(value));
+          } else if (type == char.class) {
+            out.writeVarInt(field.getChar(value));
+          } else {
+            out.writeFloat(field.getFloat(value));
+          }
+        }
+      } catch (IllegalAccessException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public Object read(CompactReader in) throws IOException, ClassNotFoundException {
+      Object value;
+      try {
+        value = in.registered(NEW_INSTANCE.invoke(_desc));
+      } catch (IllegalAccessException | InvocationTargetException e) {
+        throw (InvalidClassException)
+            new InvalidClassException(_desc.getName(), "Cannot instantiate").initCause(e);
+      }
+      try {
+        for (Field field : _fields) {
+          Class<?> type = field.getType();
+          if (!type.isPrimitive()) {
+            Object fieldValue = in.readObject();
+            if (fieldValue != null && !type.isInstance(fieldValue)) {
+              throw new InvalidClassException(
+                  _desc.getName(),
+                  String.format(
+                      "Cannot assign %s to field %s of type %s",
+                      fieldValue.getClass().getName(), field.getName(), type.getName()));
+            }
+            field.set(value, fieldValue);
+          } else if (type == int.class) {
+            field.setInt(value, in.readInt());
+          } else if (type == long.class) {
+            field.setLong(value, in.readLong());
+          } else if (type == boolean.class) {
+            field.setBoolean(value, in.readBoolean());
+          } else if (type == double.class) {
+            field.setDouble(value, in.readDouble());
+          } else if (type == byte.class) {
+            field.setByte(value, in.readByte());
+          } else if (type == short.class) {
+            field.setShort(value, (short) in.readInt());
+          } else if (type == char.class) {
+            field.setChar(value, (char) in.readVarInt());
+          } else {
+            field.setFloat(value, in.readFloat());
+          }
+        }
+      } catch (IllegalAccessException e) {
+        throw new IllegalStateException(e);
+      }
+      return value;
+    }
+  }
+
+  /** Writes an array of objects, whose class records its component type. */
+  private static final class ObjectArrayCodec implements CompactCodec<Object[]> {
+
+    private final Class<?> _componentType;
+
+    private ObjectArrayCodec(Class<?> componentType) {
+      _componentType = componentType;
+    }
+
+    @Override
+    public void write(CompactWriter out, Object[] value) throws IOException {
+      out.writeVarInt(value.length);
+      for (Object element : value) {
+        out.writeObject(element);
+      }
+    }
+
+    @Override
+    public Object[] read(CompactReader in) throws IOException, ClassNotFoundException {
+      Object[] array = in.registered((Object[]) Array.newInstance(_componentType, in.readVarInt()));
+      for (int i = 0; i < array.length; i++) {
+        Object element = in.readObject();
+        if (element != null && !_componentType.isInstance(element)) {
+          throw new InvalidClassException(
+              array.getClass().getName(), "Cannot store " + element.getClass().getName());
+        }
+        array[i] = element;
+      }
+      return array;
+    }
+  }
+
+  private static final ClassValue<Binding> BINDINGS =
+      new ClassValue<Binding>() {
+        @Override
+        protected Binding computeValue(Class<?> type) {
+          return bind(type);
+        }
+      };
+
+  /*
+   * Guava's immutable collections are written as the public class that the factory methods of
+   * each one return, rather than as the private class of the instance. Subclasses come first.
+   */
+  private static final List<Class<?>> IMMUTABLE_COLLECTIONS =
+      ImmutableList.of(
+          ImmutableSortedMap.class,
+          ImmutableMap.class,
+          ImmutableSortedSet.class,
+          ImmutableSet.class,
+          ImmutableList.class);
+
+  private static final Map<Class<?>, CompactCodec<?>> CODECS = codecs();
+
+  /** Returns how objects of the given class are written. */
+  static Binding binding(Class<?> type) {
+    return BINDINGS.get(type);
+  }
+
+  private static Binding bind(Class<?> type) {
+    CompactCodec<?> codec = CODECS.get(type);
+    if (codec != null) {
+      return new Binding(type, codec, 0L, 0L);
+    }
+    for (Class<?> collectionType : IMMUTABLE_COLLECTIONS) {
+      if (collectionType.isAssignableFrom(type)) {
+        return BINDINGS.get(collectionType);
+      }
+    }
+    if (Enum.class.isAssignableFrom(type)) {
+      if (!type.isEnum()) {
+        // The class of a constant with a body
+        return BINDINGS.get(type.getSuperclass());
+      }
+      return new Binding(type, enumCodec(type), 0L, 0L);
+    }
+    if (type.isArray() && !type.getComponentType().isPrimitive()) {
+      return new Binding(type, new ObjectArrayCodec(type.getComponentType()), 0L, 0L);
+    }
+    Binding fieldBinding = FieldCodec.bind(type);
+    return fieldBinding != null ? fieldBinding : new Binding(type, null, 0L, 0L);
+  }
+
+  private static <T> CompactCodec<T> codec(Encoder<T> encoder, Decoder<T> decoder) {
+    return new CompactCodec<T>() {
+      @Override
+      public void write(CompactWriter out, T value) throws IOException {
+        encoder.write(out, value);
+      }
+
+      @Override
+      public T read(CompactReader in) throws IOException, ClassNotFoundException {
+        return decoder.read(in);
+      }
+    };
+  }
+
+  /** Returns the codecs by class. Codecs are registered by implementation class, not interface. */
+  @SuppressWarnings("PMD.LooseCoupling")
+  private static Map<Class<?>, CompactCodec<?>> codecs() {
+    Map<Class<?>, CompactCodec<?>> codecs = new HashMap<>();
+
+    // Boxed primitives other than those with tags of their own
+    codecs.put(
+        Byte.class, codec((out, value) -> out.writeByte(value), CompactReader::readByte));
+    codecs.put(
+        Character.class,
+        codec((out, value) -> out.writeVarInt(value), in -> (char) in.readVarInt()));
+    codecs.put(
+        Float.class, codec((out, value) -> out.writeFloat(value), CompactReader::readFloat));
+    codecs.put(
+        Short.class,
+        codec((out, value) -> out.writeInt(value), in -> (short) in.readInt()));
+    codecs.put(
+        Class.class,
+        codec(
+            (out, value) -> out.writeString(((Class<?>) value).getName()),
+            in -> in.loadClass(in.readString())));
+
+    // Arrays of primitives
+    codecs.put(
+        boolean[].class,
+        codec(
+            (out, value) -> {
+              boolean[] array = value;
+              out.writeVarInt(array.length);
+              for (boolean element : array) {
+                out.writeBoolean(element);
+              }
+            },
+            in -> {
+              boolean[] array = in.registered(new boolean[in.readVarInt()]);
+              for (int i = 0; i < array.length; i++) {
+                array[i] = in.readBoolean();
+              }
+              return array;
+            }));
+    codecs.put(
+        byte[].class,
+        codec(
+            (out, value) -> {
+              byte[] array = value;
+              out.writeVarInt(array.length);
+              out.writeBytes(array);
+            },
+            in -> {
+              byte[] array = in.registered(new byte[in.readVarInt()]);
+              in.readBytes(array);
+              return array;
+            }));
+    codecs.put(
+        char[].class,
+        codec(
+            (out, value) -> {
+              char[] array = value;
+              out.writeVarInt(array.length);
+              for (char element : array) {
+                out.writeVarInt(element);
+              }
+            },
+            in -> {
+              char[] array = in.registered(new char[in.readVarInt()]);
+              for (int i = 0; i < array.length; i++) {
+                array[i] = (char) in.readVarInt();
+              }
+              return array;
+            }));
+    codecs.put(
+        double[].class,
+        codec(
+            (out, value) -> {
+              double[] array = value;
+              out.writeVarInt(array.length);
+              for (double element : array) {
+                out.writeDouble(element);
+              }
+            },
+            in -> {
+              double[] array = in.registered(new double[in.readVarInt()]);
+              for (int i = 0; i < array.length; i++) {
+                array[i] = in.readDouble();
+              }
+              return array;
+            }));
+    codecs.put(
+        float[].class,
+        codec(
+            (out, value) -> {
+              float[] array = value;
+              out.writeVarInt(array.length);
+              for (float element : array) {
+                out.writeFloat(element);
+              }
+            },
+            in -> {
+              float[] array = in.registered(new float[in.readVarInt()]);
+              for (int i = 0; i < array.length; i++) {
+                array[i] = in.readFloat();
+              }
+              return array;
+            }));
+    codecs.put(
+        int[].class,
+        codec(
+            (out, value) -> {
+              int[] array = value;
+              out.writeVarInt(array.length);
+              for (int element : array) {
+                out.writeInt(element);
+              }
+            },
+            in -> {
+              int[] array = in.registered(new int[in.readVarInt()]);
+              for (int i = 0; i < array.length; i++) {
+                array[i] = in.readInt();
+              }
+              return array;
+            }));
+    codecs.put(
+        long[].class,
+        codec(
+            (out, value) -> {
+              long[] array = value;
+              out.writeVarInt(array.length);
+              for (long element : array) {
+                out.writeLong(element);
+              }
+            },
+            in -> {
+              long[] array = in.registered(new long[in.readVarInt()]);
+              for (int i = 0; i < array.length; i++) {
+                array[i] = in.readLong();
+              }
+              return array;
+            }));
+    codecs.put(
+        short[].class,
+        codec(
+            (out, value) -> {
+              short[] array = value;
+              out.writeVarInt(array.length);
+              for (short element : array) {
+                out.writeInt(element);
+              }
+            },
+            in -> {
+              short[] array = in.registered(new short[in.readVarInt()]);
+              for (int i = 0; i < array.length; i++) {
+                array[i] = (short) in.readInt();
+              }
+              return array;
+            }));
+
+    // JDK collections
+    codecs.put(
+        ArrayList.class,
+        codec(CompactCodecs::writeElements, in -> readElements(in, ArrayList::new)));
+    codecs.put(
+        LinkedList.class,
+        codec(CompactCodecs::writeElements, in -> readElements(in, n -> new LinkedList<>())));
+    codecs.put(
+        HashSet.class,
+        codec(
+            CompactCodecs::writeElements,
+            in -> readElements(in, Sets::newHashSetWithExpectedSize)));
+    codecs.put(
+        LinkedHashSet.class,
+        codec(
+            CompactCodecs::writeElements,
+            in -> readElements(in, Sets::newLinkedHashSetWithExpectedSize)));
+    codecs.put(
+        TreeSet.class,
+        codec(
+            (out, value) -> {
+              TreeSet<?> set = (TreeSet<?>) value;
+              out.writeObject(set.comparator());
+              writeElements(out, set);
+            },
+            in -> {
+              Comparator<Object> comparator = readComparator(in);
+              return readElements(in, n -> new TreeSet<>(comparator));
+            }));
+    codecs.put(
+        HashMap.class,
+        codec(
+            CompactCodecs::writeEntries,
+            in -> readEntries(in, Maps::newHashMapWithExpectedSize)));
+    codecs.put(
+        LinkedHashMap.class,
+        codec(
+            CompactCodecs::writeEntries,
+            in -> readEntries(in, Maps::newLinkedHashMapWithExpectedSize)));
+    codecs.put(
+        TreeMap.class,
+        codec(
+            (out, value) -> {
+              TreeMap<?, ?> map = (TreeMap<?, ?>) value;
+              out.writeObject(map.comparator());
+              writeEntries(out, map);
+            },
+            in -> {
+              Comparator<Object> comparator = readComparator(in);
+              return readEntries(in, n -> new TreeMap<>(comparator));
+            }));
+
+    // Guava collections
+    codecs.put(
+        ImmutableList.class,
+        codec(
+            CompactCodecs::writeElements,
+            in -> ImmutableList.copyOf(readList(in))));
+    codecs.put(
+        ImmutableSet.class,
+        codec(
+            CompactCodecs::writeElements,
+            in -> ImmutableSet.copyOf(readList(in))));
+    codecs.put(
+        ImmutableSortedSet.class,
+        codec(
+            (out, value) -> {
+              ImmutableSortedSet<?> set = (ImmutableSortedSet<?>) value;
+              out.writeObject(set.comparator());
+              writeElements(out, set);
+            },
+            in -> {
+              Comparator<Object> comparator = readComparator(in);
+              return ImmutableSortedSet.copyOf(comparator, readList(in));
+            }));
+    codecs.put(
+        ImmutableMap.class,
+        codec(
+            CompactCodecs::writeEntries,
+            in -> ImmutableMap.copyOf(readMap(in))));
+    codecs.put(
+        ImmutableSortedMap.class,
+        codec(
+            (out, value) -> {
+              ImmutableSortedMap<?, ?> map = (ImmutableSortedMap<?, ?>) value;
+              out.writeObject(map.comparator());
+              writeEntries(out, map);
+            },
+            in -> {
+              Comparator<Object> comparator = readComparator(in);
+              return ImmutableSortedMap.copyOf(readMap(in), comparator);
+            }));
+
+    // Singletons, written as their class alone
+    for (Object singleton :
+        ImmutableList.of(
+            Collections.emptyList(),
+            Collections.emptyMap(),
+            Collections.emptyNavigableMap(),
+            Collections.emptyNavigableSet(),
+            Collections.emptySet(),
+            Ordering.natural())) {
+      codecs.put(singleton.getClass(), codec((out, value) -> {}, in -> singleton));
+    }
+
+    // Values that make up most of a configuration
+    codecs.put(
+        Ip.class,
+        codec((out, value) -> out.writeLong(value.asLong()), in -> new Ip(in.readLong())));
+    codecs.put(
+        Prefix.class,
+        codec(
+            (out, value) -> {
+              Prefix prefix = value;
+              out.writeLong(prefix.getStartIp().asLong());
+              out.writeVarInt(prefix.getPrefixLength());
+            },
+            in -> new Prefix(new Ip(in.readLong()), in.readVarInt())));
+    codecs.put(
+        InterfaceAddress.class,
+        codec(
+            (out, value) -> {
+              InterfaceAddress address = value;
+              out.writeLong(address.getIp().asLong());
+              out.writeVarInt(address.getNetworkBits());
+            },
+            in -> new InterfaceAddress(new Ip(in.readLong()), in.readVarInt())));
+    codecs.put(
+        SubRange.class,
+        codec(
+            (out, value) -> {
+              SubRange range = value;
+              out.writeInt(range.getStart());
+              out.writeInt(range.getEnd());
+            },
+            in -> new SubRange(in.readInt(), in.readInt())));
+    codecs.put(
+        PrefixRange.class,
+        codec(
+            (out, value) -> {
+              PrefixRange range = value;
+              out.writeObject(range.getPrefix());
+              out.writeObject(range.getLengthRange());
+            },
+            in ->
+                new PrefixRange(
+                    readObject(in, Prefix.class), readObject(in, SubRange.class))));
+    codecs.put(
+        PrefixSpace.class,
+        codec(
+            (out, value) -> writeElements(out, value.getPrefixRanges()),
+            in -> {
+              int size = in.readVarInt();
+              List<PrefixRange> ranges = new ArrayList<>(size);
+              for (int i = 0; i < size; i++) {
+                ranges.add(readObject(in, PrefixRange.class));
+              }
+              return new PrefixSpace(ranges);
+            }));
+    return codecs;
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private static CompactCodec<?> enumCodec(Class<?> type) {
+    return new EnumCodec(type);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Comparator<Object> readComparator(CompactReader in)
+      throws IOException, ClassNotFoundException {
+    return readObject(in, Comparator.class);
+  }
+
+  private static <C extends Collection<Object>> C readElements(
+      CompactReader in, IntFunction<C> create) throws IOException, ClassNotFoundException {
+    int size = in.readVarInt();
+    C collection = in.registered(create.apply(size));
+    for (int i = 0; i < size; i++) {
+      collection.add(in.readObject());
+    }
+    return collection;
+  }
+
+  /** Reads the elements of a collection into a list, for immutable collections to copy. */
+  private static List<Object> readList(CompactReader in)
+      throws IOException, ClassNotFoundException {
+    int size = in.readVarInt();
+    List<Object> list = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      list.add(in.readObject());
+    }
+    return list;
+  }
+
+  /** Reads the entries of a map into an ordered map, for immutable maps to copy. */
+  private static Map<Object, Object> readMap(CompactReader in)
+      throws IOException, ClassNotFoundException {
+    int size = in.readVarInt();
+    Map<Object, Object> map = Maps.newLinkedHashMapWithExpectedSize(size);
+    for (int i = 0; i < size; i++) {
+      map.put(in.readObject(), in.readObject());
+    }
+    return map;
+  }
+
+  private static <M extends Map<Object, Object>> M readEntries(
+      CompactReader in, IntFunction<M> create) throws IOException, ClassNotFoundException {
+    int size = in.readVarInt();
+    M map = in.registered(create.apply(size));
+    for (int i = 0; i < size; i++) {
+      map.put(in.readObject(), in.readObject());
+    }
+    return map;
+  }
+
+  /** Reads an object that must be {@code null} or an instance of {@code type}. */
+  @SuppressWarnings("unchecked")
+  private static <T> T readObject(CompactReader in, Class<? super T> type)
+      throws IOException, ClassNotFoundException {
+    Object value = in.readObject();
+    if (value != null && !type.isInstance(value)) {
+      throw new InvalidClassException(
+          value.getClass().getName(), "Expected an instance of " + type.getName());
+    }
+    return (T) value;
+  }
+
+  private static void writeElements(CompactWriter out, Object value) throws IOException {
+    Collection<?> collection = (Collection<?>) value;
+    out.writeVarInt(collection.size());
+    for (Object element : collection) {
+      out.writeObject(element);
+    }
+  }
+
+  private static void writeEntries(CompactWriter out, Object value) throws IOException {
+    Map<?, ?> map = (Map<?, ?>) value;
+    out.writeVarInt(map.size());
+    for (Map.Entry<?, ?> entry : map.entrySet()) {
+      out.writeObject(entry.getKey());
+      out.writeObject(entry.getValue());
+    }
+  }
+
+  private CompactCodecs() {}
+}
@@ -0,0 +1,295 @@
+package org.batfish.common.util;
+
+import static org.batfish.common.util.CompactSerialization.TAG_DOUBLE;
+import static org.batfish.common.util.CompactSerialization.TAG_FALSE;
+import static org.batfish.common.util.CompactSerialization.TAG_INT;
+import static org.batfish.common.util.CompactSerialization.TAG_JAVA;
+import static org.batfish.common.util.CompactSerialization.TAG_LONG;
+import static org.batfish.common.util.CompactSerialization.TAG_NULL;
+import static org.batfish.common.util.CompactSerialization.TAG_OBJECT;
+import static org.batfish.common.util.CompactSerialization.TAG_REFERENCE;
+import static org.batfish.common.util.CompactSerialization.TAG_STRING;
+import static org.batfish.common.util.CompactSerialization.TAG_TRUE;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.batfish.common.util.CompactCodecs.Binding;
+
+/** Reads an object graph written by {@link CompactWriter}. */
+final class CompactReader {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private byte[] _buffer;
+
+  private final List<Binding> _classes;
+
+  /* Objects read so far by handle, or null for those still being read */
+  private final List<Object> _handles;
+
+  private final InputStream _in;
+
+  private final boolean _intern;
+
+  private int _limit;
+
+  private final ClassLoader _loader;
+
+  /* The handle of the innermost object being read by a codec */
+  private int _pendingHandle;
+
+  private int _position;
+
+  private final List<String> _strings;
+
+  CompactReader(InputStream in, ClassLoader loader, boolean intern) {
+    _in = in;
+    _loader = loader;
+    _intern = intern;
+    _buffer = new byte[BUFFER_SIZE];
+    _classes = new ArrayList<>();
+    _handles = new ArrayList<>();
+    _pendingHandle = -1;
+    _strings = new ArrayList<>();
+  }
+
+  /** Makes at least {@code length} bytes available in the buffer, reading more as needed. */
+  private void require(int length) throws IOException {
+    if (_limit - _position >= length) {
+      return;
+    }
+    int available = _limit - _position;
+    if (length > _buffer.length) {
+      _buffer = Arrays.copyOf(_buffer, Math.max(length, 2 * _buffer.length));
+    }
+    System.arraycopy(_buffer, _position, _buffer, 0, available);
+    _position = 0;
+    _limit = available;
+    while (_limit < length) {
+      int read = _in.read(_buffer, _limit, _buffer.length - _limit);
+      if (read < 0) {
+        throw new EOFException("Unexpected end of compact stream");
+      }
+      _limit += read;
+    }
+  }
+
+  boolean readBoolean() throws IOException {
+    return readByte() != 0;
+  }
+
+  byte readByte() throws IOException {
+    require(1);
+    return _buffer[_position++];
+  }
+
+  private Binding readClass() throws IOException, ClassNotFoundException {
+    int index = readVarInt();
+    if (index < _classes.size()) {
+      return _classes.get(index);
+    } else if (index != _classes.size()) {
+      throw new StreamCorruptedException("Invalid class index " + index);
+    }
+    String name = readString();
+    long serialVersionUid = readFixedLong();
+    long fingerprint = readFixedLong();
+    Binding binding = CompactCodecs.binding(loadClass(name));
+    if (binding._codec == null || !binding._streamClass.getName().equals(name)) {
+      throw new InvalidClassException(name, "No compact codec for local class");
+    }
+    if (binding._serialVersionUid != serialVersionUid) {
+      throw new InvalidClassException(
+          name,
+          String.format(
+              "serialVersionUID of stream class (%d) does not match local class (%d)",
+              serialVersionUid, binding._serialVersionUid));
+    }
+    if (binding._fingerprint != fingerprint) {
+      throw new InvalidClassException(
+          name, "Serializable fields of stream class do not match local class");
+    }
+    _classes.add(binding);
+    return binding;
+  }
+
+  double readDouble() throws IOException {
+    return Double.longBitsToDouble(readFixedLong());
+  }
+
+  /** Fills {@code bytes} with bytes written by {@link CompactWriter#writeBytes(byte[])}. */
+  void readBytes(byte[] bytes) throws IOException {
+    for (int start = 0; start < bytes.length; start += _buffer.length) {
+      int length = Math.min(bytes.length - start, _buffer.length);
+      require(length);
+      System.arraycopy(_buffer, _position, bytes, start, length);
+      _position += length;
+    }
+  }
+
+  private long readFixedLong() throws IOException {
+    require(Long.BYTES);
+    long value = 0L;
+    for (int i = 0; i < Long.BYTES; i++) {
+      value = value << Byte.SIZE | (_buffer[_position++] & 0xFF);
+    }
+    return value;
+  }
+
+  float readFloat() throws IOException {
+    return Float.intBitsToFloat(readVarInt());
+  }
+
+  int readInt() throws IOException {
+    int value = readVarInt();
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private Object readJava() throws IOException, ClassNotFoundException {
+    int length = readVarInt();
+    require(length);
+    ByteArrayInputStream bytes = new ByteArrayInputStream(_buffer, _position, length);
+    _position += length;
+    try (ObjectInputStream ois =
+        new CompactSerialization.CompactObjectInputStream(bytes, _loader, _intern)) {
+      return ois.readObject();
+    }
+  }
+
+  /** Returns the class with the given name, as seen by the loader of the objects being read. */
+  Class<?> loadClass(String name) throws ClassNotFoundException {
+    return CompactSerialization.loadClass(name, _loader);
+  }
+
+  long readLong() throws IOException {
+    long value = readVarLong();
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  /** Reads an object written by {@link CompactWriter#writeObject(Object)}. */
+  Object readObject() throws IOException, ClassNotFoundException {
+    int tag = readByte();
+    switch (tag) {
+      case TAG_NULL:
+        return null;
+      case TAG_STRING:
+        return readString();
+      case TAG_INT:
+        return readInt();
+      case TAG_LONG:
+        return readLong();
+      case TAG_DOUBLE:
+        return readDouble();
+      case TAG_TRUE:
+        return Boolean.TRUE;
+      case TAG_FALSE:
+        return Boolean.FALSE;
+      case TAG_REFERENCE:
+        int handle = readVarInt();
+        if (handle >= _handles.size()) {
+          throw new StreamCorruptedException("Invalid handle " + handle);
+        }
+        Object object = _handles.get(handle);
+        if (object == null) {
+          throw new StreamCorruptedException(
+              "Reference to an object whose codec does not support circular references");
+        }
+        return object;
+      case TAG_JAVA:
+        int javaHandle = _handles.size();
+        _handles.add(null);
+        Object java = readJava();
+        _handles.set(javaHandle, java);
+        return java;
+      case TAG_OBJECT:
+        Binding binding = readClass();
+        int newHandle = _handles.size();
+        _handles.add(null);
+        int outerHandle = _pendingHandle;
+        _pendingHandle = newHandle;
+        Object value = binding._codec.read(this);
+        _pendingHandle = outerHandle;
+        if (_intern) {
+          value = ValueInterner.intern(value);
+        }
+        _handles.set(newHandle, value);
+        return value;
+      default:
+        throw new StreamCorruptedException("Invalid tag " + tag);
+    }
+  }
+
+  /**
+   * Reads a string written by {@link CompactWriter#writeString(String)}, which shares the instance
+   * of each distinct string among the objects that use it.
+   */
+  String readString() throws IOException {
+    int index = readVarInt();
+    if (index < _strings.size()) {
+      return _strings.get(index);
+    } else if (index != _strings.size()) {
+      throw new StreamCorruptedException("Invalid string index " + index);
+    }
+    int header = readVarInt();
+    int length = header >>> 1;
+    String value;
+    if ((header & 1) != 0) {
+      require(length);
+      value = new String(_buffer, _position, length, StandardCharsets.ISO_8859_1);
+      _position += length;
+    } else {
+      char[] chars = new char[length];
+      for (int i = 0; i < length; i++) {
+        chars[i] = (char) readVarInt();
+      }
+      value = new String(chars);
+    }
+    if (_intern) {
+      value = (String) ValueInterner.intern(value);
+    }
+    _strings.add(value);
+    return value;
+  }
+
+  /** Reads a non-negative integer written by {@link CompactWriter#writeVarInt(int)}. */
+  int readVarInt() throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+      byte b = readByte();
+      value |= (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new StreamCorruptedException("Malformed variable-length integer");
+  }
+
+  private long readVarLong() throws IOException {
+    long value = 0L;
+    for (int shift = 0; shift < Long.SIZE; shift += 7) {
+      byte b = readByte();
+      value |= (b & 0x7FL) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new StreamCorruptedException("Malformed variable-length integer");
+  }
+
+  /**
+   * Records {@code object} as the value of the object being read, so that objects read after this
+   * call may refer to it, and returns it.
+   */
+  <T> T registered(T object) {
+    _handles.set(_pendingHandle, object);
+    return object;
+  }
+}
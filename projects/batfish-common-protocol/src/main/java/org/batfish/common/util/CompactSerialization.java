@@ -0,0 +1,276 @@
+package org.batfish.common.util;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamField;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import javax.annotation.Nonnull;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream.BLOCKSIZE;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+
+/**
+ * Compact binary encoding for objects stored on disk by Batfish.
+ *
+ * <p>A compact file consists of {@link #MAGIC_BYTES}, a single {@link #FORMAT_VERSION} byte, and
+ * an LZ4 frame containing the object graph. Inside the frame, each object is a tag byte followed
+ * by its contents:
+ *
+ * <ul>
+ *   <li>Strings, and boxed integers, longs, doubles and booleans, have tags of their own and are
+ *       written by value. Each distinct string is written once to a string table, and afterwards
+ *       as its index in the table, so the interface, VRF, and structure names that recur
+ *       throughout a {@code Configuration} are stored and loaded once.
+ *   <li>An object written before is written as a reference to its handle, so shared and circular
+ *       references are preserved.
+ *   <li>Any other object is written as its class, followed by the output of the {@link
+ *       CompactCodec} of the class (see {@link CompactCodecs}). Each class is written once to a
+ *       class table as its name, its {@code serialVersionUID}, and a fingerprint of its
+ *       serializable field names and types, and afterwards as its index in the table.
+ *   <li>Objects of classes that have custom serialization methods but no codec are written with
+ *       Java serialization, as an embedded object stream.
+ * </ul>
+ *
+ * <p>A reader whose local class has a different {@code serialVersionUID} or fingerprint than the
+ * class that was written fails with an {@link InvalidClassException}, as the default encoding
+ * would, rather than misreading the payload. Callers are still expected to perform their usual
+ * version compatibility checks before loading compact files.
+ */
+public final class CompactSerialization {
+
+  /** The header at the start of every compact-serialized file. */
+  public static final byte[] MAGIC_BYTES = {'B', 'F', 'C', 'S'};
+
+  /** The version of the compact encoding. Bump whenever the layout of the stream changes. */
+  public static final int FORMAT_VERSION = 3;
+
+  /* The tags that start each object in the stream */
+  static final int TAG_NULL = 0;
+  static final int TAG_STRING = 1;
+  static final int TAG_INT = 2;
+  static final int TAG_LONG = 3;
+  static final int TAG_DOUBLE = 4;
+  static final int TAG_TRUE = 5;
+  static final int TAG_FALSE = 6;
+  static final int TAG_REFERENCE = 7;
+  static final int TAG_OBJECT = 8;
+  static final int TAG_JAVA = 9;
+
+  /** The fingerprint of the serializable fields of each class (see {@link #fieldsFingerprint}) */
+  private static final ClassValue<Long> FIELDS_FINGERPRINTS =
+      new ClassValue<Long>() {
+        @Override
+        protected Long computeValue(Class<?> type) {
+          return fieldsFingerprint(ObjectStreamClass.lookupAny(type));
+        }
+      };
+
+  private static final Map<String, Class<?>> PRIMITIVE_CLASSES =
+      Stream.of(
+              boolean.class,
+              byte.class,
+              char.class,
+              short.class,
+              int.class,
+              long.class,
+              float.class,
+              double.class,
+              void.class)
+          .collect(ImmutableMap.toImmutableMap(Class::getName, Function.identity()));
+
+  /**
+   * Serializes {@code object} to {@code out} in compact format. The given stream is flushed but not
+   * closed.
+   */
+  public static void serialize(Serializable object, OutputStream out) throws IOException {
+    out.write(MAGIC_BYTES);
+    out.write(FORMAT_VERSION);
+    // Closing the LZ4 stream finishes the frame; the shield leaves the given stream open. Readers
+    // allocate buffers of the block size for every file, so small blocks keep small loads cheap.
+    try (OutputStream lz4 =
+        new LZ4FrameOutputStream(new CloseShieldOutputStream(out), BLOCKSIZE.SIZE_64KB)) {
+      CompactWriter writer = new CompactWriter(lz4);
+      writer.writeObject(object);
+      writer.flush();
+    }
+    out.flush();
+  }
+
+  /**
+   * Reads an object of the given class from {@code in}, which must be positioned at the start of a
+   * compact-serialized file.
+   *
+   * @throws StreamCorruptedException if the stream does not begin with a supported compact header
+   */
+  @Nonnull
+  public static <S extends Serializable> S deserialize(
+      InputStream in, Class<S> outputClass, ClassLoader loader)
+      throws IOException, ClassNotFoundException {
+    return deserialize(in, outputClass, loader, false);
+  }
+
+  /**
+   * Reads an object of the given class from {@code in}, which must be positioned at the start of a
+   * compact-serialized file. If {@code intern} is set, strings and value objects in the result are
+   * replaced by their canonical instances (see {@link ValueInterner}).
+   *
+   * @throws StreamCorruptedException if the stream does not begin with a supported compact header
+   */
+  @Nonnull
+  public static <S extends Serializable> S deserialize(
+      InputStream in, Class<S> outputClass, ClassLoader loader, boolean intern)
+      throws IOException, ClassNotFoundException {
+    byte[] magic = new byte[MAGIC_BYTES.length];
+    ByteStreams.readFully(in, magic);
+    if (!Arrays.equals(magic, MAGIC_BYTES)) {
+      throw new StreamCorruptedException("Not a compact-serialized stream");
+    }
+    int version = in.read();
+    if (version != FORMAT_VERSION) {
+      throw new StreamCorruptedException(
+          String.format(
+              "Unsupported compact serialization version %d, expected %d",
+              version, FORMAT_VERSION));
+    }
+    try (InputStream lz4 = new LZ4FrameInputStream(in)) {
+      return outputClass.cast(new CompactReader(lz4, loader, intern).readObject());
+    }
+  }
+
+  /**
+   * Returns a hash of the names and types of the serializable fields of the given class, which is
+   * stable across JVMs.
+   */
+  static long fieldsFingerprint(ObjectStreamClass desc) {
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    for (ObjectStreamField field : desc.getFields()) {
+      hasher.putString(field.getName(), StandardCharsets.UTF_8).putChar(field.getTypeCode());
+      String typeString = field.getTypeString();
+      if (typeString != null) {
+        hasher.putString(typeString, StandardCharsets.UTF_8);
+      }
+      hasher.putChar(';');
+    }
+    return hasher.hash().asLong();
+  }
+
+  /**
+   * Resolves a class by name, including the primitive types, whose names {@link Class#forName}
+   * does not accept.
+   */
+  static Class<?> loadClass(String name, ClassLoader loader) throws ClassNotFoundException {
+    Class<?> primitive = PRIMITIVE_CLASSES.get(name);
+    return primitive != null ? primitive : Class.forName(name, false, loader);
+  }
+
+  /**
+   * Java object stream used for the objects written with Java serialization. Writes class
+   * descriptors by name and schema fingerprint only, and replaces each string with the first equal
+   * string written to the stream so that repeated strings are encoded as back-references.
+   */
+  static final class CompactObjectOutputStream extends ObjectOutputStream {
+
+    private final Map<String, String> _strings;
+
+    CompactObjectOutputStream(OutputStream out) throws IOException {
+      super(out);
+      _strings = new HashMap<>();
+      enableReplaceObject(true);
+    }
+
+    @Override
+    protected Object replaceObject(Object obj) {
+      if (obj instanceof String) {
+        return _strings.computeIfAbsent((String) obj, s -> s);
+      }
+      return obj;
+    }
+
+    @Override
+    protected void writeClassDescriptor(ObjectStreamClass desc) throws IOException {
+      writeUTF(desc.getName());
+      writeLong(desc.getSerialVersionUID());
+      writeLong(FIELDS_FINGERPRINTS.get(desc.forClass()));
+    }
+
+    @Override
+    protected void writeStreamHeader() {
+      // The compact container header replaces the standard object stream header.
+    }
+  }
+
+  /** Reads streams written by {@link CompactObjectOutputStream}. */
+  static final class CompactObjectInputStream extends ObjectInputStream {
+
+    private final ClassLoader _loader;
+
+    CompactObjectInputStream(InputStream in, ClassLoader loader, boolean intern)
+        throws IOException {
+      super(in);
+      _loader = loader;
+      enableResolveObject(intern);
+    }
+
+    @Override
+    protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+      String name = readUTF();
+      long serialVersionUid = readLong();
+      long fieldsFingerprint = readLong();
+      Class<?> localClass = resolve(name);
+      ObjectStreamClass desc = ObjectStreamClass.lookupAny(localClass);
+      if (desc == null) {
+        throw new InvalidClassException(name, "No local class descriptor");
+      }
+      if (desc.getSerialVersionUID() != serialVersionUid) {
+        throw new InvalidClassException(
+            name,
+            String.format(
+                "serialVersionUID of stream class (%d) does not match local class (%d)",
+                serialVersionUid, desc.getSerialVersionUID()));
+      }
+      if (FIELDS_FINGERPRINTS.get(localClass) != fieldsFingerprint) {
+        throw new InvalidClassException(
+            name, "Serializable fields of stream class do not match local class");
+      }
+      return desc;
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc) throws ClassNotFoundException {
+      return resolve(desc.getName());
+    }
+
+    @Override
+    protected Object resolveObject(Object obj) {
+      return ValueInterner.intern(obj);
+    }
+
+    private Class<?> resolve(String name) throws ClassNotFoundException {
+      return loadClass(name, _loader);
+    }
+
+    @Override
+    protected void readStreamHeader() {
+      // The compact container header replaces the standard object stream header.
+    }
+  }
+
+  private CompactSerialization() {}
+}
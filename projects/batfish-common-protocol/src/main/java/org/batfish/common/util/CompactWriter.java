@@ -0,0 +1,254 @@
+package org.batfish.common.util;
+
+import static org.batfish.common.util.CompactSerialization.TAG_DOUBLE;
+import static org.batfish.common.util.CompactSerialization.TAG_FALSE;
+import static org.batfish.common.util.CompactSerialization.TAG_INT;
+import static org.batfish.common.util.CompactSerialization.TAG_JAVA;
+import static org.batfish.common.util.CompactSerialization.TAG_LONG;
+import static org.batfish.common.util.CompactSerialization.TAG_NULL;
+import static org.batfish.common.util.CompactSerialization.TAG_OBJECT;
+import static org.batfish.common.util.CompactSerialization.TAG_REFERENCE;
+import static org.batfish.common.util.CompactSerialization.TAG_STRING;
+import static org.batfish.common.util.CompactSerialization.TAG_TRUE;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import org.batfish.common.util.CompactCodecs.Binding;
+
+/**
+ * Writes an object graph in the compact encoding described in {@link CompactSerialization}.
+ *
+ * <p>Integers are written as variable-length quantities, so that the small counts, lengths, and
+ * table indices that make up most of a configuration take a byte or two.
+ */
+final class CompactWriter {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final byte[] _buffer;
+
+  private final Map<Binding, Integer> _classes;
+
+  /* Handle of each object written so far, by identity */
+  private final Map<Object, Integer> _handles;
+
+  private final OutputStream _out;
+
+  private int _position;
+
+  /* Index of each string written so far in the string table */
+  private final Map<String, Integer> _strings;
+
+  CompactWriter(OutputStream out) {
+    _out = out;
+    _buffer = new byte[BUFFER_SIZE];
+    _classes = new HashMap<>();
+    _handles = new IdentityHashMap<>();
+    _strings = new HashMap<>();
+  }
+
+  /** Writes any buffered bytes to the underlying stream. */
+  void flush() throws IOException {
+    _out.write(_buffer, 0, _position);
+    _position = 0;
+    _out.flush();
+  }
+
+  private void reserve(int length) throws IOException {
+    if (_buffer.length - _position < length) {
+      _out.write(_buffer, 0, _position);
+      _position = 0;
+    }
+  }
+
+  void writeBoolean(boolean value) throws IOException {
+    writeByte(value ? 1 : 0);
+  }
+
+  void writeByte(int value) throws IOException {
+    reserve(1);
+    _buffer[_position++] = (byte) value;
+  }
+
+  /** Writes the given bytes as they are. */
+  void writeBytes(byte[] bytes) throws IOException {
+    if (bytes.length > _buffer.length - _position) {
+      _out.write(_buffer, 0, _position);
+      _position = 0;
+      _out.write(bytes);
+    } else {
+      System.arraycopy(bytes, 0, _buffer, _position, bytes.length);
+      _position += bytes.length;
+    }
+  }
+
+  private void writeClass(Binding binding) throws IOException {
+    Integer index = _classes.get(binding);
+    if (index != null) {
+      writeVarInt(index);
+      return;
+    }
+    int newIndex = _classes.size();
+    _classes.put(binding, newIndex);
+    writeVarInt(newIndex);
+    writeString(binding._streamClass.getName());
+    writeFixedLong(binding._serialVersionUid);
+    writeFixedLong(binding._fingerprint);
+  }
+
+  void writeDouble(double value) throws IOException {
+    writeFixedLong(Double.doubleToRawLongBits(value));
+  }
+
+  private void writeFixedLong(long value) throws IOException {
+    reserve(Long.BYTES);
+    for (int shift = Long.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+      _buffer[_position++] = (byte) (value >>> shift);
+    }
+  }
+
+  void writeFloat(float value) throws IOException {
+    writeVarInt(Float.floatToRawIntBits(value));
+  }
+
+  /** Writes a signed integer, in fewer bytes the closer it is to zero. */
+  void writeInt(int value) throws IOException {
+    writeVarInt((value << 1) ^ (value >> 31));
+  }
+
+  /**
+   * Writes the Java serialization of {@code object}, for objects whose class has custom
+   * serialization but no codec. Objects inside it are not shared with the rest of the graph.
+   */
+  private void writeJava(Object object) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new CompactSerialization.CompactObjectOutputStream(bytes)) {
+      oos.writeObject(object);
+    }
+    writeVarInt(bytes.size());
+    writeBytes(bytes.toByteArray());
+  }
+
+  /** Writes a signed long, in fewer bytes the closer it is to zero. */
+  void writeLong(long value) throws IOException {
+    writeVarLong((value << 1) ^ (value >> 63));
+  }
+
+  /**
+   * Writes {@code object} and, unless it has been written before, everything it refers to. Strings
+   * and boxed primitives are written by value; any other object written twice is written the
+   * second time as a reference to the first.
+   */
+  @SuppressWarnings("unchecked")
+  void writeObject(Object object) throws IOException {
+    if (object == null) {
+      writeByte(TAG_NULL);
+      return;
+    }
+    Class<?> type = object.getClass();
+    if (type == String.class) {
+      writeByte(TAG_STRING);
+      writeString((String) object);
+      return;
+    } else if (type == Integer.class) {
+      writeByte(TAG_INT);
+      writeInt((Integer) object);
+      return;
+    } else if (type == Long.class) {
+      writeByte(TAG_LONG);
+      writeLong((Long) object);
+      return;
+    } else if (type == Double.class) {
+      writeByte(TAG_DOUBLE);
+      writeDouble((Double) object);
+      return;
+    } else if (type == Boolean.class) {
+      writeByte((Boolean) object ? TAG_TRUE : TAG_FALSE);
+      return;
+    }
+    Integer handle = _handles.get(object);
+    if (handle != null) {
+      writeByte(TAG_REFERENCE);
+      writeVarInt(handle);
+      return;
+    }
+    if (!(object instanceof Serializable)) {
+      throw new NotSerializableException(type.getName());
+    }
+    Binding binding = CompactCodecs.binding(type);
+    _handles.put(object, _handles.size());
+    if (binding._codec == null) {
+      writeByte(TAG_JAVA);
+      writeJava(object);
+      return;
+    }
+    writeByte(TAG_OBJECT);
+    writeClass(binding);
+    ((CompactCodec<Object>) binding._codec).write(this, object);
+  }
+
+  /**
+   * Writes {@code value} once to the string table, and afterwards as its index in the table.
+   * Strings whose characters are all below 256 are written a byte per character.
+   */
+  void writeString(String value) throws IOException {
+    Integer index = _strings.get(value);
+    if (index != null) {
+      writeVarInt(index);
+      return;
+    }
+    int newIndex = _strings.size();
+    _strings.put(value, newIndex);
+    writeVarInt(newIndex);
+    int length = value.length();
+    boolean latin1 = true;
+    for (int i = 0; i < length; i++) {
+      if (value.charAt(i) > 0xFF) {
+        latin1 = false;
+        break;
+      }
+    }
+    writeVarInt(length << 1 | (latin1 ? 1 : 0));
+    if (latin1) {
+      for (int start = 0; start < length; start += _buffer.length) {
+        int end = Math.min(length, start + _buffer.length);
+        reserve(end - start);
+        for (int i = start; i < end; i++) {
+          _buffer[_position++] = (byte) value.charAt(i);
+        }
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        writeVarInt(value.charAt(i));
+      }
+    }
+  }
+
+  /** Writes a non-negative integer such as a count or an index. */
+  void writeVarInt(int value) throws IOException {
+    reserve(5);
+    int remaining = value;
+    while ((remaining & ~0x7F) != 0) {
+      _buffer[_position++] = (byte) (remaining & 0x7F | 0x80);
+      remaining >>>= 7;
+    }
+    _buffer[_position++] = (byte) remaining;
+  }
+
+  private void writeVarLong(long value) throws IOException {
+    reserve(10);
+    long remaining = value;
+    while ((remaining & ~0x7FL) != 0) {
+      _buffer[_position++] = (byte) (remaining & 0x7F | 0x80);
+      remaining >>>= 7;
+    }
+    _buffer[_position++] = (byte) remaining;
+  }
+}
@@ -0,0 +1,22 @@
+package org.batfish.common.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A {@link BatfishObjectInputStream} that replaces each string and value object it reads with its
+ * canonical instance (see {@link ValueInterner}), so that equal values shared by many deserialized
+ * objects are stored once.
+ */
+public class InterningObjectInputStream extends BatfishObjectInputStream {
+
+  public InterningObjectInputStream(InputStream in, ClassLoader loader) throws IOException {
+    super(in, loader);
+    enableResolveObject(true);
+  }
+
+  @Override
+  protected Object resolveObject(Object obj) {
+    return ValueInterner.intern(obj);
+  }
+}
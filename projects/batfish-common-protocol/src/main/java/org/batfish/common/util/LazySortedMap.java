@@ -0,0 +1,248 @@
+package org.batfish.common.util;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link SortedMap} whose values are computed on first access and then retained.
+ *
+ * <p>Key-only operations such as {@link #keySet()}, {@link #containsKey(Object)}, and {@link
+ * #size()} never compute values. {@link #get(Object)} computes only the requested value. Iterating
+ * over {@link #entrySet()} or {@link #values()} first computes every value in the map in parallel,
+ * since such callers are about to read all of them anyway. Use {@link #prefetch(Collection)} to
+ * compute a known subset of values in parallel ahead of time.
+ *
+ * <p>Each value is computed at most once, even under concurrent access. Values added with {@link
+ * #put(Object, Object)} are stored as-is. {@link #put(Object, Object)} and {@link #remove(Object)}
+ * never compute the value they replace: they return it only if it was already computed, and {@code
+ * null} otherwise.
+ *
+ * <p>Callers that account for the values held, such as caches, can read only the values computed so
+ * far with {@link #getIfLoaded(Object)}, and be told of those computed later with {@link
+ * #addLoadListener(BiConsumer)}.
+ */
+public final class LazySortedMap<K, V> extends AbstractMap<K, V> implements SortedMap<K, V> {
+
+  /** A memoizing supplier that can tell whether it has computed its value yet */
+  private static final class Lazy<V> implements Supplier<V> {
+
+    private volatile boolean _computed;
+
+    @Nullable private Supplier<V> _delegate;
+
+    @Nullable private final Consumer<V> _onLoad;
+
+    @Nullable private V _value;
+
+    private Lazy(@Nullable Supplier<V> delegate, @Nullable Consumer<V> onLoad) {
+      _delegate = delegate;
+      _onLoad = onLoad;
+    }
+
+    private static <V> Lazy<V> ofInstance(V value) {
+      Lazy<V> lazy = new Lazy<>(null, null);
+      lazy._value = value;
+      lazy._computed = true;
+      return lazy;
+    }
+
+    @Override
+    public V get() {
+      if (!_computed) {
+        boolean loaded = false;
+        synchronized (this) {
+          if (!_computed) {
+            _value = _delegate.get();
+            _computed = true;
+            _delegate = null;
+            loaded = true;
+          }
+        }
+        if (loaded && _onLoad != null) {
+          // Outside the lock, so that listeners may read other values
+          _onLoad.accept(_value);
+        }
+      }
+      return _value;
+    }
+
+    /** Return the value if it has been computed, or {@code null} */
+    @Nullable
+    private V getIfComputed() {
+      return _computed ? _value : null;
+    }
+  }
+
+  /* Shared by this map and its views, since they share the values whose loads they report */
+  private final List<BiConsumer<? super K, ? super V>> _loadListeners;
+
+  private final SortedMap<K, Lazy<V>> _suppliers;
+
+  /* True once every value in this map (or view) is known to have been computed. */
+  private volatile boolean _fullyLoaded;
+
+  /**
+   * Creates a map with the keys of {@code suppliers}, whose values are computed by calling the
+   * corresponding supplier the first time they are needed.
+   */
+  public LazySortedMap(SortedMap<K, ? extends Supplier<V>> suppliers) {
+    this(new TreeMap<>(suppliers.comparator()), false, new CopyOnWriteArrayList<>());
+    suppliers.forEach(
+        (k, s) -> {
+          Supplier<V> supplier = s;
+          _suppliers.put(k, new Lazy<>(supplier, v -> loaded(k, v)));
+        });
+  }
+
+  private LazySortedMap(
+      SortedMap<K, Lazy<V>> suppliers,
+      boolean fullyLoaded,
+      List<BiConsumer<? super K, ? super V>> loadListeners) {
+    _suppliers = suppliers;
+    _fullyLoaded = fullyLoaded;
+    _loadListeners = loadListeners;
+  }
+
+  /**
+   * Calls {@code listener} with the key and value of each value this map or any of its views
+   * computes from now on, in the thread that computed it. Values added with {@link #put(Object,
+   * Object)} are not reported.
+   */
+  public void addLoadListener(BiConsumer<? super K, ? super V> listener) {
+    _loadListeners.add(listener);
+  }
+
+  private void loaded(K key, V value) {
+    _loadListeners.forEach(listener -> listener.accept(key, value));
+  }
+
+  /**
+   * Returns the value for {@code key} if it has been computed or was added with {@link
+   * #put(Object, Object)}, and {@code null} otherwise. Never computes a value.
+   */
+  @Nullable
+  public V getIfLoaded(Object key) {
+    Lazy<V> supplier = _suppliers.get(key);
+    return supplier == null ? null : supplier.getIfComputed();
+  }
+
+  /** Computes the values for the given {@code keys} in parallel. Absent keys are ignored. */
+  public void prefetch(Collection<K> keys) {
+    keys.parallelStream().map(_suppliers::get).filter(Objects::nonNull).forEach(Supplier::get);
+  }
+
+  private void prefetchAll() {
+    if (_fullyLoaded) {
+      return;
+    }
+    prefetch(_suppliers.keySet());
+    _fullyLoaded = true;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return _suppliers.containsKey(key);
+  }
+
+  @Override
+  @Nonnull
+  public Set<Entry<K, V>> entrySet() {
+    return new AbstractSet<Entry<K, V>>() {
+      @Override
+      @Nonnull
+      public Iterator<Entry<K, V>> iterator() {
+        prefetchAll();
+        return Iterators.transform(
+            _suppliers.entrySet().iterator(),
+            e -> Maps.immutableEntry(e.getKey(), e.getValue().get()));
+      }
+
+      @Override
+      public int size() {
+        return _suppliers.size();
+      }
+    };
+  }
+
+  @Override
+  @Nullable
+  public V get(Object key) {
+    Supplier<V> supplier = _suppliers.get(key);
+    return supplier == null ? null : supplier.get();
+  }
+
+  @Override
+  @Nonnull
+  public Set<K> keySet() {
+    return _suppliers.keySet();
+  }
+
+  @Override
+  @Nullable
+  public V put(K key, V value) {
+    Lazy<V> old = _suppliers.put(key, Lazy.ofInstance(value));
+    return old == null ? null : old.getIfComputed();
+  }
+
+  @Override
+  @Nullable
+  public V remove(Object key) {
+    Lazy<V> old = _suppliers.remove(key);
+    return old == null ? null : old.getIfComputed();
+  }
+
+  @Override
+  public int size() {
+    return _suppliers.size();
+  }
+
+  @Override
+  @Nullable
+  public Comparator<? super K> comparator() {
+    return _suppliers.comparator();
+  }
+
+  @Override
+  @Nonnull
+  public SortedMap<K, V> subMap(K fromKey, K toKey) {
+    return new LazySortedMap<>(_suppliers.subMap(fromKey, toKey), _fullyLoaded, _loadListeners);
+  }
+
+  @Override
+  @Nonnull
+  public SortedMap<K, V> headMap(K toKey) {
+    return new LazySortedMap<>(_suppliers.headMap(toKey), _fullyLoaded, _loadListeners);
+  }
+
+  @Override
+  @Nonnull
+  public SortedMap<K, V> tailMap(K fromKey) {
+    return new LazySortedMap<>(_suppliers.tailMap(fromKey), _fullyLoaded, _loadListeners);
+  }
+
+  @Override
+  public K firstKey() {
+    return _suppliers.firstKey();
+  }
+
+  @Override
+  public K lastKey() {
+    return _suppliers.lastKey();
+  }
+}
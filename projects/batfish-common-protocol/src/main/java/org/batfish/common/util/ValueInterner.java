@@ -0,0 +1,57 @@
+package org.batfish.common.util;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import java.util.Map;
+import org.batfish.datamodel.AsPath;
+import org.batfish.datamodel.Ip;
+import org.batfish.datamodel.Ip6;
+import org.batfish.datamodel.IpWildcard;
+import org.batfish.datamodel.Prefix;
+import org.batfish.datamodel.Prefix6;
+import org.batfish.datamodel.PrefixRange;
+import org.batfish.datamodel.SubRange;
+import org.batfish.datamodel.routing_policy.expr.LiteralCommunity;
+import org.batfish.datamodel.routing_policy.expr.LiteralCommunitySet;
+
+/**
+ * Canonicalizes strings and immutable value objects, so that equal values read from many
+ * serialized objects (e.g., the configurations of every node in a snapshot) share one instance.
+ *
+ * <p>Only objects of exactly the classes listed here are interned: they are immutable, and their
+ * {@code equals} implies full interchangeability. Each class has its own interner, because some of
+ * them (e.g., {@link IpWildcard}) are equal to instances of other classes. Interned objects are
+ * weakly held, so they are reclaimed once no longer referenced.
+ */
+public final class ValueInterner {
+
+  private static final Map<Class<?>, Interner<Object>> INTERNERS =
+      ImmutableMap.<Class<?>, Interner<Object>>builder()
+          .put(AsPath.class, Interners.newWeakInterner())
+          .put(Ip.class, Interners.newWeakInterner())
+          .put(Ip6.class, Interners.newWeakInterner())
+          .put(IpWildcard.class, Interners.newWeakInterner())
+          .put(LiteralCommunity.class, Interners.newWeakInterner())
+          .put(LiteralCommunitySet.class, Interners.newWeakInterner())
+          .put(Prefix.class, Interners.newWeakInterner())
+          .put(Prefix6.class, Interners.newWeakInterner())
+          .put(PrefixRange.class, Interners.newWeakInterner())
+          .put(String.class, Interners.newWeakInterner())
+          .put(SubRange.class, Interners.newWeakInterner())
+          .build();
+
+  /**
+   * Returns the canonical instance equal to {@code obj} if its class is interned, or else {@code
+   * obj} itself.
+   */
+  public static Object intern(Object obj) {
+    if (obj == null) {
+      return null;
+    }
+    Interner<Object> interner = INTERNERS.get(obj.getClass());
+    return interner == null ? obj : interner.intern(obj);
+  }
+
+  private ValueInterner() {}
+}
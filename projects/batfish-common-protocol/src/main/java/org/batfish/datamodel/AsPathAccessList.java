@@ -5,18 +5,16 @@ import static com.google.common.base.MoreObjects.firstNonNull;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyDescription;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
 import com.kjetland.jackson.jsonSchema.annotations.JsonSchemaDescription;
-import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.io.Serializable;
-import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -24,19 +22,32 @@ import javax.annotation.Nullable;
     "An AsPathAccessList is used to filter e/iBGP routes according to their AS-path attribute.")
 public final class AsPathAccessList implements Serializable {
 
+  private final class PermitsCacheSupplier
+      implements Supplier<LoadingCache<AsPath, Boolean>>, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public LoadingCache<AsPath, Boolean> get() {
+      return CacheBuilder.newBuilder()
+          .maximumSize(MAX_CACHED_AS_PATHS)
+          .build(CacheLoader.from(AsPathAccessList.this::newPermits));
+    }
+  }
+
+  private static final int MAX_CACHED_AS_PATHS = 1 << 16;
+
   private static final String PROP_LINES = "lines";
 
   private static final String PROP_NAME = "name";
 
   private static final long serialVersionUID = 1L;
 
-  private transient Set<AsPath> _deniedCache;
-
   @Nonnull private final List<AsPathAccessListLine> _lines;
 
   private final String _name;
 
-  private transient Set<AsPath> _permittedCache;
+  /** Whether each recently matched AS path is permitted */
+  private final Supplier<LoadingCache<AsPath, Boolean>> _permitsCache;
 
   @JsonCreator
   public AsPathAccessList(
@@ -44,6 +55,7 @@ public final class AsPathAccessList implements Serializable {
       @Nullable @JsonProperty(PROP_LINES) List<AsPathAccessListLine> lines) {
     _lines = firstNonNull(lines, ImmutableList.of());
     _name = name;
+    _permitsCache = Suppliers.memoize(new PermitsCacheSupplier());
   }
 
   @Override
@@ -77,38 +89,15 @@ public final class AsPathAccessList implements Serializable {
   }
 
   private boolean newPermits(AsPath asPath) {
-    boolean accept = false;
     for (AsPathAccessListLine line : _lines) {
-      String regex = line.getRegex();
-      Pattern p = Pattern.compile(regex);
-      String asPathString = asPath.getAsPathString();
-      Matcher matcher = p.matcher(asPathString);
-      boolean match = matcher.find();
-      if (match) {
-        accept = line.getAction() == LineAction.PERMIT;
-        break;
+      if (BgpRegexMatcher.matchesAsPath(line.getRegex(), asPath)) {
+        return line.getAction() == LineAction.PERMIT;
       }
     }
-    if (accept) {
-      _permittedCache.add(asPath);
-    } else {
-      _deniedCache.add(asPath);
-    }
-    return accept;
+    return false;
   }
 
   public boolean permits(AsPath asPath) {
-    if (_deniedCache.contains(asPath)) {
-      return false;
-    } else if (_permittedCache.contains(asPath)) {
-      return true;
-    }
-    return newPermits(asPath);
-  }
-
-  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
-    in.defaultReadObject();
-    _deniedCache = Collections.newSetFromMap(new ConcurrentHashMap<>());
-    _permittedCache = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    return _permitsCache.get().getUnchecked(asPath);
   }
 }
@@ -0,0 +1,168 @@
+package org.batfish.datamodel;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.Objects;
+import java.util.regex.Pattern;
+import javax.annotation.Nonnull;
+import org.batfish.common.util.CommonUtil;
+
+/**
+ * Matches the regexes of AS-path access lists and community lists against AS paths and
+ * communities.
+ *
+ * <p>Each distinct regex is compiled once and shared by every list that contains it, however many
+ * configurations and snapshots those lists belong to. Match results are cached per regex and AS
+ * path or community, since the same few AS paths and communities are matched against the same
+ * lines over and over during data plane computation. All caches are bounded and evict the least
+ * recently used entries first, and record statistics that serve as match counters.
+ */
+public final class BgpRegexMatcher {
+
+  private static final class AsPathKey {
+
+    private final String _regex;
+
+    private final AsPath _asPath;
+
+    private final int _hashCode;
+
+    private AsPathKey(String regex, AsPath asPath) {
+      _regex = regex;
+      _asPath = asPath;
+      _hashCode = 31 * regex.hashCode() + asPath.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      } else if (!(o instanceof AsPathKey)) {
+        return false;
+      }
+      AsPathKey other = (AsPathKey) o;
+      return _hashCode == other._hashCode
+          && _regex.equals(other._regex)
+          && _asPath.equals(other._asPath);
+    }
+
+    @Override
+    public int hashCode() {
+      return _hashCode;
+    }
+  }
+
+  private static final class CommunityKey {
+
+    private final String _regex;
+
+    private final long _community;
+
+    private CommunityKey(String regex, long community) {
+      _regex = regex;
+      _community = community;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      } else if (!(o instanceof CommunityKey)) {
+        return false;
+      }
+      CommunityKey other = (CommunityKey) o;
+      return _community == other._community && _regex.equals(other._regex);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(_regex, _community);
+    }
+  }
+
+  private static final int MAX_AS_PATH_RESULTS = 1 << 18;
+
+  private static final int MAX_COMMUNITY_RESULTS = 1 << 18;
+
+  private static final int MAX_PATTERNS = 1 << 14;
+
+  private static final LoadingCache<String, Pattern> PATTERNS =
+      CacheBuilder.newBuilder()
+          .maximumSize(MAX_PATTERNS)
+          .recordStats()
+          .build(CacheLoader.from((String regex) -> Pattern.compile(regex)));
+
+  private static final LoadingCache<AsPathKey, Boolean> AS_PATH_RESULTS =
+      CacheBuilder.newBuilder()
+          .maximumSize(MAX_AS_PATH_RESULTS)
+          .recordStats()
+          .build(
+              CacheLoader.from(
+                  key -> getPattern(key._regex).matcher(key._asPath.getAsPathString()).find()));
+
+  private static final LoadingCache<CommunityKey, Boolean> COMMUNITY_RESULTS =
+      CacheBuilder.newBuilder()
+          .maximumSize(MAX_COMMUNITY_RESULTS)
+          .recordStats()
+          .build(
+              CacheLoader.from(
+                  key ->
+                      getPattern(key._regex)
+                          .matcher(CommonUtil.longToCommunity(key._community))
+                          .find()));
+
+  /**
+   * Look up the given key, rethrowing whatever the loader threw, e.g., a {@link
+   * java.util.regex.PatternSyntaxException} for an invalid regex
+   */
+  private static <K, V> V get(LoadingCache<K, V> cache, K key) {
+    try {
+      return cache.getUnchecked(key);
+    } catch (UncheckedExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw e;
+    }
+  }
+
+  /** Statistics of the AS-path match cache: a hit is a match answered without running a regex */
+  public static CacheStats getAsPathStats() {
+    return AS_PATH_RESULTS.stats();
+  }
+
+  /** Statistics of the community match cache: a hit is a match answered without running a regex */
+  public static CacheStats getCommunityStats() {
+    return COMMUNITY_RESULTS.stats();
+  }
+
+  /** Return the compiled form of the given regex, compiling it if it has not been already */
+  public static Pattern getPattern(@Nonnull String regex) {
+    return get(PATTERNS, regex);
+  }
+
+  /** Statistics of the compiled regex cache: a miss is a compilation */
+  public static CacheStats getPatternStats() {
+    return PATTERNS.stats();
+  }
+
+  /**
+   * Whether the given regex matches (anywhere in) the string representation of the given AS path,
+   * as returned by {@link AsPath#getAsPathString()}
+   */
+  public static boolean matchesAsPath(@Nonnull String regex, @Nonnull AsPath asPath) {
+    return get(AS_PATH_RESULTS, new AsPathKey(regex, asPath));
+  }
+
+  /**
+   * Whether the given regex matches (anywhere in) the string representation of the given community,
+   * as returned by {@link CommonUtil#longToCommunity(long)}
+   */
+  public static boolean matchesCommunity(@Nonnull String regex, long community) {
+    return get(COMMUNITY_RESULTS, new CommunityKey(regex, community));
+  }
+
+  private BgpRegexMatcher() {}
+}
@@ -6,6 +6,8 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -16,7 +18,16 @@ import java.util.TreeSet;
 import javax.annotation.Nonnull;
 import org.batfish.common.BatfishException;
 import org.batfish.common.util.CommonUtil;
-
+import org.batfish.common.util.ValueInterner;
+
+/**
+ * A BGP route.
+ *
+ * <p>A full table propagated to many peers yields many routes with the same AS path, communities
+ * and cluster list. Routes therefore hold canonical instances of these attributes, interned in
+ * weak pools shared by all routes, so that each distinct attribute is stored once and comparing
+ * equal attributes usually takes a reference check.
+ */
 public class BgpRoute extends AbstractRoute {
 
   public static class Builder extends AbstractRouteBuilder<Builder, BgpRoute> {
@@ -93,6 +104,10 @@ public class BgpRoute extends AbstractRoute {
       return _communities;
     }
 
+    public boolean getDiscard() {
+      return _discard;
+    }
+
     public int getLocalPreference() {
       return _localPreference;
     }
@@ -109,6 +124,18 @@ public class BgpRoute extends AbstractRoute {
       return _protocol;
     }
 
+    public Ip getReceivedFromIp() {
+      return _receivedFromIp;
+    }
+
+    public boolean getReceivedFromRouteReflectorClient() {
+      return _receivedFromRouteReflectorClient;
+    }
+
+    public RoutingProtocol getSrcProtocol() {
+      return _srcProtocol;
+    }
+
     @Override
     protected Builder getThis() {
       return this;
@@ -217,8 +244,17 @@ public class BgpRoute extends AbstractRoute {
           .thenComparing(BgpRoute::getSrcProtocol)
           .thenComparing(BgpRoute::getWeight);
 
+  /** Canonical cluster lists and community sets */
+  private static final Interner<SortedSet<Long>> LONG_SETS = Interners.newWeakInterner();
+
   private static final long serialVersionUID = 1L;
 
+  private static SortedSet<Long> internLongSet(SortedSet<Long> set) {
+    return set == null
+        ? Collections.emptySortedSet()
+        : LONG_SETS.intern(ImmutableSortedSet.copyOf(set));
+  }
+
   private final int _admin;
 
   private final AsPath _asPath;
@@ -249,6 +285,9 @@ public class BgpRoute extends AbstractRoute {
 
   private final int _weight;
 
+  /** Cached hash code, or 0 if not computed yet. Not serialized, since enums hash by identity. */
+  private transient int _hashCode;
+
   @JsonCreator
   public BgpRoute(
       @JsonProperty(PROP_NETWORK) Prefix network,
@@ -270,11 +309,9 @@ public class BgpRoute extends AbstractRoute {
       @JsonProperty(PROP_WEIGHT) int weight) {
     super(network);
     _admin = admin;
-    _asPath = asPath;
-    _clusterList =
-        clusterList == null ? Collections.emptySortedSet() : ImmutableSortedSet.copyOf(clusterList);
-    _communities =
-        communities == null ? Collections.emptySortedSet() : ImmutableSortedSet.copyOf(communities);
+    _asPath = (AsPath) ValueInterner.intern(asPath);
+    _clusterList = internLongSet(clusterList);
+    _communities = internLongSet(communities);
     _discard = discard;
     _localPreference = localPreference;
     _med = med;
@@ -296,22 +333,13 @@ public class BgpRoute extends AbstractRoute {
       return false;
     }
     BgpRoute other = (BgpRoute) o;
-    if (_admin != other._admin) {
-      return false;
-    }
-    if (!_asPath.equals(other._asPath)) {
-      return false;
-    }
-    if (!_clusterList.equals(other._clusterList)) {
-      return false;
-    }
-    if (!_communities.equals(other._communities)) {
-      return false;
-    }
-    if (_localPreference != other._localPreference) {
-      return false;
-    }
-    if (_med != other._med) {
+    // Compare primitives first. Attributes are interned, so equal ones are usually identical.
+    if (_admin != other._admin
+        || _localPreference != other._localPreference
+        || _med != other._med
+        || _originType != other._originType
+        || _protocol != other._protocol
+        || _weight != other._weight) {
       return false;
     }
     if (!_network.equals(other._network)) {
@@ -320,19 +348,19 @@ public class BgpRoute extends AbstractRoute {
     if (!Objects.equals(_nextHopIp, other._nextHopIp)) {
       return false;
     }
-    if (_originType != other._originType) {
+    if (!_receivedFromIp.equals(other._receivedFromIp)) {
       return false;
     }
     if (!Objects.equals(_originatorIp, other._originatorIp)) {
       return false;
     }
-    if (_protocol != other._protocol) {
+    if (!_asPath.equals(other._asPath)) {
       return false;
     }
-    if (!_receivedFromIp.equals(other._receivedFromIp)) {
+    if (!_clusterList.equals(other._clusterList)) {
       return false;
     }
-    if (_weight != other._weight) {
+    if (!_communities.equals(other._communities)) {
       return false;
     }
     return true;
@@ -435,6 +463,15 @@ public class BgpRoute extends AbstractRoute {
 
   @Override
   public int hashCode() {
+    int h = _hashCode;
+    if (h == 0) {
+      h = computeHashCode();
+      _hashCode = h;
+    }
+    return h;
+  }
+
+  private int computeHashCode() {
     return Objects.hash(
         _admin,
         _asPath,
@@ -43,6 +43,7 @@ public class CommunityList extends CommunitySetExpr {
     @Override
     public LoadingCache<Long, Boolean> get() {
       return CacheBuilder.newBuilder()
+          .maximumSize(MAX_CACHED_COMMUNITIES)
           .build(
               new CacheLoader<Long, Boolean>() {
                 @Override
@@ -81,6 +82,8 @@ public class CommunityList extends CommunitySetExpr {
     }
   }
 
+  private static final int MAX_CACHED_COMMUNITIES = 1 << 16;
+
   private static final String PROP_INVERT_MATCH = "invertMatch";
 
   private static final String PROP_LINES = "lines";
@@ -16,6 +16,12 @@ public interface DataPlane extends Serializable {
 
   Map<String, Configuration> getConfigurations();
 
+  /**
+   * Return how much of the state of the converged data plane is retained. Accessors of state that
+   * is not retained throw an exception.
+   */
+  DataPlaneDetail getDetail();
+
   Map<String, Map<String, Fib>> getFibs();
 
   ForwardingAnalysis getForwardingAnalysis();
@@ -0,0 +1,19 @@
+package org.batfish.datamodel;
+
+/**
+ * How much of the state of a converged data plane is retained after its computation, or needed to
+ * answer a question. Each level includes everything retained at the levels before it.
+ */
+public enum DataPlaneDetail {
+  /** The main RIB and FIB of each VRF, and the forwarding state derived from them */
+  MAIN_RIB,
+  /** Also the BGP best-path and multipath RIBs, and the BGP advertisements sent and received */
+  BGP,
+  /** Everything the computation produced, including the prefix tracing information */
+  FULL;
+
+  /** Whether this level retains everything retained at the given level */
+  public boolean includes(DataPlaneDetail detail) {
+    return compareTo(detail) >= 0;
+  }
+}
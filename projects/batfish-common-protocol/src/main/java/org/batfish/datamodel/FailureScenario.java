@@ -0,0 +1,172 @@
+package org.batfish.datamodel;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.stream.Collectors;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.commons.lang3.SerializationUtils;
+import org.batfish.common.BatfishException;
+import org.batfish.datamodel.collections.NodeInterfacePair;
+
+/**
+ * A set of simultaneous failures of links, interfaces and nodes, under which to compute the data
+ * plane of an environment. Failures are applied the same way as the edge, interface and node
+ * blacklists of an environment.
+ */
+public final class FailureScenario implements Serializable {
+
+  private static final String PROP_EDGES = "edges";
+
+  private static final String PROP_INTERFACES = "interfaces";
+
+  private static final String PROP_NAME = "name";
+
+  private static final String PROP_NODES = "nodes";
+
+  private static final long serialVersionUID = 1L;
+
+  @Nonnull private final SortedSet<Edge> _edges;
+
+  @Nonnull private final SortedSet<NodeInterfacePair> _interfaces;
+
+  @Nonnull private final String _name;
+
+  @Nonnull private final SortedSet<String> _nodes;
+
+  @JsonCreator
+  public FailureScenario(
+      @JsonProperty(PROP_NAME) @Nonnull String name,
+      @JsonProperty(PROP_EDGES) @Nullable SortedSet<Edge> edges,
+      @JsonProperty(PROP_INTERFACES) @Nullable SortedSet<NodeInterfacePair> interfaces,
+      @JsonProperty(PROP_NODES) @Nullable SortedSet<String> nodes) {
+    _name = name;
+    _edges = edges == null ? ImmutableSortedSet.of() : ImmutableSortedSet.copyOf(edges);
+    _interfaces =
+        interfaces == null ? ImmutableSortedSet.of() : ImmutableSortedSet.copyOf(interfaces);
+    _nodes = nodes == null ? ImmutableSortedSet.of() : ImmutableSortedSet.copyOf(nodes);
+  }
+
+  /**
+   * Return the given configurations under this scenario: the same configurations, except that the
+   * nodes with failed interfaces are copies with those interfaces deactivated and blacklisted, as
+   * the blacklists of an environment leave them.
+   *
+   * @throws BatfishException if this scenario fails a node or interface that does not exist
+   */
+  @Nonnull
+  public Map<String, Configuration> applyTo(@Nonnull Map<String, Configuration> base) {
+    Map<String, Configuration> failed = new HashMap<>();
+    for (String hostname : _nodes) {
+      failed
+          .computeIfAbsent(hostname, h -> copyConfiguration(base, h))
+          .getInterfaces()
+          .values()
+          .forEach(FailureScenario::failInterface);
+    }
+    for (NodeInterfacePair iface : _interfaces) {
+      Interface i =
+          failed
+              .computeIfAbsent(iface.getHostname(), h -> copyConfiguration(base, h))
+              .getInterfaces()
+              .get(iface.getInterface());
+      if (i == null) {
+        throw new BatfishException("Undefined failed interface: " + iface);
+      }
+      failInterface(i);
+    }
+    if (failed.isEmpty()) {
+      return base;
+    }
+    Map<String, Configuration> configurations = new HashMap<>(base);
+    configurations.putAll(failed);
+    return configurations;
+  }
+
+  /** Return the given topology under this scenario, in which failed links are down both ways */
+  @Nonnull
+  public Topology applyTo(@Nonnull Topology base) {
+    Topology topology = new Topology(base.getEdges());
+    Set<Edge> edges =
+        _edges
+            .stream()
+            .flatMap(
+                e ->
+                    ImmutableList.of(e, new Edge(e.getInterface2(), e.getInterface1())).stream())
+            .collect(Collectors.toSet());
+    topology.prune(edges, _nodes, _interfaces);
+    return topology;
+  }
+
+  private static Configuration copyConfiguration(Map<String, Configuration> base, String hostname) {
+    Configuration c = base.get(hostname);
+    if (c == null) {
+      throw new BatfishException("Undefined failed node: " + hostname);
+    }
+    return SerializationUtils.clone(c);
+  }
+
+  private static void failInterface(Interface iface) {
+    iface.setActive(false);
+    iface.setBlacklisted(true);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    } else if (!(o instanceof FailureScenario)) {
+      return false;
+    }
+    FailureScenario other = (FailureScenario) o;
+    return _name.equals(other._name)
+        && _edges.equals(other._edges)
+        && _interfaces.equals(other._interfaces)
+        && _nodes.equals(other._nodes);
+  }
+
+  /** The failed links, each of which is removed from the topology in both directions */
+  @JsonProperty(PROP_EDGES)
+  @Nonnull
+  public SortedSet<Edge> getEdges() {
+    return _edges;
+  }
+
+  /** The failed interfaces, which are deactivated and removed from the topology */
+  @JsonProperty(PROP_INTERFACES)
+  @Nonnull
+  public SortedSet<NodeInterfacePair> getInterfaces() {
+    return _interfaces;
+  }
+
+  @JsonProperty(PROP_NAME)
+  @Nonnull
+  public String getName() {
+    return _name;
+  }
+
+  /** The failed nodes, all of whose interfaces are deactivated and removed from the topology */
+  @JsonProperty(PROP_NODES)
+  @Nonnull
+  public SortedSet<String> getNodes() {
+    return _nodes;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(_name, _edges, _interfaces, _nodes);
+  }
+
+  @Override
+  public String toString() {
+    return _name;
+  }
+}
@@ -2,8 +2,12 @@ package org.batfish.datamodel;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -12,25 +16,137 @@ import java.util.TreeSet;
 import javax.annotation.Nonnull;
 import org.batfish.common.BatfishException;
 
+/**
+ * A FIB compiled from a converged RIB.
+ *
+ * <p>Besides resolving every route to its next hop interfaces, the constructor compiles the
+ * longest prefix match of the RIB into a flat table. The address space is split into the ranges
+ * delimited by the starts and ends of the RIB's prefixes; every address in such a range has the
+ * same longest prefix match. Adjacent ranges with the same match are merged, and each range points
+ * to a shared {@link FibEntry} holding the precomputed results of the per-IP lookups. A lookup is
+ * then a binary search over a sorted {@code long[]}, and returns immutable maps without allocating.
+ */
 public class FibImpl implements Fib {
 
+  /** The precomputed results of looking up any address whose longest prefix match is a route set */
+  private static final class FibEntry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Map<String, Map<Ip, Set<AbstractRoute>>> _nextHopInterfaces;
+
+    private final Map<AbstractRoute, Map<String, Map<Ip, Set<AbstractRoute>>>>
+        _nextHopInterfacesByRoute;
+
+    private FibEntry(
+        Set<AbstractRoute> routes,
+        Map<AbstractRoute, Map<String, Map<Ip, Set<AbstractRoute>>>> allNextHopInterfaces) {
+      Map<String, Map<Ip, Set<AbstractRoute>>> nextHopInterfaces = new TreeMap<>();
+      ImmutableMap.Builder<AbstractRoute, Map<String, Map<Ip, Set<AbstractRoute>>>> byRoute =
+          ImmutableMap.builder();
+      for (AbstractRoute route : routes) {
+        Map<String, Map<Ip, Set<AbstractRoute>>> routeNextHopInterfaces =
+            allNextHopInterfaces.get(route);
+        byRoute.put(route, routeNextHopInterfaces);
+        routeNextHopInterfaces.forEach(
+            (nextHopInterface, nextHopInterfaceRoutesByFinalNextHopIp) ->
+                nextHopInterfaces
+                    .computeIfAbsent(nextHopInterface, k -> new TreeMap<>())
+                    .putAll(nextHopInterfaceRoutesByFinalNextHopIp));
+      }
+      ImmutableSortedMap.Builder<String, Map<Ip, Set<AbstractRoute>>> sortedNextHopInterfaces =
+          ImmutableSortedMap.naturalOrder();
+      nextHopInterfaces.forEach(
+          (nextHopInterface, routesByFinalNextHopIp) ->
+              sortedNextHopInterfaces.put(
+                  nextHopInterface, ImmutableSortedMap.copyOf(routesByFinalNextHopIp)));
+      _nextHopInterfaces = sortedNextHopInterfaces.build();
+      _nextHopInterfacesByRoute = byRoute.build();
+    }
+  }
+
   private static final int MAX_DEPTH = 10;
 
   private static final long serialVersionUID = 1L;
 
+  /** Index in {@link #_entries} of the lookup results for each range */
+  private final int[] _entryIndices;
+
+  private final FibEntry[] _entries;
+
   private final @Nonnull Map<AbstractRoute, Map<String, Map<Ip, Set<AbstractRoute>>>>
       _nextHopInterfaces;
 
-  private final @Nonnull GenericRib<AbstractRoute> _rib;
+  /** Sorted first addresses of the ranges of the address space, starting with 0 */
+  private final long[] _rangeStarts;
 
   public FibImpl(@Nonnull GenericRib<AbstractRoute> rib) {
-    _rib = rib;
     _nextHopInterfaces = new HashMap<>();
     for (AbstractRoute route : rib.getRoutes()) {
       Map<String, Map<Ip, Set<AbstractRoute>>> nextHopInterfaces =
-          collectNextHopInterfaces(_rib, route);
+          collectNextHopInterfaces(rib, route);
       _nextHopInterfaces.put(route, nextHopInterfaces);
     }
+
+    // Every range starts at 0 or at the start or just past the end of a prefix
+    Set<Prefix> prefixes = rib.getPrefixes();
+    long[] boundaries = new long[2 * prefixes.size() + 1];
+    int numBoundaries = 0;
+    boundaries[numBoundaries++] = 0L;
+    for (Prefix prefix : prefixes) {
+      boundaries[numBoundaries++] = prefix.getStartIp().asLong();
+      long pastEnd = prefix.getEndIp().asLong() + 1;
+      if (pastEnd <= Ip.MAX.asLong()) {
+        boundaries[numBoundaries++] = pastEnd;
+      }
+    }
+    Arrays.sort(boundaries, 0, numBoundaries);
+
+    List<FibEntry> entries = new ArrayList<>();
+    Map<Set<AbstractRoute>, Integer> entryIndexByRoutes = new HashMap<>();
+    long[] rangeStarts = new long[numBoundaries];
+    int[] entryIndices = new int[numBoundaries];
+    int numRanges = 0;
+    for (int i = 0; i < numBoundaries; i++) {
+      long start = boundaries[i];
+      if (i > 0 && start == boundaries[i - 1]) {
+        continue;
+      }
+      Set<AbstractRoute> routes = rib.longestPrefixMatch(new Ip(start));
+      int entryIndex =
+          entryIndexByRoutes.computeIfAbsent(
+              routes,
+              r -> {
+                entries.add(new FibEntry(r, _nextHopInterfaces));
+                return entries.size() - 1;
+              });
+      if (numRanges > 0 && entryIndices[numRanges - 1] == entryIndex) {
+        continue;
+      }
+      rangeStarts[numRanges] = start;
+      entryIndices[numRanges] = entryIndex;
+      numRanges++;
+    }
+    _rangeStarts = Arrays.copyOf(rangeStarts, numRanges);
+    _entryIndices = Arrays.copyOf(entryIndices, numRanges);
+    _entries = entries.toArray(new FibEntry[0]);
+  }
+
+  /** Return the precomputed lookup results for the given address */
+  private FibEntry lookup(Ip ip) {
+    long address = ip.asLong();
+    // Find the last range starting at or before the address
+    int low = 0;
+    int high = _rangeStarts.length - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (_rangeStarts[mid] <= address) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return _entries[_entryIndices[low]];
   }
 
   /**
@@ -46,7 +162,12 @@ public class FibImpl implements Fib {
       GenericRib<AbstractRoute> rib, AbstractRoute route) {
     Map<String, Map<Ip, Set<AbstractRoute>>> nextHopInterfaces = new HashMap<>();
     collectNextHopInterfaces(
-        rib, route, Route.UNSET_ROUTE_NEXT_HOP_IP, nextHopInterfaces, new HashSet<>(), 0);
+        rib,
+        route,
+        Route.UNSET_ROUTE_NEXT_HOP_IP,
+        nextHopInterfaces,
+        new long[MAX_DEPTH + 2],
+        0);
     return ImmutableMap.copyOf(nextHopInterfaces);
   }
 
@@ -55,14 +176,19 @@ public class FibImpl implements Fib {
       AbstractRoute route,
       Ip mostRecentNextHopIp,
       Map<String, Map<Ip, Set<AbstractRoute>>> nextHopInterfaces,
-      Set<Prefix> seenNetworks,
+      long[] seenNetworks,
       int depth) {
-    Prefix network = route.getNetwork();
-    if (seenNetworks.contains(network)) {
-      return;
+    /*
+     * seenNetworks[0..depth) holds the packed networks of the routes on the resolution path to
+     * this one, so a network resolving through itself is detected without copying sets per level.
+     */
+    long network = route.getNetwork().asPackedLong();
+    for (int i = 0; i < depth; i++) {
+      if (seenNetworks[i] == network) {
+        return;
+      }
     }
-    Set<Prefix> newSeenNetworks = new HashSet<>(seenNetworks);
-    newSeenNetworks.add(network);
+    seenNetworks[depth] = network;
     if (depth > MAX_DEPTH) {
       // TODO: Declare this a loop using some warning mechanism
       // https://github.com/batfish/batfish/issues/1469
@@ -88,7 +214,7 @@ public class FibImpl implements Fib {
             nextHopLongestPrefixMatchRoute,
             nextHopIp,
             nextHopInterfaces,
-            newSeenNetworks,
+            seenNetworks,
             depth + 1);
       }
     } else {
@@ -117,34 +243,13 @@ public class FibImpl implements Fib {
 
   @Override
   public @Nonnull Map<String, Map<Ip, Set<AbstractRoute>>> getNextHopInterfaces(Ip ip) {
-    Map<String, Map<Ip, Set<AbstractRoute>>> outputNextHopInterfaces = new TreeMap<>();
-    Set<AbstractRoute> nextHopRoutes = _rib.longestPrefixMatch(ip);
-    for (AbstractRoute nextHopRoute : nextHopRoutes) {
-      Map<String, Map<Ip, Set<AbstractRoute>>> currentNextHopInterfaces =
-          _nextHopInterfaces.get(nextHopRoute);
-      currentNextHopInterfaces.forEach(
-          (nextHopInterface, nextHopInterfaceRoutesByFinalNextHopIp) -> {
-            Map<Ip, Set<AbstractRoute>> outputNextHopInterfaceRoutesByFinalNextHopIp =
-                outputNextHopInterfaces.computeIfAbsent(nextHopInterface, k -> new TreeMap<>());
-            outputNextHopInterfaceRoutesByFinalNextHopIp.putAll(
-                nextHopInterfaceRoutesByFinalNextHopIp);
-          });
-    }
-    return outputNextHopInterfaces;
+    return lookup(ip)._nextHopInterfaces;
   }
 
   @Override
   public @Nonnull Map<AbstractRoute, Map<String, Map<Ip, Set<AbstractRoute>>>>
       getNextHopInterfacesByRoute(Ip dstIp) {
-    Map<AbstractRoute, Map<String, Map<Ip, Set<AbstractRoute>>>> nextHopInterfacesByRoute =
-        new HashMap<>();
-    Set<AbstractRoute> nextHopRoutes = _rib.longestPrefixMatch(dstIp);
-    for (AbstractRoute nextHopRoute : nextHopRoutes) {
-      Map<String, Map<Ip, Set<AbstractRoute>>> nextHopInterfaces =
-          _nextHopInterfaces.get(nextHopRoute);
-      nextHopInterfacesByRoute.put(nextHopRoute, nextHopInterfaces);
-    }
-    return nextHopInterfacesByRoute;
+    return lookup(dstIp)._nextHopInterfacesByRoute;
   }
 
   @Override
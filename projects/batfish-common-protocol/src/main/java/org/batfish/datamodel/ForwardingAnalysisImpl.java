@@ -1,21 +1,25 @@
 package org.batfish.datamodel;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import org.batfish.common.util.CommonUtil;
+import org.batfish.datamodel.collections.IpHashMap;
 import org.batfish.datamodel.collections.NodeInterfacePair;
 
-public final class ForwardingAnalysisImpl implements ForwardingAnalysis {
+public final class ForwardingAnalysisImpl implements ForwardingAnalysis, Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   private final Map<String, Map<String, IpSpace>> _arpReplies;
 
@@ -668,6 +672,16 @@ public final class ForwardingAnalysisImpl implements ForwardingAnalysis {
                 }));
   }
 
+  /**
+   * Returns a predicate testing membership in {@code ipSpace} that remembers its answer for each
+   * IP, since many routes share the same next-hop IPs.
+   */
+  private static Predicate<Ip> memoizedContainsIp(IpSpace ipSpace) {
+    IpHashMap<Boolean> containsIp = new IpHashMap<>();
+    return ip ->
+        containsIp.computeIfAbsent(ip.asLong(), i -> ipSpace.containsIp(ip, ImmutableMap.of()));
+  }
+
   @VisibleForTesting
   Set<AbstractRoute> computeRoutesWithNextHopIpArpFalseForInterface(
       Fib fib,
@@ -678,6 +692,7 @@ public final class ForwardingAnalysisImpl implements ForwardingAnalysis {
         _someoneReplies
             .getOrDefault(hostname, ImmutableMap.of())
             .getOrDefault(outInterface, EmptyIpSpace.INSTANCE);
+    Predicate<Ip> someoneRepliesContainsIp = memoizedContainsIp(someoneReplies);
     Set<AbstractRoute> candidateRoutes = routesWithNextHopByOutInterfaceEntry.getValue();
     return candidateRoutes
         .stream()
@@ -689,9 +704,7 @@ public final class ForwardingAnalysisImpl implements ForwardingAnalysis {
                     .keySet()
                     .stream()
                     .filter(ip -> !ip.equals(Route.UNSET_ROUTE_NEXT_HOP_IP))
-                    .anyMatch(
-                        Predicates.not(
-                            nextHopIp -> someoneReplies.containsIp(nextHopIp, ImmutableMap.of()))))
+                    .anyMatch(someoneRepliesContainsIp.negate()))
         .collect(ImmutableSet.toImmutableSet());
   }
 
@@ -712,7 +725,9 @@ public final class ForwardingAnalysisImpl implements ForwardingAnalysis {
                               receiver -> {
                                 String recvNode = receiver.getHostname();
                                 String recvInterface = receiver.getInterface();
-                                IpSpace recvReplies = _arpReplies.get(recvNode).get(recvInterface);
+                                Predicate<Ip> recvRepliesContainsIp =
+                                    memoizedContainsIp(
+                                        _arpReplies.get(recvNode).get(recvInterface));
                                 Edge edge = new Edge(out, receiver);
                                 Set<AbstractRoute> routes =
                                     candidateRoutes
@@ -728,10 +743,7 @@ public final class ForwardingAnalysisImpl implements ForwardingAnalysis {
                                                         ip ->
                                                             !ip.equals(
                                                                 Route.UNSET_ROUTE_NEXT_HOP_IP))
-                                                    .anyMatch(
-                                                        nextHopIp ->
-                                                            recvReplies.containsIp(
-                                                                nextHopIp, ImmutableMap.of())))
+                                                    .anyMatch(recvRepliesContainsIp))
                                         .collect(ImmutableSet.toImmutableSet());
                                 routesByEdgeBuilder.put(edge, routes);
                               });
@@ -3,18 +3,12 @@ package org.batfish.datamodel;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonValue;
 import java.io.Serializable;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.BitSet;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.Nullable;
 import org.batfish.common.BatfishException;
 
 public class Ip implements Comparable<Ip>, Serializable {
 
-  private static Map<Ip, BitSet> _addressBitsCache = new ConcurrentHashMap<>();
-
   public static final Ip AUTO = new Ip(-1L);
 
   public static final Ip FIRST_CLASS_A_PRIVATE_IP = new Ip("10.0.0.0");
@@ -29,8 +23,6 @@ public class Ip implements Comparable<Ip>, Serializable {
 
   public static final Ip MAX = new Ip(0xFFFFFFFFL);
 
-  private static final int NUM_BYTES = 4;
-
   private static final long serialVersionUID = 1L;
 
   public static final Ip ZERO = new Ip(0L);
@@ -51,7 +43,7 @@ public class Ip implements Comparable<Ip>, Serializable {
    * @return a boolean representation of the bit value
    */
   public static boolean getBitAtPosition(long bits, int position) {
-    return (bits & (1 << (Prefix.MAX_PREFIX_LENGTH - 1 - position))) != 0;
+    return (bits & (1L << (Prefix.MAX_PREFIX_LENGTH - 1 - position))) != 0;
   }
 
   private static long ipStrToLong(String addr) {
@@ -134,20 +126,11 @@ public class Ip implements Comparable<Ip>, Serializable {
   /** @deprecated In favor of much simpler {@link #getBitAtPosition(Ip, int)} */
   @Deprecated
   public BitSet getAddressBits() {
-    BitSet bits = _addressBitsCache.get(this);
-    if (bits == null) {
-      int addressAsInt = (int) (_ip);
-      ByteBuffer b = ByteBuffer.allocate(NUM_BYTES);
-      b.order(ByteOrder.LITTLE_ENDIAN); // optional, the initial order of a
-      // byte
-      // buffer is always BIG_ENDIAN.
-      b.putInt(addressAsInt);
-      BitSet bitsWithHighestMostSignificant = BitSet.valueOf(b.array());
-      bits = new BitSet(Prefix.MAX_PREFIX_LENGTH);
-      for (int i = Prefix.MAX_PREFIX_LENGTH - 1, j = 0; i >= 0; i--, j++) {
-        bits.set(j, bitsWithHighestMostSignificant.get(i));
+    BitSet bits = new BitSet(Prefix.MAX_PREFIX_LENGTH);
+    for (int i = 0; i < Prefix.MAX_PREFIX_LENGTH; i++) {
+      if (getBitAtPosition(_ip, i)) {
+        bits.set(i);
       }
-      _addressBitsCache.put(this, bits);
     }
     return bits;
   }
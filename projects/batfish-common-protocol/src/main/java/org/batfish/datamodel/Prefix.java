@@ -10,6 +10,11 @@ public final class Prefix implements Comparable<Prefix>, Serializable {
 
   public static final int MAX_PREFIX_LENGTH = 32;
 
+  /* Number of low-order bits of a packed prefix that hold its length. */
+  private static final int PACKED_LENGTH_BITS = 6;
+
+  private static final long PACKED_LENGTH_MASK = (1L << PACKED_LENGTH_BITS) - 1;
+
   /** */
   private static final long serialVersionUID = 1L;
 
@@ -19,6 +24,37 @@ public final class Prefix implements Comparable<Prefix>, Serializable {
     return networkStart | ((1L << (32 - prefixLength)) - 1);
   }
 
+  /**
+   * Returns a prefix packed into a single {@code long}, with the start IP (as returned by {@link
+   * Ip#asLong()}) in the high-order bits and the length in the low-order bits. Packed prefixes let
+   * hot paths store and compare prefixes without allocating {@link Prefix} objects. The start IP is
+   * not masked.
+   */
+  public static long pack(long startIp, int prefixLength) {
+    return (startIp << PACKED_LENGTH_BITS) | prefixLength;
+  }
+
+  /** Returns whether the {@link #pack(long, int) packed} prefix contains the given IP. */
+  public static boolean packedContainsIp(long packedPrefix, long ip) {
+    long start = packedStartIp(packedPrefix);
+    return start <= ip && ip <= getNetworkEnd(start, packedPrefixLength(packedPrefix));
+  }
+
+  /** Returns the length of a {@link #pack(long, int) packed} prefix. */
+  public static int packedPrefixLength(long packedPrefix) {
+    return (int) (packedPrefix & PACKED_LENGTH_MASK);
+  }
+
+  /** Returns the start IP of a {@link #pack(long, int) packed} prefix, as a {@code long}. */
+  public static long packedStartIp(long packedPrefix) {
+    return packedPrefix >> PACKED_LENGTH_BITS;
+  }
+
+  /** Returns the {@link Prefix} represented by a {@link #pack(long, int) packed} prefix. */
+  public static Prefix unpack(long packedPrefix) {
+    return new Prefix(new Ip(packedStartIp(packedPrefix)), packedPrefixLength(packedPrefix));
+  }
+
   private static long numWildcardBitsToWildcardLong(int numBits) {
     long wildcard = 0;
     for (int i = 0; i < numBits; i++) {
@@ -73,11 +109,20 @@ public final class Prefix implements Comparable<Prefix>, Serializable {
     return Integer.compare(_prefixLength, rhs._prefixLength);
   }
 
+  /** Returns this prefix {@link #pack(long, int) packed} into a single {@code long}. */
+  public long asPackedLong() {
+    return pack(_ip.asLong(), _prefixLength);
+  }
+
   public boolean containsIp(@Nonnull Ip ip) {
+    return containsIp(ip.asLong());
+  }
+
+  /** Returns whether this prefix contains the IP represented by {@code ip}. */
+  public boolean containsIp(long ip) {
     long start = _ip.asLong();
     long end = getNetworkEnd(start, _prefixLength);
-    long ipAsLong = ip.asLong();
-    return start <= ipAsLong && ipAsLong <= end;
+    return start <= ip && ip <= end;
   }
 
   public boolean containsPrefix(@Nonnull Prefix prefix) {
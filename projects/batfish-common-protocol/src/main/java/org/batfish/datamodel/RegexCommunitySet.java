@@ -4,14 +4,9 @@ import static java.util.Objects.requireNonNull;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.google.common.base.Supplier;
-import com.google.common.base.Suppliers;
-import java.io.Serializable;
 import java.util.Set;
 import java.util.SortedSet;
-import java.util.regex.Pattern;
 import javax.annotation.Nonnull;
-import org.batfish.common.util.CommonUtil;
 import org.batfish.datamodel.routing_policy.Environment;
 import org.batfish.datamodel.routing_policy.expr.CommunitySetExpr;
 import org.batfish.datamodel.visitors.CommunitySetExprVisitor;
@@ -24,15 +19,6 @@ import org.batfish.datamodel.visitors.VoidCommunitySetExprVisitor;
  */
 public final class RegexCommunitySet extends CommunitySetExpr {
 
-  private final class PatternSupplier implements Supplier<Pattern>, Serializable {
-    private static final long serialVersionUID = 1L;
-
-    @Override
-    public Pattern get() {
-      return Pattern.compile(_regex);
-    }
-  }
-
   private static final String PROP_REGEX = "regex";
 
   private static final long serialVersionUID = 1L;
@@ -42,13 +28,10 @@ public final class RegexCommunitySet extends CommunitySetExpr {
     return new RegexCommunitySet(requireNonNull(regex));
   }
 
-  private final Supplier<Pattern> _pattern;
-
   private final String _regex;
 
   public RegexCommunitySet(@Nonnull String regex) {
     _regex = regex;
-    _pattern = Suppliers.memoize(new PatternSupplier());
   }
 
   @Override
@@ -102,7 +85,7 @@ public final class RegexCommunitySet extends CommunitySetExpr {
 
   @Override
   public boolean matchCommunity(Environment environment, long community) {
-    return _pattern.get().matcher(CommonUtil.longToCommunity(community)).find();
+    return BgpRegexMatcher.matchesCommunity(_regex, community);
   }
 
   @Override
@@ -0,0 +1,293 @@
+package org.batfish.datamodel.answers;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Sets;
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.batfish.common.Version;
+import org.batfish.datamodel.Fib;
+import org.batfish.datamodel.Prefix;
+import org.batfish.datamodel.Route;
+
+/**
+ * The changes to the FIBs of an environment under each of a list of failure scenarios, relative to
+ * its FIBs without failures
+ */
+public class FailureScenariosAnswerElement extends AnswerElement implements Serializable {
+
+  /** A change to the next hops of a prefix in the FIB of a VRF */
+  public static final class FibChange implements Serializable {
+
+    private static final String PROP_BASE_NEXT_HOPS = "baseNextHops";
+
+    private static final String PROP_NEXT_HOPS = "nextHops";
+
+    private static final String PROP_NODE = "node";
+
+    private static final String PROP_PREFIX = "prefix";
+
+    private static final String PROP_VRF = "vrf";
+
+    private static final long serialVersionUID = 1L;
+
+    @Nonnull private final SortedSet<String> _baseNextHops;
+
+    @Nonnull private final SortedSet<String> _nextHops;
+
+    @Nonnull private final String _node;
+
+    @Nonnull private final Prefix _prefix;
+
+    @Nonnull private final String _vrf;
+
+    @JsonCreator
+    public FibChange(
+        @JsonProperty(PROP_NODE) @Nonnull String node,
+        @JsonProperty(PROP_VRF) @Nonnull String vrf,
+        @JsonProperty(PROP_PREFIX) @Nonnull Prefix prefix,
+        @JsonProperty(PROP_BASE_NEXT_HOPS) @Nullable SortedSet<String> baseNextHops,
+        @JsonProperty(PROP_NEXT_HOPS) @Nullable SortedSet<String> nextHops) {
+      _node = node;
+      _vrf = vrf;
+      _prefix = prefix;
+      _baseNextHops =
+          baseNextHops == null ? ImmutableSortedSet.of() : ImmutableSortedSet.copyOf(baseNextHops);
+      _nextHops = nextHops == null ? ImmutableSortedSet.of() : ImmutableSortedSet.copyOf(nextHops);
+    }
+
+    /**
+     * Return the changes from the base FIBs to the FIBs of a scenario at the given nodes, sorted by
+     * node, VRF and prefix
+     */
+    @Nonnull
+    public static List<FibChange> diffFibs(
+        @Nonnull Map<String, Map<String, Fib>> baseFibs,
+        @Nonnull Map<String, Map<String, Fib>> fibs,
+        @Nonnull Set<String> hostnames) {
+      ImmutableList.Builder<FibChange> changes = ImmutableList.builder();
+      for (String hostname : ImmutableSortedSet.copyOf(hostnames)) {
+        Map<String, Fib> baseVrfs = baseFibs.getOrDefault(hostname, ImmutableMap.of());
+        Map<String, Fib> vrfs = fibs.getOrDefault(hostname, ImmutableMap.of());
+        for (String vrf :
+            ImmutableSortedSet.copyOf(Sets.union(baseVrfs.keySet(), vrfs.keySet()))) {
+          SortedMap<Prefix, SortedSet<String>> baseNextHops = nextHops(baseVrfs.get(vrf));
+          SortedMap<Prefix, SortedSet<String>> nextHops = nextHops(vrfs.get(vrf));
+          SortedSet<Prefix> prefixes = new TreeSet<>(baseNextHops.keySet());
+          prefixes.addAll(nextHops.keySet());
+          for (Prefix prefix : prefixes) {
+            SortedSet<String> before = baseNextHops.get(prefix);
+            SortedSet<String> after = nextHops.get(prefix);
+            if (!Objects.equals(before, after)) {
+              changes.add(new FibChange(hostname, vrf, prefix, before, after));
+            }
+          }
+        }
+      }
+      return changes.build();
+    }
+
+    /**
+     * Return the next hops of each prefix in the given FIB, each an interface name followed by the
+     * next hop IP if there is one
+     */
+    private static SortedMap<Prefix, SortedSet<String>> nextHops(@Nullable Fib fib) {
+      SortedMap<Prefix, SortedSet<String>> nextHops = new TreeMap<>();
+      if (fib == null) {
+        return nextHops;
+      }
+      fib.getNextHopInterfaces()
+          .forEach(
+              (route, byInterface) -> {
+                SortedSet<String> prefixNextHops =
+                    nextHops.computeIfAbsent(route.getNetwork(), p -> new TreeSet<>());
+                byInterface.forEach(
+                    (iface, byIp) ->
+                        byIp.keySet()
+                            .forEach(
+                                ip ->
+                                    prefixNextHops.add(
+                                        ip.equals(Route.UNSET_ROUTE_NEXT_HOP_IP)
+                                            ? iface
+                                            : iface + " " + ip)));
+              });
+      return nextHops;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      } else if (!(o instanceof FibChange)) {
+        return false;
+      }
+      FibChange other = (FibChange) o;
+      return _node.equals(other._node)
+          && _vrf.equals(other._vrf)
+          && _prefix.equals(other._prefix)
+          && _baseNextHops.equals(other._baseNextHops)
+          && _nextHops.equals(other._nextHops);
+    }
+
+    /**
+     * The next hops of the prefix without failures, each an interface name optionally followed by
+     * a next hop IP, or none if the prefix was not in the FIB
+     */
+    @JsonProperty(PROP_BASE_NEXT_HOPS)
+    @Nonnull
+    public SortedSet<String> getBaseNextHops() {
+      return _baseNextHops;
+    }
+
+    /** The next hops of the prefix under the failure scenario, or none if it left the FIB */
+    @JsonProperty(PROP_NEXT_HOPS)
+    @Nonnull
+    public SortedSet<String> getNextHops() {
+      return _nextHops;
+    }
+
+    @JsonProperty(PROP_NODE)
+    @Nonnull
+    public String getNode() {
+      return _node;
+    }
+
+    @JsonProperty(PROP_PREFIX)
+    @Nonnull
+    public Prefix getPrefix() {
+      return _prefix;
+    }
+
+    @JsonProperty(PROP_VRF)
+    @Nonnull
+    public String getVrf() {
+      return _vrf;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(_node, _vrf, _prefix, _baseNextHops, _nextHops);
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s:%s %s %s -> %s", _node, _vrf, _prefix, _baseNextHops, _nextHops);
+    }
+  }
+
+  /** The outcome of the computation of the data plane under one failure scenario */
+  public static final class ScenarioResult implements Serializable {
+
+    private static final String PROP_ERROR = "error";
+
+    private static final String PROP_FIB_CHANGES = "fibChanges";
+
+    private static final String PROP_RECOMPUTED_NODES = "recomputedNodes";
+
+    private static final long serialVersionUID = 1L;
+
+    @Nullable private final String _error;
+
+    @Nonnull private final List<FibChange> _fibChanges;
+
+    private final int _recomputedNodes;
+
+    @JsonCreator
+    public ScenarioResult(
+        @JsonProperty(PROP_FIB_CHANGES) @Nullable List<FibChange> fibChanges,
+        @JsonProperty(PROP_RECOMPUTED_NODES) int recomputedNodes,
+        @JsonProperty(PROP_ERROR) @Nullable String error) {
+      _fibChanges = fibChanges == null ? ImmutableList.of() : ImmutableList.copyOf(fibChanges);
+      _recomputedNodes = recomputedNodes;
+      _error = error;
+    }
+
+    /**
+     * Why the data plane could not be computed under the scenario, e.g., because it has no stable
+     * solution, or {@code null} if it was
+     */
+    @JsonProperty(PROP_ERROR)
+    @Nullable
+    public String getError() {
+      return _error;
+    }
+
+    /** The changed FIB entries, sorted by node, VRF and prefix */
+    @JsonProperty(PROP_FIB_CHANGES)
+    @Nonnull
+    public List<FibChange> getFibChanges() {
+      return _fibChanges;
+    }
+
+    /** The number of nodes whose data plane was recomputed rather than shared with the base */
+    @JsonProperty(PROP_RECOMPUTED_NODES)
+    public int getRecomputedNodes() {
+      return _recomputedNodes;
+    }
+  }
+
+  private static final String PROP_SCENARIOS = "scenarios";
+
+  private static final String PROP_VERSION = "version";
+
+  private static final long serialVersionUID = 1L;
+
+  private SortedMap<String, ScenarioResult> _scenarios;
+
+  private String _version;
+
+  public FailureScenariosAnswerElement() {
+    _scenarios = new TreeMap<>();
+    _version = Version.getVersion();
+  }
+
+  /** The result of each failure scenario, keyed by scenario name */
+  @JsonProperty(PROP_SCENARIOS)
+  public SortedMap<String, ScenarioResult> getScenarios() {
+    return _scenarios;
+  }
+
+  @JsonProperty(PROP_VERSION)
+  public String getVersion() {
+    return _version;
+  }
+
+  @Override
+  public String prettyPrint() {
+    StringBuilder sb = new StringBuilder();
+    _scenarios.forEach(
+        (name, result) -> {
+          sb.append(
+              String.format(
+                  "Scenario %s: %d nodes recomputed, %d FIB changes%s\n",
+                  name,
+                  result.getRecomputedNodes(),
+                  result.getFibChanges().size(),
+                  result.getError() == null ? "" : ", error: " + result.getError()));
+          result.getFibChanges().forEach(change -> sb.append("  " + change + "\n"));
+        });
+    return sb.toString();
+  }
+
+  @JsonProperty(PROP_SCENARIOS)
+  public void setScenarios(SortedMap<String, ScenarioResult> scenarios) {
+    _scenarios = scenarios;
+  }
+
+  @JsonProperty(PROP_VERSION)
+  public void setVersion(String version) {
+    _version = version;
+  }
+}
@@ -16,6 +16,10 @@ public class IncrementalBdpAnswerElement extends DataPlaneAnswerElement {
   private static final String PROP_BGP_MULTIPATH_RIB_ROUTES_BY_ITERATION =
       "bgpMultipathRibRoutesByIteration";
 
+  private static final String PROP_BGP_POLICY_CACHE_HITS = "bgpPolicyCacheHits";
+
+  private static final String PROP_BGP_POLICY_CACHE_LOOKUPS = "bgpPolicyCacheLookups";
+
   private static final String PROP_DEPENDENT_ROUTES_ITERATIONS = "dependentRoutesIterations";
 
   private static final String PROP_EIGRP_INTERNAL_ITERATIONS = "eigrpInternalIterations";
@@ -30,6 +34,10 @@ public class IncrementalBdpAnswerElement extends DataPlaneAnswerElement {
 
   private SortedMap<Integer, Integer> _bgpMultipathRibRoutesByIteration;
 
+  private long _bgpPolicyCacheHits;
+
+  private long _bgpPolicyCacheLookups;
+
   private int _dependentRoutesIterations;
 
   private int _eigrpInternalIterations;
@@ -59,6 +67,18 @@ public class IncrementalBdpAnswerElement extends DataPlaneAnswerElement {
     return _bgpMultipathRibRoutesByIteration;
   }
 
+  /** Number of BGP import and export policy evaluations that were answered from a cache */
+  @JsonProperty(PROP_BGP_POLICY_CACHE_HITS)
+  public long getBgpPolicyCacheHits() {
+    return _bgpPolicyCacheHits;
+  }
+
+  /** Number of BGP import and export policy evaluations that were looked up in a cache */
+  @JsonProperty(PROP_BGP_POLICY_CACHE_LOOKUPS)
+  public long getBgpPolicyCacheLookups() {
+    return _bgpPolicyCacheLookups;
+  }
+
   @JsonProperty(PROP_DEPENDENT_ROUTES_ITERATIONS)
   public int getDependentRoutesIterations() {
     return _dependentRoutesIterations;
@@ -110,7 +130,14 @@ public class IncrementalBdpAnswerElement extends DataPlaneAnswerElement {
         + "\n"
         + "   Main RIB routes by iteration: "
         + _mainRibRoutesByIteration
-        + "\n";
+        + "\n"
+        + (_bgpPolicyCacheLookups == 0
+            ? ""
+            : String.format(
+                "   BGP policy cache hit rate: %.1f%% (%d of %d)%n",
+                100.0 * _bgpPolicyCacheHits / _bgpPolicyCacheLookups,
+                _bgpPolicyCacheHits,
+                _bgpPolicyCacheLookups));
   }
 
   @JsonProperty(PROP_BGP_BEST_PATH_RIB_ROUTES_BY_ITERATION)
@@ -125,6 +152,16 @@ public class IncrementalBdpAnswerElement extends DataPlaneAnswerElement {
     _bgpMultipathRibRoutesByIteration = bgpMultipathRibRoutesByIteration;
   }
 
+  @JsonProperty(PROP_BGP_POLICY_CACHE_HITS)
+  public void setBgpPolicyCacheHits(long bgpPolicyCacheHits) {
+    _bgpPolicyCacheHits = bgpPolicyCacheHits;
+  }
+
+  @JsonProperty(PROP_BGP_POLICY_CACHE_LOOKUPS)
+  public void setBgpPolicyCacheLookups(long bgpPolicyCacheLookups) {
+    _bgpPolicyCacheLookups = bgpPolicyCacheLookups;
+  }
+
   @JsonProperty(PROP_EIGRP_INTERNAL_ITERATIONS)
   public void setEigrpInternalIterations(int eigrpInternalIterations) {
     _eigrpInternalIterations = eigrpInternalIterations;
@@ -0,0 +1,149 @@
+package org.batfish.datamodel.collections;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.function.LongFunction;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.batfish.datamodel.Ip;
+import org.batfish.datamodel.Prefix;
+
+/**
+ * A hash map from IPv4 addresses, represented as {@code long}s (see {@link Ip#asLong()}), to
+ * non-null values.
+ *
+ * <p>Keys are stored unboxed in an open-addressing table with linear probing, so lookups and
+ * insertions of existing keys do not allocate. Any {@code long} may be used as a key, so the map
+ * may also be keyed by prefixes packed with {@link Prefix#pack(long, int)}. Entries cannot be
+ * removed. Not thread-safe.
+ */
+public final class IpHashMap<V> {
+
+  /** Receives the entries of an {@link IpHashMap}. */
+  @FunctionalInterface
+  public interface EntryConsumer<V> {
+    void accept(long key, V value);
+  }
+
+  private static final int DEFAULT_EXPECTED_SIZE = 8;
+
+  private long[] _keys;
+
+  private int _size;
+
+  /* A slot is empty iff its value is null. */
+  private Object[] _values;
+
+  public IpHashMap() {
+    this(DEFAULT_EXPECTED_SIZE);
+  }
+
+  /** Creates a map that can hold {@code expectedSize} entries without resizing. */
+  public IpHashMap(int expectedSize) {
+    checkArgument(expectedSize >= 0, "Expected size must be non-negative");
+    int capacity = IpHashTables.tableSizeFor(expectedSize);
+    _keys = new long[capacity];
+    _values = new Object[capacity];
+  }
+
+  /**
+   * Returns the value for {@code key}, first computing and storing it with {@code mapping} if
+   * absent. {@code mapping} must not modify this map and must not return {@code null}.
+   */
+  @Nonnull
+  public V computeIfAbsent(long key, LongFunction<? extends V> mapping) {
+    int slot = slot(key);
+    V value = valueAt(slot);
+    if (value != null) {
+      return value;
+    }
+    V newValue = checkNotNull(mapping.apply(key), "Values must not be null");
+    insertAt(slot, key, newValue);
+    return newValue;
+  }
+
+  public boolean containsKey(long key) {
+    return _values[slot(key)] != null;
+  }
+
+  /** Calls {@code action} on each entry in this map, in no particular order. */
+  public void forEach(EntryConsumer<? super V> action) {
+    for (int i = 0; i < _values.length; i++) {
+      V value = valueAt(i);
+      if (value != null) {
+        action.accept(_keys[i], value);
+      }
+    }
+  }
+
+  /** Returns the value for {@code key}, or {@code null} if there is none. */
+  @Nullable
+  public V get(long key) {
+    return valueAt(slot(key));
+  }
+
+  private void insertAt(int slot, long key, V value) {
+    _keys[slot] = key;
+    _values[slot] = value;
+    _size++;
+    if (IpHashTables.needsResize(_size, _keys.length)) {
+      resize();
+    }
+  }
+
+  public boolean isEmpty() {
+    return _size == 0;
+  }
+
+  /**
+   * Associates {@code value} with {@code key}, returning the previous value or {@code null} if
+   * there was none.
+   */
+  @Nullable
+  public V put(long key, V value) {
+    checkNotNull(value, "Values must not be null");
+    int slot = slot(key);
+    V oldValue = valueAt(slot);
+    if (oldValue != null) {
+      _values[slot] = value;
+      return oldValue;
+    }
+    insertAt(slot, key, value);
+    return null;
+  }
+
+  private void resize() {
+    long[] oldKeys = _keys;
+    Object[] oldValues = _values;
+    _keys = new long[oldKeys.length * 2];
+    _values = new Object[oldValues.length * 2];
+    for (int i = 0; i < oldValues.length; i++) {
+      if (oldValues[i] != null) {
+        int slot = slot(oldKeys[i]);
+        _keys[slot] = oldKeys[i];
+        _values[slot] = oldValues[i];
+      }
+    }
+  }
+
+  public int size() {
+    return _size;
+  }
+
+  /* Returns the slot holding key, or the empty slot where it would be inserted. */
+  private int slot(long key) {
+    int mask = _keys.length - 1;
+    int slot = IpHashTables.hash(key) & mask;
+    while (_values[slot] != null && _keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Nullable
+  private V valueAt(int slot) {
+    return (V) _values[slot];
+  }
+}
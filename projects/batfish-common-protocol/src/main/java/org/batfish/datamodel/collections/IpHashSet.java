@@ -0,0 +1,97 @@
+package org.batfish.datamodel.collections;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.function.LongConsumer;
+import org.batfish.datamodel.Ip;
+import org.batfish.datamodel.Prefix;
+
+/**
+ * A hash set of IPv4 addresses, represented as {@code long}s (see {@link Ip#asLong()}).
+ *
+ * <p>Elements are stored unboxed in an open-addressing table with linear probing, so lookups do
+ * not allocate. Any {@code long} may be stored, so the set may also hold prefixes packed with
+ * {@link Prefix#pack(long, int)}. Elements cannot be removed. Not thread-safe.
+ */
+public final class IpHashSet {
+
+  private static final int DEFAULT_EXPECTED_SIZE = 8;
+
+  private long[] _keys;
+
+  private int _size;
+
+  private boolean[] _used;
+
+  public IpHashSet() {
+    this(DEFAULT_EXPECTED_SIZE);
+  }
+
+  /** Creates a set that can hold {@code expectedSize} elements without resizing. */
+  public IpHashSet(int expectedSize) {
+    checkArgument(expectedSize >= 0, "Expected size must be non-negative");
+    int capacity = IpHashTables.tableSizeFor(expectedSize);
+    _keys = new long[capacity];
+    _used = new boolean[capacity];
+  }
+
+  /** Adds {@code key}, returning {@code true} if it was not already present. */
+  public boolean add(long key) {
+    int slot = slot(key);
+    if (_used[slot]) {
+      return false;
+    }
+    _keys[slot] = key;
+    _used[slot] = true;
+    _size++;
+    if (IpHashTables.needsResize(_size, _keys.length)) {
+      resize();
+    }
+    return true;
+  }
+
+  public boolean contains(long key) {
+    return _used[slot(key)];
+  }
+
+  /** Calls {@code action} on each element of this set, in no particular order. */
+  public void forEach(LongConsumer action) {
+    for (int i = 0; i < _keys.length; i++) {
+      if (_used[i]) {
+        action.accept(_keys[i]);
+      }
+    }
+  }
+
+  public boolean isEmpty() {
+    return _size == 0;
+  }
+
+  private void resize() {
+    long[] oldKeys = _keys;
+    boolean[] oldUsed = _used;
+    _keys = new long[oldKeys.length * 2];
+    _used = new boolean[oldUsed.length * 2];
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldUsed[i]) {
+        int slot = slot(oldKeys[i]);
+        _keys[slot] = oldKeys[i];
+        _used[slot] = true;
+      }
+    }
+  }
+
+  public int size() {
+    return _size;
+  }
+
+  /* Returns the slot holding key, or the empty slot where it would be inserted. */
+  private int slot(long key) {
+    int mask = _keys.length - 1;
+    int slot = IpHashTables.hash(key) & mask;
+    while (_used[slot] && _keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+}
@@ -0,0 +1,35 @@
+package org.batfish.datamodel.collections;
+
+/** Sizing and hashing shared by {@link IpHashMap} and {@link IpHashSet}. */
+final class IpHashTables {
+
+  /* Tables are resized once more than half full, keeping probe sequences short. */
+  private static final int MAX_LOAD_FACTOR_INVERSE = 2;
+
+  private static final int MAX_CAPACITY = 1 << 30;
+
+  private static final int MIN_CAPACITY = 4;
+
+  /**
+   * Spreads the bits of {@code key}, since IPs in the same subnet differ only in their low bits.
+   */
+  static int hash(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  static boolean needsResize(int size, int capacity) {
+    return size * MAX_LOAD_FACTOR_INVERSE > capacity;
+  }
+
+  /** Returns the power-of-two table size that holds {@code expectedSize} keys without resizing. */
+  static int tableSizeFor(int expectedSize) {
+    int capacity = MIN_CAPACITY;
+    while (capacity < MAX_CAPACITY && needsResize(expectedSize, capacity)) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  private IpHashTables() {}
+}
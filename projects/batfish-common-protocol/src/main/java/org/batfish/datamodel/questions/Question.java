@@ -28,6 +28,7 @@ import org.batfish.common.BatfishException;
 import org.batfish.common.BfConsts;
 import org.batfish.common.util.BatfishObjectMapper;
 import org.batfish.common.util.CommonUtil;
+import org.batfish.datamodel.DataPlaneDetail;
 import org.batfish.datamodel.questions.Question.InstanceData.Variable;
 import org.codehaus.jettison.json.JSONArray;
 import org.codehaus.jettison.json.JSONException;
@@ -307,6 +308,16 @@ public abstract class Question implements IQuestion {
   @JsonIgnore
   public abstract boolean getDataPlane();
 
+  /**
+   * Returns how much of the data plane this question reads, if it requires one (see {@link
+   * #getDataPlane()}). Most questions only need the main RIBs and FIBs; questions that read more
+   * must say so.
+   */
+  @JsonIgnore
+  public DataPlaneDetail getDataPlaneDetail() {
+    return DataPlaneDetail.MAIN_RIB;
+  }
+
   @JsonProperty(BfConsts.PROP_ASSERTION)
   public Assertion getAssertion() {
     return _assertion;
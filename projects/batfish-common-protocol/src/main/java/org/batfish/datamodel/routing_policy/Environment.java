@@ -53,6 +53,9 @@ public class Environment {
 
   @Nullable private final Prefix _peerPrefix;
 
+  /** Whether the peer address or the peer prefix has been read */
+  private boolean _peerRead;
+
   private boolean _readFromIntermediateBgpAttributes;
 
   private final boolean _useOutputAttributes;
@@ -162,14 +165,24 @@ public class Environment {
 
   @Nullable
   public Ip getPeerAddress() {
+    _peerRead = true;
     return _peerAddress;
   }
 
   @Nullable
   public Prefix getPeerPrefix() {
+    _peerRead = true;
     return _peerPrefix;
   }
 
+  /**
+   * Whether the peer address or the peer prefix has been read so far. If not, running a policy in
+   * this environment has the same result for any peer.
+   */
+  public boolean getPeerRead() {
+    return _peerRead;
+  }
+
   public boolean getReadFromIntermediateBgpAttributes() {
     return _readFromIntermediateBgpAttributes;
   }
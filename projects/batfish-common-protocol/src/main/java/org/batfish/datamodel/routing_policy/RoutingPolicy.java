@@ -26,6 +26,7 @@ import org.batfish.datamodel.NetworkFactory;
 import org.batfish.datamodel.NetworkFactory.NetworkFactoryBuilder;
 import org.batfish.datamodel.Prefix;
 import org.batfish.datamodel.routing_policy.Environment.Direction;
+import org.batfish.datamodel.routing_policy.RoutingPolicyCompiler.CompiledStatement;
 import org.batfish.datamodel.routing_policy.statement.Statement;
 
 /** A procedural routing policy used to transform and accept/reject IPV4/IPV6 routes */
@@ -81,6 +82,9 @@ public class RoutingPolicy implements Serializable {
 
   private static final String PROP_STATEMENTS = "statements";
 
+  /** This policy compiled against its owner, created on first use */
+  @Nullable private transient CompiledStatement _compiled;
+
   private final String _name;
 
   private Configuration _owner;
@@ -198,13 +202,39 @@ public class RoutingPolicy implements Serializable {
             .setDirection(direction)
             .setPeerPrefix(peerPrefix)
             .build();
-    Result result = call(environment);
-    return result.getBooleanValue() && !(Boolean.TRUE.equals(environment.getSuppressed()));
+    return process(environment);
+  }
+
+  /**
+   * Run this policy in the given environment, which must be for its owner
+   *
+   * @return whether the route is accepted
+   */
+  public boolean process(Environment environment) {
+    boolean accept =
+        _owner == null
+            ? call(environment).getBooleanValue()
+            : (getCompiled().execute(environment) & RoutingPolicyCompiler.BOOLEAN_VALUE) != 0;
+    return accept && !(Boolean.TRUE.equals(environment.getSuppressed()));
+  }
+
+  /**
+   * Return this policy compiled against its owner, which behaves like {@link #call} for
+   * environments of the owner
+   */
+  CompiledStatement getCompiled() {
+    CompiledStatement compiled = _compiled;
+    if (compiled == null) {
+      compiled = new RoutingPolicyCompiler(_owner).compile(this);
+      _compiled = compiled;
+    }
+    return compiled;
   }
 
   @JsonProperty(PROP_STATEMENTS)
   public void setStatements(List<Statement> statements) {
     _statements = statements;
+    _compiled = null;
   }
 
   public RoutingPolicy simplify() {
@@ -0,0 +1,465 @@
+package org.batfish.datamodel.routing_policy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+import javax.annotation.Nullable;
+import org.batfish.common.BatfishException;
+import org.batfish.datamodel.AsPath;
+import org.batfish.datamodel.AsPathAccessList;
+import org.batfish.datamodel.BgpRoute;
+import org.batfish.datamodel.CommunityList;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.PrefixSpace;
+import org.batfish.datamodel.RouteFilterList;
+import org.batfish.datamodel.RoutingProtocol;
+import org.batfish.datamodel.routing_policy.expr.AsPathSetExpr;
+import org.batfish.datamodel.routing_policy.expr.BooleanExpr;
+import org.batfish.datamodel.routing_policy.expr.BooleanExprs;
+import org.batfish.datamodel.routing_policy.expr.BooleanExprs.StaticBooleanExpr;
+import org.batfish.datamodel.routing_policy.expr.CallExpr;
+import org.batfish.datamodel.routing_policy.expr.CommunitySetExpr;
+import org.batfish.datamodel.routing_policy.expr.Conjunction;
+import org.batfish.datamodel.routing_policy.expr.ConjunctionChain;
+import org.batfish.datamodel.routing_policy.expr.Disjunction;
+import org.batfish.datamodel.routing_policy.expr.DisjunctionChain;
+import org.batfish.datamodel.routing_policy.expr.ExplicitPrefixSet;
+import org.batfish.datamodel.routing_policy.expr.MatchAsPath;
+import org.batfish.datamodel.routing_policy.expr.MatchCommunitySet;
+import org.batfish.datamodel.routing_policy.expr.MatchPrefixSet;
+import org.batfish.datamodel.routing_policy.expr.MatchProtocol;
+import org.batfish.datamodel.routing_policy.expr.NamedAsPathSet;
+import org.batfish.datamodel.routing_policy.expr.NamedCommunitySet;
+import org.batfish.datamodel.routing_policy.expr.NamedPrefixSet;
+import org.batfish.datamodel.routing_policy.expr.Not;
+import org.batfish.datamodel.routing_policy.expr.PrefixExpr;
+import org.batfish.datamodel.routing_policy.expr.PrefixSetExpr;
+import org.batfish.datamodel.routing_policy.statement.CallStatement;
+import org.batfish.datamodel.routing_policy.statement.If;
+import org.batfish.datamodel.routing_policy.statement.Statement;
+import org.batfish.datamodel.routing_policy.statement.Statements.StaticStatement;
+
+/**
+ * Compiles a {@link RoutingPolicy} into a tree of closures, which evaluates it much faster than
+ * interpreting its {@link Statement statements} and {@link BooleanExpr expressions} does.
+ *
+ * <p>The compiled policy behaves exactly like the interpreter, with these differences in how it
+ * gets there:
+ *
+ * <ul>
+ *   <li>Named route filter lists, community lists, AS-path access lists and called policies are
+ *       looked up in the configuration once, at compile time, rather than on every evaluation.
+ *   <li>Branches and operands that are constant are resolved at compile time.
+ *   <li>A {@link Result} is encoded in the bits of an {@code int}, so evaluating does not allocate.
+ * </ul>
+ *
+ * <p>Statements and expressions without a specialized closure are compiled into a closure that
+ * interprets them, so every policy can be compiled.
+ */
+final class RoutingPolicyCompiler {
+
+  /** Bit of an encoded {@link Result} for {@link Result#getBooleanValue()} */
+  static final int BOOLEAN_VALUE = 1;
+
+  /** Bit of an encoded {@link Result} for {@link Result#getExit()} */
+  static final int EXIT = 2;
+
+  /** Bit of an encoded {@link Result} for {@link Result#getFallThrough()} */
+  static final int FALL_THROUGH = 4;
+
+  /** Bit of an encoded {@link Result} for {@link Result#getReturn()} */
+  static final int RETURN = 8;
+
+  /** A compiled {@link Statement}, or a compiled {@link RoutingPolicy} */
+  @FunctionalInterface
+  interface CompiledStatement {
+    /** Execute the statement, returning the encoded {@link Result} */
+    int execute(Environment environment);
+  }
+
+  /** A compiled {@link BooleanExpr} */
+  @FunctionalInterface
+  interface CompiledBooleanExpr {
+    /** Evaluate the expression, returning the encoded {@link Result} */
+    int evaluate(Environment environment);
+  }
+
+  /** Encode a {@link Result} in the bits of an {@code int} */
+  static int encode(Result result) {
+    return (result.getBooleanValue() ? BOOLEAN_VALUE : 0)
+        | (result.getExit() ? EXIT : 0)
+        | (result.getFallThrough() ? FALL_THROUGH : 0)
+        | (result.getReturn() ? RETURN : 0);
+  }
+
+  /**
+   * Evaluate a call to the given policy, like {@link CallExpr#evaluate} does
+   *
+   * @param policy the called policy, or {@code null} if it does not exist
+   */
+  private static int callExpr(@Nullable RoutingPolicy policy, Environment environment) {
+    if (policy == null) {
+      environment.setError(true);
+      return 0;
+    }
+    boolean oldCallExprContext = environment.getCallExprContext();
+    boolean oldLocalDefaultAction = environment.getLocalDefaultAction();
+    environment.setCallExprContext(true);
+    int result = invoke(policy, environment) & ~RETURN;
+    environment.setCallExprContext(oldCallExprContext);
+    environment.setLocalDefaultAction(oldLocalDefaultAction);
+    return result;
+  }
+
+  /** Evaluate a call to the default policy of the environment, like the chain expressions do */
+  private static int callDefaultPolicy(Environment environment) {
+    String defaultPolicy = environment.getDefaultPolicy();
+    if (defaultPolicy == null) {
+      throw new BatfishException("Default policy not set");
+    }
+    return callExpr(
+        environment.getConfiguration().getRoutingPolicies().get(defaultPolicy), environment);
+  }
+
+  /**
+   * Run the given policy in the given environment, compiled if it belongs to the configuration of
+   * the environment, which its compiled form was resolved against
+   */
+  private static int invoke(RoutingPolicy policy, Environment environment) {
+    if (policy.getOwner() == environment.getConfiguration()) {
+      return policy.getCompiled().execute(environment);
+    }
+    return encode(policy.call(environment));
+  }
+
+  private final Configuration _configuration;
+
+  /**
+   * Create a compiler for policies of the given configuration
+   *
+   * @param configuration the configuration whose named structures the policies refer to
+   */
+  RoutingPolicyCompiler(Configuration configuration) {
+    _configuration = configuration;
+  }
+
+  /** Compile a policy, which behaves like {@link RoutingPolicy#call} */
+  CompiledStatement compile(RoutingPolicy policy) {
+    CompiledStatement[] statements = compileAll(policy.getStatements());
+    return environment -> {
+      for (CompiledStatement statement : statements) {
+        int result = statement.execute(environment);
+        if ((result & EXIT) != 0) {
+          return result;
+        }
+        if ((result & RETURN) != 0) {
+          return result & ~RETURN;
+        }
+      }
+      return environment.getDefaultAction() ? FALL_THROUGH | BOOLEAN_VALUE : FALL_THROUGH;
+    };
+  }
+
+  private CompiledStatement[] compileAll(List<Statement> statements) {
+    CompiledStatement[] compiled = new CompiledStatement[statements.size()];
+    for (int i = 0; i < compiled.length; i++) {
+      compiled[i] = compile(statements.get(i));
+    }
+    return compiled;
+  }
+
+  private CompiledBooleanExpr[] compileAll(List<BooleanExpr> exprs, @Nullable BooleanExpr stopAt) {
+    List<CompiledBooleanExpr> compiled = new ArrayList<>(exprs.size());
+    for (BooleanExpr expr : exprs) {
+      if (expr.equals(stopAt)) {
+        break;
+      }
+      compiled.add(compile(expr));
+    }
+    return compiled.toArray(new CompiledBooleanExpr[0]);
+  }
+
+  private CompiledStatement compile(Statement statement) {
+    if (statement instanceof If && ((If) statement).getGuard() != null) {
+      return compileIf((If) statement);
+    } else if (statement instanceof CallStatement) {
+      return compileCallStatement((CallStatement) statement);
+    } else if (statement instanceof StaticStatement) {
+      return compileStaticStatement((StaticStatement) statement);
+    }
+    return environment -> encode(statement.execute(environment));
+  }
+
+  /** Compile the statements of a branch of an {@link If} */
+  private CompiledStatement compileBranch(List<Statement> statements) {
+    CompiledStatement[] compiled = compileAll(statements);
+    return environment -> {
+      for (CompiledStatement statement : compiled) {
+        int result = statement.execute(environment);
+        if ((result & (EXIT | RETURN)) != 0) {
+          return result;
+        }
+      }
+      return FALL_THROUGH;
+    };
+  }
+
+  private CompiledStatement compileIf(If statement) {
+    BooleanExpr guard = statement.getGuard();
+    if (guard.equals(BooleanExprs.TRUE)) {
+      return compileBranch(statement.getTrueStatements());
+    } else if (guard.equals(BooleanExprs.FALSE)) {
+      return compileBranch(statement.getFalseStatements());
+    }
+    CompiledBooleanExpr compiledGuard = compile(guard);
+    CompiledStatement trueBranch = compileBranch(statement.getTrueStatements());
+    CompiledStatement falseBranch = compileBranch(statement.getFalseStatements());
+    return environment -> {
+      int guardResult = compiledGuard.evaluate(environment);
+      if ((guardResult & EXIT) != 0) {
+        return guardResult;
+      }
+      return (guardResult & BOOLEAN_VALUE) != 0
+          ? trueBranch.execute(environment)
+          : falseBranch.execute(environment);
+    };
+  }
+
+  private CompiledStatement compileCallStatement(CallStatement statement) {
+    RoutingPolicy policy = _configuration.getRoutingPolicies().get(statement.getCalledPolicyName());
+    if (policy == null) {
+      return environment -> {
+        environment.setError(true);
+        return 0;
+      };
+    }
+    return environment -> {
+      boolean oldCallStatementContext = environment.getCallStatementContext();
+      environment.setCallStatementContext(true);
+      int result = invoke(policy, environment) & ~RETURN;
+      environment.setCallStatementContext(oldCallStatementContext);
+      return result;
+    };
+  }
+
+  private static CompiledStatement compileStaticStatement(StaticStatement statement) {
+    switch (statement.getType()) {
+      case DefaultAction:
+        return environment -> environment.getDefaultAction() ? EXIT | BOOLEAN_VALUE : EXIT;
+      case DeleteAllCommunities:
+        return environment -> 0;
+      case ExitAccept:
+        return environment -> EXIT | BOOLEAN_VALUE;
+      case ExitReject:
+        return environment -> EXIT;
+      case FallThrough:
+        return environment -> RETURN | FALL_THROUGH;
+      case Return:
+      case ReturnFalse:
+        return environment -> RETURN;
+      case ReturnLocalDefaultAction:
+        return environment ->
+            environment.getLocalDefaultAction() ? RETURN | BOOLEAN_VALUE : RETURN;
+      case ReturnTrue:
+        return environment -> RETURN | BOOLEAN_VALUE;
+      default:
+        return environment -> encode(statement.execute(environment));
+    }
+  }
+
+  private CompiledBooleanExpr compile(BooleanExpr expr) {
+    if (expr instanceof StaticBooleanExpr) {
+      return compileStaticBooleanExpr((StaticBooleanExpr) expr);
+    } else if (expr instanceof Conjunction) {
+      return compileConjunction((Conjunction) expr);
+    } else if (expr instanceof Disjunction) {
+      return compileDisjunction((Disjunction) expr);
+    } else if (expr instanceof ConjunctionChain) {
+      return compileConjunctionChain((ConjunctionChain) expr);
+    } else if (expr instanceof DisjunctionChain) {
+      return compileDisjunctionChain((DisjunctionChain) expr);
+    } else if (expr instanceof Not) {
+      return compileNot((Not) expr);
+    } else if (expr instanceof CallExpr) {
+      RoutingPolicy policy =
+          _configuration.getRoutingPolicies().get(((CallExpr) expr).getCalledPolicyName());
+      return environment -> callExpr(policy, environment);
+    } else if (expr instanceof MatchPrefixSet) {
+      return compileMatchPrefixSet((MatchPrefixSet) expr);
+    } else if (expr instanceof MatchCommunitySet) {
+      return compileMatchCommunitySet((MatchCommunitySet) expr);
+    } else if (expr instanceof MatchAsPath) {
+      return compileMatchAsPath((MatchAsPath) expr);
+    } else if (expr instanceof MatchProtocol) {
+      RoutingProtocol protocol = ((MatchProtocol) expr).getProtocol();
+      return environment ->
+          environment.getOriginalRoute().getProtocol().equals(protocol) ? BOOLEAN_VALUE : 0;
+    }
+    return environment -> encode(expr.evaluate(environment));
+  }
+
+  private static CompiledBooleanExpr compileStaticBooleanExpr(StaticBooleanExpr expr) {
+    switch (expr.getType()) {
+      case CallExprContext:
+        return environment -> environment.getCallExprContext() ? BOOLEAN_VALUE : 0;
+      case CallStatementContext:
+        return environment -> environment.getCallStatementContext() ? BOOLEAN_VALUE : 0;
+      case False:
+        return environment -> 0;
+      case True:
+        return environment -> BOOLEAN_VALUE;
+      default:
+        return environment -> encode(expr.evaluate(environment));
+    }
+  }
+
+  private CompiledBooleanExpr compileConjunction(Conjunction expr) {
+    // Conjuncts after a false one are never evaluated
+    CompiledBooleanExpr[] conjuncts = compileAll(expr.getConjuncts(), BooleanExprs.FALSE);
+    int valueIfAllTrue = conjuncts.length < expr.getConjuncts().size() ? 0 : BOOLEAN_VALUE;
+    return environment -> {
+      for (CompiledBooleanExpr conjunct : conjuncts) {
+        int result = conjunct.evaluate(environment);
+        if ((result & EXIT) != 0) {
+          return result;
+        } else if ((result & BOOLEAN_VALUE) == 0) {
+          return result & ~RETURN;
+        }
+      }
+      return valueIfAllTrue;
+    };
+  }
+
+  private CompiledBooleanExpr compileDisjunction(Disjunction expr) {
+    // Disjuncts after a true one are never evaluated
+    CompiledBooleanExpr[] disjuncts = compileAll(expr.getDisjuncts(), BooleanExprs.TRUE);
+    int valueIfAllFalse = disjuncts.length < expr.getDisjuncts().size() ? BOOLEAN_VALUE : 0;
+    return environment -> {
+      for (CompiledBooleanExpr disjunct : disjuncts) {
+        int result = disjunct.evaluate(environment);
+        if ((result & EXIT) != 0) {
+          return result;
+        } else if ((result & BOOLEAN_VALUE) != 0) {
+          return result & ~RETURN;
+        }
+      }
+      return valueIfAllFalse;
+    };
+  }
+
+  private CompiledBooleanExpr compileConjunctionChain(ConjunctionChain expr) {
+    CompiledBooleanExpr[] subroutines = compileAll(expr.getSubroutines(), null);
+    return environment -> {
+      int result = FALL_THROUGH;
+      for (CompiledBooleanExpr subroutine : subroutines) {
+        result = subroutine.evaluate(environment);
+        if ((result & EXIT) != 0) {
+          return result;
+        } else if ((result & (FALL_THROUGH | BOOLEAN_VALUE)) == 0) {
+          return result & ~RETURN;
+        }
+      }
+      return (result & FALL_THROUGH) == 0 ? result : callDefaultPolicy(environment);
+    };
+  }
+
+  private CompiledBooleanExpr compileDisjunctionChain(DisjunctionChain expr) {
+    CompiledBooleanExpr[] subroutines = compileAll(expr.getSubroutines(), null);
+    return environment -> {
+      int result = FALL_THROUGH;
+      for (CompiledBooleanExpr subroutine : subroutines) {
+        result = subroutine.evaluate(environment);
+        if ((result & EXIT) != 0) {
+          return result;
+        } else if ((result & (FALL_THROUGH | BOOLEAN_VALUE)) == BOOLEAN_VALUE) {
+          return result | RETURN;
+        }
+      }
+      return (result & FALL_THROUGH) == 0 ? result : callDefaultPolicy(environment);
+    };
+  }
+
+  private CompiledBooleanExpr compileNot(Not expr) {
+    CompiledBooleanExpr operand = compile(expr.getExpr());
+    return environment -> {
+      int result = operand.evaluate(environment);
+      return (result & EXIT) != 0 ? result : result ^ BOOLEAN_VALUE;
+    };
+  }
+
+  private CompiledBooleanExpr compileMatchPrefixSet(MatchPrefixSet expr) {
+    PrefixExpr prefix = expr.getPrefix();
+    PrefixSetExpr prefixSet = expr.getPrefixSet();
+    if (prefixSet instanceof NamedPrefixSet) {
+      RouteFilterList list =
+          _configuration.getRouteFilterLists().get(((NamedPrefixSet) prefixSet).getName());
+      if (list == null) {
+        return environment -> {
+          prefix.evaluate(environment);
+          environment.setError(true);
+          return 0;
+        };
+      }
+      return environment -> list.permits(prefix.evaluate(environment)) ? BOOLEAN_VALUE : 0;
+    } else if (prefixSet instanceof ExplicitPrefixSet) {
+      PrefixSpace prefixSpace = ((ExplicitPrefixSet) prefixSet).getPrefixSpace();
+      return environment ->
+          prefixSpace.containsPrefix(prefix.evaluate(environment)) ? BOOLEAN_VALUE : 0;
+    }
+    return environment ->
+        prefixSet.matches(prefix.evaluate(environment), environment) ? BOOLEAN_VALUE : 0;
+  }
+
+  private CompiledBooleanExpr compileMatchCommunitySet(MatchCommunitySet expr) {
+    CommunitySetExpr communitySet = expr.getExpr();
+    if (communitySet instanceof NamedCommunitySet) {
+      CommunityList list =
+          _configuration.getCommunityLists().get(((NamedCommunitySet) communitySet).getName());
+      if (list != null) {
+        communitySet = list;
+      }
+    }
+    CommunitySetExpr resolved = communitySet;
+    return environment -> {
+      SortedSet<Long> inputCommunities = null;
+      if (environment.getUseOutputAttributes()
+          && environment.getOutputRoute() instanceof BgpRoute.Builder) {
+        inputCommunities = ((BgpRoute.Builder) environment.getOutputRoute()).getCommunities();
+      } else if (environment.getReadFromIntermediateBgpAttributes()) {
+        inputCommunities = environment.getIntermediateBgpAttributes().getCommunities();
+      } else if (environment.getOriginalRoute() instanceof BgpRoute) {
+        inputCommunities = ((BgpRoute) environment.getOriginalRoute()).getCommunities();
+      }
+      return inputCommunities != null && resolved.matchAnyCommunity(environment, inputCommunities)
+          ? BOOLEAN_VALUE
+          : 0;
+    };
+  }
+
+  private CompiledBooleanExpr compileMatchAsPath(MatchAsPath expr) {
+    AsPathSetExpr asPathSet = expr.getExpr();
+    if (!(asPathSet instanceof NamedAsPathSet)) {
+      return environment -> asPathSet.matches(environment) ? BOOLEAN_VALUE : 0;
+    }
+    AsPathAccessList list =
+        _configuration.getAsPathAccessLists().get(((NamedAsPathSet) asPathSet).getName());
+    if (list == null) {
+      return environment -> {
+        environment.setError(true);
+        return 0;
+      };
+    }
+    return environment -> {
+      AsPath inputAsPath = null;
+      if (environment.getUseOutputAttributes()
+          && environment.getOutputRoute() instanceof BgpRoute.Builder) {
+        inputAsPath = new AsPath(((BgpRoute.Builder) environment.getOutputRoute()).getAsPath());
+      } else if (environment.getReadFromIntermediateBgpAttributes()) {
+        inputAsPath = new AsPath(environment.getIntermediateBgpAttributes().getAsPath());
+      } else if (environment.getOriginalRoute() instanceof BgpRoute) {
+        inputAsPath = ((BgpRoute) environment.getOriginalRoute()).getAsPath();
+      }
+      return inputAsPath != null && list.permits(inputAsPath) ? BOOLEAN_VALUE : 0;
+    };
+  }
+}
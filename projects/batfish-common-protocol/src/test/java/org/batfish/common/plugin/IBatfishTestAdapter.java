@@ -1,5 +1,6 @@
 package org.batfish.common.plugin;
 
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -113,6 +114,11 @@ public class IBatfishTestAdapter implements IBatfish {
     throw new UnsupportedOperationException();
   }
 
+  @Override
+  public Path getDataPlaneCheckpointPath() {
+    throw new UnsupportedOperationException();
+  }
+
   @Override
   public DataPlanePlugin getDataPlanePlugin() {
     throw new UnsupportedOperationException();
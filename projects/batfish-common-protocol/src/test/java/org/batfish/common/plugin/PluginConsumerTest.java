@@ -3,8 +3,12 @@ package org.batfish.common.plugin;
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertThat;
 
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import org.batfish.common.BatfishLogger;
+import org.batfish.common.util.BlockCompressedSerialization;
+import org.batfish.common.util.CompactSerialization;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -47,6 +51,32 @@ public class PluginConsumerTest {
     runSerializationTest(false);
   }
 
+  @Test
+  public void testDeserializingBlockLz4() throws Exception {
+    Path serializeFile = _folder.newFile().toPath();
+    TestPluginConsumer consumer = new TestPluginConsumer(false);
+
+    int[] ints = new int[] {1, 2, 3};
+    BlockCompressedSerialization.serialize(ints, serializeFile);
+
+    int[] value = consumer.deserializeObject(serializeFile, int[].class);
+    assertThat(value, equalTo(ints));
+  }
+
+  @Test
+  public void testDeserializingCompact() throws Exception {
+    Path serializeFile = _folder.newFile().toPath();
+    TestPluginConsumer consumer = new TestPluginConsumer(false);
+
+    int[] ints = new int[] {1, 2, 3};
+    try (OutputStream out = Files.newOutputStream(serializeFile)) {
+      CompactSerialization.serialize(ints, out);
+    }
+
+    int[] value = consumer.deserializeObject(serializeFile, int[].class);
+    assertThat(value, equalTo(ints));
+  }
+
   @Test
   public void testSerializingAndDeserializingText() throws Exception {
     runSerializationTest(true);
@@ -0,0 +1,123 @@
+package org.batfish.common.util;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.batfish.datamodel.Prefix;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+public class BlockCompressedSerializationTest {
+  @Rule public TemporaryFolder _folder = new TemporaryFolder();
+
+  @Rule public ExpectedException _thrown = ExpectedException.none();
+
+  private ExecutorService _executor;
+
+  @Before
+  public void setup() {
+    _executor = Executors.newFixedThreadPool(3);
+  }
+
+  @After
+  public void shutdownExecutor() {
+    _executor.shutdownNow();
+  }
+
+  private Path write(Serializable object, int blockSize) throws Exception {
+    Path file = _folder.newFile().toPath();
+    try (OutputStream out = Files.newOutputStream(file)) {
+      BlockCompressedSerialization.serialize(object, out, blockSize, _executor);
+    }
+    return file;
+  }
+
+  private Object read(Path file, boolean intern) throws Exception {
+    return BlockCompressedSerialization.deserialize(
+        file,
+        Serializable.class,
+        Thread.currentThread().getContextClassLoader(),
+        intern,
+        _executor);
+  }
+
+  @Test
+  public void testRoundTripManyBlocks() throws Exception {
+    SortedMap<String, Object> map = new TreeMap<>();
+    for (int i = 0; i < 10000; i++) {
+      map.put("key" + i, ImmutableList.of(i, "value" + i, Prefix.parse("10.0.0.0/" + (i % 33))));
+    }
+
+    // Small blocks, so the object spans far more blocks than can be in flight at once.
+    Path file = write((Serializable) map, 1024);
+
+    assertThat(read(file, false), equalTo(map));
+  }
+
+  @Test
+  public void testRoundTripDefaultBlockSize() throws Exception {
+    Path file = _folder.newFile().toPath();
+    int[] ints = new int[] {1, 2, 3};
+
+    BlockCompressedSerialization.serialize(ints, file);
+
+    assertThat(
+        BlockCompressedSerialization.deserialize(
+            file, int[].class, Thread.currentThread().getContextClassLoader(), false),
+        equalTo(ints));
+  }
+
+  @Test
+  public void testRoundTripBlockBoundary() throws Exception {
+    // The serialized object exactly fills a block, so there is no partial block at the end.
+    ByteArrayOutputStream java = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(java)) {
+      oos.writeObject("abc");
+    }
+    Path file = write("abc", java.size());
+
+    assertThat(read(file, false), equalTo("abc"));
+  }
+
+  @Test
+  public void testIntern() throws Exception {
+    List<String> list = new ArrayList<>(ImmutableList.of(new String("Ethernet1")));
+    Path first = write((Serializable) list, 16);
+    Path second = write((Serializable) list, 16);
+
+    List<?> firstResult = (List<?>) read(first, true);
+    List<?> secondResult = (List<?>) read(second, true);
+
+    assertThat(firstResult.get(0), sameInstance(secondResult.get(0)));
+  }
+
+  @Test
+  public void testRejectsOtherFormat() throws Exception {
+    Path file = _folder.newFile().toPath();
+    try (OutputStream out = Files.newOutputStream(file)) {
+      CompactSerialization.serialize("abc", out);
+    }
+
+    _thrown.expect(StreamCorruptedException.class);
+    read(file, false);
+  }
+}
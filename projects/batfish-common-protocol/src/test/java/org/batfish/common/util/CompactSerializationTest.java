@@ -0,0 +1,287 @@
+package org.batfish.common.util;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Ordering;
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Bytes;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import org.batfish.datamodel.InterfaceAddress;
+import org.batfish.datamodel.Ip;
+import org.batfish.datamodel.Prefix;
+import org.batfish.datamodel.PrefixRange;
+import org.batfish.datamodel.PrefixSpace;
+import org.batfish.datamodel.SubRange;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class CompactSerializationTest {
+  @Rule public ExpectedException _thrown = ExpectedException.none();
+
+  private enum Color {
+    RED,
+    GREEN
+  }
+
+  private static final class Port implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int _mtu;
+
+    private final String _name;
+
+    private Port(String name, int mtu) {
+      _name = name;
+      _mtu = mtu;
+    }
+  }
+
+  private static final class Node implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final List<Object> _children = new ArrayList<>();
+  }
+
+  private static final class Point implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int _x;
+
+    private Point(int x) {
+      _x = x;
+    }
+  }
+
+  /**
+   * Serializes a {@link Point}, then flips a bit of the descriptor of its class at the given offset
+   * after the class name, as if it had been written by a different version of the class.
+   */
+  private static byte[] serializeWithCorruptDescriptor(int offsetAfterName) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    CompactSerialization.serialize(new Point(1), out);
+    byte[] bytes = out.toByteArray();
+    int headerLength = CompactSerialization.MAGIC_BYTES.length + 1;
+    byte[] stream;
+    try (InputStream in =
+        new LZ4FrameInputStream(
+            new ByteArrayInputStream(bytes, headerLength, bytes.length - headerLength))) {
+      stream = ByteStreams.toByteArray(in);
+    }
+    byte[] name = Point.class.getName().getBytes(StandardCharsets.UTF_8);
+    stream[Bytes.indexOf(stream, name) + name.length + offsetAfterName] ^= 1;
+    ByteArrayOutputStream corrupted = new ByteArrayOutputStream();
+    corrupted.write(bytes, 0, headerLength);
+    try (OutputStream lz4 = new LZ4FrameOutputStream(corrupted)) {
+      lz4.write(stream);
+    }
+    return corrupted.toByteArray();
+  }
+
+  private static Iterable<?> toIterable(Object collection) {
+    return collection instanceof Map
+        ? ((Map<?, ?>) collection).entrySet()
+        : (Iterable<?>) collection;
+  }
+
+  private static Object roundTrip(Serializable object) throws IOException, ClassNotFoundException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    CompactSerialization.serialize(object, out);
+    return CompactSerialization.deserialize(
+        new ByteArrayInputStream(out.toByteArray()),
+        Serializable.class,
+        Thread.currentThread().getContextClassLoader());
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    SortedMap<String, Object> map = new TreeMap<>();
+    map.put("ints", new int[] {1, 2, 3});
+    map.put("list", new ArrayList<>(ImmutableList.of("a", "b")));
+    Map<Color, String> colors = new EnumMap<>(Color.class);
+    colors.put(Color.GREEN, "green");
+    map.put("enumMap", colors);
+
+    Map<?, ?> result = (Map<?, ?>) roundTrip((Serializable) map);
+
+    assertThat(result.keySet(), equalTo(map.keySet()));
+    assertThat((int[]) result.get("ints"), equalTo(new int[] {1, 2, 3}));
+    assertThat(result.get("list"), equalTo(map.get("list")));
+    assertThat(result.get("enumMap"), equalTo(colors));
+  }
+
+  @Test
+  public void testEqualStringsShared() throws Exception {
+    // Distinct but equal instances
+    String first = new String("GigabitEthernet0/0");
+    String second = new String("GigabitEthernet0/0");
+    List<String> list = new ArrayList<>(ImmutableList.of(first, second));
+
+    List<?> result = (List<?>) roundTrip((Serializable) list);
+
+    assertThat(result, equalTo(list));
+    assertThat(result.get(0), sameInstance(result.get(1)));
+  }
+
+  @Test
+  public void testSmallerThanLz4JavaSerialization() throws Exception {
+    SortedMap<String, Port> map = new TreeMap<>();
+    for (int i = 0; i < 100; i++) {
+      map.put("key" + i, new Port(new String("Ethernet" + i % 4), i));
+    }
+    ByteArrayOutputStream compact = new ByteArrayOutputStream();
+    CompactSerialization.serialize((Serializable) map, compact);
+    // The LZ4 storage format: Java serialization inside an LZ4 frame
+    ByteArrayOutputStream lz4 = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(new LZ4FrameOutputStream(lz4))) {
+      oos.writeObject(map);
+    }
+    assertThat(compact.size(), lessThan(lz4.size()));
+  }
+
+  @Test
+  public void testSharedAndCircularReferences() throws Exception {
+    Node node = new Node();
+    node._children.add(node);
+    Port shared = new Port("Ethernet1", 1);
+    node._children.add(new ArrayList<>(ImmutableList.of(shared, shared)));
+
+    Node result = (Node) roundTrip(node);
+
+    assertThat(result._children.get(0), sameInstance(result));
+    List<?> interfaces = (List<?>) result._children.get(1);
+    assertThat(interfaces.get(0), sameInstance(interfaces.get(1)));
+    assertThat(((Port) interfaces.get(0))._mtu, equalTo(1));
+  }
+
+  @Test
+  public void testCollectionsRoundTrip() throws Exception {
+    List<Object> collections =
+        ImmutableList.of(
+            ImmutableSortedMap.orderedBy(Ordering.natural().reverse())
+                .put("a", 1)
+                .put("b", 2)
+                .build(),
+            ImmutableSortedSet.of(3L, 1L, 2L),
+            ImmutableSet.of("z", "a"),
+            ImmutableMap.of("z", 1.5, "a", 2.5),
+            ImmutableList.of(),
+            new TreeSet<>(Comparator.reverseOrder()),
+            Collections.emptySortedSet(),
+            new LinkedHashSet<>(ImmutableList.of("z", "a")),
+            new HashMap<>(ImmutableMap.of(Color.RED, true)));
+
+    List<?> result = (List<?>) roundTrip((Serializable) collections);
+
+    assertThat(result, equalTo(collections));
+    for (int i = 0; i < result.size(); i++) {
+      // Same iteration order, and same comparator for sorted collections
+      assertThat(
+          ImmutableList.copyOf(toIterable(result.get(i))),
+          equalTo(ImmutableList.copyOf(toIterable(collections.get(i)))));
+    }
+    assertThat(
+        ((ImmutableSortedMap<?, ?>) result.get(0)).comparator(),
+        equalTo(Ordering.natural().reverse()));
+  }
+
+  @Test
+  public void testValuesRoundTrip() throws Exception {
+    PrefixSpace space = new PrefixSpace(PrefixRange.fromPrefix(Prefix.parse("10.0.0.0/8")));
+    List<Object> values =
+        ImmutableList.of(
+            new Ip("1.2.3.4"),
+            Prefix.parse("1.2.3.0/24"),
+            new InterfaceAddress("1.2.3.4/24"),
+            new SubRange(1, 32),
+            new PrefixRange(Prefix.parse("1.2.0.0/16"), new SubRange(16, 24)),
+            space,
+            'c',
+            (short) -3,
+            (byte) 7,
+            1.5f,
+            Long.MIN_VALUE,
+            Integer.MIN_VALUE,
+            "é中");
+
+    List<?> result = (List<?>) roundTrip((Serializable) values);
+
+    assertThat(result, equalTo(values));
+    assertThat(
+        ((PrefixSpace) result.get(5)).containsPrefix(Prefix.parse("10.0.0.0/8")), equalTo(true));
+  }
+
+  @Test
+  public void testPointRoundTrip() throws Exception {
+    assertThat(((Point) roundTrip(new Point(3)))._x, equalTo(3));
+  }
+
+  @Test
+  public void testSerialVersionUidMismatch() throws Exception {
+    byte[] bytes = serializeWithCorruptDescriptor(Long.BYTES - 1);
+
+    _thrown.expect(InvalidClassException.class);
+    _thrown.expectMessage("serialVersionUID");
+    CompactSerialization.deserialize(
+        new ByteArrayInputStream(bytes),
+        Point.class,
+        Thread.currentThread().getContextClassLoader());
+  }
+
+  @Test
+  public void testFieldsMismatch() throws Exception {
+    byte[] bytes = serializeWithCorruptDescriptor(2 * Long.BYTES - 1);
+
+    _thrown.expect(InvalidClassException.class);
+    _thrown.expectMessage("fields");
+    CompactSerialization.deserialize(
+        new ByteArrayInputStream(bytes),
+        Point.class,
+        Thread.currentThread().getContextClassLoader());
+  }
+
+  @Test
+  public void testBadVersion() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    CompactSerialization.serialize("foo", out);
+    byte[] bytes = out.toByteArray();
+    int versionOffset = CompactSerialization.MAGIC_BYTES.length;
+    bytes[versionOffset] = (byte) (CompactSerialization.FORMAT_VERSION + 1);
+
+    _thrown.expect(StreamCorruptedException.class);
+    CompactSerialization.deserialize(
+        new ByteArrayInputStream(bytes),
+        String.class,
+        Thread.currentThread().getContextClassLoader());
+  }
+}
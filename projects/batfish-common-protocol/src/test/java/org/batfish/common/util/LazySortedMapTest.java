@@ -0,0 +1,130 @@
+package org.batfish.common.util;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LazySortedMapTest {
+
+  private Set<String> _loaded;
+
+  private LazySortedMap<String, String> _map;
+
+  @Before
+  public void setup() {
+    _loaded = ConcurrentHashMap.newKeySet();
+    SortedMap<String, Supplier<String>> suppliers = new TreeMap<>();
+    for (String key : ImmutableList.of("a", "b", "c")) {
+      suppliers.put(
+          key,
+          () -> {
+            _loaded.add(key);
+            return key.toUpperCase();
+          });
+    }
+    _map = new LazySortedMap<>(suppliers);
+  }
+
+  @Test
+  public void testKeyOperationsDoNotLoad() {
+    assertThat(_map.keySet(), contains("a", "b", "c"));
+    assertThat(_map.size(), equalTo(3));
+    assertThat(_map.containsKey("b"), equalTo(true));
+    assertThat(_map.firstKey(), equalTo("a"));
+    assertThat(_map.lastKey(), equalTo("c"));
+    assertThat(_loaded, equalTo(ImmutableSet.of()));
+  }
+
+  @Test
+  public void testGetLoadsOnlyRequestedValue() {
+    assertThat(_map.get("b"), equalTo("B"));
+    assertThat(_map.get("d"), nullValue());
+    assertThat(_loaded, equalTo(ImmutableSet.of("b")));
+  }
+
+  @Test
+  public void testValuesLoadedOnce() {
+    Map<String, Integer> counts = new ConcurrentHashMap<>();
+    SortedMap<String, Supplier<String>> suppliers = new TreeMap<>();
+    suppliers.put(
+        "a",
+        () -> {
+          counts.merge("a", 1, Integer::sum);
+          return "A";
+        });
+    LazySortedMap<String, String> map = new LazySortedMap<>(suppliers);
+    map.get("a");
+    map.get("a");
+    map.values().forEach(v -> {});
+    assertThat(counts.get("a"), equalTo(1));
+  }
+
+  @Test
+  public void testIterationLoadsEverything() {
+    assertThat(_map.values(), contains("A", "B", "C"));
+    assertThat(_loaded, equalTo(ImmutableSet.of("a", "b", "c")));
+  }
+
+  @Test
+  public void testPrefetch() {
+    _map.prefetch(ImmutableSet.of("a", "c", "d"));
+    assertThat(_loaded, equalTo(ImmutableSet.of("a", "c")));
+  }
+
+  @Test
+  public void testSubMapIsLazy() {
+    SortedMap<String, String> tail = _map.tailMap("b");
+    assertThat(tail.keySet(), contains("b", "c"));
+    assertThat(tail.get("c"), equalTo("C"));
+    assertThat(_loaded, equalTo(ImmutableSet.of("c")));
+  }
+
+  @Test
+  public void testPutAndRemove() {
+    assertThat(_map.put("d", "D"), nullValue());
+    assertThat(_map.get("d"), equalTo("D"));
+    assertThat(_map.get("a"), equalTo("A"));
+    assertThat(_map.remove("a"), equalTo("A"));
+    assertThat(_map.keySet(), contains("b", "c", "d"));
+  }
+
+  @Test
+  public void testPutAndRemoveDoNotLoad() {
+    assertThat(_map.put("a", "X"), nullValue());
+    assertThat(_map.remove("b"), nullValue());
+    assertThat(_map.get("a"), equalTo("X"));
+    assertThat(_map.keySet(), contains("a", "c"));
+    assertThat(_loaded, equalTo(ImmutableSet.of()));
+  }
+
+  @Test
+  public void testLoadListenersAndGetIfLoaded() {
+    Map<String, String> reported = new ConcurrentHashMap<>();
+    _map.addLoadListener(reported::put);
+    _map.put("c", "X");
+
+    assertThat(_map.getIfLoaded("a"), nullValue());
+    assertThat(_map.getIfLoaded("c"), equalTo("X"));
+    assertThat(_loaded, equalTo(ImmutableSet.of()));
+
+    // Loads through views are reported too, once
+    _map.headMap("b").get("a");
+    _map.get("a");
+    _map.get("c");
+    assertThat(_map.getIfLoaded("a"), equalTo("A"));
+    assertThat(reported, equalTo(ImmutableMap.of("a", "A")));
+  }
+}
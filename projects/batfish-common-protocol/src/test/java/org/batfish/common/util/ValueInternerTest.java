@@ -0,0 +1,89 @@
+package org.batfish.common.util;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.List;
+import org.batfish.common.Pair;
+import org.batfish.datamodel.Ip;
+import org.batfish.datamodel.IpWildcard;
+import org.batfish.datamodel.Prefix;
+import org.junit.Test;
+
+public class ValueInternerTest {
+
+  private static byte[] javaSerialize(Serializable object) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+      oos.writeObject(object);
+    }
+    return out.toByteArray();
+  }
+
+  private static List<?> readCompact(byte[] data, boolean intern)
+      throws IOException, ClassNotFoundException {
+    return (List<?>)
+        CompactSerialization.deserialize(
+            new ByteArrayInputStream(data),
+            Serializable.class,
+            Thread.currentThread().getContextClassLoader(),
+            intern);
+  }
+
+  private static Object readInterned(byte[] data) throws IOException, ClassNotFoundException {
+    try (InterningObjectInputStream ois =
+        new InterningObjectInputStream(
+            new ByteArrayInputStream(data), Thread.currentThread().getContextClassLoader())) {
+      return ois.readObject();
+    }
+  }
+
+  @Test
+  public void testCompactStreamsShareValues() throws Exception {
+    Serializable object = ImmutableList.of(Prefix.parse("10.0.0.0/8"), new String("ethernet0"));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    CompactSerialization.serialize(object, out);
+    byte[] data = out.toByteArray();
+
+    List<?> first = readCompact(data, true);
+    List<?> second = readCompact(data, true);
+    List<?> notInterned = readCompact(data, false);
+
+    assertThat(first.get(0), sameInstance(second.get(0)));
+    assertThat(first.get(1), sameInstance(second.get(1)));
+    assertThat(notInterned.get(0), not(sameInstance(first.get(0))));
+  }
+
+  @Test
+  public void testInternPerClass() {
+    // An IpWildcard is equal to a Pair with the same IPs, but must not be replaced by one.
+    Ip ip = new Ip("1.1.1.1");
+    Pair<Ip, Ip> pair = new Pair<>(ip, Ip.ZERO);
+    IpWildcard wildcard = new IpWildcard(ip, Ip.ZERO);
+
+    assertThat(ValueInterner.intern(pair), sameInstance(pair));
+    assertThat(ValueInterner.intern(wildcard), equalTo(wildcard));
+    assertThat(ValueInterner.intern(wildcard).getClass(), equalTo(IpWildcard.class));
+    assertThat(ValueInterner.intern(new Ip("1.1.1.1")), sameInstance(ValueInterner.intern(ip)));
+  }
+
+  @Test
+  public void testJavaStreamsShareValues() throws Exception {
+    byte[] data = javaSerialize(ImmutableList.of(new Ip("1.2.3.4"), new String("vrf1")));
+
+    List<?> first = (List<?>) readInterned(data);
+    List<?> second = (List<?>) readInterned(data);
+
+    assertThat(first.get(0), equalTo(new Ip("1.2.3.4")));
+    assertThat(first.get(0), sameInstance(second.get(0)));
+    assertThat(first.get(1), sameInstance(second.get(1)));
+  }
+}
@@ -0,0 +1,82 @@
+package org.batfish.datamodel;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+import java.util.regex.PatternSyntaxException;
+import org.batfish.common.util.CommonUtil;
+import org.junit.Test;
+
+/** Tests of {@link BgpRegexMatcher} */
+public class BgpRegexMatcherTest {
+
+  private static final AsPath AS_PATH =
+      new AsPath(ImmutableList.of(ImmutableSortedSet.of(65001L), ImmutableSortedSet.of(65002L)));
+
+  private static final AsPath EMPTY = new AsPath(ImmutableList.of());
+
+  private static AsPathAccessListLine line(LineAction action, String regex) {
+    AsPathAccessListLine line = new AsPathAccessListLine();
+    line.setAction(action);
+    line.setRegex(regex);
+    return line;
+  }
+
+  @Test
+  public void testMatchesAsPath() {
+    assertThat(BgpRegexMatcher.matchesAsPath("^65001 ", AS_PATH), equalTo(true));
+    assertThat(BgpRegexMatcher.matchesAsPath("65002$", AS_PATH), equalTo(true));
+    assertThat(BgpRegexMatcher.matchesAsPath("^65002", AS_PATH), equalTo(false));
+    assertThat(BgpRegexMatcher.matchesAsPath("^$", EMPTY), equalTo(true));
+  }
+
+  @Test
+  public void testMatchesCommunity() {
+    long community = CommonUtil.communityStringToLong("65001:100");
+
+    assertThat(BgpRegexMatcher.matchesCommunity("^65001:", community), equalTo(true));
+    assertThat(BgpRegexMatcher.matchesCommunity(":200$", community), equalTo(false));
+  }
+
+  @Test
+  public void testPatternsShared() {
+    assertThat(
+        BgpRegexMatcher.getPattern("^(1|2)_shared$"),
+        sameInstance(BgpRegexMatcher.getPattern("^(1|2)_shared$")));
+  }
+
+  @Test
+  public void testResultsCached() {
+    AsPath asPath = new AsPath(ImmutableList.of(ImmutableSortedSet.of(65100L)));
+    CacheStats before = BgpRegexMatcher.getAsPathStats();
+
+    BgpRegexMatcher.matchesAsPath("^65100$", asPath);
+    BgpRegexMatcher.matchesAsPath("^65100$", asPath);
+
+    CacheStats delta = BgpRegexMatcher.getAsPathStats().minus(before);
+    assertThat(delta.requestCount(), equalTo(2L));
+    assertThat(delta.hitCount(), equalTo(1L));
+  }
+
+  @Test(expected = PatternSyntaxException.class)
+  public void testInvalidRegex() {
+    BgpRegexMatcher.matchesAsPath("(", AS_PATH);
+  }
+
+  @Test
+  public void testAsPathAccessList() {
+    AsPathAccessList list =
+        new AsPathAccessList(
+            "list",
+            ImmutableList.of(line(LineAction.DENY, "^65001 65002$"), line(LineAction.PERMIT, "")));
+
+    assertThat(list.permits(AS_PATH), equalTo(false));
+    assertThat(list.permits(EMPTY), equalTo(true));
+    // Answered from the list's own cache
+    assertThat(list.permits(AS_PATH), equalTo(false));
+  }
+}
@@ -0,0 +1,61 @@
+package org.batfish.datamodel;
+
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+import java.util.TreeSet;
+import org.junit.Test;
+
+public class BgpRouteTest {
+
+  private static BgpRoute.Builder builder() {
+    return new BgpRoute.Builder()
+        .setNetwork(Prefix.parse("1.1.1.0/24"))
+        .setOriginatorIp(new Ip("2.2.2.2"))
+        .setOriginType(OriginType.IGP)
+        .setProtocol(RoutingProtocol.BGP)
+        .setReceivedFromIp(new Ip("3.3.3.3"));
+  }
+
+  @Test
+  public void testAttributesInterned() {
+    BgpRoute r1 =
+        builder()
+            .setAsPath(ImmutableList.of(ImmutableSortedSet.of(1L), ImmutableSortedSet.of(2L)))
+            .setCommunities(new TreeSet<>(ImmutableSortedSet.of(5L, 6L)))
+            .setClusterList(new TreeSet<>(ImmutableSortedSet.of(7L)))
+            .build();
+    BgpRoute r2 =
+        builder()
+            .setAsPath(ImmutableList.of(ImmutableSortedSet.of(1L), ImmutableSortedSet.of(2L)))
+            .setCommunities(new TreeSet<>(ImmutableSortedSet.of(5L, 6L)))
+            .setClusterList(new TreeSet<>(ImmutableSortedSet.of(7L)))
+            .setNextHopIp(new Ip("4.4.4.4"))
+            .build();
+
+    assertThat(r1, not(equalTo(r2)));
+    assertThat(r1.getAsPath(), sameInstance(r2.getAsPath()));
+    assertThat(r1.getCommunities(), sameInstance(r2.getCommunities()));
+    assertThat(r1.getClusterList(), sameInstance(r2.getClusterList()));
+  }
+
+  @Test
+  public void testEquals() {
+    BgpRoute r1 = builder().setCommunities(ImmutableSortedSet.of(5L)).build();
+    BgpRoute r1copy = builder().setCommunities(ImmutableSortedSet.of(5L)).build();
+    // Different communities from r1
+    BgpRoute r2 = builder().setCommunities(ImmutableSortedSet.of(6L)).build();
+    // Different local preference from r1
+    BgpRoute r3 =
+        builder().setCommunities(ImmutableSortedSet.of(5L)).setLocalPreference(200).build();
+
+    assertThat(r1, equalTo(r1copy));
+    assertThat(r1.hashCode(), equalTo(r1copy.hashCode()));
+    assertThat(r1, not(equalTo(r2)));
+    assertThat(r1, not(equalTo(r3)));
+  }
+}
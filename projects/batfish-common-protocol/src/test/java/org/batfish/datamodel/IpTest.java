@@ -7,6 +7,7 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertThat;
 
+import java.util.BitSet;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -36,6 +37,16 @@ public class IpTest {
     }
   }
 
+  @Test
+  @SuppressWarnings("deprecation")
+  public void testGetAddressBits() {
+    BitSet bits = new Ip("128.0.0.1").getAddressBits();
+    assertThat(bits.get(0), is(true));
+    assertThat(bits.get(1), is(false));
+    assertThat(bits.get(31), is(true));
+    assertThat(bits.cardinality(), equalTo(2));
+  }
+
   @Test
   public void testContainsIp() {
     IpSpace ipSpace = new Ip("1.1.1.1").toIpSpace();
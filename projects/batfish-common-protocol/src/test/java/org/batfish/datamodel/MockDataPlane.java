@@ -131,6 +131,11 @@ public class MockDataPlane implements DataPlane {
     return _bgpTopology;
   }
 
+  @Override
+  public DataPlaneDetail getDetail() {
+    return DataPlaneDetail.FULL;
+  }
+
   @Override
   public Map<String, Map<String, Fib>> getFibs() {
     return _fibs;
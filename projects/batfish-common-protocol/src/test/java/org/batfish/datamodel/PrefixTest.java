@@ -18,6 +18,23 @@ public class PrefixTest {
     assertThat(p.getPrefixLength(), equalTo(15));
   }
 
+  @Test
+  public void testPack() {
+    Prefix p = Prefix.parse("255.254.0.0/15");
+    long packed = p.asPackedLong();
+    assertThat(Prefix.packedStartIp(packed), equalTo(p.getStartIp().asLong()));
+    assertThat(Prefix.packedPrefixLength(packed), equalTo(15));
+    assertThat(Prefix.unpack(packed), equalTo(p));
+    assertThat(Prefix.unpack(Prefix.ZERO.asPackedLong()), equalTo(Prefix.ZERO));
+    assertThat(
+        Prefix.parse("1.2.3.4/32").asPackedLong(),
+        not(equalTo(Prefix.parse("1.2.3.4/31").asPackedLong())));
+
+    assertThat(Prefix.packedContainsIp(packed, new Ip("255.255.1.1").asLong()), equalTo(true));
+    assertThat(Prefix.packedContainsIp(packed, new Ip("255.253.1.1").asLong()), equalTo(false));
+    assertThat(p.containsIp(new Ip("255.255.1.1").asLong()), equalTo(true));
+  }
+
   @Test
   public void testContains() {
     PrefixIpSpace p = Prefix.parse("1.2.3.4/31").toIpSpace();
@@ -0,0 +1,55 @@
+package org.batfish.datamodel.collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.batfish.datamodel.Ip;
+import org.junit.Test;
+
+public class IpHashMapTest {
+  @Test
+  public void testComputeIfAbsent() {
+    IpHashMap<String> map = new IpHashMap<>();
+    long ip = new Ip("1.1.1.1").asLong();
+    assertThat(map.computeIfAbsent(ip, k -> "a"), equalTo("a"));
+    assertThat(map.computeIfAbsent(ip, k -> "b"), equalTo("a"));
+    assertThat(map.size(), equalTo(1));
+  }
+
+  @Test
+  public void testGrowth() {
+    IpHashMap<Long> map = new IpHashMap<>(0);
+    Map<Long, Long> expected = new HashMap<>();
+    // Consecutive IPs, as in a subnet, and the extremes of the address space
+    for (long ip = 0; ip < 1000; ip++) {
+      map.put(ip, ip * 2);
+      expected.put(ip, ip * 2);
+    }
+    map.put(Ip.MAX.asLong(), 0L);
+    expected.put(Ip.MAX.asLong(), 0L);
+
+    assertThat(map.size(), equalTo(expected.size()));
+    expected.forEach((ip, value) -> assertThat(map.get(ip), equalTo(value)));
+    Map<Long, Long> actual = new HashMap<>();
+    map.forEach(actual::put);
+    assertThat(actual, equalTo(expected));
+  }
+
+  @Test
+  public void testPutAndGet() {
+    IpHashMap<String> map = new IpHashMap<>();
+    assertThat(map.isEmpty(), is(true));
+    assertThat(map.get(0L), nullValue());
+    assertThat(map.containsKey(0L), is(false));
+
+    assertThat(map.put(0L, "a"), nullValue());
+    assertThat(map.put(0L, "b"), equalTo("a"));
+    assertThat(map.get(0L), equalTo("b"));
+    assertThat(map.containsKey(0L), is(true));
+    assertThat(map.size(), equalTo(1));
+  }
+}
@@ -0,0 +1,48 @@
+package org.batfish.datamodel.collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.batfish.datamodel.Prefix;
+import org.junit.Test;
+
+public class IpHashSetTest {
+  @Test
+  public void testAddAndContains() {
+    IpHashSet set = new IpHashSet();
+    assertThat(set.isEmpty(), is(true));
+    assertThat(set.contains(0L), is(false));
+    assertThat(set.add(0L), is(true));
+    assertThat(set.add(0L), is(false));
+    assertThat(set.contains(0L), is(true));
+    assertThat(set.size(), equalTo(1));
+  }
+
+  @Test
+  public void testGrowth() {
+    IpHashSet set = new IpHashSet(0);
+    Set<Long> expected = new HashSet<>();
+    for (long ip = 0; ip < 1000; ip++) {
+      set.add(ip << 8);
+      expected.add(ip << 8);
+    }
+    assertThat(set.size(), equalTo(expected.size()));
+    expected.forEach(ip -> assertThat(set.contains(ip), is(true)));
+    assertThat(set.contains(1L), is(false));
+
+    Set<Long> actual = new HashSet<>();
+    set.forEach(actual::add);
+    assertThat(actual, equalTo(expected));
+  }
+
+  @Test
+  public void testPackedPrefixes() {
+    IpHashSet set = new IpHashSet();
+    set.add(Prefix.parse("10.0.0.0/8").asPackedLong());
+    assertThat(set.contains(Prefix.parse("10.0.0.0/8").asPackedLong()), is(true));
+    assertThat(set.contains(Prefix.parse("10.0.0.0/16").asPackedLong()), is(false));
+  }
+}
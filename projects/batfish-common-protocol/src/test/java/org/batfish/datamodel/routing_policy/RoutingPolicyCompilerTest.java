@@ -0,0 +1,181 @@
+package org.batfish.datamodel.routing_policy;
+
+import static org.batfish.datamodel.routing_policy.RoutingPolicyCompiler.BOOLEAN_VALUE;
+import static org.batfish.datamodel.routing_policy.RoutingPolicyCompiler.EXIT;
+import static org.batfish.datamodel.routing_policy.RoutingPolicyCompiler.FALL_THROUGH;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import org.batfish.datamodel.AbstractRoute;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.ConfigurationFormat;
+import org.batfish.datamodel.ConnectedRoute;
+import org.batfish.datamodel.LineAction;
+import org.batfish.datamodel.NetworkFactory;
+import org.batfish.datamodel.Prefix;
+import org.batfish.datamodel.RouteFilterLine;
+import org.batfish.datamodel.RouteFilterList;
+import org.batfish.datamodel.RoutingProtocol;
+import org.batfish.datamodel.SubRange;
+import org.batfish.datamodel.routing_policy.expr.BooleanExpr;
+import org.batfish.datamodel.routing_policy.expr.BooleanExprs;
+import org.batfish.datamodel.routing_policy.expr.CallExpr;
+import org.batfish.datamodel.routing_policy.expr.Conjunction;
+import org.batfish.datamodel.routing_policy.expr.DestinationNetwork;
+import org.batfish.datamodel.routing_policy.expr.Disjunction;
+import org.batfish.datamodel.routing_policy.expr.DisjunctionChain;
+import org.batfish.datamodel.routing_policy.expr.MatchPrefixSet;
+import org.batfish.datamodel.routing_policy.expr.MatchProtocol;
+import org.batfish.datamodel.routing_policy.expr.NamedPrefixSet;
+import org.batfish.datamodel.routing_policy.expr.Not;
+import org.batfish.datamodel.routing_policy.statement.If;
+import org.batfish.datamodel.routing_policy.statement.SetDefaultPolicy;
+import org.batfish.datamodel.routing_policy.statement.Statement;
+import org.batfish.datamodel.routing_policy.statement.Statements;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests of {@link RoutingPolicyCompiler} */
+public class RoutingPolicyCompilerTest {
+
+  private static final AbstractRoute MATCHING_ROUTE =
+      new ConnectedRoute(Prefix.parse("10.1.0.0/16"), "i1");
+
+  private static final AbstractRoute OTHER_ROUTE =
+      new ConnectedRoute(Prefix.parse("11.1.0.0/16"), "i1");
+
+  private static final BooleanExpr MATCH_LIST =
+      new MatchPrefixSet(DestinationNetwork.instance(), new NamedPrefixSet("list"));
+
+  private Configuration _c;
+
+  private RoutingPolicy.Builder _rpb;
+
+  @Before
+  public void setup() {
+    NetworkFactory nf = new NetworkFactory();
+    _c = nf.configurationBuilder().setConfigurationFormat(ConfigurationFormat.CISCO_IOS).build();
+    nf.vrfBuilder().setName(Configuration.DEFAULT_VRF_NAME).setOwner(_c).build();
+    RouteFilterList list = new RouteFilterList("list");
+    list.addLine(
+        new RouteFilterLine(LineAction.PERMIT, Prefix.parse("10.0.0.0/8"), new SubRange(8, 32)));
+    _c.getRouteFilterLists().put(list.getName(), list);
+    _rpb = nf.routingPolicyBuilder().setOwner(_c);
+  }
+
+  private Environment environment(AbstractRoute route) {
+    return Environment.builder(_c)
+        .setVrf(Configuration.DEFAULT_VRF_NAME)
+        .setOriginalRoute(route)
+        .build();
+  }
+
+  /** Run the policy compiled and interpreted on the route, and check that they agree */
+  private int evaluate(RoutingPolicy policy, AbstractRoute route) {
+    Environment interpreted = environment(route);
+    int expected = RoutingPolicyCompiler.encode(policy.call(interpreted));
+    Environment compiled = environment(route);
+    int actual = policy.getCompiled().execute(compiled);
+    assertThat(actual, equalTo(expected));
+    assertThat(compiled.getError(), equalTo(interpreted.getError()));
+    return actual;
+  }
+
+  private RoutingPolicy policy(String name, Statement... statements) {
+    return _rpb.setName(name).setStatements(ImmutableList.copyOf(statements)).build();
+  }
+
+  private static If ifThenElse(
+      BooleanExpr guard, Statement trueStatement, Statement falseStatement) {
+    return new If(guard, ImmutableList.of(trueStatement), ImmutableList.of(falseStatement));
+  }
+
+  @Test
+  public void testIf() {
+    RoutingPolicy policy =
+        policy(
+            "policy",
+            ifThenElse(
+                MATCH_LIST,
+                Statements.ExitAccept.toStaticStatement(),
+                Statements.SetLocalDefaultActionReject.toStaticStatement()));
+
+    assertThat(evaluate(policy, MATCHING_ROUTE), equalTo(EXIT | BOOLEAN_VALUE));
+    assertThat(evaluate(policy, OTHER_ROUTE), equalTo(FALL_THROUGH));
+  }
+
+  @Test
+  public void testBooleanOperators() {
+    List<BooleanExpr> guards =
+        ImmutableList.of(
+            new Not(MATCH_LIST),
+            new Conjunction(ImmutableList.of(MATCH_LIST, new MatchProtocol(RoutingProtocol.BGP))),
+            new Conjunction(ImmutableList.of(BooleanExprs.FALSE, new CallExpr("missing"))),
+            new Disjunction(ImmutableList.of(new MatchProtocol(RoutingProtocol.BGP), MATCH_LIST)),
+            new Disjunction(ImmutableList.of(BooleanExprs.TRUE, new CallExpr("missing"))),
+            BooleanExprs.CALL_EXPR_CONTEXT);
+    for (BooleanExpr guard : guards) {
+      RoutingPolicy policy =
+          policy(
+              "policy",
+              ifThenElse(
+                  guard,
+                  Statements.ReturnTrue.toStaticStatement(),
+                  Statements.ReturnFalse.toStaticStatement()));
+      evaluate(policy, MATCHING_ROUTE);
+      evaluate(policy, OTHER_ROUTE);
+    }
+  }
+
+  @Test
+  public void testCalls() {
+    policy(
+        "child",
+        ifThenElse(
+            MATCH_LIST,
+            Statements.ReturnTrue.toStaticStatement(),
+            Statements.ReturnLocalDefaultAction.toStaticStatement()));
+    // Falls through, so that the chain calls the default policy
+    policy("empty");
+    policy(
+        "default",
+        Statements.SetLocalDefaultActionAccept.toStaticStatement(),
+        Statements.ReturnFalse.toStaticStatement());
+    RoutingPolicy chain =
+        policy(
+            "chain",
+            new SetDefaultPolicy("default"),
+            ifThenElse(
+                new DisjunctionChain(
+                    ImmutableList.of(new CallExpr("child"), new CallExpr("empty"))),
+                Statements.ExitAccept.toStaticStatement(),
+                Statements.ExitReject.toStaticStatement()));
+
+    assertThat(evaluate(chain, MATCHING_ROUTE), equalTo(EXIT | BOOLEAN_VALUE));
+    assertThat(evaluate(chain, OTHER_ROUTE), equalTo(EXIT));
+  }
+
+  @Test
+  public void testMissingStructures() {
+    RoutingPolicy policy =
+        policy(
+            "policy",
+            ifThenElse(
+                new MatchPrefixSet(DestinationNetwork.instance(), new NamedPrefixSet("missing")),
+                Statements.ExitAccept.toStaticStatement(),
+                new If(new CallExpr("missing"), ImmutableList.of(), ImmutableList.of())));
+
+    evaluate(policy, MATCHING_ROUTE);
+  }
+
+  @Test
+  public void testSetStatementsRecompiles() {
+    RoutingPolicy policy = policy("policy", Statements.ExitReject.toStaticStatement());
+    assertThat(evaluate(policy, MATCHING_ROUTE), equalTo(EXIT));
+
+    policy.setStatements(ImmutableList.of(Statements.ExitAccept.toStaticStatement()));
+    assertThat(evaluate(policy, MATCHING_ROUTE), equalTo(EXIT | BOOLEAN_VALUE));
+  }
+}
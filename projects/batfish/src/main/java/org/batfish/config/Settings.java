@@ -6,12 +6,14 @@ import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.annotation.Nullable;
 import org.batfish.common.BaseSettings;
 import org.batfish.common.BatfishLogger;
 import org.batfish.common.BfConsts;
 import org.batfish.common.CoordConsts;
 import org.batfish.common.Version;
+import org.batfish.common.plugin.PluginConsumer.Format;
 import org.batfish.common.util.CommonUtil;
 import org.batfish.datamodel.Ip;
 import org.batfish.grammar.GrammarSettings;
@@ -27,6 +29,8 @@ public final class Settings extends BaseSettings implements GrammarSettings {
 
     private Path _dataPlaneAnswerPath;
 
+    private Path _dataPlaneCheckpointPath;
+
     private Path _dataPlanePath;
 
     private Path _deltaCompiledConfigurationsDir;
@@ -79,6 +83,10 @@ public final class Settings extends BaseSettings implements GrammarSettings {
       return _dataPlaneAnswerPath;
     }
 
+    public Path getDataPlaneCheckpointPath() {
+      return _dataPlaneCheckpointPath;
+    }
+
     public Path getDataPlanePath() {
       return _dataPlanePath;
     }
@@ -171,6 +179,10 @@ public final class Settings extends BaseSettings implements GrammarSettings {
       _dataPlaneAnswerPath = dataPlaneAnswerPath;
     }
 
+    public void setDataPlaneCheckpointPath(Path dataPlaneCheckpointPath) {
+      _dataPlaneCheckpointPath = dataPlaneCheckpointPath;
+    }
+
     public void setDataPlanePath(Path path) {
       _dataPlanePath = path;
     }
@@ -426,10 +438,16 @@ public final class Settings extends BaseSettings implements GrammarSettings {
 
   private static final String ARG_DEBUG_FLAGS = "debugflags";
 
+  private static final String ARG_DISABLE_CONFIGURATION_CACHE = "noconfigurationcache";
+
   private static final String ARG_DISABLE_Z3_SIMPLIFICATION = "nosimplify";
 
   private static final String ARG_EXIT_ON_FIRST_ERROR = "ee";
 
+  private static final String ARG_FAILURE_SCENARIOS = "failurescenarios";
+
+  private static final String ARG_FAILURE_SCENARIOS_MB = "failurescenariosmb";
+
   private static final String ARG_FLATTEN = "flatten";
 
   private static final String ARG_FLATTEN_DESTINATION = "flattendst";
@@ -452,10 +470,16 @@ public final class Settings extends BaseSettings implements GrammarSettings {
 
   private static final String ARG_IGNORE_UNSUPPORTED = "ignoreunsupported";
 
+  public static final String ARG_INCREMENTAL_FROM_BASE = "incrementalfrombase";
+
   private static final String ARG_JOBS = "jobs";
 
   private static final String ARG_LOG_TEE = "logtee";
 
+  private static final String ARG_MAPPED_DATA_PLANE = "mappeddataplane";
+
+  private static final String ARG_MAX_CONFIGURATION_CACHE_MB = "maxconfigurationcachemb";
+
   private static final String ARG_MAX_PARSER_CONTEXT_LINES = "maxparsercontextlines";
 
   private static final String ARG_MAX_PARSER_CONTEXT_TOKENS = "maxparsercontexttokens";
@@ -482,6 +506,10 @@ public final class Settings extends BaseSettings implements GrammarSettings {
 
   private static final String ARG_SERVICE_BIND_HOST = "servicebindhost";
 
+  private static final String ARG_SNAPSHOT_CACHE_MB = "snapshotcachemb";
+
+  private static final String ARG_STORAGE_FORMAT = "storageformat";
+
   public static final String ARG_SERVICE_HOST = "servicehost";
 
   public static final String ARG_SERVICE_NAME = "servicename";
@@ -690,6 +718,23 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     return _config.getBoolean(ARG_EXIT_ON_FIRST_ERROR);
   }
 
+  /**
+   * The JSON file listing the failure scenarios under which to compute the data plane of the
+   * current environment, or {@code null} if no failure scenarios are to be computed
+   */
+  @Nullable
+  public Path getFailureScenariosPath() {
+    return nullablePath(_config.getString(ARG_FAILURE_SCENARIOS));
+  }
+
+  /**
+   * The budget in megabytes for the estimated heap size of the failure scenarios computed
+   * concurrently, or 0 to use half of the maximum heap size.
+   */
+  public int getFailureScenariosMb() {
+    return _config.getInt(ARG_FAILURE_SCENARIOS_MB);
+  }
+
   public boolean getFlatten() {
     return _config.getBoolean(ARG_FLATTEN);
   }
@@ -767,6 +812,19 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     return _config.getInt(ARG_PARENT_PID);
   }
 
+  /**
+   * Whether computed data planes should be stored in a memory-mapped format from which RIBs and
+   * FIBs are loaded per node on demand, rather than serialized as a whole.
+   */
+  public boolean getMappedDataPlane() {
+    return _config.getBoolean(ARG_MAPPED_DATA_PLANE);
+  }
+
+  /** The size, in megabytes, beyond which the configuration cache of a network is pruned. */
+  public int getMaxConfigurationCacheMb() {
+    return _config.getInt(ARG_MAX_CONFIGURATION_CACHE_MB);
+  }
+
   @Override
   public int getMaxParserContextLines() {
     return _config.getInt(ARG_MAX_PARSER_CONTEXT_LINES);
@@ -849,6 +907,22 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     return _config.getBoolean(BfConsts.COMMAND_PARSE_VENDOR_SPECIFIC);
   }
 
+  /**
+   * The budget in megabytes for the estimated heap size of configurations and data planes cached by
+   * a worker, or 0 to use half of the maximum heap size.
+   */
+  public int getSnapshotCacheMb() {
+    return _config.getInt(ARG_SNAPSHOT_CACHE_MB);
+  }
+
+  /**
+   * The {@link Format} in which serialized configurations are written to storage. If {@link
+   * Format#BLOCK_LZ4}, data planes and other serialized objects are also written in that format.
+   */
+  public Format getStorageFormat() {
+    return Format.valueOf(_config.getString(ARG_STORAGE_FORMAT).toUpperCase());
+  }
+
   public String getServiceBindHost() {
     return _config.getString(ARG_SERVICE_BIND_HOST);
   }
@@ -869,6 +943,14 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     return !_config.getBoolean(ARG_NO_SHUFFLE);
   }
 
+  /**
+   * Whether parse and conversion results may be reused from, and saved to, the cache shared by all
+   * snapshots in the network.
+   */
+  public boolean getUseConfigurationCache() {
+    return !_config.getBoolean(ARG_DISABLE_CONFIGURATION_CACHE);
+  }
+
   public boolean getSimplify() {
     return !_config.getBoolean(ARG_DISABLE_Z3_SIMPLIFICATION);
   }
@@ -1000,9 +1082,12 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     setDefaultProperty(
         BfConsts.ARG_ENABLE_CISCO_NX_PARSER,
         true); // TODO: enable CiscoNxParser by default and remove this flag.
+    setDefaultProperty(ARG_DISABLE_CONFIGURATION_CACHE, false);
     setDefaultProperty(ARG_DISABLE_Z3_SIMPLIFICATION, false);
     setDefaultProperty(BfConsts.ARG_ENVIRONMENT_NAME, BfConsts.RELPATH_DEFAULT_ENVIRONMENT_NAME);
     setDefaultProperty(ARG_EXIT_ON_FIRST_ERROR, false);
+    setDefaultProperty(ARG_FAILURE_SCENARIOS, null);
+    setDefaultProperty(ARG_FAILURE_SCENARIOS_MB, 0);
     setDefaultProperty(ARG_FLATTEN, false);
     setDefaultProperty(ARG_FLATTEN_DESTINATION, null);
     setDefaultProperty(ARG_FLATTEN_ON_THE_FLY, true);
@@ -1020,11 +1105,14 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     setDefaultProperty(ARG_JOBS, Integer.MAX_VALUE);
     setDefaultProperty(ARG_LOG_TEE, false);
     setDefaultProperty(BfConsts.ARG_LOG_LEVEL, "debug");
+    setDefaultProperty(ARG_MAX_CONFIGURATION_CACHE_MB, 1024);
     setDefaultProperty(ARG_MAX_PARSER_CONTEXT_LINES, 10);
     setDefaultProperty(ARG_MAX_PARSER_CONTEXT_TOKENS, 10);
     setDefaultProperty(ARG_MAX_PARSE_TREE_PRINT_LENGTH, 0);
+    setDefaultProperty(ARG_MAPPED_DATA_PLANE, false);
     setDefaultProperty(ARG_MAX_RUNTIME_MS, 0);
     setDefaultProperty(ARG_CHECK_BGP_REACHABILITY, true);
+    setDefaultProperty(ARG_INCREMENTAL_FROM_BASE, false);
     setDefaultProperty(ARG_NO_SHUFFLE, false);
     setDefaultProperty(BfConsts.ARG_OUTPUT_ENV, null);
     setDefaultProperty(BfConsts.ARG_PEDANTIC_SUPPRESS, false);
@@ -1049,6 +1137,8 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     setDefaultProperty(BfConsts.ARG_SSL_TRUSTSTORE_FILE, null);
     setDefaultProperty(BfConsts.ARG_SSL_TRUSTSTORE_PASSWORD, null);
     setDefaultProperty(BfConsts.ARG_STORAGE_BASE, null);
+    setDefaultProperty(ARG_SNAPSHOT_CACHE_MB, 0);
+    setDefaultProperty(ARG_STORAGE_FORMAT, Format.LZ4.toString());
     setDefaultProperty(BfConsts.ARG_SYNTHESIZE_JSON_TOPOLOGY, false);
     setDefaultProperty(BfConsts.ARG_TASK_PLUGIN, null);
     setDefaultProperty(ARG_THROW_ON_LEXER_ERROR, true);
@@ -1141,6 +1231,10 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     addBooleanOption(
         BfConsts.ARG_DISABLE_UNRECOGNIZED, "disable parser recognition of unrecognized stanzas");
 
+    addBooleanOption(
+        ARG_DISABLE_CONFIGURATION_CACHE,
+        "do not reuse parse and conversion results from other snapshots in the network");
+
     addBooleanOption(ARG_DISABLE_Z3_SIMPLIFICATION, "disable z3 simplification");
 
     addBooleanOption(
@@ -1153,6 +1247,17 @@ public final class Settings extends BaseSettings implements GrammarSettings {
         ARG_EXIT_ON_FIRST_ERROR,
         "exit on first parse error (otherwise will exit on last parse error)");
 
+    addOption(
+        ARG_FAILURE_SCENARIOS,
+        "compute the FIB changes of the data plane under each failure scenario listed in this "
+            + "JSON file",
+        ARGNAME_PATH);
+
+    addOption(
+        ARG_FAILURE_SCENARIOS_MB,
+        "MB of failure scenario data planes to compute concurrently (0 for half the heap)",
+        ARGNAME_NUMBER);
+
     addBooleanOption(ARG_FLATTEN, "flatten hierarchical juniper configuration files");
 
     addOption(
@@ -1212,8 +1317,18 @@ public final class Settings extends BaseSettings implements GrammarSettings {
 
     addBooleanOption(ARG_HISTOGRAM, "build histogram of unimplemented features");
 
+    addBooleanOption(
+        ARG_INCREMENTAL_FROM_BASE,
+        "when computing the delta data plane, reuse the converged state of base snapshot nodes "
+            + "that the differences between the snapshots cannot affect");
+
     addBooleanOption(ARG_LOG_TEE, "print output to both logfile and standard out");
 
+    addOption(
+        ARG_MAX_CONFIGURATION_CACHE_MB,
+        "size (in MB) beyond which least recently used configuration cache entries are evicted",
+        ARGNAME_NUMBER);
+
     addOption(
         ARG_MAX_PARSER_CONTEXT_LINES,
         "max number of surrounding lines to print on parser error",
@@ -1230,6 +1345,9 @@ public final class Settings extends BaseSettings implements GrammarSettings {
             + "(<= 0 is treated as no limit)",
         ARGNAME_NUMBER);
 
+    addBooleanOption(
+        ARG_MAPPED_DATA_PLANE, "store data planes in a format loaded per node on demand");
+
     addOption(ARG_MAX_RUNTIME_MS, "maximum time (in ms) to allow a task to run", ARGNAME_NUMBER);
 
     addBooleanOption(ARG_NO_SHUFFLE, "do not shuffle parallel jobs");
@@ -1274,6 +1392,18 @@ public final class Settings extends BaseSettings implements GrammarSettings {
 
     addOption(ARG_SERVICE_PORT, "port for batfish service", ARGNAME_PORT);
 
+    addOption(
+        ARG_SNAPSHOT_CACHE_MB,
+        "MB of configurations and data planes to keep cached (0 for half the heap)",
+        ARGNAME_NUMBER);
+
+    addOption(
+        ARG_STORAGE_FORMAT,
+        "format in which to store serialized configurations and data planes",
+        Stream.of(Format.LZ4, Format.COMPACT, Format.BLOCK_LZ4)
+            .map(Object::toString)
+            .collect(Collectors.joining("|")));
+
     addBooleanOption(
         BfConsts.ARG_SSL_DISABLE, "whether to disable SSL during communication with coordinator");
 
@@ -1388,6 +1518,8 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     getBooleanOptionValue(BfConsts.ARG_ENABLE_CISCO_NX_PARSER);
     getStringOptionValue(BfConsts.ARG_ENVIRONMENT_NAME);
     getBooleanOptionValue(ARG_EXIT_ON_FIRST_ERROR);
+    getPathOptionValue(ARG_FAILURE_SCENARIOS);
+    getIntOptionValue(ARG_FAILURE_SCENARIOS_MB);
     getBooleanOptionValue(ARG_FLATTEN);
     getPathOptionValue(ARG_FLATTEN_DESTINATION);
     getBooleanOptionValue(ARG_FLATTEN_ON_THE_FLY);
@@ -1398,15 +1530,18 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     getBooleanOptionValue(BfConsts.ARG_HALT_ON_CONVERT_ERROR);
     getBooleanOptionValue(BfConsts.ARG_HALT_ON_PARSE_ERROR);
     getBooleanOptionValue(ARG_HISTOGRAM);
+    getBooleanOptionValue(ARG_INCREMENTAL_FROM_BASE);
     getStringListOptionValue(BfConsts.ARG_IGNORE_FILES_WITH_STRINGS);
     getBooleanOptionValue(ARG_IGNORE_UNKNOWN);
     getBooleanOptionValue(ARG_IGNORE_UNSUPPORTED);
     getBooleanOptionValue(BfConsts.COMMAND_INIT_INFO);
     getIntOptionValue(ARG_JOBS);
     getBooleanOptionValue(ARG_LOG_TEE);
+    getIntOptionValue(ARG_MAX_CONFIGURATION_CACHE_MB);
     getIntOptionValue(ARG_MAX_PARSER_CONTEXT_LINES);
     getIntOptionValue(ARG_MAX_PARSER_CONTEXT_TOKENS);
     getIntOptionValue(ARG_MAX_PARSE_TREE_PRINT_LENGTH);
+    getBooleanOptionValue(ARG_MAPPED_DATA_PLANE);
     getIntOptionValue(ARG_MAX_RUNTIME_MS);
     getStringOptionValue(BfConsts.ARG_OUTPUT_ENV);
     getIntOptionValue(ARG_PARENT_PID);
@@ -1428,6 +1563,7 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     getStringOptionValue(ARG_SERVICE_NAME);
     getIntOptionValue(ARG_SERVICE_PORT);
     getBooleanOptionValue(ARG_NO_SHUFFLE);
+    getBooleanOptionValue(ARG_DISABLE_CONFIGURATION_CACHE);
     getBooleanOptionValue(ARG_DISABLE_Z3_SIMPLIFICATION);
     getBooleanOptionValue(BfConsts.ARG_SSL_DISABLE);
     getPathOptionValue(BfConsts.ARG_SSL_KEYSTORE_FILE);
@@ -1436,6 +1572,8 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     getPathOptionValue(BfConsts.ARG_SSL_TRUSTSTORE_FILE);
     getStringOptionValue(BfConsts.ARG_SSL_TRUSTSTORE_PASSWORD);
     getPathOptionValue(BfConsts.ARG_STORAGE_BASE);
+    getIntOptionValue(ARG_SNAPSHOT_CACHE_MB);
+    getStringOptionValue(ARG_STORAGE_FORMAT);
     getBooleanOptionValue(BfConsts.ARG_SYNTHESIZE_JSON_TOPOLOGY);
     getStringOptionValue(BfConsts.ARG_TASK_PLUGIN);
     getStringOptionValue(BfConsts.ARG_TESTRIG);
@@ -1525,6 +1663,10 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     _config.setProperty(ARG_MAX_PARSE_TREE_PRINT_LENGTH, maxParseTreePrintLength);
   }
 
+  public void setMappedDataPlane(boolean mappedDataPlane) {
+    _config.setProperty(ARG_MAPPED_DATA_PLANE, mappedDataPlane);
+  }
+
   public void setMaxRuntimeMs(int runtimeMs) {
     _config.setProperty(ARG_MAX_RUNTIME_MS, runtimeMs);
   }
@@ -1571,6 +1713,10 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     _config.setProperty(BfConsts.ARG_SSL_KEYSTORE_PASSWORD, sslKeystorePassword);
   }
 
+  public void setUseConfigurationCache(boolean useConfigurationCache) {
+    _config.setProperty(ARG_DISABLE_CONFIGURATION_CACHE, !useConfigurationCache);
+  }
+
   public void setSslTrustAllCerts(boolean sslTrustAllCerts) {
     _config.setProperty(BfConsts.ARG_SSL_TRUST_ALL_CERTS, sslTrustAllCerts);
   }
@@ -0,0 +1,74 @@
+package org.batfish.dataplane;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+import javax.annotation.Nullable;
+import org.batfish.datamodel.FlowTraceHop;
+
+/**
+ * An immutable list of the hops of a flow trace, which shares the hops of the path it extends
+ * instead of copying them. The paths of the branches of a multipath route therefore form a tree,
+ * and their traces share the hops before each branch point. A path collects its hops into an array
+ * the first time they are read, so that reading a finished trace takes constant time per hop.
+ */
+final class FlowTraceHopPath extends AbstractList<FlowTraceHop> implements RandomAccess {
+
+  /** The path with no hops */
+  static final FlowTraceHopPath EMPTY = new FlowTraceHopPath(null, null, 0);
+
+  /** The hops of this path in order, collected on first access */
+  @Nullable private volatile FlowTraceHop[] _hops;
+
+  @Nullable private final FlowTraceHop _lastHop;
+
+  @Nullable private final FlowTraceHopPath _previous;
+
+  private final int _size;
+
+  private FlowTraceHopPath(
+      @Nullable FlowTraceHop lastHop, @Nullable FlowTraceHopPath previous, int size) {
+    _lastHop = lastHop;
+    _previous = previous;
+    _size = size;
+  }
+
+  /** Return the path that extends this one by the given hop */
+  FlowTraceHopPath append(FlowTraceHop hop) {
+    return new FlowTraceHopPath(hop, this, _size + 1);
+  }
+
+  /** Return the path that ends with the given hop in place of the last hop of this one */
+  FlowTraceHopPath replaceLastHop(FlowTraceHop hop) {
+    checkState(_previous != null, "The empty path has no last hop");
+    return _previous.append(hop);
+  }
+
+  private FlowTraceHop[] hops() {
+    FlowTraceHop[] hops = _hops;
+    if (hops == null) {
+      // Racing readers collect equal arrays, so either may win
+      hops = new FlowTraceHop[_size];
+      FlowTraceHopPath path = this;
+      for (int i = _size - 1; i >= 0; i--) {
+        hops[i] = path._lastHop;
+        path = path._previous;
+      }
+      _hops = hops;
+    }
+    return hops;
+  }
+
+  @Override
+  public FlowTraceHop get(int index) {
+    checkElementIndex(index, _size);
+    return hops()[index];
+  }
+
+  @Override
+  public int size() {
+    return _size;
+  }
+}
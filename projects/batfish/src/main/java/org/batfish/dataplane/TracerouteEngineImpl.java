@@ -3,6 +3,10 @@ package org.batfish.dataplane;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 import org.batfish.common.plugin.ITracerouteEngine;
 import org.batfish.datamodel.DataPlane;
 import org.batfish.datamodel.Fib;
@@ -24,6 +28,25 @@ public class TracerouteEngineImpl implements ITracerouteEngine {
       Set<Flow> flows,
       Map<String, Map<String, Fib>> fibs,
       boolean ignoreAcls) {
-    return new TracerouteEngineImplContext(dataPlane, flows, fibs, ignoreAcls).processFlows();
+    Map<Flow, Set<FlowTrace>> flowTraces = new ConcurrentHashMap<>();
+    flows.forEach(flow -> flowTraces.put(flow, new TreeSet<>()));
+    processFlows(
+        dataPlane,
+        flows,
+        fibs,
+        ignoreAcls,
+        (flow, trace) -> flowTraces.get(flow).add(trace));
+    return new TreeMap<>(flowTraces);
+  }
+
+  @Override
+  public void processFlows(
+      DataPlane dataPlane,
+      Set<Flow> flows,
+      Map<String, Map<String, Fib>> fibs,
+      boolean ignoreAcls,
+      BiConsumer<Flow, FlowTrace> traceConsumer) {
+    new TracerouteEngineImplContext(dataPlane, flows, fibs, ignoreAcls, traceConsumer)
+        .processFlows();
   }
 }
@@ -7,7 +7,9 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -15,11 +17,11 @@ import java.util.Map.Entry;
 import java.util.NavigableMap;
 import java.util.Optional;
 import java.util.Set;
-import java.util.SortedMap;
 import java.util.SortedSet;
-import java.util.TreeMap;
 import java.util.TreeSet;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.batfish.common.BatfishException;
@@ -50,8 +52,12 @@ class TracerouteEngineImplContext {
     private final Map<String, IpAccessList> _aclDefinitions;
     private final String _currentNodeName;
     private String _filterOutNotes;
-    private final Set<FlowTrace> _flowTraces;
-    private final List<FlowTraceHop> _hopsSoFar;
+    private FlowTraceHopPath _hopsSoFar;
+    /**
+     * The flows traced together, as they entered the network. If there are several, none has been
+     * transformed so far, and the first represents them.
+     */
+    private final List<Flow> _members;
     private final NavigableMap<String, IpSpace> _namedIpSpaces;
     private final Flow _originalFlow;
     private final SortedSet<String> _routesForThisNextHopInterface;
@@ -60,16 +66,16 @@ class TracerouteEngineImplContext {
     private TransmissionContext(
         Map<String, IpAccessList> aclDefinitions,
         String currentNodeName,
-        Set<FlowTrace> flowTraces,
-        List<FlowTraceHop> hopsSoFar,
+        FlowTraceHopPath hopsSoFar,
+        List<Flow> members,
         NavigableMap<String, IpSpace> namedIpSpaces,
         Flow originalFlow,
         SortedSet<String> routesForThisNextHopInterface,
         Flow transformedFlow) {
       _aclDefinitions = aclDefinitions;
       _currentNodeName = currentNodeName;
-      _flowTraces = flowTraces;
       _hopsSoFar = hopsSoFar;
+      _members = members;
       _namedIpSpaces = namedIpSpaces;
       _originalFlow = originalFlow;
       _routesForThisNextHopInterface = routesForThisNextHopInterface;
@@ -81,8 +87,8 @@ class TracerouteEngineImplContext {
           new TransmissionContext(
               _aclDefinitions,
               _currentNodeName,
-              _flowTraces,
-              new ArrayList<>(_hopsSoFar),
+              _hopsSoFar,
+              _members,
               _namedIpSpaces,
               _originalFlow,
               _routesForThisNextHopInterface,
@@ -90,6 +96,42 @@ class TracerouteEngineImplContext {
       transmissionContext._filterOutNotes = _filterOutNotes;
       return transmissionContext;
     }
+
+    /**
+     * Return a branch for the given subset of the members only, or this context if they are all of
+     * its members. The last hop is copied, since filters annotate it per branch.
+     */
+    private TransmissionContext restrict(List<Flow> members) {
+      if (members.size() == _members.size()) {
+        return this;
+      }
+      FlowTraceHopPath hopsSoFar = _hopsSoFar;
+      if (!hopsSoFar.isEmpty()) {
+        FlowTraceHop lastHop = hopsSoFar.get(hopsSoFar.size() - 1);
+        hopsSoFar =
+            hopsSoFar.replaceLastHop(
+                new FlowTraceHop(
+                    lastHop.getEdge(),
+                    lastHop.getRoutes(),
+                    lastHop.getFilterOut(),
+                    lastHop.getFilterIn(),
+                    lastHop.getTransformedFlow()));
+      }
+      // Several members have not been transformed, so the representative is its own transformation
+      Flow representative = members.get(0);
+      TransmissionContext transmissionContext =
+          new TransmissionContext(
+              _aclDefinitions,
+              _currentNodeName,
+              hopsSoFar,
+              members,
+              _namedIpSpaces,
+              representative,
+              _routesForThisNextHopInterface,
+              representative);
+      transmissionContext._filterOutNotes = _filterOutNotes;
+      return transmissionContext;
+    }
   }
 
   private static final String TRACEROUTE_INGRESS_NODE_INTERFACE_NAME =
@@ -167,34 +209,68 @@ class TracerouteEngineImplContext {
         && nextHopInterfaces.keySet().stream().noneMatch(iface.getName()::equals);
   }
 
+  /**
+   * The fields of a flow that decide its path apart from filters and NAT rules: flows that agree on
+   * them share FIB lookups and ARP checks at every hop
+   */
+  private static List<Object> classKey(Flow flow) {
+    return Arrays.asList(
+        flow.getIngressNode(), flow.getIngressInterface(), flow.getIngressVrf(), flow.getDstIp());
+  }
+
+  /**
+   * Split the members of the given context by the given function of their current flows, in order
+   * of first occurrence
+   */
+  private static <K> Map<K, List<Flow>> split(
+      TransmissionContext transmissionContext, Function<Flow, K> key) {
+    if (transmissionContext._members.size() == 1) {
+      return ImmutableMap.of(
+          key.apply(transmissionContext._transformedFlow), transmissionContext._members);
+    }
+    Map<K, List<Flow>> classes = new LinkedHashMap<>();
+    for (Flow member : transmissionContext._members) {
+      classes.computeIfAbsent(key.apply(member), k -> new ArrayList<>()).add(member);
+    }
+    return classes;
+  }
+
   private final Map<String, Configuration> _configurations;
   private final DataPlane _dataPlane;
   private final Map<String, Map<String, Fib>> _fibs;
   private final Set<Flow> _flows;
-  private final Map<Flow, Set<FlowTrace>> _flowTraces;
   private final ForwardingAnalysis _forwardingAnalysis;
   private final boolean _ignoreAcls;
+  private final BiConsumer<Flow, FlowTrace> _traceConsumer;
 
   TracerouteEngineImplContext(
       DataPlane dataPlane,
       Set<Flow> flows,
       Map<String, Map<String, Fib>> fibs,
-      boolean ignoreAcls) {
+      boolean ignoreAcls,
+      BiConsumer<Flow, FlowTrace> traceConsumer) {
     _configurations = dataPlane.getConfigurations();
     _dataPlane = dataPlane;
     _flows = flows;
-    _flowTraces = new ConcurrentHashMap<>();
     _fibs = fibs;
     _ignoreAcls = ignoreAcls;
+    _traceConsumer = traceConsumer;
     _forwardingAnalysis = _dataPlane.getForwardingAnalysis();
   }
 
+  /** Pass the given trace to the consumer for each of the given flows */
+  private void addTrace(List<Flow> members, FlowTrace trace) {
+    for (Flow member : members) {
+      _traceConsumer.accept(member, trace);
+    }
+  }
+
   private void collectFlowTraces(
       String currentNodeName,
       String currentVrfName,
       Set<Edge> visitedEdges,
-      List<FlowTraceHop> hopsSoFar,
-      Set<FlowTrace> flowTraces,
+      FlowTraceHopPath hopsSoFar,
+      List<Flow> members,
       Flow originalFlow,
       Flow transformedFlow) {
     Ip dstIp = transformedFlow.getDstIp();
@@ -211,7 +287,7 @@ class TracerouteEngineImplContext {
         .contains(currentVrfName)) {
       FlowTrace trace =
           new FlowTrace(FlowDisposition.ACCEPTED, hopsSoFar, FlowDisposition.ACCEPTED.toString());
-      flowTraces.add(trace);
+      addTrace(members, trace);
     } else {
       Map<String, IpAccessList> aclDefinitions = currentConfiguration.getIpAccessLists();
       NavigableMap<String, IpSpace> namedIpSpaces = currentConfiguration.getIpSpaces();
@@ -266,7 +342,6 @@ class TracerouteEngineImplContext {
           NodeInterfacePair nextHopInterface =
               new NodeInterfacePair(currentNodeName, nextHopInterfaceName);
           if (nextHopInterfaceName.equals(Interface.NULL_INTERFACE_NAME)) {
-            List<FlowTraceHop> newHops = new ArrayList<>(hopsSoFar);
             Edge newEdge =
                 new Edge(
                     nextHopInterface,
@@ -279,11 +354,12 @@ class TracerouteEngineImplContext {
                     null,
                     null,
                     hopFlow(originalFlow, transformedFlow));
-            newHops.add(newHop);
             FlowTrace nullRouteTrace =
                 new FlowTrace(
-                    FlowDisposition.NULL_ROUTED, newHops, FlowDisposition.NULL_ROUTED.toString());
-            flowTraces.add(nullRouteTrace);
+                    FlowDisposition.NULL_ROUTED,
+                    hopsSoFar.append(newHop),
+                    FlowDisposition.NULL_ROUTED.toString());
+            addTrace(members, nullRouteTrace);
           } else {
             Interface outgoingInterface =
                 _configurations
@@ -291,141 +367,201 @@ class TracerouteEngineImplContext {
                     .getInterfaces()
                     .get(nextHopInterface.getInterface());
 
-            // Apply any relevant source NAT rules.
-            Flow newTransformedFlow =
-                applySourceNat(
-                    transformedFlow,
-                    srcInterface,
-                    aclDefinitions,
-                    namedIpSpaces,
-                    outgoingInterface.getSourceNats());
-
             SortedSet<Edge> edges =
                 _dataPlane.getTopology().getInterfaceEdges().get(nextHopInterface);
-            TransmissionContext transmissionContext =
-                new TransmissionContext(
-                    aclDefinitions,
-                    currentNodeName,
-                    flowTraces,
-                    hopsSoFar,
-                    namedIpSpaces,
-                    originalFlow,
-                    routesForThisNextHopInterface,
-                    newTransformedFlow);
-            if (edges != null) {
-              processCurrentNextHopInterfaceEdges(
+            // Apply any relevant source NAT rules.
+            List<TransmissionContext> transmissionContexts = new ArrayList<>();
+            if (members.size() == 1) {
+              Flow newTransformedFlow =
+                  applySourceNat(
+                      transformedFlow,
+                      srcInterface,
+                      aclDefinitions,
+                      namedIpSpaces,
+                      outgoingInterface.getSourceNats());
+              transmissionContexts.add(
+                  new TransmissionContext(
+                      aclDefinitions,
+                      currentNodeName,
+                      hopsSoFar,
+                      members,
+                      namedIpSpaces,
+                      originalFlow,
+                      routesForThisNextHopInterface,
+                      newTransformedFlow));
+            } else {
+              // Hops record the transformed flow, so transformed members continue alone
+              List<Flow> untransformed = new ArrayList<>();
+              for (Flow member : members) {
+                Flow newTransformedFlow =
+                    applySourceNat(
+                        member,
+                        srcInterface,
+                        aclDefinitions,
+                        namedIpSpaces,
+                        outgoingInterface.getSourceNats());
+                if (newTransformedFlow == member) {
+                  untransformed.add(member);
+                } else {
+                  transmissionContexts.add(
+                      new TransmissionContext(
+                          aclDefinitions,
+                          currentNodeName,
+                          hopsSoFar,
+                          ImmutableList.of(member),
+                          namedIpSpaces,
+                          member,
+                          routesForThisNextHopInterface,
+                          newTransformedFlow));
+                }
+              }
+              if (!untransformed.isEmpty()) {
+                transmissionContexts.add(
+                    new TransmissionContext(
+                        aclDefinitions,
+                        currentNodeName,
+                        hopsSoFar,
+                        untransformed,
+                        namedIpSpaces,
+                        untransformed.get(0),
+                        routesForThisNextHopInterface,
+                        untransformed.get(0)));
+              }
+            }
+            for (TransmissionContext transmissionContext : transmissionContexts) {
+              transmitFromInterface(
                   visitedEdges,
                   srcInterface,
                   dstIp,
                   nextHopInterfaceName,
                   finalNextHopIp,
                   nextHopInterface,
+                  outgoingInterface,
                   edges,
                   transmissionContext);
-            } else {
-              /*
-               * Interface has no edges
-               */
-              /* Check if denied out. If not, make standard neighbor-unreachable trace. */
-              IpAccessList outFilter = outgoingInterface.getOutgoingFilter();
-              boolean denied = false;
-              if (!_ignoreAcls && outFilter != null) {
-                FlowDisposition disposition = FlowDisposition.DENIED_OUT;
-                denied =
-                    flowTraceFilterHelper(
-                        srcInterface,
-                        outFilter,
-                        disposition,
-                        nextHopInterface,
-                        transmissionContext);
-              }
-              if (!denied) {
-                Edge neighborUnreachbleEdge =
-                    new Edge(
-                        nextHopInterface,
-                        new NodeInterfacePair(
-                            Configuration.NODE_NONE_NAME, Interface.NULL_INTERFACE_NAME));
-                FlowTraceHop neighborUnreachableHop =
-                    new FlowTraceHop(
-                        neighborUnreachbleEdge,
-                        routesForThisNextHopInterface,
-                        null,
-                        null,
-                        hopFlow(originalFlow, newTransformedFlow));
-                neighborUnreachableHop.setFilterOut(transmissionContext._filterOutNotes);
-                hopsSoFar.add(neighborUnreachableHop);
-                FlowTrace trace =
-                    new FlowTrace(
-                        FlowDisposition.NEIGHBOR_UNREACHABLE_OR_EXITS_NETWORK,
-                        hopsSoFar,
-                        FlowDisposition.NEIGHBOR_UNREACHABLE_OR_EXITS_NETWORK.toString());
-                flowTraces.add(trace);
-              }
             }
           }
         }
       } else {
         FlowTrace trace =
             new FlowTrace(FlowDisposition.NO_ROUTE, hopsSoFar, FlowDisposition.NO_ROUTE.toString());
-        flowTraces.add(trace);
+        addTrace(members, trace);
       }
     }
   }
 
-  private boolean flowTraceFilterHelper(
+  /** Transmit the flows of the given context out of the given interface, or record their fate */
+  private void transmitFromInterface(
+      Set<Edge> visitedEdges,
+      @Nullable String srcInterface,
+      Ip dstIp,
+      String nextHopInterfaceName,
+      @Nullable Ip finalNextHopIp,
+      NodeInterfacePair nextHopInterface,
+      Interface outgoingInterface,
+      @Nullable SortedSet<Edge> edges,
+      TransmissionContext transmissionContext) {
+    if (edges != null) {
+      processCurrentNextHopInterfaceEdges(
+          visitedEdges,
+          srcInterface,
+          dstIp,
+          nextHopInterfaceName,
+          finalNextHopIp,
+          nextHopInterface,
+          edges,
+          transmissionContext);
+    } else {
+      /*
+       * Interface has no edges
+       */
+      /* Check if denied out. If not, make standard neighbor-unreachable trace. */
+      IpAccessList outFilter = outgoingInterface.getOutgoingFilter();
+      List<TransmissionContext> permitted = ImmutableList.of(transmissionContext);
+      if (!_ignoreAcls && outFilter != null) {
+        FlowDisposition disposition = FlowDisposition.DENIED_OUT;
+        permitted =
+            flowTraceFilterHelper(
+                srcInterface, outFilter, disposition, nextHopInterface, transmissionContext);
+      }
+      for (TransmissionContext permittedContext : permitted) {
+        addTrace(
+            permittedContext._members,
+            neighborUnreachableTrace(nextHopInterface, permittedContext));
+      }
+    }
+  }
+
+  /**
+   * Apply the given filter to the flows of the given context. Record a trace for the flows it
+   * denies, and return a context for the flows it permits, one per line that permits some of them.
+   */
+  private List<TransmissionContext> flowTraceFilterHelper(
       @Nullable String srcInterface,
       IpAccessList filter,
       FlowDisposition disposition,
       @Nullable NodeInterfacePair outInterface,
-      TransmissionContext transmissionContext) {
+      TransmissionContext oldTransmissionContext) {
     boolean out = disposition == FlowDisposition.DENIED_OUT;
-    FilterResult outResult =
-        filter.filter(
-            transmissionContext._transformedFlow,
-            srcInterface,
-            transmissionContext._aclDefinitions,
-            transmissionContext._namedIpSpaces);
-    String outFilterName = filter.getName();
-    Integer matchLine = outResult.getMatchLine();
-    String lineDesc;
-    if (matchLine != null) {
-      lineDesc = filter.getLines().get(matchLine).getName();
-      if (lineDesc == null) {
-        lineDesc = "line:" + matchLine;
-      }
-    } else {
-      lineDesc = "no-match";
-    }
-    boolean denied = outResult.getAction() == LineAction.DENY;
-    if (denied) {
-      String notes = disposition + "{" + outFilterName + "}{" + lineDesc + "}";
-      if (out) {
-        Edge deniedOutEdge =
-            new Edge(
-                outInterface,
-                new NodeInterfacePair(Configuration.NODE_NONE_NAME, Interface.NULL_INTERFACE_NAME));
-        FlowTraceHop deniedOutHop =
-            new FlowTraceHop(
-                deniedOutEdge,
-                transmissionContext._routesForThisNextHopInterface,
-                null,
-                null,
-                hopFlow(transmissionContext._originalFlow, transmissionContext._transformedFlow));
-        transmissionContext._hopsSoFar.add(deniedOutHop);
+    List<TransmissionContext> permitted = new ArrayList<>();
+    Map<FilterResult, List<Flow>> classes =
+        split(
+            oldTransmissionContext,
+            flow ->
+                filter.filter(
+                    flow,
+                    srcInterface,
+                    oldTransmissionContext._aclDefinitions,
+                    oldTransmissionContext._namedIpSpaces));
+    for (Entry<FilterResult, List<Flow>> e : classes.entrySet()) {
+      FilterResult outResult = e.getKey();
+      TransmissionContext transmissionContext = oldTransmissionContext.restrict(e.getValue());
+      String outFilterName = filter.getName();
+      Integer matchLine = outResult.getMatchLine();
+      String lineDesc;
+      if (matchLine != null) {
+        lineDesc = filter.getLines().get(matchLine).getName();
+        if (lineDesc == null) {
+          lineDesc = "line:" + matchLine;
+        }
+      } else {
+        lineDesc = "no-match";
       }
-      FlowTrace trace = new FlowTrace(disposition, transmissionContext._hopsSoFar, notes);
-      transmissionContext._flowTraces.add(trace);
-    } else {
-      String filterNotes = "{" + outFilterName + "}{" + lineDesc + "}";
-      if (out) {
-        transmissionContext._filterOutNotes = filterNotes;
+      boolean denied = outResult.getAction() == LineAction.DENY;
+      if (denied) {
+        String notes = disposition + "{" + outFilterName + "}{" + lineDesc + "}";
+        FlowTraceHopPath hops = transmissionContext._hopsSoFar;
+        if (out) {
+          Edge deniedOutEdge =
+              new Edge(
+                  outInterface,
+                  new NodeInterfacePair(
+                      Configuration.NODE_NONE_NAME, Interface.NULL_INTERFACE_NAME));
+          FlowTraceHop deniedOutHop =
+              new FlowTraceHop(
+                  deniedOutEdge,
+                  transmissionContext._routesForThisNextHopInterface,
+                  null,
+                  null,
+                  hopFlow(
+                      transmissionContext._originalFlow, transmissionContext._transformedFlow));
+          hops = hops.append(deniedOutHop);
+        }
+        FlowTrace trace = new FlowTrace(disposition, hops, notes);
+        addTrace(transmissionContext._members, trace);
       } else {
-        FlowTraceHop hop =
-            transmissionContext._hopsSoFar.get(transmissionContext._hopsSoFar.size() - 1);
-        hop.setFilterIn(filterNotes);
+        String filterNotes = "{" + outFilterName + "}{" + lineDesc + "}";
+        if (out) {
+          transmissionContext._filterOutNotes = filterNotes;
+        } else {
+          FlowTraceHop hop =
+              transmissionContext._hopsSoFar.get(transmissionContext._hopsSoFar.size() - 1);
+          hop.setFilterIn(filterNotes);
+        }
+        permitted.add(transmissionContext);
       }
     }
-    return denied;
+    return permitted;
   }
 
   @Nullable
@@ -451,15 +587,10 @@ class TracerouteEngineImplContext {
             null,
             hopFlow(transmissionContext._originalFlow, transmissionContext._transformedFlow));
     neighborUnreachableHop.setFilterOut(transmissionContext._filterOutNotes);
-    List<FlowTraceHop> newHops =
-        ImmutableList.<FlowTraceHop>builder()
-            .addAll(transmissionContext._hopsSoFar)
-            .add(neighborUnreachableHop)
-            .build();
     FlowTrace trace =
         new FlowTrace(
             FlowDisposition.NEIGHBOR_UNREACHABLE_OR_EXITS_NETWORK,
-            newHops,
+            transmissionContext._hopsSoFar.append(neighborUnreachableHop),
             FlowDisposition.NEIGHBOR_UNREACHABLE_OR_EXITS_NETWORK.toString());
     return trace;
   }
@@ -472,22 +603,25 @@ class TracerouteEngineImplContext {
       @Nullable Ip finalNextHopIp,
       NodeInterfacePair nextHopInterface,
       SortedSet<Edge> edges,
-      TransmissionContext transmissionContext) {
-    if (!processFlowTransmission(
-        srcInterface,
-        dstIp,
-        nextHopInterfaceName,
-        finalNextHopIp,
-        nextHopInterface,
-        transmissionContext)) {
-      return;
-    }
-    for (Edge edge : edges) {
-      if (!edge.getNode1().equals(transmissionContext._currentNodeName)) {
-        continue;
+      TransmissionContext oldTransmissionContext) {
+    for (TransmissionContext transmissionContext :
+        processFlowTransmission(
+            srcInterface,
+            dstIp,
+            nextHopInterfaceName,
+            finalNextHopIp,
+            nextHopInterface,
+            oldTransmissionContext)) {
+      for (Edge edge : edges) {
+        if (!edge.getNode1().equals(transmissionContext._currentNodeName)) {
+          continue;
+        }
+        processFlowReception(
+            edge,
+            transmissionContext,
+            visitedEdges,
+            finalNextHopIp != null ? finalNextHopIp : dstIp);
       }
-      processFlowReception(
-          edge, transmissionContext, visitedEdges, finalNextHopIp != null ? finalNextHopIp : dstIp);
     }
   }
 
@@ -518,58 +652,64 @@ class TracerouteEngineImplContext {
             hopFlow(transmissionContext._originalFlow, transmissionContext._transformedFlow));
     newHop.setFilterOut(transmissionContext._filterOutNotes);
     newVisitedEdges.add(edge);
-    transmissionContext._hopsSoFar.add(newHop);
+    transmissionContext._hopsSoFar = transmissionContext._hopsSoFar.append(newHop);
     if (visitedEdges.contains(edge)) {
       FlowTrace trace =
           new FlowTrace(
               FlowDisposition.LOOP,
               transmissionContext._hopsSoFar,
               FlowDisposition.LOOP.toString());
-      transmissionContext._flowTraces.add(trace);
+      addTrace(transmissionContext._members, trace);
       return;
     }
     String nextNodeName = edge.getNode2();
     // check input filter
     Interface nextInterface = _configurations.get(nextNodeName).getInterfaces().get(edge.getInt2());
     IpAccessList inFilter = nextInterface.getIncomingFilter();
+    List<TransmissionContext> permitted = ImmutableList.of(transmissionContext);
     if (!_ignoreAcls && inFilter != null) {
       FlowDisposition disposition = FlowDisposition.DENIED_IN;
-      boolean denied =
-          flowTraceFilterHelper(null, inFilter, disposition, null, transmissionContext);
-      if (denied) {
-        return;
-      }
+      permitted = flowTraceFilterHelper(null, inFilter, disposition, null, transmissionContext);
     }
     // recurse
-    collectFlowTraces(
-        nextNodeName,
-        nextInterface.getVrfName(),
-        newVisitedEdges,
-        transmissionContext._hopsSoFar,
-        transmissionContext._flowTraces,
-        transmissionContext._originalFlow,
-        transmissionContext._transformedFlow);
+    for (TransmissionContext permittedContext : permitted) {
+      collectFlowTraces(
+          nextNodeName,
+          nextInterface.getVrfName(),
+          newVisitedEdges,
+          permittedContext._hopsSoFar,
+          permittedContext._members,
+          permittedContext._originalFlow,
+          permittedContext._transformedFlow);
+    }
   }
 
-  SortedMap<Flow, Set<FlowTrace>> processFlows() {
+  /**
+   * Trace the flows. Flows that agree on the fields FIB lookups and ARP depend on (see {@link
+   * #classKey}) are traced together, once, and split only where a filter line or NAT rule tells
+   * them apart; each member of a class gets the traces of the class. Traces are passed to the
+   * consumer as they complete.
+   */
+  void processFlows() {
+    for (Flow flow : _flows) {
+      if (flow.getIngressNode() == null) {
+        throw new BatfishException(
+            "Cannot construct flow trace since ingressNode is not specified");
+      }
+      if (flow.getDstIp() == null) {
+        throw new BatfishException("Cannot construct flow trace since dstIp is not specified");
+      }
+    }
     _flows
+        .stream()
+        .collect(Collectors.groupingBy(TracerouteEngineImplContext::classKey))
+        .values()
         .parallelStream()
         .forEach(
-            flow -> {
-              Set<FlowTrace> currentFlowTraces = new TreeSet<>();
-              _flowTraces.put(flow, currentFlowTraces);
+            members -> {
+              Flow flow = members.get(0);
               String ingressNodeName = flow.getIngressNode();
-              if (ingressNodeName == null) {
-                throw new BatfishException(
-                    "Cannot construct flow trace since ingressNode is not specified");
-              }
-              Ip dstIp = flow.getDstIp();
-              if (dstIp == null) {
-                throw new BatfishException(
-                    "Cannot construct flow trace since dstIp is not specified");
-              }
               Set<Edge> visitedEdges = Collections.emptySet();
-              List<FlowTraceHop> hops = new ArrayList<>();
               String ingressInterfaceName = flow.getIngressInterface();
               if (ingressInterfaceName != null) {
                 Edge edge =
@@ -582,8 +722,8 @@ class TracerouteEngineImplContext {
                     new TransmissionContext(
                         _configurations.get(ingressNodeName).getIpAccessLists(),
                         ingressNodeName,
-                        currentFlowTraces,
-                        hops,
+                        FlowTraceHopPath.EMPTY,
+                        members,
                         _configurations.get(ingressNodeName).getIpSpaces(),
                         flow,
                         new TreeSet<>(),
@@ -594,16 +734,19 @@ class TracerouteEngineImplContext {
                     ingressNodeName,
                     firstNonNull(flow.getIngressVrf(), Configuration.DEFAULT_VRF_NAME),
                     visitedEdges,
-                    hops,
-                    currentFlowTraces,
+                    FlowTraceHopPath.EMPTY,
+                    members,
                     flow,
                     flow);
               }
             });
-    return new TreeMap<>(_flowTraces);
   }
 
-  private boolean processFlowTransmission(
+  /**
+   * Check the output filter and ARP for the flows of the given context, recording a trace for those
+   * that cannot be transmitted, and return a context for those that can
+   */
+  private List<TransmissionContext> processFlowTransmission(
       String srcInterface,
       Ip dstIp,
       String nextHopInterfaceName,
@@ -617,18 +760,16 @@ class TracerouteEngineImplContext {
             .getInterfaces()
             .get(nextHopInterfaceName)
             .getOutgoingFilter();
+    List<TransmissionContext> permitted = ImmutableList.of(transmissionContext);
     if (!_ignoreAcls && outFilter != null) {
       FlowDisposition disposition = FlowDisposition.DENIED_OUT;
-      boolean denied =
+      permitted =
           flowTraceFilterHelper(
               srcInterface,
               outFilter,
               disposition,
               new NodeInterfacePair(transmissionContext._currentNodeName, nextHopInterfaceName),
               transmissionContext);
-      if (denied) {
-        return false;
-      }
     }
     Ip arpIp = finalNextHopIp != null ? finalNextHopIp : dstIp;
     Configuration c = _configurations.get(transmissionContext._currentNodeName);
@@ -639,10 +780,12 @@ class TracerouteEngineImplContext {
         .get(c.getInterfaces().get(nextHopInterfaceName).getVrfName())
         .get(nextHopInterfaceName)
         .containsIp(arpIp, c.getIpSpaces())) {
-      FlowTrace trace = neighborUnreachableTrace(nextHopInterface, transmissionContext);
-      transmissionContext._flowTraces.add(trace);
-      return false;
+      for (TransmissionContext permittedContext : permitted) {
+        FlowTrace trace = neighborUnreachableTrace(nextHopInterface, permittedContext);
+        addTrace(permittedContext._members, trace);
+      }
+      return ImmutableList.of();
     }
-    return true;
+    return permitted;
   }
 }
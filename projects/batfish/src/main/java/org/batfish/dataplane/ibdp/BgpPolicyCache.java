@@ -0,0 +1,257 @@
+package org.batfish.dataplane.ibdp;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSortedSet;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.batfish.datamodel.AbstractRoute;
+import org.batfish.datamodel.BgpRoute;
+import org.batfish.datamodel.Ip;
+import org.batfish.datamodel.Prefix;
+import org.batfish.datamodel.routing_policy.Environment;
+import org.batfish.datamodel.routing_policy.Environment.Direction;
+import org.batfish.datamodel.routing_policy.RoutingPolicy;
+
+/**
+ * Caches the results of running BGP routes through the import and export policies of a virtual
+ * router. A route is often exported with the same attributes to many peers that share an export
+ * policy, e.g., the peers of a peer group, and each of those evaluations but the first is a hit.
+ *
+ * <p>A result is keyed by the policy, the direction, the input route and the attributes of the
+ * output route before the policy runs. The peer address and prefix are only part of the key if the
+ * policy read them while computing the result: otherwise the policy takes the same path for any
+ * peer, so the result is shared by all peers.
+ *
+ * <p>The cache holds a bounded number of results, evicting the least recently used ones first. It
+ * is safe to use from multiple threads.
+ */
+final class BgpPolicyCache {
+
+  /** The result of running a route through a policy */
+  private static final class Outcome {
+
+    /** The outcome of a key without a peer, whose result depends on the peer */
+    private static final Outcome PEER_SPECIFIC = new Outcome(null);
+
+    /** The outcome of a rejected route */
+    private static final Outcome REJECTED = new Outcome(null);
+
+    /** The route output by the policy if it accepted the route */
+    @Nullable private final BgpRoute _route;
+
+    private Outcome(@Nullable BgpRoute route) {
+      _route = route;
+    }
+  }
+
+  private static final class Key {
+
+    private final RoutingPolicy _policy;
+
+    private final Direction _direction;
+
+    private final String _vrf;
+
+    private final AbstractRoute _inputRoute;
+
+    private final List<Object> _outputAttributes;
+
+    @Nullable private final Ip _peerAddress;
+
+    @Nullable private final Prefix _peerPrefix;
+
+    private final int _hashCode;
+
+    private Key(
+        RoutingPolicy policy,
+        Direction direction,
+        String vrf,
+        AbstractRoute inputRoute,
+        List<Object> outputAttributes,
+        @Nullable Ip peerAddress,
+        @Nullable Prefix peerPrefix) {
+      _policy = policy;
+      _direction = direction;
+      _vrf = vrf;
+      _inputRoute = inputRoute;
+      _outputAttributes = outputAttributes;
+      _peerAddress = peerAddress;
+      _peerPrefix = peerPrefix;
+      _hashCode =
+          Objects.hash(
+              System.identityHashCode(policy),
+              direction,
+              vrf,
+              inputRoute,
+              outputAttributes,
+              peerAddress,
+              peerPrefix);
+    }
+
+    /** Return the key for the same evaluation for the given peer */
+    private Key forPeer(@Nullable Ip peerAddress, @Nullable Prefix peerPrefix) {
+      return new Key(
+          _policy, _direction, _vrf, _inputRoute, _outputAttributes, peerAddress, peerPrefix);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      } else if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return _hashCode == other._hashCode
+          && _policy == other._policy
+          && _direction == other._direction
+          && _vrf.equals(other._vrf)
+          && Objects.equals(_peerAddress, other._peerAddress)
+          && Objects.equals(_peerPrefix, other._peerPrefix)
+          && sameRoute(_inputRoute, other._inputRoute)
+          && _outputAttributes.equals(other._outputAttributes);
+    }
+
+    @Override
+    public int hashCode() {
+      return _hashCode;
+    }
+  }
+
+  /**
+   * Whether two routes are the same as far as a policy is concerned. Besides route equality, this
+   * compares the attributes of BGP routes that {@link BgpRoute#equals} ignores but that a policy
+   * can read.
+   */
+  private static boolean sameRoute(AbstractRoute route1, AbstractRoute route2) {
+    if (route1 == route2) {
+      return true;
+    }
+    if (route1.getClass() != route2.getClass()
+        || !route1.equals(route2)
+        || route1.getNonRouting() != route2.getNonRouting()) {
+      return false;
+    }
+    if (!(route1 instanceof BgpRoute)) {
+      return true;
+    }
+    BgpRoute bgpRoute1 = (BgpRoute) route1;
+    BgpRoute bgpRoute2 = (BgpRoute) route2;
+    return bgpRoute1.getSrcProtocol() == bgpRoute2.getSrcProtocol()
+        && bgpRoute1.getDiscard() == bgpRoute2.getDiscard()
+        && bgpRoute1.getReceivedFromRouteReflectorClient()
+            == bgpRoute2.getReceivedFromRouteReflectorClient();
+  }
+
+  /**
+   * Snapshot the attributes of a route under construction. The route cannot be built yet, since the
+   * policy may be what sets its mandatory attributes.
+   */
+  private static List<Object> outputAttributes(BgpRoute.Builder route) {
+    return Arrays.asList(
+        route.getNetwork(),
+        route.getNextHopIp(),
+        route.getAdmin(),
+        route.getMetric(),
+        route.getTag(),
+        route.getAsPath().stream().map(ImmutableSortedSet::copyOf).collect(toImmutableList()),
+        ImmutableSortedSet.copyOf(route.getCommunities()),
+        ImmutableSortedSet.copyOf(route.getClusterList()),
+        route.getDiscard(),
+        route.getLocalPreference(),
+        route.getOriginatorIp(),
+        route.getOriginType(),
+        route.getProtocol(),
+        route.getReceivedFromIp(),
+        route.getReceivedFromRouteReflectorClient(),
+        route.getSrcProtocol(),
+        route.getWeight());
+  }
+
+  private final Cache<Key, Outcome> _cache;
+
+  private final AtomicLong _hits;
+
+  private final AtomicLong _lookups;
+
+  /**
+   * Create a cache
+   *
+   * @param maximumSize the maximum number of results to keep
+   */
+  BgpPolicyCache(int maximumSize) {
+    _cache = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    _hits = new AtomicLong();
+    _lookups = new AtomicLong();
+  }
+
+  /**
+   * Run a BGP route through a policy, like {@link RoutingPolicy#process} does, unless the result is
+   * cached
+   *
+   * @param policy the policy, which belongs to the configuration of this cache's router
+   * @param inputRoute the route that is imported or exported
+   * @param outputRoute the route that the policy transforms, which this does not modify if the
+   *     result is cached
+   * @return the output route if the policy accepted it, otherwise {@code null}
+   */
+  @Nullable
+  BgpRoute process(
+      @Nonnull RoutingPolicy policy,
+      @Nonnull AbstractRoute inputRoute,
+      @Nonnull BgpRoute.Builder outputRoute,
+      @Nullable Ip peerAddress,
+      @Nullable Prefix peerPrefix,
+      @Nonnull String vrf,
+      @Nonnull Direction direction) {
+    _lookups.incrementAndGet();
+    Key key =
+        new Key(policy, direction, vrf, inputRoute, outputAttributes(outputRoute), null, null);
+    Outcome outcome = _cache.getIfPresent(key);
+    Key peerKey = null;
+    if (outcome == Outcome.PEER_SPECIFIC) {
+      peerKey = key.forPeer(peerAddress, peerPrefix);
+      outcome = _cache.getIfPresent(peerKey);
+    }
+    if (outcome != null) {
+      _hits.incrementAndGet();
+      return outcome._route;
+    }
+
+    Environment environment =
+        Environment.builder(policy.getOwner())
+            .setVrf(vrf)
+            .setOriginalRoute(inputRoute)
+            .setOutputRoute(outputRoute)
+            .setPeerAddress(peerAddress)
+            .setDirection(direction)
+            .setPeerPrefix(peerPrefix)
+            .build();
+    BgpRoute route = policy.process(environment) ? outputRoute.build() : null;
+    outcome = route == null ? Outcome.REJECTED : new Outcome(route);
+    if (environment.getPeerRead()) {
+      _cache.put(key, Outcome.PEER_SPECIFIC);
+      _cache.put(peerKey != null ? peerKey : key.forPeer(peerAddress, peerPrefix), outcome);
+    } else {
+      _cache.put(key, outcome);
+    }
+    return route;
+  }
+
+  /** Number of calls to {@link #process} whose result was cached */
+  long getHits() {
+    return _hits.get();
+  }
+
+  /** Number of calls to {@link #process} */
+  long getLookups() {
+    return _lookups.get();
+  }
+}
@@ -0,0 +1,197 @@
+package org.batfish.dataplane.ibdp;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.graph.EndpointPair;
+import com.google.common.graph.ValueGraph;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import org.batfish.datamodel.BgpPeerConfigId;
+import org.batfish.datamodel.BgpSessionProperties;
+import org.batfish.datamodel.Edge;
+import org.batfish.datamodel.Interface;
+import org.batfish.datamodel.Topology;
+import org.batfish.dataplane.ibdp.schedule.IbdpSchedule.Schedule;
+
+/**
+ * Tracks which virtual routers have work to do, so that an iteration only processes those rather
+ * than every node in the network. Backs the {@link Schedule#EVENT_DRIVEN} schedule.
+ *
+ * <p>Every virtual router has a ready flag. A router becomes ready when a neighbor leaves messages
+ * in its incoming queues, or when processing it changed its own RIBs; the ready flag guarantees
+ * that it is queued at most once. A count of ready routers is kept alongside, so convergence is
+ * detected without scanning any router.
+ *
+ * <p>Nodes are still processed in the batches of a coloring of the BGP topology, like {@link
+ * Schedule#NODE_COLORED} does: BGP best-path selection depends on the order in which
+ * advertisements arrive, so processing BGP neighbors concurrently would make the result depend on
+ * thread interleaving. A node that becomes ready while the batches are being processed is picked up
+ * by the next batch it belongs to, in the same iteration if that batch has not run yet.
+ */
+final class EventDrivenScheduler {
+
+  /** Virtual routers that may receive messages from each virtual router */
+  private final Map<VirtualRouter, List<VirtualRouter>> _neighbors;
+
+  private final Map<VirtualRouter, AtomicBoolean> _ready;
+
+  /** Index in {@link #_batches} of the batch of each node, keyed by hostname */
+  private final Map<String, Integer> _batchOf;
+
+  private final List<Map<String, Node>> _batches;
+
+  /** Ready virtual routers of each batch */
+  private final List<Queue<VirtualRouter>> _readyByBatch;
+
+  private final AtomicInteger _numReady;
+
+  /**
+   * Create a scheduler over the given nodes. Initially every virtual router is ready.
+   *
+   * @param nodes nodes participating in the computation, keyed by hostname
+   * @param topology the Layer 3 topology, which carries all IGP messages
+   * @param bgpTopology the bgp peering relationships
+   * @param batches sets of nodes that may be processed in parallel, which cover all nodes
+   */
+  EventDrivenScheduler(
+      Map<String, Node> nodes,
+      Topology topology,
+      ValueGraph<BgpPeerConfigId, BgpSessionProperties> bgpTopology,
+      List<Map<String, Node>> batches) {
+    _neighbors = computeNeighbors(nodes, topology, bgpTopology);
+    _batches = ImmutableList.copyOf(batches);
+    _batchOf = new HashMap<>();
+    ImmutableList.Builder<Queue<VirtualRouter>> readyByBatch = ImmutableList.builder();
+    for (int i = 0; i < _batches.size(); i++) {
+      for (String hostname : _batches.get(i).keySet()) {
+        _batchOf.put(hostname, i);
+      }
+      readyByBatch.add(new ConcurrentLinkedQueue<>());
+    }
+    _readyByBatch = readyByBatch.build();
+    _ready = new IdentityHashMap<>();
+    _numReady = new AtomicInteger();
+    for (Node node : nodes.values()) {
+      for (VirtualRouter vr : node.getVirtualRouters().values()) {
+        _ready.put(vr, new AtomicBoolean());
+        schedule(vr);
+      }
+    }
+  }
+
+  private static Map<VirtualRouter, List<VirtualRouter>> computeNeighbors(
+      Map<String, Node> nodes,
+      Topology topology,
+      ValueGraph<BgpPeerConfigId, BgpSessionProperties> bgpTopology) {
+    Map<VirtualRouter, Set<VirtualRouter>> neighbors = new IdentityHashMap<>();
+    for (Node node : nodes.values()) {
+      for (VirtualRouter vr : node.getVirtualRouters().values()) {
+        neighbors.put(vr, new LinkedHashSet<>());
+      }
+    }
+    for (Entry<String, SortedSet<Edge>> nodeEdges : topology.getNodeEdges().entrySet()) {
+      for (Edge edge : nodeEdges.getValue()) {
+        VirtualRouter vr1 = getVirtualRouter(nodes, edge.getNode1(), edge.getInt1());
+        VirtualRouter vr2 = getVirtualRouter(nodes, edge.getNode2(), edge.getInt2());
+        if (vr1 != null && vr2 != null) {
+          neighbors.get(vr1).add(vr2);
+        }
+      }
+    }
+    for (EndpointPair<BgpPeerConfigId> session : bgpTopology.edges()) {
+      VirtualRouter vr1 = getVirtualRouter(nodes, session.nodeU());
+      VirtualRouter vr2 = getVirtualRouter(nodes, session.nodeV());
+      if (vr1 != null && vr2 != null) {
+        neighbors.get(vr1).add(vr2);
+        neighbors.get(vr2).add(vr1);
+      }
+    }
+    Map<VirtualRouter, List<VirtualRouter>> result = new IdentityHashMap<>();
+    neighbors.forEach((vr, vrNeighbors) -> result.put(vr, ImmutableList.copyOf(vrNeighbors)));
+    return result;
+  }
+
+  @Nullable
+  private static VirtualRouter getVirtualRouter(
+      Map<String, Node> nodes, String hostname, String interfaceName) {
+    Node node = nodes.get(hostname);
+    if (node == null) {
+      return null;
+    }
+    Interface iface = node.getConfiguration().getInterfaces().get(interfaceName);
+    return iface == null ? null : node.getVirtualRouters().get(iface.getVrfName());
+  }
+
+  @Nullable
+  private static VirtualRouter getVirtualRouter(Map<String, Node> nodes, BgpPeerConfigId id) {
+    Node node = nodes.get(id.getHostname());
+    return node == null ? null : node.getVirtualRouters().get(id.getVrfName());
+  }
+
+  /** Number of batches that each iteration goes through */
+  int getNumBatches() {
+    return _batches.size();
+  }
+
+  /** Whether no virtual router has work left to do */
+  boolean isQuiescent() {
+    return _numReady.get() == 0;
+  }
+
+  /**
+   * Return the nodes of the given batch that have a ready virtual router, keyed by hostname, and
+   * clear the ready flags of all their virtual routers. The caller must process these nodes, then
+   * pass each of their virtual routers to {@link #finishStep}.
+   */
+  SortedMap<String, Node> takeReadyNodes(int batch) {
+    Map<String, Node> batchNodes = _batches.get(batch);
+    Queue<VirtualRouter> ready = _readyByBatch.get(batch);
+    SortedMap<String, Node> readyNodes = new TreeMap<>();
+    for (VirtualRouter vr = ready.poll(); vr != null; vr = ready.poll()) {
+      readyNodes.put(vr.getHostname(), batchNodes.get(vr.getHostname()));
+    }
+    // Clear the flags first, so that routers can be made ready again while they are processed
+    for (Node node : readyNodes.values()) {
+      for (VirtualRouter vr : node.getVirtualRouters().values()) {
+        if (_ready.get(vr).compareAndSet(true, false)) {
+          _numReady.decrementAndGet();
+        }
+      }
+    }
+    return readyNodes;
+  }
+
+  /**
+   * Make ready the neighbors of a virtual router that was just processed if it left messages for
+   * them, and the router itself if it still has work to do.
+   */
+  void finishStep(VirtualRouter vr) {
+    for (VirtualRouter neighbor : _neighbors.get(vr)) {
+      if (neighbor.hasPendingMessages()) {
+        schedule(neighbor);
+      }
+    }
+    if (vr.hasOutstandingRoutes() || vr.hasPendingMessages()) {
+      schedule(vr);
+    }
+  }
+
+  private void schedule(VirtualRouter vr) {
+    if (_ready.get(vr).compareAndSet(false, true)) {
+      _numReady.incrementAndGet();
+      _readyByBatch.get(_batchOf.get(vr.getHostname())).add(vr);
+    }
+  }
+}
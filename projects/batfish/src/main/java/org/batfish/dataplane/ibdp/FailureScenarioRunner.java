@@ -0,0 +1,188 @@
+package org.batfish.dataplane.ibdp;
+
+import static org.batfish.common.util.CommonUtil.computeIpNodeOwners;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nonnull;
+import org.batfish.common.BatfishException;
+import org.batfish.common.BatfishLogger;
+import org.batfish.common.BdpOscillationException;
+import org.batfish.datamodel.BgpAdvertisement;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.FailureScenario;
+import org.batfish.datamodel.Topology;
+import org.batfish.datamodel.answers.FailureScenariosAnswerElement;
+import org.batfish.datamodel.answers.FailureScenariosAnswerElement.FibChange;
+import org.batfish.datamodel.answers.FailureScenariosAnswerElement.ScenarioResult;
+
+/**
+ * Computes the data plane of an environment under many failure scenarios, sharing as much as
+ * possible with its converged data plane without failures.
+ *
+ * <p>Each scenario is derived from the base data plane the way a differential computation is (see
+ * {@link RecomputationScope}): nodes the scenario does not fail keep the configuration objects of
+ * the base, and nodes it cannot affect keep their converged virtual routers, so only the recomputed
+ * nodes take memory of their own. Scenarios run concurrently, as many at a time as fit in a memory
+ * budget given the estimated size of the RIBs they recompute, and each is reduced to its FIB
+ * changes as soon as it converges, so that its data plane can be collected.
+ */
+final class FailureScenarioRunner {
+
+  /** Rough heap size of a route in the RIBs and FIB of a recomputed node */
+  private static final long BYTES_PER_ROUTE = 2048L;
+
+  /** The memory budget is handed out in permits of this many bytes */
+  private static final long BYTES_PER_PERMIT = 1L << 20;
+
+  @Nonnull private final IncrementalDataPlane _base;
+
+  @Nonnull private final Semaphore _budget;
+
+  @Nonnull private final Set<BgpAdvertisement> _externalAdverts;
+
+  @Nonnull private final BatfishLogger _logger;
+
+  private final int _permits;
+
+  @Nonnull private final IncrementalDataPlaneSettings _settings;
+
+  /**
+   * Create a runner
+   *
+   * @param base the converged data plane without failures, computed in this JVM
+   * @param externalAdverts the external BGP advertisements {@code base} was computed with, which
+   *     no scenario changes
+   * @param settings the settings to compute each scenario with
+   * @param logger the logger for the progress of the scenarios as a whole
+   * @param budgetBytes the memory budget for the scenarios computed concurrently
+   */
+  FailureScenarioRunner(
+      @Nonnull IncrementalDataPlane base,
+      @Nonnull Set<BgpAdvertisement> externalAdverts,
+      @Nonnull IncrementalDataPlaneSettings settings,
+      @Nonnull BatfishLogger logger,
+      long budgetBytes) {
+    _base = base;
+    _externalAdverts = externalAdverts;
+    _settings = settings;
+    _logger = logger;
+    _permits = (int) Math.max(1L, Math.min(Integer.MAX_VALUE, budgetBytes / BYTES_PER_PERMIT));
+    _budget = new Semaphore(_permits);
+  }
+
+  /** Compute the FIB changes under each of the given scenarios, which must have distinct names */
+  FailureScenariosAnswerElement run(List<FailureScenario> scenarios) {
+    Set<String> names = new HashSet<>();
+    for (FailureScenario scenario : scenarios) {
+      if (!names.add(scenario.getName())) {
+        throw new BatfishException("Duplicate failure scenario name: " + scenario.getName());
+      }
+    }
+    _logger.infof(
+        "\nComputing %d failure scenarios with a budget of %d MB\n", scenarios.size(), _permits);
+    _logger.resetTimer();
+    FailureScenariosAnswerElement answer = new FailureScenariosAnswerElement();
+    if (scenarios.isEmpty()) {
+      return answer;
+    }
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            Math.min(scenarios.size(), Runtime.getRuntime().availableProcessors()));
+    try {
+      List<Future<ScenarioResult>> results =
+          scenarios
+              .stream()
+              .map(scenario -> executor.submit(() -> computeScenario(scenario)))
+              .collect(ImmutableList.toImmutableList());
+      for (int i = 0; i < scenarios.size(); i++) {
+        answer.getScenarios().put(scenarios.get(i).getName(), results.get(i).get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new BatfishException("Interrupted while computing failure scenarios", e);
+    } catch (ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new BatfishException("Failed to compute failure scenario", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    _logger.printElapsedTime();
+    return answer;
+  }
+
+  private ScenarioResult computeScenario(FailureScenario scenario) throws InterruptedException {
+    Map<String, Configuration> configurations;
+    try {
+      configurations = scenario.applyTo(_base.getConfigurations());
+    } catch (BatfishException e) {
+      return new ScenarioResult(null, 0, e.getMessage());
+    }
+    Topology topology = scenario.applyTo(_base.getTopology());
+    SortedSet<String> recomputed =
+        RecomputationScope.affectedNodes(
+            _base,
+            _externalAdverts,
+            configurations,
+            topology,
+            computeIpNodeOwners(configurations, true),
+            _externalAdverts);
+
+    int permits = (int) Math.min(_permits, estimateBytes(recomputed) / BYTES_PER_PERMIT + 1);
+    _budget.acquire(permits);
+    try {
+      // Engines are not thread-safe, and the quiet logger keeps the scenarios from interleaving
+      // their progress with each other's
+      IncrementalBdpEngine engine =
+          new IncrementalBdpEngine(
+              new IncrementalDataPlaneSettings(_settings.getConfig()),
+              new BatfishLogger(BatfishLogger.LEVELSTR_WARN, false),
+              (description, jobs) -> new AtomicInteger());
+      IncrementalDataPlane dp =
+          (IncrementalDataPlane)
+              engine.computeDataPlane(
+                      false,
+                      configurations,
+                      topology,
+                      _externalAdverts,
+                      _base,
+                      _externalAdverts,
+                      recomputed)
+                  ._dataPlane;
+      // Only the recomputed nodes can have changed, since the others share their FIBs with the base
+      List<FibChange> changes = FibChange.diffFibs(_base.getFibs(), dp.getFibs(), recomputed);
+      _logger.debugf(
+          "Failure scenario %s: %d nodes recomputed, %d FIB changes\n",
+          scenario.getName(), recomputed.size(), changes.size());
+      return new ScenarioResult(changes, recomputed.size(), null);
+    } catch (BdpOscillationException e) {
+      return new ScenarioResult(null, recomputed.size(), e.getMessage());
+    } finally {
+      _budget.release(permits);
+    }
+  }
+
+  /** Estimate the heap size of the RIBs of the given nodes from their size in the base */
+  private long estimateBytes(Set<String> recomputed) {
+    return recomputed
+            .stream()
+            .map(hostname -> _base.getNodes().get(hostname))
+            .filter(Objects::nonNull)
+            .flatMap(node -> node.getVirtualRouters().values().stream())
+            .mapToLong(vr -> vr._mainRib.getRoutes().size())
+            .sum()
+        * BYTES_PER_ROUTE;
+  }
+}
@@ -0,0 +1,189 @@
+package org.batfish.dataplane.ibdp;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.batfish.common.util.BlockCompressedSerialization;
+import org.batfish.datamodel.AbstractRoute;
+import org.batfish.datamodel.BgpAdvertisement;
+import org.batfish.datamodel.BgpRoute;
+import org.batfish.datamodel.OspfExternalRoute;
+import org.batfish.datamodel.Prefix;
+import org.batfish.dataplane.ibdp.schedule.IbdpSchedule.Schedule;
+import org.batfish.dataplane.rib.BgpBestPathRib;
+import org.batfish.dataplane.rib.BgpMultipathRib;
+import org.batfish.dataplane.rib.OspfExternalType1Rib;
+import org.batfish.dataplane.rib.OspfExternalType2Rib;
+import org.batfish.dataplane.rib.Rib;
+import org.batfish.dataplane.rib.RouteAdvertisement;
+import org.batfish.dataplane.topology.BgpEdgeId;
+
+/**
+ * The state of an iBDP computation at the end of an iteration of its EGP phase, from which the
+ * computation can be resumed, e.g., after its job was killed for running too long.
+ *
+ * <p>The IGP phase is deterministic and comparatively cheap, so it is recomputed on resume rather
+ * than saved. A checkpoint holds what the EGP iterations change: for each virtual router, the RIBs
+ * that persist across iterations and the messages still queued for it, and for the computation,
+ * the number of iterations completed and the schedule. The RIBs are written as one object graph,
+ * so that the BGP RIBs still refer to the main RIB of their router once read back.
+ *
+ * <p>The history of iteration hash codes used to detect oscillations is not saved. Those hash codes
+ * include the hash codes of enum attributes, which differ between JVMs, so a restored history would
+ * not match the iterations of the resumed computation. A resumed computation starts with an empty
+ * history instead. An oscillation then takes one more cycle after the resume to detect, and the
+ * schedule chosen by an oscillation detected before the checkpoint is kept.
+ */
+final class IbdpCheckpoint implements Serializable {
+
+  /** The state of a {@link VirtualRouter} saved in a checkpoint */
+  static final class RouterState implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    Rib _mainRib;
+
+    Rib _generatedRib;
+
+    BgpBestPathRib _bgpBestPathRib;
+
+    BgpMultipathRib _bgpMultipathRib;
+
+    BgpBestPathRib _ebgpBestPathRib;
+
+    BgpMultipathRib _ebgpMultipathRib;
+
+    BgpBestPathRib _ibgpBestPathRib;
+
+    BgpMultipathRib _ibgpMultipathRib;
+
+    OspfExternalType1Rib _ospfExternalType1Rib;
+
+    OspfExternalType2Rib _ospfExternalType2Rib;
+
+    RouteDependencyTracker<BgpRoute, AbstractRoute> _bgpAggDeps;
+
+    PrefixTracer _prefixTracer;
+
+    Set<BgpAdvertisement> _receivedBgpAdvertisements;
+
+    Set<BgpAdvertisement> _sentBgpAdvertisements;
+
+    Map<BgpEdgeId, List<RouteAdvertisement<BgpRoute>>> _bgpIncomingRoutes;
+
+    Map<Prefix, List<RouteAdvertisement<OspfExternalRoute>>> _ospfExternalIncomingRoutes;
+  }
+
+  private static final long serialVersionUID = 2L;
+
+  /** Identifies the inputs of the computation; a checkpoint is only resumed with the same inputs */
+  @Nonnull private final String _fingerprint;
+
+  private final int _iterations;
+
+  @Nonnull private final Schedule _schedule;
+
+  /** Statistics recorded by the completed iterations, for the answer element */
+  @Nonnull private final SortedMap<Integer, Integer> _bgpBestPathRibRoutesByIteration;
+
+  @Nonnull private final SortedMap<Integer, Integer> _bgpMultipathRibRoutesByIteration;
+
+  @Nonnull private final SortedMap<Integer, Integer> _mainRibRoutesByIteration;
+
+  /** Saved state of each virtual router, keyed by hostname and then VRF name */
+  @Nonnull private final Map<String, Map<String, RouterState>> _routers;
+
+  IbdpCheckpoint(
+      @Nonnull String fingerprint,
+      int iterations,
+      @Nonnull Schedule schedule,
+      @Nonnull SortedMap<Integer, Integer> bgpBestPathRibRoutesByIteration,
+      @Nonnull SortedMap<Integer, Integer> bgpMultipathRibRoutesByIteration,
+      @Nonnull SortedMap<Integer, Integer> mainRibRoutesByIteration,
+      @Nonnull Map<String, Map<String, RouterState>> routers) {
+    _fingerprint = fingerprint;
+    _iterations = iterations;
+    _schedule = schedule;
+    _bgpBestPathRibRoutesByIteration = bgpBestPathRibRoutesByIteration;
+    _bgpMultipathRibRoutesByIteration = bgpMultipathRibRoutesByIteration;
+    _mainRibRoutesByIteration = mainRibRoutesByIteration;
+    _routers = routers;
+  }
+
+  /**
+   * Read the checkpoint at the given path, if there is one for a computation with the given
+   * fingerprint
+   *
+   * @return the checkpoint, or {@code null} if there is none, it is for other inputs or it cannot
+   *     be read
+   */
+  @Nullable
+  static IbdpCheckpoint read(@Nonnull Path path, @Nonnull String fingerprint) {
+    if (!Files.exists(path)) {
+      return null;
+    }
+    try {
+      IbdpCheckpoint checkpoint =
+          BlockCompressedSerialization.deserialize(
+              path,
+              IbdpCheckpoint.class,
+              Thread.currentThread().getContextClassLoader(),
+              false);
+      return checkpoint._fingerprint.equals(fingerprint) ? checkpoint : null;
+    } catch (IOException | ClassNotFoundException | ClassCastException e) {
+      // A checkpoint from another version of Batfish or another computation
+      return null;
+    }
+  }
+
+  /**
+   * Write this checkpoint to the given path, replacing any previous checkpoint only once this one
+   * is complete, so that a computation killed while writing can still resume from the previous one
+   */
+  void write(@Nonnull Path path) throws IOException {
+    Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+    BlockCompressedSerialization.serialize(this, tmp);
+    Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  @Nonnull
+  SortedMap<Integer, Integer> getBgpBestPathRibRoutesByIteration() {
+    return _bgpBestPathRibRoutesByIteration;
+  }
+
+  @Nonnull
+  SortedMap<Integer, Integer> getBgpMultipathRibRoutesByIteration() {
+    return _bgpMultipathRibRoutesByIteration;
+  }
+
+  /** Number of EGP iterations completed when the checkpoint was taken */
+  int getIterations() {
+    return _iterations;
+  }
+
+  @Nonnull
+  SortedMap<Integer, Integer> getMainRibRoutesByIteration() {
+    return _mainRibRoutesByIteration;
+  }
+
+  /** Return the saved state of the virtual router for the given VRF of the given node */
+  @Nullable
+  RouterState getRouterState(String hostname, String vrfName) {
+    Map<String, RouterState> vrfs = _routers.get(hostname);
+    return vrfs == null ? null : vrfs.get(vrfName);
+  }
+
+  /** The schedule in use when the checkpoint was taken, which oscillations may have changed */
+  @Nonnull
+  Schedule getSchedule() {
+    return _schedule;
+  }
+}
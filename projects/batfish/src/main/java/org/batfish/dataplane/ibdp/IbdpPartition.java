@@ -0,0 +1,278 @@
+package org.batfish.dataplane.ibdp;
+
+import static org.batfish.common.util.CommonUtil.computeIpNodeOwners;
+import static org.batfish.common.util.CommonUtil.initBgpTopology;
+
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Maps;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.batfish.common.BatfishException;
+import org.batfish.datamodel.BgpRoute;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.Topology;
+import org.batfish.dataplane.rib.RouteAdvertisement;
+import org.batfish.dataplane.topology.BgpEdgeId;
+
+/**
+ * This worker's share of a data plane computation partitioned across workers (see {@link
+ * IncrementalBdpEngine#computePartitionedDataPlane}).
+ *
+ * <p>Every worker holds every node, but runs the EGP iterations only for the nodes of its own
+ * partition, whose BGP RIBs therefore exist only there. A node of another partition serves as a
+ * stub: its message queues collect what the local nodes send it until {@link
+ * #exchangeBgpMessages} ships them to the partition that owns it.
+ */
+final class IbdpPartition {
+
+  /** The BGP messages sent to one virtual router on one session */
+  private static final class BgpMessages implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Nonnull private final List<RouteAdvertisement<BgpRoute>> _advertisements;
+
+    @Nonnull private final BgpEdgeId _edge;
+
+    @Nonnull private final String _hostname;
+
+    @Nonnull private final String _vrfName;
+
+    private BgpMessages(
+        @Nonnull String hostname,
+        @Nonnull String vrfName,
+        @Nonnull BgpEdgeId edge,
+        @Nonnull List<RouteAdvertisement<BgpRoute>> advertisements) {
+      _hostname = hostname;
+      _vrfName = vrfName;
+      _edge = edge;
+      _advertisements = advertisements;
+    }
+  }
+
+  /** The state of one partition at the end of an EGP iteration */
+  static final class IterationStatus implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int _bgpBestPathRibRoutes;
+
+    private final int _bgpMultipathRibRoutes;
+
+    private final boolean _converged;
+
+    private final int _hashCode;
+
+    private final int _mainRibRoutes;
+
+    IterationStatus(
+        int hashCode,
+        boolean converged,
+        int bgpBestPathRibRoutes,
+        int bgpMultipathRibRoutes,
+        int mainRibRoutes) {
+      _hashCode = hashCode;
+      _converged = converged;
+      _bgpBestPathRibRoutes = bgpBestPathRibRoutes;
+      _bgpMultipathRibRoutes = bgpMultipathRibRoutes;
+      _mainRibRoutes = mainRibRoutes;
+    }
+
+    int getBgpBestPathRibRoutes() {
+      return _bgpBestPathRibRoutes;
+    }
+
+    int getBgpMultipathRibRoutes() {
+      return _bgpMultipathRibRoutes;
+    }
+
+    /**
+     * The hash code of the state of the nodes of the partition. Hash codes are only comparable
+     * between the iterations of one partition, since the hash codes of routes differ between JVMs.
+     */
+    int getHashCode() {
+      return _hashCode;
+    }
+
+    int getMainRibRoutes() {
+      return _mainRibRoutes;
+    }
+
+    /** Whether the nodes of the partition have nothing left to process or propagate */
+    boolean isConverged() {
+      return _converged;
+    }
+  }
+
+  /**
+   * Join the computation over the given transport. The leader assigns the nodes to partitions and
+   * sends the assignment to the other workers, all of which must hold the same configurations.
+   */
+  static IbdpPartition create(
+      PartitionTransport transport,
+      Map<String, Configuration> configurations,
+      Topology topology) {
+    TreeMap<String, Integer> partitions =
+        fromLeader(
+            transport,
+            transport.getPartition() == 0
+                ? new TreeMap<String, Integer>(
+                    IbdpPartitioner.partition(
+                        configurations,
+                        topology,
+                        initBgpTopology(
+                            configurations, computeIpNodeOwners(configurations, true), false),
+                        transport.getNumPartitions()))
+                : null);
+    if (!partitions.keySet().equals(configurations.keySet())) {
+      throw new BatfishException("The partitions of the computation disagree on its nodes");
+    }
+    return new IbdpPartition(transport, partitions);
+  }
+
+  /** The partition of each node, keyed by hostname */
+  @Nonnull private final SortedMap<String, Integer> _partitions;
+
+  @Nonnull private final PartitionTransport _transport;
+
+  private IbdpPartition(
+      @Nonnull PartitionTransport transport, @Nonnull SortedMap<String, Integer> partitions) {
+    _transport = transport;
+    _partitions = ImmutableSortedMap.copyOf(partitions);
+  }
+
+  private static List<Serializable> exchange(
+      PartitionTransport transport, List<? extends Serializable> outgoing) {
+    try {
+      return transport.exchange(outgoing);
+    } catch (IOException e) {
+      throw new BatfishException(
+          "Partition " + transport.getPartition() + " failed to exchange messages", e);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T extends Serializable> T fromLeader(
+      PartitionTransport transport, @Nullable T value) {
+    T sent = transport.getPartition() == 0 ? value : null;
+    return (T) exchange(transport, Collections.nCopies(transport.getNumPartitions(), sent)).get(0);
+  }
+
+  /**
+   * Send the messages that the nodes of this partition queued on the nodes of other partitions to
+   * those partitions, and queue the messages received from them on the nodes of this partition
+   *
+   * @param allNodes all nodes in the network, keyed by hostname
+   */
+  void exchangeBgpMessages(Map<String, Node> allNodes) {
+    List<ArrayList<BgpMessages>> outgoing = new ArrayList<>();
+    for (int p = 0; p < _transport.getNumPartitions(); p++) {
+      outgoing.add(new ArrayList<>());
+    }
+    allNodes.forEach(
+        (hostname, node) -> {
+          if (owns(hostname)) {
+            return;
+          }
+          List<BgpMessages> messages = outgoing.get(_partitions.get(hostname));
+          node.getVirtualRouters()
+              .forEach(
+                  (vrfName, vr) ->
+                      vr._bgpIncomingRoutes.forEach(
+                          (edge, queue) -> {
+                            if (queue.isEmpty()) {
+                              return;
+                            }
+                            List<RouteAdvertisement<BgpRoute>> advertisements =
+                                new ArrayList<>(queue);
+                            queue.clear();
+                            messages.add(
+                                new BgpMessages(hostname, vrfName, edge, advertisements));
+                          }));
+        });
+    for (Serializable received : exchange(_transport, outgoing)) {
+      @SuppressWarnings("unchecked")
+      List<BgpMessages> messages = (List<BgpMessages>) received;
+      for (BgpMessages message : messages) {
+        Queue<RouteAdvertisement<BgpRoute>> queue =
+            allNodes
+                .get(message._hostname)
+                .getVirtualRouters()
+                .get(message._vrfName)
+                ._bgpIncomingRoutes
+                .get(message._edge);
+        queue.addAll(message._advertisements);
+      }
+    }
+  }
+
+  /**
+   * Return the value the leader passes, which the other workers must pass as {@code null}
+   *
+   * @param value the value on the leader
+   */
+  <T extends Serializable> T fromLeader(@Nullable T value) {
+    return fromLeader(_transport, value);
+  }
+
+  /**
+   * Send the given nodes of this partition to the leader, which returns the nodes of every
+   * partition, keyed by hostname; the other workers return {@code null}
+   *
+   * @param ownedNodes the nodes of this partition, keyed by hostname
+   */
+  @Nullable
+  SortedMap<String, Node> gatherNodes(SortedMap<String, Node> ownedNodes) {
+    List<TreeMap<String, Node>> outgoing =
+        new ArrayList<>(Collections.nCopies(_transport.getNumPartitions(), null));
+    outgoing.set(0, new TreeMap<>(ownedNodes));
+    List<Serializable> received = exchange(_transport, outgoing);
+    if (!isLeader()) {
+      return null;
+    }
+    ImmutableSortedMap.Builder<String, Node> allNodes = ImmutableSortedMap.naturalOrder();
+    for (Serializable nodes : received) {
+      @SuppressWarnings("unchecked")
+      Map<String, Node> partitionNodes = (Map<String, Node>) nodes;
+      allNodes.putAll(partitionNodes);
+    }
+    return allNodes.build();
+  }
+
+  /**
+   * Send the status of this partition to every partition, and return the status of each partition,
+   * indexed by partition
+   */
+  List<IterationStatus> gatherStatuses(IterationStatus status) {
+    List<IterationStatus> statuses = new ArrayList<>();
+    for (Serializable received :
+        exchange(_transport, Collections.nCopies(_transport.getNumPartitions(), status))) {
+      statuses.add((IterationStatus) received);
+    }
+    return statuses;
+  }
+
+  /** Whether this worker leads the computation */
+  boolean isLeader() {
+    return _transport.getPartition() == 0;
+  }
+
+  /** Return the given nodes that belong to this partition */
+  SortedMap<String, Node> ownedNodes(SortedMap<String, Node> nodes) {
+    return ImmutableSortedMap.copyOf(Maps.filterKeys(nodes, this::owns));
+  }
+
+  /** Whether the node with the given hostname belongs to this partition */
+  boolean owns(String hostname) {
+    return _partitions.get(hostname) == _transport.getPartition();
+  }
+}
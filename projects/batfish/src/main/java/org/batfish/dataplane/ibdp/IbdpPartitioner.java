@@ -0,0 +1,169 @@
+package org.batfish.dataplane.ibdp;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.graph.EndpointPair;
+import com.google.common.graph.GraphBuilder;
+import com.google.common.graph.Graphs;
+import com.google.common.graph.MutableGraph;
+import com.google.common.graph.ValueGraph;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.batfish.datamodel.BgpPeerConfigId;
+import org.batfish.datamodel.BgpSessionProperties;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.Edge;
+import org.batfish.datamodel.Topology;
+
+/**
+ * Assigns the nodes of a network to the partitions of a partitioned data plane computation (see
+ * {@link IbdpPartition}).
+ *
+ * <p>The IGP computations read the RIBs of neighbors directly, so nodes joined by a Layer 3 edge on
+ * which both run an IGP always share a partition; these groups are the units of assignment. Only
+ * BGP sessions may cross partitions, and each crossing session costs messages in every iteration,
+ * so partitions are grown greedily from the units most strongly connected by BGP sessions to the
+ * partition so far, up to an even share of the nodes.
+ */
+final class IbdpPartitioner {
+
+  /**
+   * Return the partition of each node
+   *
+   * @param configurations the configurations of the network, keyed by hostname
+   * @param topology the Layer 3 topology of the network
+   * @param bgpTopology the candidate BGP sessions of the network
+   * @param numPartitions the number of partitions
+   * @return the partition of each node, keyed by hostname
+   */
+  static SortedMap<String, Integer> partition(
+      Map<String, Configuration> configurations,
+      Topology topology,
+      ValueGraph<BgpPeerConfigId, BgpSessionProperties> bgpTopology,
+      int numPartitions) {
+    checkArgument(numPartitions > 0, "A computation needs at least one partition");
+    List<Set<String>> units = igpUnits(configurations, topology);
+    Map<String, Integer> unitOf = new HashMap<>();
+    for (int u = 0; u < units.size(); u++) {
+      for (String hostname : units.get(u)) {
+        unitOf.put(hostname, u);
+      }
+    }
+
+    // The number of candidate sessions between each pair of units
+    List<Map<Integer, Integer>> sessions = new ArrayList<>();
+    units.forEach(unit -> sessions.add(new HashMap<>()));
+    for (EndpointPair<BgpPeerConfigId> session : bgpTopology.edges()) {
+      Integer u = unitOf.get(session.nodeU().getHostname());
+      Integer v = unitOf.get(session.nodeV().getHostname());
+      if (u != null && v != null && !u.equals(v)) {
+        sessions.get(u).merge(v, 1, Integer::sum);
+        sessions.get(v).merge(u, 1, Integer::sum);
+      }
+    }
+
+    int target = (configurations.size() + numPartitions - 1) / numPartitions;
+    int[] partitionOf = new int[units.size()];
+    boolean[] assigned = new boolean[units.size()];
+    int unassigned = units.size();
+    for (int partition = 0; partition < numPartitions - 1 && unassigned > 0; partition++) {
+      int size = 0;
+      // Sessions from the partition so far to each unassigned unit
+      Map<Integer, Integer> connections = new HashMap<>();
+      while (unassigned > 0) {
+        int next = -1;
+        for (int u = 0; u < units.size(); u++) {
+          if (assigned[u] || (size > 0 && size + units.get(u).size() > target)) {
+            continue;
+          }
+          if (next == -1 || isBetter(u, next, connections, units)) {
+            next = u;
+          }
+        }
+        if (next == -1) {
+          break;
+        }
+        assigned[next] = true;
+        unassigned--;
+        partitionOf[next] = partition;
+        size += units.get(next).size();
+        connections.remove(next);
+        sessions
+            .get(next)
+            .forEach(
+                (u, count) -> {
+                  if (!assigned[u]) {
+                    connections.merge(u, count, Integer::sum);
+                  }
+                });
+        if (size >= target) {
+          break;
+        }
+      }
+    }
+    // The last partition takes the rest
+    for (int u = 0; u < units.size(); u++) {
+      if (!assigned[u]) {
+        partitionOf[u] = numPartitions - 1;
+      }
+    }
+
+    SortedMap<String, Integer> partitions = new TreeMap<>();
+    unitOf.forEach((hostname, u) -> partitions.put(hostname, partitionOf[u]));
+    return ImmutableSortedMap.copyOf(partitions);
+  }
+
+  /**
+   * Whether unit {@code u} should join the partition before unit {@code v}: it is connected to the
+   * partition by more sessions, or else it is larger, since small units fill the remaining space
+   * better
+   */
+  private static boolean isBetter(
+      int u, int v, Map<Integer, Integer> connections, List<Set<String>> units) {
+    int uConnections = connections.getOrDefault(u, 0);
+    int vConnections = connections.getOrDefault(v, 0);
+    if (uConnections != vConnections) {
+      return uConnections > vConnections;
+    }
+    return units.get(u).size() > units.get(v).size();
+  }
+
+  /**
+   * Return the groups of nodes joined by Layer 3 edges on which both ends run an IGP, in order of
+   * their first hostname
+   */
+  private static List<Set<String>> igpUnits(
+      Map<String, Configuration> configurations, Topology topology) {
+    MutableGraph<String> igpLinks = GraphBuilder.undirected().allowsSelfLoops(true).build();
+    configurations.keySet().forEach(igpLinks::addNode);
+    for (Edge edge : topology.getEdges()) {
+      Configuration c1 = configurations.get(edge.getNode1());
+      Configuration c2 = configurations.get(edge.getNode2());
+      if (c1 != null
+          && c2 != null
+          && RecomputationScope.runsIgp(c1)
+          && RecomputationScope.runsIgp(c2)) {
+        igpLinks.putEdge(edge.getNode1(), edge.getNode2());
+      }
+    }
+    List<Set<String>> units = new ArrayList<>();
+    Set<String> grouped = new TreeSet<>();
+    for (String hostname : new TreeSet<>(configurations.keySet())) {
+      if (grouped.add(hostname)) {
+        Set<String> unit = new TreeSet<>(Graphs.reachableNodes(igpLinks, hostname));
+        grouped.addAll(unit);
+        units.add(unit);
+      }
+    }
+    return units;
+  }
+
+  private IbdpPartitioner() {}
+}
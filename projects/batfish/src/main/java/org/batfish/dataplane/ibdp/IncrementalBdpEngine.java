@@ -1,5 +1,6 @@
 package org.batfish.dataplane.ibdp;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.batfish.common.util.CommonUtil.computeIpNodeOwners;
 import static org.batfish.common.util.CommonUtil.computeIpVrfOwners;
 import static org.batfish.common.util.CommonUtil.computeNodeInterfaces;
@@ -7,19 +8,38 @@ import static org.batfish.common.util.CommonUtil.initBgpTopology;
 import static org.batfish.common.util.CommonUtil.toImmutableSortedMap;
 import static org.batfish.dataplane.rib.AbstractRib.importRib;
 
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Maps;
+import com.google.common.graph.EndpointPair;
+import com.google.common.graph.ImmutableValueGraph;
+import com.google.common.graph.MutableValueGraph;
 import com.google.common.graph.Network;
 import com.google.common.graph.ValueGraph;
+import com.google.common.graph.ValueGraphBuilder;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import org.batfish.common.BatfishLogger;
 import org.batfish.common.BdpOscillationException;
 import org.batfish.common.Version;
@@ -28,9 +48,11 @@ import org.batfish.datamodel.AbstractRoute;
 import org.batfish.datamodel.BgpAdvertisement;
 import org.batfish.datamodel.BgpPeerConfigId;
 import org.batfish.datamodel.BgpProcess;
+import org.batfish.datamodel.BgpRegexMatcher;
 import org.batfish.datamodel.BgpRoute;
 import org.batfish.datamodel.BgpSessionProperties;
 import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.DataPlane;
 import org.batfish.datamodel.Ip;
 import org.batfish.datamodel.IsisRoute;
 import org.batfish.datamodel.NetworkConfigurations;
@@ -47,6 +69,7 @@ import org.batfish.datamodel.isis.IsisTopology;
 import org.batfish.dataplane.TracerouteEngineImpl;
 import org.batfish.dataplane.ibdp.schedule.IbdpSchedule;
 import org.batfish.dataplane.ibdp.schedule.IbdpSchedule.Schedule;
+import org.batfish.dataplane.ibdp.schedule.NodeColoredSchedule;
 import org.batfish.dataplane.rib.BgpMultipathRib;
 import org.batfish.dataplane.rib.RibDelta;
 
@@ -56,6 +79,15 @@ class IncrementalBdpEngine {
 
   private final BatfishLogger _bfLogger;
 
+  /* Where to save checkpoints of the EGP iterations, or null if they are not saved */
+  @Nullable private Path _checkpointPath;
+
+  /* When the current computation last saved a checkpoint */
+  private long _lastCheckpointTime;
+
+  /* Oscillation detection may switch _settings to a more restrictive schedule mid-computation. */
+  private final Schedule _initialSchedule;
+
   private final BiFunction<String, Integer, AtomicInteger> _newBatch;
 
   private final IncrementalDataPlaneSettings _settings;
@@ -67,6 +99,18 @@ class IncrementalBdpEngine {
     _settings = settings;
     _bfLogger = logger;
     _newBatch = newBatch;
+    _initialSchedule = settings.getScheduleName();
+  }
+
+  /**
+   * Set the path at which the following computations save checkpoints of their EGP iterations, and
+   * from which they resume if a checkpoint of the same computation is there already. Checkpoints
+   * are only saved if {@link IncrementalDataPlaneSettings#getCheckpointIntervalMs()} is positive.
+   *
+   * @param checkpointPath the path, or {@code null} not to save checkpoints
+   */
+  void setCheckpointPath(@Nullable Path checkpointPath) {
+    _checkpointPath = checkpointPath;
   }
 
   ComputeDataPlaneResult computeDataPlane(
@@ -74,9 +118,119 @@ class IncrementalBdpEngine {
       Map<String, Configuration> configurations,
       Topology topology,
       Set<BgpAdvertisement> externalAdverts) {
+    return computeDataPlane(
+        differentialContext, configurations, topology, externalAdverts, null, ImmutableSet.of());
+  }
+
+  /**
+   * Compute the data plane, starting from the converged data plane of a base snapshot if one is
+   * given. Nodes that the differences between the snapshots cannot affect (see {@link
+   * RecomputationScope}) keep their converged state from {@code base}; the computation runs only
+   * over the remaining nodes.
+   *
+   * @param base the converged data plane of the base snapshot, or {@code null} to compute from
+   *     scratch. It is only usable if it was computed in this JVM, since the state of its virtual
+   *     routers is not serialized.
+   * @param baseExternalAdverts the external BGP advertisements {@code base} was computed with
+   */
+  ComputeDataPlaneResult computeDataPlane(
+      boolean differentialContext,
+      Map<String, Configuration> configurations,
+      Topology topology,
+      Set<BgpAdvertisement> externalAdverts,
+      @Nullable IncrementalDataPlane base,
+      Set<BgpAdvertisement> baseExternalAdverts) {
+    return computeDataPlane(
+        differentialContext,
+        configurations,
+        topology,
+        externalAdverts,
+        base,
+        baseExternalAdverts,
+        null);
+  }
+
+  /**
+   * Compute the data plane starting from the converged data plane of a base snapshot, like {@link
+   * #computeDataPlane(boolean, Map, Topology, Set, IncrementalDataPlane, Set)}, recomputing the
+   * given nodes if the caller has already determined them.
+   *
+   * @param recomputedNodes the nodes to recompute, as returned by {@link
+   *     RecomputationScope#affectedNodes}, or {@code null} to determine them here
+   */
+  ComputeDataPlaneResult computeDataPlane(
+      boolean differentialContext,
+      Map<String, Configuration> configurations,
+      Topology topology,
+      Set<BgpAdvertisement> externalAdverts,
+      @Nullable IncrementalDataPlane base,
+      Set<BgpAdvertisement> baseExternalAdverts,
+      @Nullable SortedSet<String> recomputedNodes) {
+    return computeDataPlane(
+        configurations,
+        topology,
+        externalAdverts,
+        base,
+        baseExternalAdverts,
+        recomputedNodes,
+        null);
+  }
+
+  /**
+   * Compute this worker's share of a data plane computation partitioned across workers, each
+   * typically in its own JVM and each holding the same configurations, topology and external
+   * advertisements. Each node belongs to one partition (see {@link IbdpPartitioner}), and BGP
+   * messages between partitions travel over the given transport. Every worker must call this
+   * method at the same time.
+   *
+   * <p>The IGP computations read the RIBs of neighbors directly, so every worker computes the IGP
+   * routes of every node; only the EGP iterations, whose BGP RIBs dominate the memory used, are
+   * split among the workers. The BGP sessions are not rechecked for reachability after the EGP
+   * iterations, so {@link IncrementalDataPlaneSettings#getCheckBgpSessionReachability()} is
+   * ignored.
+   *
+   * <p>After the computation, the other workers send the nodes of their partitions to the leader.
+   *
+   * @return the statistics of the whole computation, and on the leader the whole data plane. On
+   *     the other workers, the data plane is {@code null}, since each holds only its partition's
+   *     share, which must be neither saved nor answered from.
+   */
+  ComputeDataPlaneResult computePartitionedDataPlane(
+      Map<String, Configuration> configurations,
+      Topology topology,
+      Set<BgpAdvertisement> externalAdverts,
+      PartitionTransport transport) {
+    return computeDataPlane(
+        configurations,
+        topology,
+        externalAdverts,
+        null,
+        ImmutableSet.of(),
+        null,
+        IbdpPartition.create(transport, configurations, topology));
+  }
+
+  private ComputeDataPlaneResult computeDataPlane(
+      Map<String, Configuration> configurations,
+      Topology topology,
+      Set<BgpAdvertisement> externalAdverts,
+      @Nullable IncrementalDataPlane base,
+      Set<BgpAdvertisement> baseExternalAdverts,
+      @Nullable SortedSet<String> recomputedNodes,
+      @Nullable IbdpPartition partition) {
     _bfLogger.resetTimer();
+    // Start each computation afresh, so the engine can be reused
+    _numIterations = 0;
+    _settings.setScheduleName(_initialSchedule);
+    if (partition != null && _initialSchedule == Schedule.EVENT_DRIVEN) {
+      // The event-driven scheduler follows the messages of each router, which may cross partitions
+      _settings.setScheduleName(Schedule.NODE_COLORED);
+    }
     IncrementalDataPlane.Builder dpBuilder = IncrementalDataPlane.builder();
     _bfLogger.info("\nComputing Data Plane using iBDP\n");
+    CacheStats initialAsPathStats = BgpRegexMatcher.getAsPathStats();
+    CacheStats initialCommunityStats = BgpRegexMatcher.getCommunityStats();
+    CacheStats initialPatternStats = BgpRegexMatcher.getPatternStats();
 
     Map<Ip, Set<String>> ipOwners = computeIpNodeOwners(configurations, true);
     Map<Ip, Map<String, Set<String>>> ipVrfOwners =
@@ -84,15 +238,54 @@ class IncrementalBdpEngine {
     dpBuilder.setIpOwners(ipOwners);
     dpBuilder.setIpVrfOwners(ipVrfOwners);
 
+    SortedSet<String> recomputed =
+        base == null || base.getBgpTopology() == null
+            ? ImmutableSortedSet.copyOf(configurations.keySet())
+            : recomputedNodes != null
+                ? recomputedNodes
+                : RecomputationScope.affectedNodes(
+                    base, baseExternalAdverts, configurations, topology, ipOwners, externalAdverts);
+    boolean partial = recomputed.size() < configurations.size();
+    if (base != null) {
+      _bfLogger.infof(
+          "Recomputing %d of %d nodes from the base data plane\n",
+          recomputed.size(), configurations.size());
+    }
+
     // Generate our nodes, keyed by name, sorted for determinism
-    SortedMap<String, Node> nodes =
-        toImmutableSortedMap(configurations.values(), Configuration::getHostname, Node::new);
-    NetworkConfigurations networkConfigurations = NetworkConfigurations.of(configurations);
-    dpBuilder.setNodes(nodes);
+    SortedMap<String, Node> allNodes =
+        toImmutableSortedMap(
+            configurations.values(),
+            Configuration::getHostname,
+            c ->
+                recomputed.contains(c.getHostname())
+                    ? new Node(c)
+                    : base.getNodes().get(c.getHostname()));
+    dpBuilder.setNodes(allNodes);
     dpBuilder.setTopology(topology);
 
+    // From here on, work only with the nodes being recomputed and the adjacencies among them
+    SortedMap<String, Node> nodes =
+        partial
+            ? ImmutableSortedMap.copyOf(Maps.filterKeys(allNodes, recomputed::contains))
+            : allNodes;
+    Map<String, Configuration> recomputedConfigurations =
+        partial ? Maps.filterKeys(configurations, recomputed::contains) : configurations;
+    Topology recomputedTopology =
+        partial
+            ? new Topology(
+                topology
+                    .getEdges()
+                    .stream()
+                    .filter(
+                        e -> recomputed.contains(e.getNode1()) && recomputed.contains(e.getNode2()))
+                    .collect(Collectors.toCollection(TreeSet::new)))
+            : topology;
+    NetworkConfigurations networkConfigurations =
+        NetworkConfigurations.of(recomputedConfigurations);
+
     Network<EigrpInterface, EigrpEdge> eigrpTopology =
-        EigrpTopology.initEigrpTopology(configurations, topology);
+        EigrpTopology.initEigrpTopology(recomputedConfigurations, recomputedTopology);
 
     /*
      * Run the data plane computation here:
@@ -102,30 +295,38 @@ class IncrementalBdpEngine {
      * - Finally, compute FIBs, return answer
      */
     IncrementalBdpAnswerElement answerElement = new IncrementalBdpAnswerElement();
-    computeIgpDataPlane(nodes, topology, eigrpTopology, answerElement, networkConfigurations);
+    computeIgpDataPlane(
+        nodes, recomputedTopology, eigrpTopology, answerElement, networkConfigurations);
     computeFibs(nodes);
 
     IncrementalDataPlane dp = dpBuilder.build();
 
     ValueGraph<BgpPeerConfigId, BgpSessionProperties> bgpTopology =
         initBgpTopology(
-            configurations, ipOwners, false, true, TracerouteEngineImpl.getInstance(), dp);
+            recomputedConfigurations,
+            ipOwners,
+            false,
+            true,
+            TracerouteEngineImpl.getInstance(),
+            dp);
 
     Network<IsisNode, IsisEdge> isisTopology =
-        IsisTopology.initIsisTopology(configurations, topology);
+        IsisTopology.initIsisTopology(recomputedConfigurations, recomputedTopology);
 
     boolean isOscillating =
         computeNonMonotonicPortionOfDataPlane(
             nodes,
-            topology,
+            recomputedTopology,
             dp,
             externalAdverts,
             answerElement,
             true,
+            !partial && partition == null,
             bgpTopology,
             eigrpTopology,
             isisTopology,
-            networkConfigurations);
+            networkConfigurations,
+            partition);
     if (isOscillating) {
       // If we are oscillating here, network has no stable solution.
       throw new BdpOscillationException("Network has no stable solution");
@@ -133,13 +334,22 @@ class IncrementalBdpEngine {
 
     // update the dataplane with bgpTopology.
     // this will cause forwarding analysis, etc to be reinitialized
-    dp = dpBuilder.setBgpTopology(bgpTopology).build();
+    dp =
+        dpBuilder
+            .setBgpTopology(
+                partial ? mergeBgpTopologies(base, bgpTopology, allNodes, recomputed) : bgpTopology)
+            .build();
 
-    if (_settings.getCheckBgpSessionReachability()) {
+    if (_settings.getCheckBgpSessionReachability() && partition == null) {
       computeFibs(nodes);
       bgpTopology =
           initBgpTopology(
-              configurations, ipOwners, false, true, TracerouteEngineImpl.getInstance(), dp);
+              recomputedConfigurations,
+              ipOwners,
+              false,
+              true,
+              TracerouteEngineImpl.getInstance(),
+              dp);
       // Update queues (if necessary) based on new neighbor relationships
       final ValueGraph<BgpPeerConfigId, BgpSessionProperties> finalBgpTopology = bgpTopology;
       nodes
@@ -151,23 +361,68 @@ class IncrementalBdpEngine {
       // Do another pass on EGP computation in case any new sessions have been established
       computeNonMonotonicPortionOfDataPlane(
           nodes,
-          topology,
+          recomputedTopology,
           dp,
           externalAdverts,
           answerElement,
           false,
+          false,
           bgpTopology,
           eigrpTopology,
           isisTopology,
-          networkConfigurations);
+          networkConfigurations,
+          null);
+    }
+    if (partition != null) {
+      // Keep only the nodes whose routes this worker computed
+      nodes = partition.ownedNodes(nodes);
     }
     // Generate the answers from the computation, compute final FIBs
     computeFibs(nodes);
+    recordBgpPolicyCacheStats(nodes, answerElement);
+    logRegexMatchStats(initialAsPathStats, initialCommunityStats, initialPatternStats);
     answerElement.setVersion(Version.getVersion());
+    if (partition != null) {
+      // Only the leader holds the whole data plane, replacing the stubs of the other partitions
+      SortedMap<String, Node> gathered = partition.gatherNodes(nodes);
+      dp = gathered == null ? null : dpBuilder.setNodes(gathered).build();
+    }
     _bfLogger.printElapsedTime();
     return new ComputeDataPlaneResult(answerElement, dp);
   }
 
+  /**
+   * Combine the sessions of the nodes kept from {@code base} with the sessions computed for the
+   * recomputed nodes. No session joins a kept node to a recomputed one.
+   */
+  private static ValueGraph<BgpPeerConfigId, BgpSessionProperties> mergeBgpTopologies(
+      IncrementalDataPlane base,
+      ValueGraph<BgpPeerConfigId, BgpSessionProperties> recomputedBgpTopology,
+      Map<String, Node> allNodes,
+      Set<String> recomputed) {
+    ValueGraph<BgpPeerConfigId, BgpSessionProperties> baseBgpTopology = base.getBgpTopology();
+    MutableValueGraph<BgpPeerConfigId, BgpSessionProperties> graph =
+        ValueGraphBuilder.directed().allowsSelfLoops(false).build();
+    for (BgpPeerConfigId id : baseBgpTopology.nodes()) {
+      String hostname = id.getHostname();
+      if (allNodes.containsKey(hostname) && !recomputed.contains(hostname)) {
+        graph.addNode(id);
+        for (BgpPeerConfigId successor : baseBgpTopology.successors(id)) {
+          graph.putEdgeValue(
+              id, successor, baseBgpTopology.edgeValueOrDefault(id, successor, null));
+        }
+      }
+    }
+    recomputedBgpTopology.nodes().forEach(graph::addNode);
+    for (EndpointPair<BgpPeerConfigId> edge : recomputedBgpTopology.edges()) {
+      graph.putEdgeValue(
+          edge.source(),
+          edge.target(),
+          recomputedBgpTopology.edgeValueOrDefault(edge.source(), edge.target(), null));
+    }
+    return ImmutableValueGraph.copyOf(graph);
+  }
+
   /**
    * Perform one iteration of the "dependent routes" dataplane computation. Dependent routes refers
    * to routes that could change because other routes have changed. For example, this includes:
@@ -374,6 +629,10 @@ class IncrementalBdpEngine {
             });
     AtomicInteger propagateBgpCompleted =
         _newBatch.apply("Iteration " + iteration + ": Propagate BGP routes", nodes.size());
+    int parallelImportThreshold =
+        _settings.getParallelBgpImport()
+            ? _settings.getParallelBgpImportThreshold()
+            : Integer.MAX_VALUE;
     nodes
         .values()
         .parallelStream()
@@ -385,7 +644,8 @@ class IncrementalBdpEngine {
                   continue;
                 }
                 Map<BgpMultipathRib, RibDelta<BgpRoute>> deltas =
-                    vr.processBgpMessages(bgpTopology, networkConfigurations);
+                    vr.processBgpMessages(
+                        bgpTopology, networkConfigurations, parallelImportThreshold);
                 vr.finalizeBgpRoutesAndQueueOutgoingMessages(
                     proc.getMultipathEbgp(),
                     proc.getMultipathIbgp(),
@@ -398,6 +658,23 @@ class IncrementalBdpEngine {
             });
   }
 
+  /** Log how many AS-path and community regex matches this computation ran and compiled */
+  private void logRegexMatchStats(
+      CacheStats initialAsPathStats,
+      CacheStats initialCommunityStats,
+      CacheStats initialPatternStats) {
+    CacheStats asPathStats = BgpRegexMatcher.getAsPathStats().minus(initialAsPathStats);
+    CacheStats communityStats = BgpRegexMatcher.getCommunityStats().minus(initialCommunityStats);
+    CacheStats patternStats = BgpRegexMatcher.getPatternStats().minus(initialPatternStats);
+    _bfLogger.debugf(
+        "Regex matches: %d AS-path (%d cached), %d community (%d cached), %d regexes compiled\n",
+        asPathStats.requestCount(),
+        asPathStats.hitCount(),
+        communityStats.requestCount(),
+        communityStats.hitCount(),
+        patternStats.missCount());
+  }
+
   /**
    * Run {@link VirtualRouter#computeFib} on all of the given nodes (and their virtual routers)
    *
@@ -417,6 +694,24 @@ class IncrementalBdpEngine {
             });
   }
 
+  /** Record how well the BGP policy caches of the given nodes performed, if they are enabled */
+  private static void recordBgpPolicyCacheStats(
+      Map<String, Node> nodes, IncrementalBdpAnswerElement answerElement) {
+    long hits = 0;
+    long lookups = 0;
+    for (Node node : nodes.values()) {
+      for (VirtualRouter vr : node.getVirtualRouters().values()) {
+        BgpPolicyCache cache = vr.getBgpPolicyCache();
+        if (cache != null) {
+          hits += cache.getHits();
+          lookups += cache.getLookups();
+        }
+      }
+    }
+    answerElement.setBgpPolicyCacheHits(hits);
+    answerElement.setBgpPolicyCacheLookups(lookups);
+  }
+
   /**
    * Compute the IGP portion of the dataplane.
    *
@@ -495,7 +790,10 @@ class IncrementalBdpEngine {
    * @param externalAdverts the set of external BGP advertisements
    * @param ae The output answer element in which to store a report of the computation. Also
    *     contains the current recovery iteration.
+   * @param checkpoint whether this pass may resume from and save checkpoints, if they are enabled
    * @param eigrpTopology The topology representing EIGRP adjacencies
+   * @param partition this worker's share of a partitioned computation, or {@code null} if the
+   *     computation is not partitioned. Partitioned computations must start with the first pass.
    * @return true iff the computation is oscillating
    */
   private boolean computeNonMonotonicPortionOfDataPlane(
@@ -505,10 +803,23 @@ class IncrementalBdpEngine {
       Set<BgpAdvertisement> externalAdverts,
       IncrementalBdpAnswerElement ae,
       boolean firstPass,
+      boolean checkpoint,
       ValueGraph<BgpPeerConfigId, BgpSessionProperties> bgpTopology,
       Network<EigrpInterface, EigrpEdge> eigrpTopology,
       Network<IsisNode, IsisEdge> isisTopology,
-      NetworkConfigurations networkConfigurations) {
+      NetworkConfigurations networkConfigurations,
+      @Nullable IbdpPartition partition) {
+
+    /*
+     * Setup maps to track iterations. We need this for oscillation detection.
+     * Specifically, if we detect that an iteration hashcode (a hash of all the nodes' RIBs)
+     * has been previously encountered, we switch our schedule to a more restrictive one.
+     */
+
+    Map<Integer, SortedSet<Integer>> iterationsByHashCode = new HashMap<>();
+
+    // Identifies the inputs of this pass if it is checkpointed, otherwise null
+    String checkpointFingerprint = null;
 
     /*
      * Initialize all routers and their message queues (can be done as parallel as possible)
@@ -524,37 +835,62 @@ class IncrementalBdpEngine {
                 for (VirtualRouter vr : n.getVirtualRouters().values()) {
                   vr.initForEgpComputation(
                       nodes, topology, bgpTopology, eigrpTopology, isisTopology);
+                  vr.initBgpPolicyCache(_settings.getBgpPolicyCacheSize());
                 }
                 setupCompleted.incrementAndGet();
               });
 
-      // Queue initial outgoing messages
-      AtomicInteger queueInitial = _newBatch.apply("Queue initial bgp messages", nodes.size());
-      nodes
-          .values()
-          .parallelStream()
-          .forEach(
-              n -> {
-                for (VirtualRouter vr : n.getVirtualRouters().values()) {
-                  vr.initBaseBgpRibs(
-                      externalAdverts, dp.getIpOwners(), nodes, bgpTopology, networkConfigurations);
-                  vr.queueInitialBgpMessages(bgpTopology, nodes, networkConfigurations);
-                }
-                queueInitial.incrementAndGet();
-              });
+      IbdpCheckpoint resumed = null;
+      if (checkpoint && canCheckpoint(nodes)) {
+        checkpointFingerprint = computeCheckpointFingerprint(nodes, bgpTopology, externalAdverts);
+        _lastCheckpointTime = System.currentTimeMillis();
+        resumed = IbdpCheckpoint.read(_checkpointPath, checkpointFingerprint);
+      }
+      if (resumed != null) {
+        resumeFromCheckpoint(nodes, resumed, ae);
+      } else {
+        // Queue initial outgoing messages
+        Map<String, Node> initialNodes = partition == null ? nodes : partition.ownedNodes(nodes);
+        AtomicInteger queueInitial =
+            _newBatch.apply("Queue initial bgp messages", initialNodes.size());
+        initialNodes
+            .values()
+            .parallelStream()
+            .forEach(
+                n -> {
+                  for (VirtualRouter vr : n.getVirtualRouters().values()) {
+                    vr.initBaseBgpRibs(
+                        externalAdverts,
+                        dp.getIpOwners(),
+                        nodes,
+                        bgpTopology,
+                        networkConfigurations);
+                    vr.queueInitialBgpMessages(bgpTopology, nodes, networkConfigurations);
+                  }
+                  queueInitial.incrementAndGet();
+                });
+      }
+    }
+    if (partition != null) {
+      partition.exchangeBgpMessages(nodes);
+      return computePartitionedEgpIterations(
+          nodes, topology, dp, ae, bgpTopology, networkConfigurations, partition);
     }
-
-    /*
-     * Setup maps to track iterations. We need this for oscillation detection.
-     * Specifically, if we detect that an iteration hashcode (a hash of all the nodes' RIBs)
-     * has been previously encountered, we switch our schedule to a more restrictive one.
-     */
-
-    Map<Integer, SortedSet<Integer>> iterationsByHashCode = new HashMap<>();
 
     AtomicBoolean dependentRoutesChanged = new AtomicBoolean(false);
 
+    EventDrivenScheduler eventDrivenScheduler =
+        _settings.getScheduleName() == Schedule.EVENT_DRIVEN
+            ? new EventDrivenScheduler(
+                nodes,
+                topology,
+                bgpTopology,
+                new NodeColoredSchedule(nodes, _settings.getColoringType(), bgpTopology)
+                    .getAllRemaining())
+            : null;
+
     // Go into iteration mode, until the routes converge (or oscillation is detected)
+    boolean converged;
     do {
       _numIterations++;
 
@@ -562,14 +898,32 @@ class IncrementalBdpEngine {
       currentChangedMonitor = dependentRoutesChanged;
       currentChangedMonitor.set(false);
 
-      // Compute node schedule
-      IbdpSchedule schedule = IbdpSchedule.getSchedule(_settings, nodes, bgpTopology);
-
-      // compute dependent routes for each allowable set of nodes until we cover all nodes
-      while (schedule.hasNext()) {
-        Map<String, Node> iterationNodes = schedule.next();
-        computeDependentRoutesIteration(
-            iterationNodes, topology, _numIterations, nodes, bgpTopology, networkConfigurations);
+      boolean eventDriven = _settings.getScheduleName() == Schedule.EVENT_DRIVEN;
+      if (eventDriven) {
+        // Only process the nodes with work to do, including work created by earlier batches
+        for (int batch = 0; batch < eventDrivenScheduler.getNumBatches(); batch++) {
+          Map<String, Node> iterationNodes = eventDrivenScheduler.takeReadyNodes(batch);
+          if (iterationNodes.isEmpty()) {
+            continue;
+          }
+          computeDependentRoutesIteration(
+              iterationNodes, topology, _numIterations, nodes, bgpTopology, networkConfigurations);
+          iterationNodes
+              .values()
+              .parallelStream()
+              .flatMap(n -> n.getVirtualRouters().values().stream())
+              .forEach(eventDrivenScheduler::finishStep);
+        }
+      } else {
+        // Compute node schedule
+        IbdpSchedule schedule = IbdpSchedule.getSchedule(_settings, nodes, bgpTopology);
+
+        // compute dependent routes for each allowable set of nodes until we cover all nodes
+        while (schedule.hasNext()) {
+          Map<String, Node> iterationNodes = schedule.next();
+          computeDependentRoutesIteration(
+              iterationNodes, topology, _numIterations, nodes, bgpTopology, networkConfigurations);
+        }
       }
 
       /*
@@ -600,12 +954,26 @@ class IncrementalBdpEngine {
               Schedule.NODE_SERIALIZED, _numIterations);
           _settings.setScheduleName(Schedule.NODE_SERIALIZED);
         } else {
+          deleteCheckpoint(checkpointFingerprint);
           return true; // Found an oscillation
         }
       }
 
-      compareToPreviousIteration(nodes, dependentRoutesChanged, checkFixedPointCompleted);
-    } while (!areQueuesEmpty(nodes) || dependentRoutesChanged.get());
+      if (eventDriven) {
+        // Converged once no router is left with work to do
+        converged = eventDrivenScheduler.isQuiescent();
+      } else {
+        compareToPreviousIteration(nodes, dependentRoutesChanged, checkFixedPointCompleted);
+        converged = areQueuesEmpty(nodes) && !dependentRoutesChanged.get();
+      }
+      if (!converged
+          && checkpointFingerprint != null
+          && System.currentTimeMillis() - _lastCheckpointTime
+              >= _settings.getCheckpointIntervalMs()) {
+        saveCheckpoint(nodes, ae, checkpointFingerprint);
+      }
+    } while (!converged);
+    deleteCheckpoint(checkpointFingerprint);
 
     // After convergence, compute BGP advertisements sent to the outside of the network
     AtomicInteger computeBgpAdvertisementsToOutsideCompleted =
@@ -625,6 +993,269 @@ class IncrementalBdpEngine {
     return false; // No oscillations
   }
 
+  /**
+   * Run the EGP iterations of a partitioned computation until every partition converges. All
+   * partitions process the batches of the leader's schedule in step, exchanging the BGP messages
+   * sent across partitions after each batch, so that every node sees the messages it would see in
+   * a computation that is not partitioned.
+   *
+   * @return true iff the computation is oscillating
+   */
+  private boolean computePartitionedEgpIterations(
+      SortedMap<String, Node> nodes,
+      Topology topology,
+      IncrementalDataPlane dp,
+      IncrementalBdpAnswerElement ae,
+      ValueGraph<BgpPeerConfigId, BgpSessionProperties> bgpTopology,
+      NetworkConfigurations networkConfigurations,
+      IbdpPartition partition) {
+    SortedMap<String, Node> ownedNodes = partition.ownedNodes(nodes);
+
+    // Oscillation detection, by the hash codes of all partitions, which only each partition can
+    // compute for its own nodes
+    Map<List<Integer>, SortedSet<Integer>> iterationsByHashCodes = new HashMap<>();
+
+    boolean converged;
+    do {
+      _numIterations++;
+
+      ArrayList<TreeSet<String>> batches =
+          partition.fromLeader(
+              partition.isLeader()
+                  ? IbdpSchedule.getSchedule(_settings, nodes, bgpTopology)
+                      .getAllRemaining()
+                      .stream()
+                      .map(batch -> new TreeSet<>(batch.keySet()))
+                      .collect(Collectors.toCollection(ArrayList::new))
+                  : null);
+      for (Set<String> batch : batches) {
+        Map<String, Node> iterationNodes = Maps.filterKeys(ownedNodes, batch::contains);
+        if (!iterationNodes.isEmpty()) {
+          computeDependentRoutesIteration(
+              iterationNodes, topology, _numIterations, nodes, bgpTopology, networkConfigurations);
+        }
+        partition.exchangeBgpMessages(nodes);
+      }
+
+      IncrementalBdpAnswerElement partitionStatistics = new IncrementalBdpAnswerElement();
+      computeIterationStatistics(ownedNodes, partitionStatistics, _numIterations);
+      AtomicBoolean dependentRoutesChanged = new AtomicBoolean(false);
+      compareToPreviousIteration(
+          ownedNodes,
+          dependentRoutesChanged,
+          _newBatch.apply(
+              "Iteration " + _numIterations + ": Check if fixed-point reached",
+              ownedNodes.size()));
+      List<IbdpPartition.IterationStatus> statuses =
+          partition.gatherStatuses(
+              new IbdpPartition.IterationStatus(
+                  computeIterationHashCode(ownedNodes),
+                  areQueuesEmpty(ownedNodes) && !dependentRoutesChanged.get(),
+                  partitionStatistics.getBgpBestPathRibRoutesByIteration().get(_numIterations),
+                  partitionStatistics.getBgpMultipathRibRoutesByIteration().get(_numIterations),
+                  partitionStatistics.getMainRibRoutesByIteration().get(_numIterations)));
+
+      // Every partition receives the same statuses, and so reaches the same decisions
+      ae.getBgpBestPathRibRoutesByIteration()
+          .put(
+              _numIterations,
+              statuses
+                  .stream()
+                  .mapToInt(IbdpPartition.IterationStatus::getBgpBestPathRibRoutes)
+                  .sum());
+      ae.getBgpMultipathRibRoutesByIteration()
+          .put(
+              _numIterations,
+              statuses
+                  .stream()
+                  .mapToInt(IbdpPartition.IterationStatus::getBgpMultipathRibRoutes)
+                  .sum());
+      ae.getMainRibRoutesByIteration()
+          .put(
+              _numIterations,
+              statuses.stream().mapToInt(IbdpPartition.IterationStatus::getMainRibRoutes).sum());
+
+      List<Integer> iterationHashCodes =
+          statuses
+              .stream()
+              .map(IbdpPartition.IterationStatus::getHashCode)
+              .collect(ImmutableList.toImmutableList());
+      SortedSet<Integer> iterationsWithThisHashCode =
+          iterationsByHashCodes.computeIfAbsent(iterationHashCodes, h -> new TreeSet<>());
+      if (iterationsWithThisHashCode.isEmpty()) {
+        iterationsWithThisHashCode.add(_numIterations);
+      } else if (_settings.getScheduleName() != Schedule.NODE_SERIALIZED) {
+        // If oscillation detected, switch to a more restrictive schedule
+        _bfLogger.debugf(
+            "Switching to a more restrictive schedule %s, iteration %d\n",
+            Schedule.NODE_SERIALIZED, _numIterations);
+        _settings.setScheduleName(Schedule.NODE_SERIALIZED);
+      } else {
+        return true; // Found an oscillation
+      }
+      converged = statuses.stream().allMatch(IbdpPartition.IterationStatus::isConverged);
+    } while (!converged);
+
+    // After convergence, compute BGP advertisements sent to the outside of the network
+    AtomicInteger computeBgpAdvertisementsToOutsideCompleted =
+        _newBatch.apply("Compute BGP advertisements sent to outside", ownedNodes.size());
+    ownedNodes
+        .values()
+        .parallelStream()
+        .forEach(
+            n -> {
+              for (VirtualRouter vr : n.getVirtualRouters().values()) {
+                vr.computeBgpAdvertisementsToOutside(dp.getIpOwners());
+              }
+              computeBgpAdvertisementsToOutsideCompleted.incrementAndGet();
+            });
+
+    ae.setDependentRoutesIterations(_numIterations);
+    return false; // No oscillations
+  }
+
+  /**
+   * Whether the EGP iterations over the given nodes can be checkpointed. Event-driven schedules
+   * keep state outside the virtual routers, and so do some protocols (see {@link
+   * VirtualRouter#supportsCheckpoints()}).
+   */
+  private boolean canCheckpoint(Map<String, Node> nodes) {
+    return _checkpointPath != null
+        && _settings.getCheckpointIntervalMs() > 0
+        && _settings.getScheduleName() != Schedule.EVENT_DRIVEN
+        && nodes
+            .values()
+            .stream()
+            .flatMap(n -> n.getVirtualRouters().values().stream())
+            .allMatch(VirtualRouter::supportsCheckpoints);
+  }
+
+  /**
+   * Identify the inputs of the EGP iterations: the nodes and their VRFs, the routes the IGP phase
+   * computed, the BGP sessions, the external advertisements and the settings that change the
+   * iterations. Only string hash codes are used, since the hash codes of routes and other objects
+   * with enum attributes differ between JVMs.
+   */
+  private String computeCheckpointFingerprint(
+      SortedMap<String, Node> nodes,
+      ValueGraph<BgpPeerConfigId, BgpSessionProperties> bgpTopology,
+      Set<BgpAdvertisement> externalAdverts) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putString(Version.getVersion(), UTF_8);
+    hasher.putString(_settings.getScheduleName().toString(), UTF_8);
+    hasher.putString(_settings.getColoringType().toString(), UTF_8);
+    nodes.forEach(
+        (hostname, node) -> {
+          hasher.putString(hostname, UTF_8);
+          node.getVirtualRouters()
+              .forEach(
+                  (vrfName, vr) -> {
+                    hasher.putString(vrfName, UTF_8);
+                    hasher.putInt(vr._mainRib.getRoutes().size());
+                    hasher.putLong(
+                        vr._mainRib
+                            .getRoutes()
+                            .parallelStream()
+                            .mapToLong(r -> r.toString().hashCode())
+                            .sum());
+                  });
+        });
+    bgpTopology
+        .edges()
+        .stream()
+        .map(
+            edge ->
+                String.join(
+                    " ",
+                    edge.nodeU().getHostname(),
+                    edge.nodeU().getVrfName(),
+                    edge.nodeU().getRemotePeerPrefix().toString(),
+                    edge.nodeV().getHostname(),
+                    edge.nodeV().getVrfName(),
+                    edge.nodeV().getRemotePeerPrefix().toString()))
+        .sorted()
+        .forEach(edge -> hasher.putString(edge, UTF_8));
+    externalAdverts
+        .stream()
+        .map(BgpAdvertisement::toString)
+        .sorted()
+        .forEach(advert -> hasher.putString(advert, UTF_8));
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Restore the state of the given nodes and of the computation from a checkpoint, in place of the
+   * initial BGP RIBs and messages. The history used to detect oscillations starts empty, since it
+   * is not saved (see {@link IbdpCheckpoint}).
+   */
+  private void resumeFromCheckpoint(
+      Map<String, Node> nodes, IbdpCheckpoint checkpoint, IncrementalBdpAnswerElement ae) {
+    _bfLogger.infof(
+        "Resuming data plane computation from checkpoint after iteration %d\n",
+        checkpoint.getIterations());
+    nodes
+        .values()
+        .parallelStream()
+        .forEach(
+            n ->
+                n.getVirtualRouters()
+                    .forEach(
+                        (vrfName, vr) ->
+                            vr.restoreCheckpointState(
+                                checkpoint.getRouterState(
+                                    n.getConfiguration().getHostname(), vrfName))));
+    _numIterations = checkpoint.getIterations();
+    _settings.setScheduleName(checkpoint.getSchedule());
+    ae.getBgpBestPathRibRoutesByIteration().putAll(checkpoint.getBgpBestPathRibRoutesByIteration());
+    ae.getBgpMultipathRibRoutesByIteration()
+        .putAll(checkpoint.getBgpMultipathRibRoutesByIteration());
+    ae.getMainRibRoutesByIteration().putAll(checkpoint.getMainRibRoutesByIteration());
+  }
+
+  /**
+   * Save a checkpoint of the computation after the current iteration. A checkpoint that cannot be
+   * written does not fail the computation.
+   */
+  private void saveCheckpoint(
+      Map<String, Node> nodes, IncrementalBdpAnswerElement ae, String fingerprint) {
+    Map<String, Map<String, IbdpCheckpoint.RouterState>> routers = new TreeMap<>();
+    nodes.forEach(
+        (hostname, node) -> {
+          Map<String, IbdpCheckpoint.RouterState> vrfs = new TreeMap<>();
+          node.getVirtualRouters()
+              .forEach((vrfName, vr) -> vrfs.put(vrfName, vr.getCheckpointState()));
+          routers.put(hostname, vrfs);
+        });
+    IbdpCheckpoint checkpoint =
+        new IbdpCheckpoint(
+            fingerprint,
+            _numIterations,
+            _settings.getScheduleName(),
+            new TreeMap<>(ae.getBgpBestPathRibRoutesByIteration()),
+            new TreeMap<>(ae.getBgpMultipathRibRoutesByIteration()),
+            new TreeMap<>(ae.getMainRibRoutesByIteration()),
+            routers);
+    try {
+      checkpoint.write(_checkpointPath);
+      _bfLogger.debugf("Saved checkpoint after iteration %d\n", _numIterations);
+    } catch (IOException e) {
+      _bfLogger.warnf("Failed to save checkpoint to %s: %s\n", _checkpointPath, e.getMessage());
+    }
+    _lastCheckpointTime = System.currentTimeMillis();
+  }
+
+  /** Delete the checkpoint of a finished pass, if it was checkpointed */
+  private void deleteCheckpoint(@Nullable String fingerprint) {
+    if (fingerprint == null) {
+      return;
+    }
+    try {
+      Files.deleteIfExists(_checkpointPath);
+    } catch (IOException e) {
+      _bfLogger.warnf("Failed to delete checkpoint %s: %s\n", _checkpointPath, e.getMessage());
+    }
+  }
+
   private static void compareToPreviousIteration(
       Map<String, Node> nodes,
       AtomicBoolean dependentRoutesChanged,
@@ -718,18 +1349,16 @@ class IncrementalBdpEngine {
    * Return the main RIB routes for each node. Map structure: Hostname -&gt; VRF name -&gt; Set of
    * routes
    */
-  static SortedMap<String, SortedMap<String, SortedSet<AbstractRoute>>> getRoutes(
-      IncrementalDataPlane dp) {
-    // Scan through all Nodes and their virtual routers, retrieve main rib routes
+  static SortedMap<String, SortedMap<String, SortedSet<AbstractRoute>>> getRoutes(DataPlane dp) {
+    // Scan through all nodes and their VRFs, retrieve main rib routes
     return toImmutableSortedMap(
-        dp.getNodes(),
+        dp.getRibs(),
         Entry::getKey,
         nodeEntry ->
             toImmutableSortedMap(
-                nodeEntry.getValue().getVirtualRouters(),
+                nodeEntry.getValue(),
                 Entry::getKey,
-                vrfEntry ->
-                    ImmutableSortedSet.copyOf(vrfEntry.getValue().getMainRib().getRoutes())));
+                vrfEntry -> ImmutableSortedSet.copyOf(vrfEntry.getValue().getRoutes())));
   }
 
   /**
@@ -15,12 +15,14 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
+import org.batfish.common.BatfishException;
 import org.batfish.datamodel.AbstractRoute;
 import org.batfish.datamodel.BgpPeerConfigId;
 import org.batfish.datamodel.BgpRoute;
 import org.batfish.datamodel.BgpSessionProperties;
 import org.batfish.datamodel.Configuration;
 import org.batfish.datamodel.DataPlane;
+import org.batfish.datamodel.DataPlaneDetail;
 import org.batfish.datamodel.Edge;
 import org.batfish.datamodel.Fib;
 import org.batfish.datamodel.ForwardingAnalysis;
@@ -38,6 +40,8 @@ public final class IncrementalDataPlane implements Serializable, DataPlane {
 
     private ValueGraph<BgpPeerConfigId, BgpSessionProperties> _bgpTopology;
 
+    private DataPlaneDetail _detail = DataPlaneDetail.FULL;
+
     private Map<Ip, Set<String>> _ipOwners;
 
     private Map<Ip, Map<String, Set<String>>> _ipVrfOwners;
@@ -51,6 +55,11 @@ public final class IncrementalDataPlane implements Serializable, DataPlane {
       return this;
     }
 
+    public Builder setDetail(DataPlaneDetail detail) {
+      _detail = detail;
+      return this;
+    }
+
     public Builder setIpOwners(Map<Ip, Set<String>> ipOwners) {
       _ipOwners = ImmutableMap.copyOf(ipOwners);
       return this;
@@ -118,6 +127,8 @@ public final class IncrementalDataPlane implements Serializable, DataPlane {
   private final Supplier<Map<String, Configuration>> _configurations =
       Suppliers.memoize(new ConfigurationsSupplier());
 
+  private final DataPlaneDetail _detail;
+
   private final Supplier<Map<String, Map<String, Fib>>> _fibs =
       Suppliers.memoize(new FibsSupplier());
 
@@ -136,6 +147,7 @@ public final class IncrementalDataPlane implements Serializable, DataPlane {
 
   private IncrementalDataPlane(Builder builder) {
     _bgpTopology = builder._bgpTopology;
+    _detail = builder._detail;
     _ipOwners = builder._ipOwners;
     _ipVrfOwners = builder._ipVrfOwners;
     _nodes = builder._nodes;
@@ -175,8 +187,19 @@ public final class IncrementalDataPlane implements Serializable, DataPlane {
                 vrfEntry -> vrfEntry.getValue().getMainRib()));
   }
 
+  /** Throw unless this data plane retains the given level of detail, needed for {@code what} */
+  void checkDetail(DataPlaneDetail required, String what) {
+    if (!_detail.includes(required)) {
+      throw new BatfishException(
+          String.format(
+              "%s require a data plane retaining %s detail, but this one retains only %s",
+              what, required, _detail));
+    }
+  }
+
   @Override
   public Table<String, String, Set<BgpRoute>> getBgpRoutes(boolean multipath) {
+    checkDetail(DataPlaneDetail.BGP, "BGP routes");
     Table<String, String, Set<BgpRoute>> table = TreeBasedTable.create();
 
     _nodes.forEach(
@@ -204,6 +227,11 @@ public final class IncrementalDataPlane implements Serializable, DataPlane {
     return _configurations.get();
   }
 
+  @Override
+  public DataPlaneDetail getDetail() {
+    return _detail;
+  }
+
   @Override
   public Map<String, Map<String, Fib>> getFibs() {
     return _fibs.get();
@@ -233,6 +261,7 @@ public final class IncrementalDataPlane implements Serializable, DataPlane {
    * Map structure: Hostname -&gt; VRF name -&gt; prefix tracer.
    */
   public SortedMap<String, SortedMap<String, PrefixTracer>> getPrefixTracingInfo() {
+    checkDetail(DataPlaneDetail.FULL, "Prefix tracing information");
     /*
      * Iterate over nodes, then virtual routers, and extract prefix tracer from each.
      * Sort hostnames and VRF names
@@ -250,6 +279,7 @@ public final class IncrementalDataPlane implements Serializable, DataPlane {
   @Override
   public SortedMap<String, SortedMap<String, Map<Prefix, Map<String, Set<String>>>>>
       getPrefixTracingInfoSummary() {
+    checkDetail(DataPlaneDetail.FULL, "Prefix tracing information");
     /*
      * Iterate over nodes, then virtual routers, and extract prefix tracer from each.
      * Sort hostnames and VRF names
@@ -281,4 +311,26 @@ public final class IncrementalDataPlane implements Serializable, DataPlane {
   public SortedSet<Edge> getTopologyEdges() {
     return _topology.getEdges();
   }
+
+  /**
+   * Release the state of the virtual routers that the given level of detail does not retain (see
+   * {@link VirtualRouter#retain}), and return a data plane that reports that level. This data plane
+   * must not be used afterwards, nor serve as the base of an incremental computation that needs
+   * more detail.
+   */
+  IncrementalDataPlane retain(DataPlaneDetail detail) {
+    _nodes
+        .values()
+        .parallelStream()
+        .flatMap(n -> n.getVirtualRouters().values().stream())
+        .forEach(vr -> vr.retain(detail));
+    return builder()
+        .setBgpTopology(_bgpTopology)
+        .setDetail(detail)
+        .setIpOwners(_ipOwners)
+        .setIpVrfOwners(_ipVrfOwners)
+        .setNodes(_nodes)
+        .setTopology(_topology)
+        .build();
+  }
 }
@@ -1,8 +1,18 @@
 package org.batfish.dataplane.ibdp;
 
 import com.google.auto.service.AutoService;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.net.HostAndPort;
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.UnknownHostException;
+import java.nio.file.Path;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -10,7 +20,10 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import org.batfish.common.BatfishException;
 import org.batfish.common.plugin.DataPlanePlugin;
 import org.batfish.common.plugin.ITracerouteEngine;
 import org.batfish.common.plugin.Plugin;
@@ -18,9 +31,12 @@ import org.batfish.datamodel.AbstractRoute;
 import org.batfish.datamodel.BgpAdvertisement;
 import org.batfish.datamodel.Configuration;
 import org.batfish.datamodel.DataPlane;
+import org.batfish.datamodel.DataPlaneDetail;
+import org.batfish.datamodel.FailureScenario;
 import org.batfish.datamodel.Flow;
 import org.batfish.datamodel.FlowTrace;
 import org.batfish.datamodel.Topology;
+import org.batfish.datamodel.answers.FailureScenariosAnswerElement;
 import org.batfish.datamodel.answers.IncrementalBdpAnswerElement;
 import org.batfish.dataplane.TracerouteEngineImpl;
 
@@ -30,10 +46,15 @@ public class IncrementalDataPlanePlugin extends DataPlanePlugin {
 
   public static final String PLUGIN_NAME = "ibdp";
 
-  private final Map<IncrementalDataPlane, Map<Flow, Set<FlowTrace>>> _flowTraces;
+  /** How long a worker keeps trying to reach the leader of a partitioned computation */
+  private static final long PARTITION_CONNECT_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(5);
+
+  private final Map<DataPlane, Map<Flow, Set<FlowTrace>>> _flowTraces;
 
   private IncrementalBdpEngine _engine;
 
+  private IncrementalDataPlaneSettings _settings;
+
   public IncrementalDataPlanePlugin() {
     _flowTraces = new HashMap<>();
   }
@@ -42,7 +63,14 @@ public class IncrementalDataPlanePlugin extends DataPlanePlugin {
   public ComputeDataPlaneResult computeDataPlane(boolean differentialContext) {
     Map<String, Configuration> configurations = _batfish.loadConfigurations();
     Topology topology = _batfish.getEnvironmentTopology();
-    return computeDataPlane(differentialContext, configurations, topology);
+    // Only the data plane of the environment itself is checkpointed, not that of a compressed
+    // network or of configurations supplied by the caller
+    _engine.setCheckpointPath(_batfish.getDataPlaneCheckpointPath());
+    try {
+      return computeDataPlane(differentialContext, configurations, topology);
+    } finally {
+      _engine.setCheckpointPath(null);
+    }
   }
 
   @Override
@@ -50,7 +78,15 @@ public class IncrementalDataPlanePlugin extends DataPlanePlugin {
       boolean differentialContext, Map<String, Configuration> configurations, Topology topology) {
     Set<BgpAdvertisement> externalAdverts = _batfish.loadExternalBgpAnnouncements(configurations);
     ComputeDataPlaneResult answer =
-        _engine.computeDataPlane(differentialContext, configurations, topology, externalAdverts);
+        _settings.getPartitions() > 1
+            ? computePartitionedDataPlane(configurations, topology, externalAdverts)
+            : computeWholeDataPlane(differentialContext, configurations, topology, externalAdverts);
+    if (answer._dataPlane == null) {
+      _logger.infof(
+          "Computed a share of the data plane for testrig:%s, which the leader holds\n",
+          _batfish.getTestrigName());
+      return answer;
+    }
     double averageRoutes =
         ((IncrementalDataPlane) answer._dataPlane)
             .getNodes()
@@ -65,21 +101,148 @@ public class IncrementalDataPlanePlugin extends DataPlanePlugin {
         _batfish.getTestrigName(),
         ((IncrementalBdpAnswerElement) answer._answerElement).getDependentRoutesIterations(),
         averageRoutes);
-    return answer;
+    DataPlaneDetail retention = _settings.getDataPlaneRetention();
+    if (retention == DataPlaneDetail.FULL) {
+      return answer;
+    }
+    return new ComputeDataPlaneResult(
+        answer._answerElement, ((IncrementalDataPlane) answer._dataPlane).retain(retention));
+  }
+
+  /**
+   * Compute this worker's share of a data plane partitioned across {@link
+   * IncrementalDataPlaneSettings#getPartitions()} workers, all of which must compute the same
+   * environment at the same time. The leader gathers the nodes of all partitions and returns the
+   * whole data plane; the other workers return no data plane. A partitioned computation never
+   * starts from the data plane of a base snapshot.
+   */
+  private ComputeDataPlaneResult computePartitionedDataPlane(
+      Map<String, Configuration> configurations,
+      Topology topology,
+      Set<BgpAdvertisement> externalAdverts) {
+    try (PartitionTransport transport = connectPartitions(_settings)) {
+      _logger.infof(
+          "Computing partition %d of %d of the data plane\n",
+          transport.getPartition(), transport.getNumPartitions());
+      return _engine.computePartitionedDataPlane(
+          configurations, topology, externalAdverts, transport);
+    } catch (IOException e) {
+      throw new BatfishException(
+          "Failed to connect the partitions of the data plane computation", e);
+    }
+  }
+
+  /**
+   * Connect to the other workers of a partitioned computation, as its leader if {@link
+   * IncrementalDataPlaneSettings#getPartitionLead()} is set, in which case it listens only on the
+   * address of the leader's host. A worker keeps trying to reach a leader that is not listening yet
+   * for up to {@link #PARTITION_CONNECT_TIMEOUT_MS}.
+   */
+  @VisibleForTesting
+  static PartitionTransport connectPartitions(IncrementalDataPlaneSettings settings)
+      throws IOException {
+    HostAndPort leader;
+    try {
+      leader = HostAndPort.fromString(settings.getPartitionLeader());
+    } catch (IllegalArgumentException e) {
+      leader = null;
+    }
+    if (leader == null || !leader.hasPort()) {
+      throw new BatfishException(
+          String.format(
+              "%s must be host:port for a partitioned computation, not '%s'",
+              IncrementalDataPlaneSettings.PROP_PARTITION_LEADER, settings.getPartitionLeader()));
+    }
+    InetSocketAddress address =
+        leader.getHost().isEmpty()
+            ? new InetSocketAddress(InetAddress.getLoopbackAddress(), leader.getPort())
+            : new InetSocketAddress(leader.getHost(), leader.getPort());
+    if (address.isUnresolved()) {
+      throw new UnknownHostException(leader.getHost());
+    }
+    int timeoutMs = settings.getPartitionTimeoutMs();
+    if (settings.getPartitionLead()) {
+      // Closing the server socket leaves the accepted connections open
+      try (ServerSocket serverSocket =
+          new ServerSocket(address.getPort(), 0, address.getAddress())) {
+        return SocketPartitionTransport.lead(serverSocket, settings.getPartitions(), timeoutMs);
+      }
+    }
+    long deadline = System.currentTimeMillis() + PARTITION_CONNECT_TIMEOUT_MS;
+    while (true) {
+      try {
+        return SocketPartitionTransport.join(address, timeoutMs);
+      } catch (ConnectException e) {
+        if (System.currentTimeMillis() > deadline) {
+          throw e;
+        }
+        Uninterruptibles.sleepUninterruptibly(1, TimeUnit.SECONDS);
+      }
+    }
+  }
+
+  /**
+   * Compute the whole data plane on this worker, starting from the data plane of the base snapshot
+   * if {@link IncrementalDataPlaneSettings#getIncrementalFromBase()} is set
+   */
+  private ComputeDataPlaneResult computeWholeDataPlane(
+      boolean differentialContext,
+      Map<String, Configuration> configurations,
+      Topology topology,
+      Set<BgpAdvertisement> externalAdverts) {
+    IncrementalDataPlane base = null;
+    Set<BgpAdvertisement> baseExternalAdverts = ImmutableSet.of();
+    if (differentialContext && _settings.getIncrementalFromBase()) {
+      _batfish.pushBaseEnvironment();
+      try {
+        DataPlane baseDataPlane = _batfish.loadDataPlane();
+        // A lean base lacks the protocol RIBs from which the delta would resume
+        if (baseDataPlane instanceof IncrementalDataPlane
+            && baseDataPlane.getDetail() == DataPlaneDetail.FULL) {
+          base = (IncrementalDataPlane) baseDataPlane;
+          baseExternalAdverts = _batfish.loadExternalBgpAnnouncements(base.getConfigurations());
+        }
+      } finally {
+        _batfish.popEnvironment();
+      }
+    }
+    return _engine.computeDataPlane(
+        differentialContext, configurations, topology, externalAdverts, base, baseExternalAdverts);
+  }
+
+  /**
+   * Compute the data plane of the current environment without failures, then under each failure
+   * scenario starting from it (see {@link FailureScenarioRunner})
+   */
+  @Override
+  public FailureScenariosAnswerElement computeFailureScenarios(
+      List<FailureScenario> scenarios, long budgetBytes) {
+    Map<String, Configuration> configurations = _batfish.loadConfigurations();
+    Topology topology = _batfish.getEnvironmentTopology();
+    Set<BgpAdvertisement> externalAdverts = _batfish.loadExternalBgpAnnouncements(configurations);
+    // The base must be computed here: a data plane read back from disk has no virtual routers
+    IncrementalDataPlane base =
+        (IncrementalDataPlane)
+            _engine.computeDataPlane(false, configurations, topology, externalAdverts)._dataPlane;
+    return new FailureScenarioRunner(
+            base, externalAdverts, _settings, _batfish.getLogger(), budgetBytes)
+        .run(scenarios);
   }
 
   @Override
   protected void dataPlanePluginInitialize() {
-    _engine =
-        new IncrementalBdpEngine(
-            new IncrementalDataPlaneSettings(_batfish.getSettingsConfiguration()),
-            _batfish.getLogger(),
-            _batfish::newBatch);
+    _settings = new IncrementalDataPlaneSettings(_batfish.getSettingsConfiguration());
+    _engine = new IncrementalBdpEngine(_settings, _batfish.getLogger(), _batfish::newBatch);
   }
 
   @Override
   public Set<BgpAdvertisement> getAdvertisements() {
-    IncrementalDataPlane dp = loadDataPlane();
+    DataPlane dataPlane = _batfish.loadDataPlane();
+    if (dataPlane instanceof MappedDataPlane) {
+      return ((MappedDataPlane) dataPlane).getBgpAdvertisements();
+    }
+    IncrementalDataPlane dp = (IncrementalDataPlane) dataPlane;
+    dp.checkDetail(DataPlaneDetail.BGP, "BGP advertisements");
     return dp.getNodes()
         .values()
         .stream()
@@ -99,8 +262,7 @@ public class IncrementalDataPlanePlugin extends DataPlanePlugin {
 
   @Override
   public List<Flow> getHistoryFlows(DataPlane dataPlane) {
-    IncrementalDataPlane dp = (IncrementalDataPlane) dataPlane;
-    Map<Flow, Set<FlowTrace>> traces = _flowTraces.get(dp);
+    Map<Flow, Set<FlowTrace>> traces = _flowTraces.get(dataPlane);
     if (traces == null) {
       return ImmutableList.of();
     }
@@ -113,8 +275,7 @@ public class IncrementalDataPlanePlugin extends DataPlanePlugin {
 
   @Override
   public List<FlowTrace> getHistoryFlowTraces(DataPlane dataPlane) {
-    IncrementalDataPlane dp = (IncrementalDataPlane) dataPlane;
-    Map<Flow, Set<FlowTrace>> traces = _flowTraces.get(dp);
+    Map<Flow, Set<FlowTrace>> traces = _flowTraces.get(dataPlane);
     if (traces == null) {
       return ImmutableList.of();
     }
@@ -123,19 +284,30 @@ public class IncrementalDataPlanePlugin extends DataPlanePlugin {
 
   @Override
   public SortedMap<String, SortedMap<String, SortedSet<AbstractRoute>>> getRoutes(DataPlane dp) {
-    return IncrementalBdpEngine.getRoutes((IncrementalDataPlane) dp);
+    return IncrementalBdpEngine.getRoutes(dp);
   }
 
   @Override
   public void processFlows(Set<Flow> flows, DataPlane dataPlane, boolean ignoreAcls) {
     _flowTraces.put(
-        (IncrementalDataPlane) dataPlane,
+        dataPlane,
         TracerouteEngineImpl.getInstance()
             .processFlows(dataPlane, flows, dataPlane.getFibs(), ignoreAcls));
   }
 
-  private IncrementalDataPlane loadDataPlane() {
-    return (IncrementalDataPlane) _batfish.loadDataPlane();
+  @Override
+  @Nullable
+  public DataPlane readDataPlane(Path path) throws IOException {
+    return MappedDataPlane.isMappedDataPlane(path) ? MappedDataPlane.open(path) : null;
+  }
+
+  @Override
+  public boolean writeDataPlane(DataPlane dataPlane, Path path) throws IOException {
+    if (!(dataPlane instanceof IncrementalDataPlane)) {
+      return false;
+    }
+    MappedDataPlane.write((IncrementalDataPlane) dataPlane, path);
+    return true;
   }
 
   @Override
@@ -3,10 +3,12 @@ package org.batfish.dataplane.ibdp;
 import static org.batfish.dataplane.ibdp.schedule.IbdpSchedule.Schedule.NODE_COLORED;
 import static org.batfish.dataplane.ibdp.schedule.NodeColoredSchedule.Coloring.SATURATION;
 
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.configuration2.Configuration;
 import org.apache.commons.configuration2.ConfigurationUtils;
 import org.apache.commons.configuration2.ImmutableConfiguration;
 import org.apache.commons.configuration2.PropertiesConfiguration;
+import org.batfish.datamodel.DataPlaneDetail;
 import org.batfish.dataplane.ibdp.schedule.IbdpSchedule.Schedule;
 import org.batfish.dataplane.ibdp.schedule.NodeColoredSchedule;
 import org.batfish.dataplane.ibdp.schedule.NodeColoredSchedule.Coloring;
@@ -20,6 +22,16 @@ public class IncrementalDataPlaneSettings {
   public static final String PROP_SCHEDULE = "schedule";
   public static final String PROP_LOG_ROUTES = "logiterationroutes";
   public static final String PROP_CHECK_BGP_REACHABILITY = "checkbgpsessionreachability";
+  public static final String PROP_INCREMENTAL_FROM_BASE = "incrementalfrombase";
+  public static final String PROP_PARALLEL_BGP_IMPORT = "parallelbgpimport";
+  public static final String PROP_PARALLEL_BGP_IMPORT_THRESHOLD = "parallelbgpimportthreshold";
+  public static final String PROP_BGP_POLICY_CACHE_SIZE = "bgppolicycachesize";
+  public static final String PROP_CHECKPOINT_INTERVAL_MS = "checkpointintervalms";
+  public static final String PROP_DATA_PLANE_RETENTION = "dataplaneretention";
+  public static final String PROP_PARTITIONS = "dppartitions";
+  public static final String PROP_PARTITION_LEADER = "dppartitionleader";
+  public static final String PROP_PARTITION_LEAD = "dppartitionlead";
+  public static final String PROP_PARTITION_TIMEOUT_MS = "dppartitiontimeoutms";
 
   /**
    * Return the underlying configuration (it will be mutable).
@@ -53,6 +65,16 @@ public class IncrementalDataPlaneSettings {
     _config.setProperty(PROP_SCHEDULE, NODE_COLORED.toString());
     _config.setProperty(PROP_LOG_ROUTES, true);
     _config.setProperty(PROP_CHECK_BGP_REACHABILITY, true);
+    _config.setProperty(PROP_INCREMENTAL_FROM_BASE, false);
+    _config.setProperty(PROP_PARALLEL_BGP_IMPORT, false);
+    _config.setProperty(PROP_PARALLEL_BGP_IMPORT_THRESHOLD, 1024);
+    _config.setProperty(PROP_BGP_POLICY_CACHE_SIZE, 0);
+    _config.setProperty(PROP_CHECKPOINT_INTERVAL_MS, 0L);
+    _config.setProperty(PROP_DATA_PLANE_RETENTION, DataPlaneDetail.FULL.toString());
+    _config.setProperty(PROP_PARTITIONS, 1);
+    _config.setProperty(PROP_PARTITION_LEADER, "");
+    _config.setProperty(PROP_PARTITION_LEAD, false);
+    _config.setProperty(PROP_PARTITION_TIMEOUT_MS, (int) TimeUnit.MINUTES.toMillis(30));
   }
 
   /** Return the dataplane computation {@link Schedule} */
@@ -65,6 +87,85 @@ public class IncrementalDataPlaneSettings {
     return _config.getBoolean(PROP_CHECK_BGP_REACHABILITY);
   }
 
+  /**
+   * Whether the data plane of a delta snapshot should be derived from the converged data plane of
+   * its base snapshot, recomputing only the nodes the differences can affect
+   */
+  public boolean getIncrementalFromBase() {
+    return _config.getBoolean(PROP_INCREMENTAL_FROM_BASE);
+  }
+
+  /**
+   * Whether a router that received many BGP messages in an iteration should import them on multiple
+   * threads, sharded by prefix
+   */
+  public boolean getParallelBgpImport() {
+    return _config.getBoolean(PROP_PARALLEL_BGP_IMPORT);
+  }
+
+  /**
+   * The minimum number of BGP messages a router must have received in an iteration for them to be
+   * imported on multiple threads, if {@link #getParallelBgpImport()} is set
+   */
+  public int getParallelBgpImportThreshold() {
+    return _config.getInt(PROP_PARALLEL_BGP_IMPORT_THRESHOLD);
+  }
+
+  /**
+   * The maximum number of BGP import and export policy results each virtual router caches, or 0 if
+   * policy results are not cached
+   */
+  public int getBgpPolicyCacheSize() {
+    return _config.getInt(PROP_BGP_POLICY_CACHE_SIZE);
+  }
+
+  /**
+   * The minimum time in milliseconds between checkpoints of the EGP iterations, from which an
+   * interrupted computation can resume, or 0 if no checkpoints are taken
+   */
+  public long getCheckpointIntervalMs() {
+    return _config.getLong(PROP_CHECKPOINT_INTERVAL_MS);
+  }
+
+  /**
+   * The state a converged data plane retains once computed. Less detail saves memory and disk, but
+   * leaves questions that need more unanswerable until the data plane is recomputed.
+   */
+  public DataPlaneDetail getDataPlaneRetention() {
+    return DataPlaneDetail.valueOf(_config.getString(PROP_DATA_PLANE_RETENTION));
+  }
+
+  /**
+   * The number of workers that share the EGP iterations of each data plane computation, or 1 if
+   * each worker computes whole data planes on its own (see {@link
+   * IncrementalBdpEngine#computePartitionedDataPlane})
+   */
+  public int getPartitions() {
+    return _config.getInt(PROP_PARTITIONS);
+  }
+
+  /**
+   * The address of the worker that leads a partitioned computation, as {@code host:port}. The
+   * leader listens on the port of the host's address only, or of the loopback address if the host
+   * is empty, and the other workers connect to it.
+   */
+  public String getPartitionLeader() {
+    return _config.getString(PROP_PARTITION_LEADER);
+  }
+
+  /** Whether this worker leads partitioned computations (see {@link #getPartitionLeader()}) */
+  public boolean getPartitionLead() {
+    return _config.getBoolean(PROP_PARTITION_LEAD);
+  }
+
+  /**
+   * How long, in milliseconds, the workers of a partitioned computation wait to connect to each
+   * other and then for each message, before failing the computation
+   */
+  public int getPartitionTimeoutMs() {
+    return _config.getInt(PROP_PARTITION_TIMEOUT_MS);
+  }
+
   /**
    * Set the dataplane computation {@link Schedule}
    *
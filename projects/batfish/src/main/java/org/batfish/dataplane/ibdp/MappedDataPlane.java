@@ -0,0 +1,633 @@
+package org.batfish.dataplane.ibdp;
+
+import com.google.common.base.Suppliers;
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Table;
+import com.google.common.collect.TreeBasedTable;
+import com.google.common.graph.ValueGraph;
+import com.google.common.io.CountingOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectStreamException;
+import java.io.SequenceInputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.batfish.common.BatfishException;
+import org.batfish.common.util.CompactSerialization;
+import org.batfish.common.util.LazySortedMap;
+import org.batfish.datamodel.AbstractRoute;
+import org.batfish.datamodel.BgpAdvertisement;
+import org.batfish.datamodel.BgpPeerConfigId;
+import org.batfish.datamodel.BgpRoute;
+import org.batfish.datamodel.BgpSessionProperties;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.DataPlane;
+import org.batfish.datamodel.DataPlaneDetail;
+import org.batfish.datamodel.Edge;
+import org.batfish.datamodel.Fib;
+import org.batfish.datamodel.ForwardingAnalysis;
+import org.batfish.datamodel.ForwardingAnalysisImpl;
+import org.batfish.datamodel.GenericRib;
+import org.batfish.datamodel.Ip;
+import org.batfish.datamodel.Prefix;
+import org.batfish.datamodel.Topology;
+
+/**
+ * A {@link DataPlane} backed by a memory-mapped file, whose per-node and per-VRF routing state is
+ * decoded only when first accessed.
+ *
+ * <p>The file consists of a header, a sequence of independently encoded blocks, an index locating
+ * each block by section, node, and VRF, and a trailer holding the offset of the index. Each VRF's
+ * BGP routes, its BGP advertisements, and its prefix tracing summary are stored in separate blocks,
+ * as is each node's configuration. Each VRF's main RIB and FIB are stored in columns with a prefix
+ * index, as described in {@link MappedRoutes}. The maps returned by {@link #getRibs()}, {@link
+ * #getFibs()}, {@link #getConfigurations()}, and {@link #getPrefixTracingInfoSummary()} are lazy,
+ * so e.g. a routes question about one node decodes only that node's routes, and not their next
+ * hops. The {@link ForwardingAnalysis} is computed when the file is written and stored in its own
+ * block, so that traceroute decodes only the next hops of the prefixes a flow matches.
+ *
+ * <p>The file is mapped once when opened, and written to a temporary file that is then moved into
+ * place, so that data planes already open on a replaced file keep reading the old one.
+ *
+ * <p>The header also records the {@link DataPlaneDetail} the data plane retains; sections beyond it
+ * are not written, and their accessors throw.
+ *
+ * <p>As with a deserialized {@link IncrementalDataPlane}, the BGP topology is not retained.
+ */
+public final class MappedDataPlane implements DataPlane {
+
+  private static final long serialVersionUID = 1L;
+
+  /** The header at the start of every mapped data plane file. */
+  static final byte[] MAGIC_BYTES = {'B', 'F', 'D', 'P'};
+
+  /** The version of the file layout. Bump whenever the layout changes. */
+  static final int FORMAT_VERSION = 3;
+
+  /* Node and VRF name used in the index for blocks not specific to a node or VRF. */
+  private static final String NONE = "";
+
+  private static final String TMP_SUFFIX = ".tmp";
+
+  /* Size of the trailer, which holds the offset of the index. */
+  private static final int TRAILER_LENGTH = Long.BYTES;
+
+  /* Size of the regions in which the file is mapped, since a single mapping is limited to 2 GiB. */
+  private static final long CHUNK_SIZE = 1L << 30;
+
+  private enum Section {
+    BGP_ADVERTISEMENTS,
+    BGP_ROUTES,
+    CONFIGURATION,
+    FORWARDING_ANALYSIS,
+    IP_OWNERS,
+    IP_VRF_OWNERS,
+    PREFIX_TRACING,
+    ROUTES,
+    TOPOLOGY
+  }
+
+  /** Location of an encoded block within the file. */
+  private static final class Block {
+    private final long _length;
+
+    private final long _offset;
+
+    private Block(long offset, long length) {
+      _offset = offset;
+      _length = length;
+    }
+  }
+
+  private static final class BgpAdvertisementsBlock implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final Set<BgpAdvertisement> _received;
+
+    private final Set<BgpAdvertisement> _sent;
+
+    private BgpAdvertisementsBlock(Set<BgpAdvertisement> sent, Set<BgpAdvertisement> received) {
+      _sent = sent;
+      _received = received;
+    }
+  }
+
+  private static final class BgpRoutesBlock implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final Set<BgpRoute> _bestPath;
+
+    private final Set<BgpRoute> _multipath;
+
+    private BgpRoutesBlock(Set<BgpRoute> bestPath, Set<BgpRoute> multipath) {
+      _bestPath = bestPath;
+      _multipath = multipath;
+    }
+  }
+
+  /** Serialized form of a {@link MappedDataPlane}: the path of its backing file. */
+  private static final class SerializedForm implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String _path;
+
+    private SerializedForm(String path) {
+      _path = path;
+    }
+
+    private Object readResolve() throws ObjectStreamException {
+      try {
+        return open(Paths.get(_path));
+      } catch (IOException e) {
+        StreamCorruptedException sce =
+            new StreamCorruptedException("Could not reopen mapped data plane " + _path);
+        sce.initCause(e);
+        throw sce;
+      }
+    }
+  }
+
+  /** Reads a {@link ByteBuffer} from its position to its limit. */
+  private static final class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer _buffer;
+
+    private ByteBufferInputStream(ByteBuffer buffer) {
+      _buffer = buffer;
+    }
+
+    @Override
+    public int available() {
+      return _buffer.remaining();
+    }
+
+    @Override
+    public int read() {
+      return _buffer.hasRemaining() ? _buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(@Nonnull byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!_buffer.hasRemaining()) {
+        return -1;
+      }
+      int n = Math.min(len, _buffer.remaining());
+      _buffer.get(b, off, n);
+      return n;
+    }
+  }
+
+  /** Returns {@code true} if the file at {@code path} is a mapped data plane. */
+  public static boolean isMappedDataPlane(Path path) {
+    byte[] magic = new byte[MAGIC_BYTES.length];
+    try (InputStream in = Files.newInputStream(path)) {
+      return in.read(magic) == magic.length && Arrays.equals(magic, MAGIC_BYTES);
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Opens the mapped data plane at {@code path}. Only the index is read; all other state is decoded
+   * on first access.
+   */
+  public static MappedDataPlane open(Path path) throws IOException {
+    Map<Section, Table<String, String, Block>> index = new EnumMap<>(Section.class);
+    ByteBuffer[] chunks;
+    long size;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      size = channel.size();
+      chunks = new ByteBuffer[(int) ((size + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+      for (int i = 0; i < chunks.length; i++) {
+        long offset = i * CHUNK_SIZE;
+        chunks[i] = channel.map(MapMode.READ_ONLY, offset, Math.min(CHUNK_SIZE, size - offset));
+      }
+    }
+    // Magic bytes, version, and detail
+    int headerLength = MAGIC_BYTES.length + 2;
+    if (size < headerLength + TRAILER_LENGTH) {
+      throw new StreamCorruptedException("Truncated mapped data plane: " + path);
+    }
+    DataInputStream header = new DataInputStream(stream(chunks, 0, headerLength));
+    byte[] magic = new byte[MAGIC_BYTES.length];
+    header.readFully(magic);
+    if (!Arrays.equals(magic, MAGIC_BYTES)) {
+      throw new StreamCorruptedException("Not a mapped data plane: " + path);
+    }
+    int version = header.readByte();
+    if (version != FORMAT_VERSION) {
+      throw new StreamCorruptedException(
+          String.format(
+              "Unsupported mapped data plane version %d, expected %d", version, FORMAT_VERSION));
+    }
+    int detailOrdinal = header.readByte();
+    if (detailOrdinal < 0 || detailOrdinal >= DataPlaneDetail.values().length) {
+      throw new StreamCorruptedException("Unknown mapped data plane detail " + detailOrdinal);
+    }
+    DataPlaneDetail detail = DataPlaneDetail.values()[detailOrdinal];
+    long indexOffset =
+        new DataInputStream(stream(chunks, size - TRAILER_LENGTH, TRAILER_LENGTH)).readLong();
+    DataInputStream in =
+        new DataInputStream(stream(chunks, indexOffset, size - TRAILER_LENGTH - indexOffset));
+    int numBlocks = in.readInt();
+    for (int i = 0; i < numBlocks; i++) {
+      Section section = Section.values()[in.readUnsignedByte()];
+      String node = in.readUTF();
+      String vrf = in.readUTF();
+      long offset = in.readLong();
+      long length = in.readLong();
+      index
+          .computeIfAbsent(section, s -> HashBasedTable.create())
+          .put(node, vrf, new Block(offset, length));
+    }
+    return new MappedDataPlane(path, detail, chunks, index);
+  }
+
+  /** Returns a stream reading the given range of a file mapped in {@link #CHUNK_SIZE} chunks. */
+  private static InputStream stream(ByteBuffer[] chunks, long offset, long length) {
+    List<InputStream> streams = new ArrayList<>();
+    long position = offset;
+    long end = offset + length;
+    while (position < end) {
+      ByteBuffer chunk = chunks[(int) (position / CHUNK_SIZE)].duplicate();
+      int chunkOffset = (int) (position % CHUNK_SIZE);
+      int n = (int) Math.min(end - position, CHUNK_SIZE - chunkOffset);
+      chunk.position(chunkOffset);
+      chunk.limit(chunkOffset + n);
+      streams.add(new ByteBufferInputStream(chunk));
+      position += n;
+    }
+    return streams.size() == 1
+        ? streams.get(0)
+        : new SequenceInputStream(Collections.enumeration(streams));
+  }
+
+  /**
+   * Writes {@code dp} to {@code path} in mapped data plane format, replacing any previous file only
+   * once this one is complete.
+   */
+  public static void write(IncrementalDataPlane dp, Path path) throws IOException {
+    Path tmp =
+        Files.createTempFile(
+            path.toAbsolutePath().getParent(), path.getFileName().toString(), TMP_SUFFIX);
+    try {
+      writeBlocks(dp, tmp);
+      Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  private static void writeBlocks(IncrementalDataPlane dp, Path path) throws IOException {
+    Map<Section, Table<String, String, Block>> index = new EnumMap<>(Section.class);
+    try (CountingOutputStream out =
+        new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+      out.write(MAGIC_BYTES);
+      out.write(FORMAT_VERSION);
+      DataPlaneDetail detail = dp.getDetail();
+      out.write(detail.ordinal());
+      BlockWriter writer = new BlockWriter(out, index);
+      writer.write(Section.IP_OWNERS, NONE, NONE, (Serializable) dp.getIpOwners());
+      writer.write(Section.IP_VRF_OWNERS, NONE, NONE, (Serializable) dp.getIpVrfOwners());
+      writer.write(Section.TOPOLOGY, NONE, NONE, dp.getTopology());
+      writer.write(
+          Section.FORWARDING_ANALYSIS,
+          NONE,
+          NONE,
+          (ForwardingAnalysisImpl) dp.getForwardingAnalysis());
+      for (Map.Entry<String, Node> nodeEntry : new TreeMap<>(dp.getNodes()).entrySet()) {
+        String hostname = nodeEntry.getKey();
+        Node node = nodeEntry.getValue();
+        writer.write(Section.CONFIGURATION, hostname, NONE, node.getConfiguration());
+        for (Map.Entry<String, VirtualRouter> vrEntry : node.getVirtualRouters().entrySet()) {
+          String vrfName = vrEntry.getKey();
+          VirtualRouter vr = vrEntry.getValue();
+          writer.write(
+              Section.ROUTES,
+              hostname,
+              vrfName,
+              MappedRoutes.write(vr.getMainRib(), vr.getFib(), writer));
+          if (!detail.includes(DataPlaneDetail.BGP)) {
+            continue;
+          }
+          writer.write(
+              Section.BGP_ROUTES,
+              hostname,
+              vrfName,
+              new BgpRoutesBlock(
+                  ImmutableSet.copyOf(vr.getBgpBestPathRib().getRoutes()),
+                  ImmutableSet.copyOf(vr.getBgpMultipathRib().getRoutes())));
+          writer.write(
+              Section.BGP_ADVERTISEMENTS,
+              hostname,
+              vrfName,
+              new BgpAdvertisementsBlock(
+                  ImmutableSet.copyOf(vr.getSentBgpAdvertisements()),
+                  ImmutableSet.copyOf(vr.getReceivedBgpAdvertisements())));
+          if (detail != DataPlaneDetail.FULL) {
+            continue;
+          }
+          writer.write(
+              Section.PREFIX_TRACING,
+              hostname,
+              vrfName,
+              (Serializable) vr.getPrefixTracer().summarize());
+        }
+      }
+      writer.writeIndex();
+    }
+  }
+
+  /**
+   * Appends blocks to a file being written, recording their locations in an index. Pages are
+   * blocks located by the {@link MappedRoutes} blocks rather than by the index.
+   */
+  private static final class BlockWriter implements MappedRoutes.PageWriter {
+
+    private final Map<Section, Table<String, String, Block>> _index;
+
+    private final CountingOutputStream _out;
+
+    private BlockWriter(
+        CountingOutputStream out, Map<Section, Table<String, String, Block>> index) {
+      _out = out;
+      _index = index;
+    }
+
+    private void write(Section section, String node, String vrf, Serializable object)
+        throws IOException {
+      long offset = _out.getCount();
+      CompactSerialization.serialize(object, _out);
+      _index
+          .computeIfAbsent(section, s -> HashBasedTable.create())
+          .put(node, vrf, new Block(offset, _out.getCount() - offset));
+    }
+
+    @Override
+    public long position() {
+      return _out.getCount();
+    }
+
+    @Override
+    public void writePage(Serializable page) throws IOException {
+      CompactSerialization.serialize(page, _out);
+    }
+
+    private void writeIndex() throws IOException {
+      long indexOffset = _out.getCount();
+      // Not closed, since that would close the underlying stream before the trailer is written.
+      DataOutputStream data = new DataOutputStream(_out);
+      data.writeInt(_index.values().stream().mapToInt(Table::size).sum());
+      for (Map.Entry<Section, Table<String, String, Block>> sectionEntry : _index.entrySet()) {
+        for (Table.Cell<String, String, Block> cell : sectionEntry.getValue().cellSet()) {
+          data.writeByte(sectionEntry.getKey().ordinal());
+          data.writeUTF(cell.getRowKey());
+          data.writeUTF(cell.getColumnKey());
+          data.writeLong(cell.getValue()._offset);
+          data.writeLong(cell.getValue()._length);
+        }
+      }
+      data.writeLong(indexOffset);
+      data.flush();
+    }
+  }
+
+  private final transient Map<Section, Table<String, String, Supplier<Object>>> _blocks;
+
+  /** The mapped file, in {@link #CHUNK_SIZE} chunks */
+  private final transient ByteBuffer[] _chunks;
+
+  private final transient Supplier<SortedMap<String, Configuration>> _configurations;
+
+  private final transient DataPlaneDetail _detail;
+
+  private final transient Supplier<SortedMap<String, SortedMap<String, Fib>>> _fibs;
+
+  private final transient Path _path;
+
+  private final transient Supplier<
+          SortedMap<String, SortedMap<String, Map<Prefix, Map<String, Set<String>>>>>>
+      _prefixTracingInfoSummary;
+
+  private final transient Supplier<SortedMap<String, SortedMap<String, GenericRib<AbstractRoute>>>>
+      _ribs;
+
+  private MappedDataPlane(
+      Path path,
+      DataPlaneDetail detail,
+      ByteBuffer[] chunks,
+      Map<Section, Table<String, String, Block>> index) {
+    _path = path;
+    _detail = detail;
+    _chunks = chunks;
+    _blocks = new EnumMap<>(Section.class);
+    index.forEach(
+        (section, blocks) -> {
+          Table<String, String, Supplier<Object>> suppliers = HashBasedTable.create();
+          blocks
+              .cellSet()
+              .forEach(
+                  cell ->
+                      suppliers.put(
+                          cell.getRowKey(),
+                          cell.getColumnKey(),
+                          Suppliers.memoize(
+                              () -> read(cell.getValue()._offset, cell.getValue()._length))));
+          _blocks.put(section, suppliers);
+        });
+    _configurations = Suppliers.memoize(this::configurations);
+    _ribs = Suppliers.memoize(() -> perVrf(Section.ROUTES, b -> routes(b).getRib()));
+    _fibs = Suppliers.memoize(() -> perVrf(Section.ROUTES, b -> routes(b).getFib()));
+    _prefixTracingInfoSummary =
+        Suppliers.memoize(() -> perVrf(Section.PREFIX_TRACING, MappedDataPlane::castSummary));
+  }
+
+  private SortedMap<String, Configuration> configurations() {
+    SortedMap<String, Supplier<Configuration>> byNode = new TreeMap<>();
+    section(Section.CONFIGURATION)
+        .column(NONE)
+        .forEach((hostname, block) -> byNode.put(hostname, () -> (Configuration) block.get()));
+    return new LazySortedMap<>(byNode);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<Prefix, Map<String, Set<String>>> castSummary(Object block) {
+    return (Map<Prefix, Map<String, Set<String>>>) block;
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T global(Section section) {
+    return (T) section(section).get(NONE, NONE).get();
+  }
+
+  /**
+   * Returns a lazy map: hostname -&gt; VRF name -&gt; the given {@code getter} applied to the block
+   * for that VRF in the given {@code section}.
+   */
+  private <T> SortedMap<String, SortedMap<String, T>> perVrf(
+      Section section, Function<Object, T> getter) {
+    SortedMap<String, Supplier<SortedMap<String, T>>> byNode = new TreeMap<>();
+    section(section)
+        .rowMap()
+        .forEach(
+            (hostname, vrfBlocks) -> {
+              SortedMap<String, Supplier<T>> byVrf = new TreeMap<>();
+              vrfBlocks.forEach(
+                  (vrfName, block) -> byVrf.put(vrfName, () -> getter.apply(block.get())));
+              byNode.put(hostname, () -> new LazySortedMap<>(byVrf));
+            });
+    return new LazySortedMap<>(byNode);
+  }
+
+  /** Decodes the block at the given location in the file. */
+  Object read(long offset, long length) {
+    try {
+      return CompactSerialization.deserialize(
+          stream(_chunks, offset, length),
+          Serializable.class,
+          Thread.currentThread().getContextClassLoader());
+    } catch (IOException | ClassNotFoundException e) {
+      throw new BatfishException("Error reading data plane block from " + _path, e);
+    }
+  }
+
+  private MappedRoutes routes(Object index) {
+    return new MappedRoutes(this, (MappedRoutes.RoutesIndex) index);
+  }
+
+  private void checkDetail(DataPlaneDetail required, String what) {
+    if (!_detail.includes(required)) {
+      throw new BatfishException(
+          String.format(
+              "%s require a data plane retaining %s detail, but %s retains only %s",
+              what, required, _path, _detail));
+    }
+  }
+
+  private Table<String, String, Supplier<Object>> section(Section section) {
+    Table<String, String, Supplier<Object>> blocks = _blocks.get(section);
+    return blocks != null ? blocks : HashBasedTable.create();
+  }
+
+  /** Returns all BGP advertisements sent or received by any node. Decodes every VRF's block. */
+  public Set<BgpAdvertisement> getBgpAdvertisements() {
+    checkDetail(DataPlaneDetail.BGP, "BGP advertisements");
+    return section(Section.BGP_ADVERTISEMENTS)
+        .values()
+        .parallelStream()
+        .map(s -> (BgpAdvertisementsBlock) s.get())
+        .flatMap(b -> Stream.concat(b._sent.stream(), b._received.stream()))
+        .collect(ImmutableSet.toImmutableSet());
+  }
+
+  @Override
+  public Table<String, String, Set<BgpRoute>> getBgpRoutes(boolean multipath) {
+    checkDetail(DataPlaneDetail.BGP, "BGP routes");
+    Table<String, String, Set<BgpRoute>> table = TreeBasedTable.create();
+    section(Section.BGP_ROUTES)
+        .cellSet()
+        .forEach(
+            cell -> {
+              BgpRoutesBlock block = (BgpRoutesBlock) cell.getValue().get();
+              table.put(
+                  cell.getRowKey(),
+                  cell.getColumnKey(),
+                  multipath ? block._multipath : block._bestPath);
+            });
+    return table;
+  }
+
+  @Override
+  @Nullable
+  public ValueGraph<BgpPeerConfigId, BgpSessionProperties> getBgpTopology() {
+    return null;
+  }
+
+  @Override
+  public Map<String, Configuration> getConfigurations() {
+    return _configurations.get();
+  }
+
+  @Override
+  public DataPlaneDetail getDetail() {
+    return _detail;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Map<String, Map<String, Fib>> getFibs() {
+    // The lazy map itself rather than a view of it, so that callers can listen for loads
+    return (Map<String, Map<String, Fib>>) (Map<String, ?>) _fibs.get();
+  }
+
+  @Override
+  public ForwardingAnalysis getForwardingAnalysis() {
+    return global(Section.FORWARDING_ANALYSIS);
+  }
+
+  @Override
+  public Map<Ip, Set<String>> getIpOwners() {
+    return global(Section.IP_OWNERS);
+  }
+
+  @Override
+  public Map<Ip, Map<String, Set<String>>> getIpVrfOwners() {
+    return global(Section.IP_VRF_OWNERS);
+  }
+
+  @Override
+  public SortedMap<String, SortedMap<String, Map<Prefix, Map<String, Set<String>>>>>
+      getPrefixTracingInfoSummary() {
+    checkDetail(DataPlaneDetail.FULL, "Prefix tracing information");
+    return _prefixTracingInfoSummary.get();
+  }
+
+  @Override
+  public SortedMap<String, SortedMap<String, GenericRib<AbstractRoute>>> getRibs() {
+    return _ribs.get();
+  }
+
+  @Override
+  public Topology getTopology() {
+    return global(Section.TOPOLOGY);
+  }
+
+  @Override
+  public SortedSet<Edge> getTopologyEdges() {
+    return getTopology().getEdges();
+  }
+
+  private Object writeReplace() {
+    return new SerializedForm(_path.toString());
+  }
+}
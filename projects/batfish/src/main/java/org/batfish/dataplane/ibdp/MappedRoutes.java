@@ -0,0 +1,429 @@
+package org.batfish.dataplane.ibdp;
+
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.ImmutableSortedSet;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+import javax.annotation.Nonnull;
+import org.batfish.datamodel.AbstractRoute;
+import org.batfish.datamodel.Fib;
+import org.batfish.datamodel.GenericRib;
+import org.batfish.datamodel.Ip;
+import org.batfish.datamodel.IpSpace;
+import org.batfish.datamodel.IpWildcard;
+import org.batfish.datamodel.IpWildcardSetIpSpace;
+import org.batfish.datamodel.Prefix;
+
+/**
+ * The main RIB and FIB of one VRF of a {@link MappedDataPlane}, stored in columns with a prefix
+ * index.
+ *
+ * <p>The VRF's prefixes are sorted and split into pages of {@link #PAGE_SIZE} prefixes. For each
+ * page, the routes of its prefixes and the FIB next hops of those routes are encoded in two
+ * separate blocks, the routes column and the next hops column. The {@link RoutesIndex} holding the
+ * sorted prefixes and the locations of the pages is the only part decoded up front. A longest
+ * prefix match is a binary search of the index per prefix length, and decodes at most one page of
+ * one column: a routes question decodes only routes, and traceroute only the next hops of the
+ * prefixes its flows match.
+ */
+final class MappedRoutes implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /** The number of prefixes whose routes or next hops are encoded together. */
+  static final int PAGE_SIZE = 64;
+
+  /** The sorted prefixes of a VRF and the locations of the pages of its columns. */
+  static final class RoutesIndex implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Prefix lengths, in the order of {@link #_starts} */
+    private final byte[] _lengths;
+
+    /** Offsets in the file of the next hops pages, followed by the end of the last page */
+    private final long[] _nextHopsPages;
+
+    /** Offsets in the file of the routes pages, followed by the end of the last page */
+    private final long[] _routesPages;
+
+    /** Start addresses of the prefixes, sorted as in {@link Prefix#compareTo(Prefix)} */
+    private final int[] _starts;
+
+    private RoutesIndex(int[] starts, byte[] lengths, long[] routesPages, long[] nextHopsPages) {
+      _starts = starts;
+      _lengths = lengths;
+      _routesPages = routesPages;
+      _nextHopsPages = nextHopsPages;
+    }
+
+    private Prefix getPrefix(int i) {
+      return new Prefix(new Ip(Integer.toUnsignedLong(_starts[i])), _lengths[i]);
+    }
+
+    /** Returns the position of the given prefix in the index, or -1 if it is absent */
+    private int indexOf(long start, int length) {
+      int low = 0;
+      int high = _starts.length - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        int cmp = Long.compare(Integer.toUnsignedLong(_starts[mid]), start);
+        if (cmp == 0) {
+          cmp = Integer.compare(_lengths[mid], length);
+        }
+        if (cmp < 0) {
+          low = mid + 1;
+        } else if (cmp > 0) {
+          high = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Returns the position in the index of the longest prefix of length at most {@code maxLength}
+     * containing {@code address}, or -1 if there is none.
+     */
+    private int longestPrefixMatch(long address, int maxLength) {
+      for (int length = maxLength; length >= 0; length--) {
+        int i = indexOf(address & mask(length), length);
+        if (i >= 0) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private int size() {
+      return _starts.length;
+    }
+  }
+
+  /** Appends pages to a mapped data plane file being written. */
+  interface PageWriter {
+
+    /** Returns the offset in the file at which the next page will be written. */
+    long position();
+
+    void writePage(Serializable page) throws IOException;
+  }
+
+  /**
+   * Writes the columns of the given RIB and FIB as pages, and returns the index locating them.
+   * The FIB must have been built from the RIB.
+   */
+  static RoutesIndex write(GenericRib<AbstractRoute> rib, Fib fib, PageWriter writer)
+      throws IOException {
+    SortedSet<Prefix> prefixes = rib.getPrefixes();
+    int numPrefixes = prefixes.size();
+    int[] starts = new int[numPrefixes];
+    byte[] lengths = new byte[numPrefixes];
+    List<Set<AbstractRoute>> routes = new ArrayList<>(numPrefixes);
+    int p = 0;
+    for (Prefix prefix : prefixes) {
+      starts[p] = (int) prefix.getStartIp().asLong();
+      lengths[p] = (byte) prefix.getPrefixLength();
+      // The routes in the order the RIB itself matches them, which the FIB's merges depend on
+      routes.add(
+          ImmutableSet.copyOf(
+              rib.longestPrefixMatch(prefix.getStartIp(), prefix.getPrefixLength())));
+      p++;
+    }
+
+    int numPages = (numPrefixes + PAGE_SIZE - 1) / PAGE_SIZE;
+    long[] routesPages = new long[numPages + 1];
+    for (int page = 0; page < numPages; page++) {
+      routesPages[page] = writer.position();
+      writer.writePage(new ArrayList<>(routes.subList(page * PAGE_SIZE, pageEnd(page, routes))));
+    }
+    routesPages[numPages] = writer.position();
+
+    Map<AbstractRoute, Map<String, Map<Ip, Set<AbstractRoute>>>> allNextHops =
+        fib.getNextHopInterfaces();
+    long[] nextHopsPages = new long[numPages + 1];
+    for (int page = 0; page < numPages; page++) {
+      nextHopsPages[page] = writer.position();
+      ArrayList<Map<AbstractRoute, Map<String, Map<Ip, Set<AbstractRoute>>>>> nextHops =
+          new ArrayList<>();
+      for (Set<AbstractRoute> prefixRoutes :
+          routes.subList(page * PAGE_SIZE, pageEnd(page, routes))) {
+        ImmutableMap.Builder<AbstractRoute, Map<String, Map<Ip, Set<AbstractRoute>>>> byRoute =
+            ImmutableMap.builder();
+        prefixRoutes.forEach(route -> byRoute.put(route, allNextHops.get(route)));
+        nextHops.add(byRoute.build());
+      }
+      writer.writePage(nextHops);
+    }
+    nextHopsPages[numPages] = writer.position();
+    return new RoutesIndex(starts, lengths, routesPages, nextHopsPages);
+  }
+
+  private static int pageEnd(int page, List<?> list) {
+    return Math.min((page + 1) * PAGE_SIZE, list.size());
+  }
+
+  private static long mask(int length) {
+    return length == 0 ? 0L : (0xFFFFFFFFL << (Prefix.MAX_PREFIX_LENGTH - length)) & 0xFFFFFFFFL;
+  }
+
+  private final MappedDataPlane _dataPlane;
+
+  private final RoutesIndex _index;
+
+  private final transient Supplier<Map<AbstractRoute, Map<String, Map<Ip, Set<AbstractRoute>>>>>
+      _allNextHops;
+
+  private final transient Supplier<Set<AbstractRoute>> _allRoutes;
+
+  /** Decoded next hops pages; a page decoded concurrently by two readers is decoded twice. */
+  private final transient AtomicReferenceArray<
+          List<Map<AbstractRoute, Map<String, Map<Ip, Set<AbstractRoute>>>>>>
+      _nextHopsPages;
+
+  /** Decoded routes pages; a page decoded concurrently by two readers is decoded twice. */
+  private final transient AtomicReferenceArray<List<Set<AbstractRoute>>> _routesPages;
+
+  MappedRoutes(MappedDataPlane dataPlane, RoutesIndex index) {
+    _dataPlane = dataPlane;
+    _index = index;
+    int numPages = index._routesPages.length - 1;
+    _routesPages = new AtomicReferenceArray<>(numPages);
+    _nextHopsPages = new AtomicReferenceArray<>(numPages);
+    _allRoutes = Suppliers.memoize(this::allRoutes);
+    _allNextHops = Suppliers.memoize(this::allNextHops);
+  }
+
+  private Map<AbstractRoute, Map<String, Map<Ip, Set<AbstractRoute>>>> allNextHops() {
+    ImmutableMap.Builder<AbstractRoute, Map<String, Map<Ip, Set<AbstractRoute>>>> builder =
+        ImmutableMap.builder();
+    for (int i = 0; i < _index.size(); i++) {
+      builder.putAll(nextHopsAt(i));
+    }
+    return builder.build();
+  }
+
+  private Set<AbstractRoute> allRoutes() {
+    ImmutableSet.Builder<AbstractRoute> builder = ImmutableSet.builder();
+    for (int i = 0; i < _index.size(); i++) {
+      builder.addAll(routesAt(i));
+    }
+    return builder.build();
+  }
+
+  @SuppressWarnings("unchecked")
+  private Map<AbstractRoute, Map<String, Map<Ip, Set<AbstractRoute>>>> nextHopsAt(int i) {
+    int page = i / PAGE_SIZE;
+    List<Map<AbstractRoute, Map<String, Map<Ip, Set<AbstractRoute>>>>> nextHops =
+        _nextHopsPages.get(page);
+    if (nextHops == null) {
+      nextHops =
+          (List<Map<AbstractRoute, Map<String, Map<Ip, Set<AbstractRoute>>>>>)
+              readPage(_index._nextHopsPages, page);
+      _nextHopsPages.set(page, nextHops);
+    }
+    return nextHops.get(i % PAGE_SIZE);
+  }
+
+  private Object readPage(long[] pages, int page) {
+    return _dataPlane.read(pages[page], pages[page + 1] - pages[page]);
+  }
+
+  private Object readResolve() {
+    return new MappedRoutes(_dataPlane, _index);
+  }
+
+  @SuppressWarnings("unchecked")
+  private Set<AbstractRoute> routesAt(int i) {
+    int page = i / PAGE_SIZE;
+    List<Set<AbstractRoute>> routes = _routesPages.get(page);
+    if (routes == null) {
+      routes = (List<Set<AbstractRoute>>) readPage(_index._routesPages, page);
+      _routesPages.set(page, routes);
+    }
+    return routes.get(i % PAGE_SIZE);
+  }
+
+  GenericRib<AbstractRoute> getRib() {
+    return new MappedRib(this);
+  }
+
+  Fib getFib() {
+    return new MappedFib(this);
+  }
+
+  /** A read-only view of the main RIB of a {@link MappedRoutes}. */
+  private static final class MappedRib implements GenericRib<AbstractRoute> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final MappedRoutes _routes;
+
+    private MappedRib(MappedRoutes routes) {
+      _routes = routes;
+    }
+
+    @Override
+    public int comparePreference(AbstractRoute lhs, AbstractRoute rhs) {
+      throw new UnsupportedOperationException("The RIB of a mapped data plane is read-only");
+    }
+
+    @Override
+    public Map<Prefix, IpSpace> getMatchingIps() {
+      RoutesIndex index = _routes._index;
+      /*
+       * The index is sorted in preorder of the prefix trie, so the prefixes on the stack are the
+       * chain of indexed prefixes containing the current one. The IPs matching a prefix are those
+       * it contains, except those of the outermost indexed prefixes it strictly contains.
+       */
+      Map<Prefix, IpWildcardSetIpSpace.Builder> builders = new TreeMap<>();
+      Deque<Prefix> containing = new ArrayDeque<>();
+      for (int i = 0; i < index.size(); i++) {
+        Prefix prefix = index.getPrefix(i);
+        while (!containing.isEmpty() && !containing.peek().containsPrefix(prefix)) {
+          containing.pop();
+        }
+        if (!containing.isEmpty()) {
+          builders.get(containing.peek()).excluding(new IpWildcard(prefix));
+        }
+        builders.put(prefix, IpWildcardSetIpSpace.builder().including(new IpWildcard(prefix)));
+        containing.push(prefix);
+      }
+      ImmutableMap.Builder<Prefix, IpSpace> matchingIps = ImmutableMap.builder();
+      builders.forEach((prefix, builder) -> matchingIps.put(prefix, builder.build()));
+      return matchingIps.build();
+    }
+
+    @Override
+    public SortedSet<Prefix> getPrefixes() {
+      RoutesIndex index = _routes._index;
+      ImmutableSortedSet.Builder<Prefix> prefixes = ImmutableSortedSet.naturalOrder();
+      for (int i = 0; i < index.size(); i++) {
+        prefixes.add(index.getPrefix(i));
+      }
+      return prefixes.build();
+    }
+
+    @Override
+    public IpSpace getRoutableIps() {
+      RoutesIndex index = _routes._index;
+      IpWildcardSetIpSpace.Builder routableIps = IpWildcardSetIpSpace.builder();
+      // Each outermost prefix covers all those following it that it contains
+      Prefix outermost = null;
+      for (int i = 0; i < index.size(); i++) {
+        Prefix prefix = index.getPrefix(i);
+        if (outermost == null || !outermost.containsPrefix(prefix)) {
+          outermost = prefix;
+          routableIps.including(new IpWildcard(prefix));
+        }
+      }
+      return routableIps.build();
+    }
+
+    @Override
+    public Set<AbstractRoute> getRoutes() {
+      return _routes._allRoutes.get();
+    }
+
+    @Override
+    public Set<AbstractRoute> longestPrefixMatch(Ip address) {
+      return longestPrefixMatch(address, Prefix.MAX_PREFIX_LENGTH);
+    }
+
+    @Override
+    public Set<AbstractRoute> longestPrefixMatch(Ip address, int maxPrefixLength) {
+      int i = _routes._index.longestPrefixMatch(address.asLong(), maxPrefixLength);
+      return i < 0 ? ImmutableSet.of() : _routes.routesAt(i);
+    }
+
+    @Override
+    public boolean mergeRoute(AbstractRoute route) {
+      throw new UnsupportedOperationException("The RIB of a mapped data plane is read-only");
+    }
+  }
+
+  /** The FIB of a {@link MappedRoutes}, answering per-IP lookups from the next hops column. */
+  private static final class MappedFib implements Fib {
+
+    private static final long serialVersionUID = 1L;
+
+    private final MappedRoutes _routes;
+
+    private MappedFib(MappedRoutes routes) {
+      _routes = routes;
+    }
+
+    @Override
+    public @Nonnull Map<AbstractRoute, Map<String, Map<Ip, Set<AbstractRoute>>>>
+        getNextHopInterfaces() {
+      return _routes._allNextHops.get();
+    }
+
+    @Override
+    public @Nonnull Map<String, Map<Ip, Set<AbstractRoute>>> getNextHopInterfaces(Ip ip) {
+      Map<AbstractRoute, Map<String, Map<Ip, Set<AbstractRoute>>>> byRoute =
+          getNextHopInterfacesByRoute(ip);
+      // Merged as FibImpl merges them
+      Map<String, Map<Ip, Set<AbstractRoute>>> nextHopInterfaces = new TreeMap<>();
+      byRoute.forEach(
+          (route, routeNextHopInterfaces) ->
+              routeNextHopInterfaces.forEach(
+                  (nextHopInterface, nextHopInterfaceRoutesByFinalNextHopIp) ->
+                      nextHopInterfaces
+                          .computeIfAbsent(nextHopInterface, k -> new TreeMap<>())
+                          .putAll(nextHopInterfaceRoutesByFinalNextHopIp)));
+      ImmutableSortedMap.Builder<String, Map<Ip, Set<AbstractRoute>>> sortedNextHopInterfaces =
+          ImmutableSortedMap.naturalOrder();
+      nextHopInterfaces.forEach(
+          (nextHopInterface, routesByFinalNextHopIp) ->
+              sortedNextHopInterfaces.put(
+                  nextHopInterface, ImmutableSortedMap.copyOf(routesByFinalNextHopIp)));
+      return sortedNextHopInterfaces.build();
+    }
+
+    @Override
+    public @Nonnull Map<AbstractRoute, Map<String, Map<Ip, Set<AbstractRoute>>>>
+        getNextHopInterfacesByRoute(Ip dstIp) {
+      int i = _routes._index.longestPrefixMatch(dstIp.asLong(), Prefix.MAX_PREFIX_LENGTH);
+      return i < 0 ? ImmutableMap.of() : _routes.nextHopsAt(i);
+    }
+
+    @Override
+    public @Nonnull Map<String, Set<AbstractRoute>> getRoutesByNextHopInterface() {
+      Map<String, ImmutableSet.Builder<AbstractRoute>> routesByNextHopInterface = new HashMap<>();
+      getNextHopInterfaces()
+          .forEach(
+              (route, nextHopInterfaceMap) ->
+                  nextHopInterfaceMap
+                      .keySet()
+                      .forEach(
+                          nextHopInterface ->
+                              routesByNextHopInterface
+                                  .computeIfAbsent(nextHopInterface, n -> ImmutableSet.builder())
+                                  .add(route)));
+      return routesByNextHopInterface
+          .entrySet()
+          .stream()
+          .collect(
+              ImmutableMap.toImmutableMap(
+                  Entry::getKey /* interfaceName */,
+                  routesByNextHopInterfaceEntry ->
+                      routesByNextHopInterfaceEntry.getValue().build()));
+    }
+  }
+}
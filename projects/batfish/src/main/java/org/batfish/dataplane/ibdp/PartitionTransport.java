@@ -0,0 +1,36 @@
+package org.batfish.dataplane.ibdp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Exchanges messages among the partitions of a data plane computation split across several
+ * workers, typically one per JVM (see {@link
+ * IncrementalBdpEngine#computePartitionedDataPlane}).
+ *
+ * <p>Partitions are numbered from 0 to {@link #getNumPartitions()} - 1, and partition 0 leads the
+ * computation. Communication proceeds in rounds: in each round, every partition calls {@link
+ * #exchange} once, in the same order as every other partition.
+ */
+public interface PartitionTransport extends Closeable {
+
+  /** The number of this partition */
+  int getPartition();
+
+  /** The number of partitions taking part in the computation */
+  int getNumPartitions();
+
+  /**
+   * Send a message to each partition and receive a message from each, blocking until every
+   * partition has sent its messages for this round.
+   *
+   * @param outgoing the message for each partition, indexed by partition, any of which may be
+   *     {@code null}. The message for this partition is returned to it as is.
+   * @return the message from each partition to this one, indexed by partition
+   * @throws IOException if the messages cannot be exchanged, e.g., because another partition
+   *     failed
+   */
+  List<Serializable> exchange(List<? extends Serializable> outgoing) throws IOException;
+}
@@ -0,0 +1,171 @@
+package org.batfish.dataplane.ibdp;
+
+import static org.batfish.common.util.CommonUtil.initBgpTopology;
+
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Sets;
+import com.google.common.graph.EndpointPair;
+import com.google.common.graph.GraphBuilder;
+import com.google.common.graph.Graphs;
+import com.google.common.graph.MutableGraph;
+import com.google.common.graph.ValueGraph;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.commons.lang3.SerializationUtils;
+import org.batfish.datamodel.BgpAdvertisement;
+import org.batfish.datamodel.BgpPeerConfigId;
+import org.batfish.datamodel.BgpSessionProperties;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.Edge;
+import org.batfish.datamodel.Ip;
+import org.batfish.datamodel.Topology;
+import org.batfish.datamodel.Vrf;
+
+/**
+ * Determines which nodes must be recomputed when the data plane of a snapshot is derived from the
+ * converged data plane of a base snapshot.
+ *
+ * <p>Routes in the converged state carry no record of what they were derived from, and the IGP
+ * computations never withdraw a route, so individual prefixes cannot be invalidated soundly. The
+ * unit of reuse is therefore the node: a node is recomputed if its configuration, links, or
+ * external advertisements changed, or if it can be influenced by a recomputed node. Influence is
+ * conservative:
+ *
+ * <ul>
+ *   <li>nodes joined by a Layer 3 edge influence each other if either runs an IGP
+ *   <li>nodes joined by a candidate BGP session influence each other
+ *   <li>every node influences the BGP speakers in its Layer 3 component, since it may forward the
+ *       traffic that establishes their sessions
+ * </ul>
+ *
+ * <p>All of the above are evaluated over both snapshots, so that influence removed by the change is
+ * accounted for too. Every remaining node neither influences nor is influenced by a recomputed one,
+ * so its converged state in the base snapshot is its converged state in the new snapshot.
+ */
+final class RecomputationScope {
+
+  /**
+   * Return the hostnames of the nodes of the new snapshot that must be recomputed.
+   *
+   * @param base the converged data plane of the base snapshot
+   * @param baseExternalAdverts the external BGP advertisements of the base snapshot
+   * @param configurations the configurations of the new snapshot, keyed by hostname
+   * @param topology the Layer 3 topology of the new snapshot
+   * @param ipOwners the owners of each IP in the new snapshot
+   * @param externalAdverts the external BGP advertisements of the new snapshot
+   */
+  static SortedSet<String> affectedNodes(
+      IncrementalDataPlane base,
+      Set<BgpAdvertisement> baseExternalAdverts,
+      Map<String, Configuration> configurations,
+      Topology topology,
+      Map<Ip, Set<String>> ipOwners,
+      Set<BgpAdvertisement> externalAdverts) {
+    Map<String, Configuration> baseConfigurations = base.getConfigurations();
+    Set<String> changed =
+        configurations
+            .values()
+            .parallelStream()
+            .filter(c -> !sameConfiguration(baseConfigurations.get(c.getHostname()), c))
+            .map(Configuration::getHostname)
+            .collect(Collectors.toSet());
+    changed.addAll(Sets.difference(baseConfigurations.keySet(), configurations.keySet()));
+    for (Edge edge : Sets.symmetricDifference(base.getTopology().getEdges(), topology.getEdges())) {
+      changed.add(edge.getNode1());
+      changed.add(edge.getNode2());
+    }
+    for (BgpAdvertisement advert : Sets.symmetricDifference(baseExternalAdverts, externalAdverts)) {
+      changed.add(advert.getDstNode());
+    }
+
+    // Influence between nodes that is mutual, over the nodes of both snapshots
+    MutableGraph<String> coupled = GraphBuilder.undirected().allowsSelfLoops(true).build();
+    Stream.concat(baseConfigurations.keySet().stream(), configurations.keySet().stream())
+        .forEach(coupled::addNode);
+    Set<String> igpNodes =
+        Stream.concat(baseConfigurations.values().stream(), configurations.values().stream())
+            .filter(RecomputationScope::runsIgp)
+            .map(Configuration::getHostname)
+            .collect(Collectors.toSet());
+    Set<Edge> edges = Sets.union(base.getTopology().getEdges(), topology.getEdges());
+    for (Edge edge : edges) {
+      if (igpNodes.contains(edge.getNode1()) || igpNodes.contains(edge.getNode2())) {
+        coupled.putEdge(edge.getNode1(), edge.getNode2());
+      }
+    }
+    addBgpSessions(coupled, initBgpTopology(baseConfigurations, base.getIpOwners(), false));
+    addBgpSessions(coupled, initBgpTopology(configurations, ipOwners, false));
+
+    // Influence of forwarding on BGP session establishment, which only flows towards speakers
+    MutableGraph<String> links = GraphBuilder.undirected().allowsSelfLoops(true).build();
+    coupled.nodes().forEach(links::addNode);
+    edges.forEach(edge -> links.putEdge(edge.getNode1(), edge.getNode2()));
+    Set<String> bgpSpeakers =
+        Stream.concat(baseConfigurations.values().stream(), configurations.values().stream())
+            .filter(c -> c.getVrfs().values().stream().anyMatch(vrf -> vrf.getBgpProcess() != null))
+            .map(Configuration::getHostname)
+            .collect(Collectors.toSet());
+    Map<String, Set<String>> componentSpeakers = new HashMap<>();
+
+    Set<String> affected = new HashSet<>(changed);
+    Queue<String> queue = new ArrayDeque<>(changed);
+    while (!queue.isEmpty()) {
+      String hostname = queue.remove();
+      Set<String> speakers = componentSpeakers.get(hostname);
+      if (speakers == null) {
+        Set<String> component = Graphs.reachableNodes(links, hostname);
+        Set<String> componentBgpSpeakers = Sets.intersection(component, bgpSpeakers);
+        component.forEach(n -> componentSpeakers.put(n, componentBgpSpeakers));
+        speakers = componentBgpSpeakers;
+      }
+      for (String next : Sets.union(coupled.adjacentNodes(hostname), speakers)) {
+        if (affected.add(next)) {
+          queue.add(next);
+        }
+      }
+    }
+    return ImmutableSortedSet.copyOf(Sets.intersection(affected, configurations.keySet()));
+  }
+
+  private static void addBgpSessions(
+      MutableGraph<String> coupled, ValueGraph<BgpPeerConfigId, BgpSessionProperties> sessions) {
+    for (EndpointPair<BgpPeerConfigId> session : sessions.edges()) {
+      coupled.putEdge(session.nodeU().getHostname(), session.nodeV().getHostname());
+    }
+  }
+
+  /** Whether any VRF of the given node runs an IGP, whose routes it exchanges with its neighbors */
+  static boolean runsIgp(Configuration c) {
+    for (Vrf vrf : c.getVrfs().values()) {
+      if (vrf.getOspfProcess() != null
+          || vrf.getRipProcess() != null
+          || !vrf.getEigrpProcesses().isEmpty()
+          || vrf.getIsisProcess() != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Configurations have no structural equality, so compare their serialized forms, unless they are
+   * the same object, as the configurations of unfailed nodes in a failure scenario are. Unordered
+   * collections may serialize differently despite equal contents, which only makes the comparison
+   * conservative.
+   */
+  private static boolean sameConfiguration(Configuration base, Configuration c) {
+    return base == c
+        || (base != null
+            && Arrays.equals(SerializationUtils.serialize(base), SerializationUtils.serialize(c)));
+  }
+
+  private RecomputationScope() {}
+}
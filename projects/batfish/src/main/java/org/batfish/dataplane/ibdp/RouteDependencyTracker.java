@@ -1,6 +1,7 @@
 package org.batfish.dataplane.ibdp;
 
 import com.google.common.annotations.VisibleForTesting;
+import java.io.Serializable;
 import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Set;
@@ -13,7 +14,10 @@ import org.batfish.dataplane.rib.RibDelta;
 import org.batfish.dataplane.rib.RibDelta.Builder;
 import org.batfish.dataplane.rib.RouteAdvertisement.Reason;
 
-public class RouteDependencyTracker<R extends AbstractRoute, D extends AbstractRoute> {
+public class RouteDependencyTracker<R extends AbstractRoute, D extends AbstractRoute>
+    implements Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   /** Map of routes to the set of routes they depend on */
   private Map<D, Set<R>> _routeDependents;
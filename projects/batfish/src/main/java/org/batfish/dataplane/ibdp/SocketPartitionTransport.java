@@ -0,0 +1,272 @@
+package org.batfish.dataplane.ibdp;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nonnull;
+
+/**
+ * A {@link PartitionTransport} over TCP sockets, for workers on one host or on a trusted network.
+ *
+ * <p>The workers connect to the leader, which relays all messages: in each round, it reads the
+ * messages of every worker and then sends each worker those addressed to it. Messages are Java
+ * serialized, so the transport must only connect workers that trust each other; as a second line
+ * of defense, only classes of {@link #ALLOWED_PACKAGES} are deserialized.
+ *
+ * <p>Accepting a worker, connecting to the leader, and waiting for any message all time out, so
+ * that a worker that dies or never joins fails the computation instead of blocking it forever.
+ */
+public final class SocketPartitionTransport implements PartitionTransport {
+
+  /** The packages of the classes that messages may contain, including those of the data model */
+  private static final List<String> ALLOWED_PACKAGES =
+      ImmutableList.of("com.google.common.collect.", "java.lang.", "java.util.", "org.batfish.");
+
+  /** A connection between the leader and a worker */
+  private static final class Connection implements Closeable {
+
+    @Nonnull private final ObjectInputStream _in;
+
+    @Nonnull private final ObjectOutputStream _out;
+
+    @Nonnull private final Socket _socket;
+
+    private Connection(Socket socket, int timeoutMs) throws IOException {
+      _socket = socket;
+      try {
+        _socket.setTcpNoDelay(true);
+        _socket.setSoTimeout(timeoutMs);
+        // Write the stream header before reading the peer's, or both ends would wait for the other
+        _out = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        _out.flush();
+        _in = new MessageInputStream(new BufferedInputStream(socket.getInputStream()));
+      } catch (IOException e) {
+        socket.close();
+        throw e;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      _socket.close();
+    }
+
+    private Object read() throws IOException {
+      try {
+        return _in.readObject();
+      } catch (ClassNotFoundException e) {
+        throw new IOException("Received a message of an unknown class", e);
+      }
+    }
+
+    private void write(Object message) throws IOException {
+      _out.writeObject(message);
+      // Forget the objects written, which would otherwise be kept for back-references forever
+      _out.reset();
+      _out.flush();
+    }
+  }
+
+  /**
+   * Resolves only classes of {@link #ALLOWED_PACKAGES}, with the context class loader, which can
+   * see the classes of plugins that the default class loader of {@link ObjectInputStream} cannot
+   */
+  private static final class MessageInputStream extends ObjectInputStream {
+
+    private MessageInputStream(InputStream in) throws IOException {
+      super(in);
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc)
+        throws IOException, ClassNotFoundException {
+      if (!isAllowed(desc.getName())) {
+        throw new InvalidClassException(desc.getName(), "Class not allowed in partition messages");
+      }
+      try {
+        return Class.forName(
+            desc.getName(), false, Thread.currentThread().getContextClassLoader());
+      } catch (ClassNotFoundException e) {
+        // e.g., primitive types
+        return super.resolveClass(desc);
+      }
+    }
+
+    @Override
+    protected Class<?> resolveProxyClass(String[] interfaces) throws InvalidClassException {
+      throw new InvalidClassException("Proxy classes are not allowed in partition messages");
+    }
+  }
+
+  /** Whether the class with the given binary name may be deserialized from a message */
+  @VisibleForTesting
+  static boolean isAllowed(String className) {
+    // Arrays are allowed if their elements are: e.g., "[[I" or "[Ljava.lang.String;"
+    String elementName = className.substring(className.lastIndexOf('[') + 1);
+    if (elementName.length() < className.length()) {
+      if (elementName.length() == 1) {
+        // An array of primitives
+        return true;
+      }
+      elementName = elementName.substring(1, elementName.length() - 1);
+    }
+    String name = elementName;
+    return ALLOWED_PACKAGES.stream().anyMatch(name::startsWith);
+  }
+
+  /**
+   * Join the computation led by the leader at the given address, which assigns this worker its
+   * partition
+   *
+   * @param timeoutMs how long to wait to connect to the leader, and then for each message from it
+   */
+  public static SocketPartitionTransport join(InetSocketAddress leader, int timeoutMs)
+      throws IOException {
+    Socket socket = new Socket();
+    try {
+      socket.connect(leader, timeoutMs);
+    } catch (IOException e) {
+      socket.close();
+      throw e;
+    }
+    Connection connection = new Connection(socket, timeoutMs);
+    int partition;
+    int numPartitions;
+    try {
+      partition = connection._in.readInt();
+      numPartitions = connection._in.readInt();
+    } catch (IOException e) {
+      connection.close();
+      throw e;
+    }
+    List<Connection> connections = new ArrayList<>();
+    connections.add(connection);
+    return new SocketPartitionTransport(partition, numPartitions, connections);
+  }
+
+  /**
+   * Lead a computation over the given number of partitions, accepting a connection from each of
+   * the other workers on the given server socket. Workers are assigned partitions in the order in
+   * which they connect.
+   *
+   * @param timeoutMs how long to wait for each worker to connect, and then for each message from it
+   */
+  public static SocketPartitionTransport lead(
+      ServerSocket serverSocket, int numPartitions, int timeoutMs) throws IOException {
+    checkArgument(numPartitions > 0, "A computation needs at least one partition");
+    List<Connection> connections = new ArrayList<>();
+    // The leader has no connection to itself
+    connections.add(null);
+    try {
+      serverSocket.setSoTimeout(timeoutMs);
+      for (int partition = 1; partition < numPartitions; partition++) {
+        Connection connection = new Connection(serverSocket.accept(), timeoutMs);
+        connections.add(connection);
+        connection._out.writeInt(partition);
+        connection._out.writeInt(numPartitions);
+        connection._out.flush();
+      }
+    } catch (IOException e) {
+      closeAll(connections);
+      throw e;
+    }
+    return new SocketPartitionTransport(0, numPartitions, connections);
+  }
+
+  private static void closeAll(List<Connection> connections) throws IOException {
+    IOException failure = null;
+    for (Connection connection : connections) {
+      if (connection == null) {
+        continue;
+      }
+      try {
+        connection.close();
+      } catch (IOException e) {
+        failure = e;
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * The leader's connection to each worker, indexed by partition, or a worker's connection to the
+   * leader
+   */
+  @Nonnull private final List<Connection> _connections;
+
+  private final int _numPartitions;
+
+  private final int _partition;
+
+  private SocketPartitionTransport(
+      int partition, int numPartitions, @Nonnull List<Connection> connections) {
+    _partition = partition;
+    _numPartitions = numPartitions;
+    _connections = connections;
+  }
+
+  @Override
+  public void close() throws IOException {
+    closeAll(_connections);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public List<Serializable> exchange(List<? extends Serializable> outgoing) throws IOException {
+    checkArgument(
+        outgoing.size() == _numPartitions,
+        "Expected a message for each of %s partitions",
+        _numPartitions);
+    if (_partition != 0) {
+      Connection leader = _connections.get(0);
+      leader.write(new ArrayList<>(outgoing));
+      return (List<Serializable>) leader.read();
+    }
+    List<List<Serializable>> messages = new ArrayList<>();
+    messages.add(new ArrayList<>(outgoing));
+    for (int worker = 1; worker < _numPartitions; worker++) {
+      messages.add((List<Serializable>) _connections.get(worker).read());
+    }
+    for (int worker = 1; worker < _numPartitions; worker++) {
+      _connections.get(worker).write(incoming(messages, worker));
+    }
+    return incoming(messages, 0);
+  }
+
+  /** Return the messages addressed to the given partition, indexed by sender */
+  private static List<Serializable> incoming(List<List<Serializable>> messages, int partition) {
+    List<Serializable> incoming = new ArrayList<>(messages.size());
+    for (List<Serializable> sent : messages) {
+      incoming.add(sent.get(partition));
+    }
+    return incoming;
+  }
+
+  @Override
+  public int getNumPartitions() {
+    return _numPartitions;
+  }
+
+  @Override
+  public int getPartition() {
+    return _partition;
+  }
+}
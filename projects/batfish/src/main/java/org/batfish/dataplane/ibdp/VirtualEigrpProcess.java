@@ -191,6 +191,11 @@ class VirtualEigrpProcess {
             .sum();
   }
 
+  /** Check if this process has processed all its incoming messages (i.e., queues are empty) */
+  boolean hasProcessedAllMessages() {
+    return _incomingRoutes == null || _incomingRoutes.values().stream().allMatch(Queue::isEmpty);
+  }
+
   long getAsn() {
     return _asn;
   }
@@ -11,6 +11,7 @@ import static org.batfish.dataplane.rib.AbstractRib.importRib;
 import static org.batfish.dataplane.rib.RibDelta.importRibDelta;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedMap;
@@ -20,6 +21,7 @@ import com.google.common.graph.ValueGraph;
 import java.io.Serializable;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
@@ -35,6 +37,7 @@ import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -56,6 +59,7 @@ import org.batfish.datamodel.BgpSessionProperties;
 import org.batfish.datamodel.BgpTieBreaker;
 import org.batfish.datamodel.Configuration;
 import org.batfish.datamodel.ConnectedRoute;
+import org.batfish.datamodel.DataPlaneDetail;
 import org.batfish.datamodel.Edge;
 import org.batfish.datamodel.Fib;
 import org.batfish.datamodel.FibImpl;
@@ -246,6 +250,9 @@ public class VirtualRouter implements Serializable {
   /** FIB (forwarding information base) built from the main RIB */
   private Fib _fib;
 
+  /** Cache of BGP import and export policy results, or {@code null} if disabled */
+  @Nullable private transient BgpPolicyCache _bgpPolicyCache;
+
   /** RIB containing generated routes */
   private transient Rib _generatedRib;
 
@@ -1543,15 +1550,16 @@ public class VirtualRouter implements Serializable {
         /*
          * CREATE OUTGOING ROUTE
          */
-        boolean acceptOutgoing =
-            exportPolicy.process(
+        BgpRoute transformedOutgoingRoute =
+            processBgpRoute(
+                exportPolicy,
                 route,
                 transformedOutgoingRouteBuilder,
                 remoteIp,
                 new Prefix(neighbor.getPeerAddress(), Prefix.MAX_PREFIX_LENGTH),
                 remoteVrfName,
                 Direction.OUT);
-        if (!acceptOutgoing) {
+        if (transformedOutgoingRoute == null) {
           _prefixTracer.filtered(
               route.getNetwork(),
               remoteHostname,
@@ -1567,7 +1575,6 @@ public class VirtualRouter implements Serializable {
             remoteIp,
             remoteVrfName,
             neighbor.getExportPolicy());
-        BgpRoute transformedOutgoingRoute = transformedOutgoingRouteBuilder.build();
         // Record sent advertisement
         BgpAdvertisementType sentType =
             ebgpSession ? BgpAdvertisementType.EBGP_SENT : BgpAdvertisementType.IBGP_SENT;
@@ -1622,15 +1629,135 @@ public class VirtualRouter implements Serializable {
     return numAdvertisements;
   }
 
+  /** The state of a BGP session that the messages received over it are imported with */
+  private static final class IncomingBgpSession {
+
+    private final BgpPeerConfigId _ourConfigId;
+
+    private final BgpPeerConfig _ourBgpConfig;
+
+    private final BgpPeerConfigId _remoteConfigId;
+
+    private final BgpPeerConfig _remoteBgpConfig;
+
+    private final BgpSessionProperties _sessionProperties;
+
+    @Nullable private final String _importPolicyName;
+
+    @Nullable private final RoutingPolicy _importPolicy;
+
+    private IncomingBgpSession(
+        BgpEdgeId edge,
+        ValueGraph<BgpPeerConfigId, BgpSessionProperties> bgpTopology,
+        NetworkConfigurations nc,
+        Configuration c) {
+      _ourConfigId = edge.dst();
+      _remoteConfigId = edge.src();
+      _sessionProperties = getBgpSessionProperties(bgpTopology, edge);
+      _ourBgpConfig = requireNonNull(nc.getBgpPeerConfig(_ourConfigId));
+      _remoteBgpConfig = requireNonNull(nc.getBgpPeerConfig(_remoteConfigId));
+      // TODO: ensure there is always an import policy
+      _importPolicyName = _ourBgpConfig.getImportPolicy();
+      _importPolicy =
+          _importPolicyName == null ? null : c.getRoutingPolicies().get(_importPolicyName);
+    }
+  }
+
+  /** A BGP message received from a neighbor, and the route it resulted in after import */
+  private static final class IncomingBgpMessage {
+
+    private final IncomingBgpSession _session;
+
+    private final RouteAdvertisement<BgpRoute> _advert;
+
+    /** The transformed route if it was imported, {@code null} otherwise */
+    @Nullable private BgpRoute _importedRoute;
+
+    /** Whether the route was rejected by the import policy */
+    private boolean _filtered;
+
+    private IncomingBgpMessage(IncomingBgpSession session, RouteAdvertisement<BgpRoute> advert) {
+      _session = session;
+      _advert = advert;
+    }
+  }
+
+  /**
+   * Transform the route of a received BGP message and run it through the import policy of its
+   * session, recording the result in the message. This only reads the state of this router, so
+   * messages can be imported concurrently.
+   */
+  private void importBgpMessage(IncomingBgpMessage message) {
+    IncomingBgpSession session = message._session;
+    BgpRoute remoteRoute = message._advert.getRoute();
+    BgpRoute.Builder transformedIncomingRouteBuilder =
+        BgpProtocolHelper.transformBgpRouteOnImport(
+            session._ourBgpConfig,
+            session._sessionProperties,
+            remoteRoute,
+            _c.getConfigurationFormat());
+    if (transformedIncomingRouteBuilder == null) {
+      // Route could not be imported for core protocol reasons
+      return;
+    }
+
+    // Process route through import policy, if one exists
+    if (session._importPolicy == null) {
+      message._importedRoute = transformedIncomingRouteBuilder.build();
+      return;
+    }
+    BgpRoute importedRoute =
+        processBgpRoute(
+            session._importPolicy,
+            remoteRoute,
+            transformedIncomingRouteBuilder,
+            session._remoteBgpConfig.getLocalIp(),
+            session._ourConfigId.getRemotePeerPrefix(),
+            _name,
+            Direction.IN);
+    if (importedRoute == null) {
+      // Route could not be imported due to routing policy
+      message._filtered = true;
+      return;
+    }
+    message._importedRoute = importedRoute;
+  }
+
+  /**
+   * Import the given BGP messages on all available threads. Messages are sharded by the hash of
+   * their prefix, so that all messages for a prefix are imported by the same thread.
+   */
+  private void importBgpMessagesInParallel(List<IncomingBgpMessage> messages) {
+    int numShards = ForkJoinPool.getCommonPoolParallelism();
+    List<List<IncomingBgpMessage>> shards = new ArrayList<>(numShards);
+    for (int i = 0; i < numShards; i++) {
+      shards.add(new ArrayList<>());
+    }
+    for (IncomingBgpMessage message : messages) {
+      int shard = Math.floorMod(message._advert.getRoute().getNetwork().hashCode(), numShards);
+      shards.get(shard).add(message);
+    }
+    shards.parallelStream().forEach(shard -> shard.forEach(this::importBgpMessage));
+  }
+
   /**
    * Process BGP messages from neighbors, return a list of delta changes to the RIBs
    *
+   * <p>Messages are processed in two phases. First, the received routes are transformed and run
+   * through import policies, which does not depend on the state of the RIBs. If there are at least
+   * {@code parallelImportThreshold} messages, this phase is sharded by prefix across threads. Then
+   * the imported routes are merged into the RIBs in the order in which they arrived, on the calling
+   * thread, since BGP best-path selection depends on arrival order.
+   *
    * @param bgpTopology the bgp peering relationships
+   * @param parallelImportThreshold the minimum number of messages to import on multiple threads
    * @return List of {@link RibDelta objects}
    */
   @Nullable
   Map<BgpMultipathRib, RibDelta<BgpRoute>> processBgpMessages(
-      ValueGraph<BgpPeerConfigId, BgpSessionProperties> bgpTopology, NetworkConfigurations nc) {
+      ValueGraph<BgpPeerConfigId, BgpSessionProperties> bgpTopology,
+      NetworkConfigurations nc,
+      int parallelImportThreshold) {
 
     // If we have no BGP process, nothing to do
     if (_vrf.getBgpProcess() == null) {
@@ -1642,89 +1769,67 @@ public class VirtualRouter implements Serializable {
     ribDeltas.put(_ebgpStagingRib, new Builder<>(_ebgpStagingRib));
     ribDeltas.put(_ibgpStagingRib, new Builder<>(_ibgpStagingRib));
 
-    // Process updates from each neighbor
+    // Grab the messages from each neighbor, in order
+    List<IncomingBgpMessage> messages = new ArrayList<>();
     for (Entry<BgpEdgeId, Queue<RouteAdvertisement<BgpRoute>>> e : _bgpIncomingRoutes.entrySet()) {
-
-      // Grab the queue containing all messages from remoteBgpPeerConfig
       Queue<RouteAdvertisement<BgpRoute>> queue = e.getValue();
-
-      // Setup helper vars
-      BgpPeerConfigId remoteConfigId = e.getKey().src();
-      BgpPeerConfigId ourConfigId = e.getKey().dst();
-      BgpSessionProperties sessionProperties =
-          getBgpSessionProperties(bgpTopology, new BgpEdgeId(remoteConfigId, ourConfigId));
-      BgpPeerConfig ourBgpConfig = requireNonNull(nc.getBgpPeerConfig(e.getKey().dst()));
-      BgpPeerConfig remoteBgpConfig = requireNonNull(nc.getBgpPeerConfig(e.getKey().src()));
-
-      BgpMultipathRib targetRib = sessionProperties.isEbgp() ? _ebgpStagingRib : _ibgpStagingRib;
-
-      // Process all routes from neighbor
+      if (queue.isEmpty()) {
+        continue;
+      }
+      IncomingBgpSession session = new IncomingBgpSession(e.getKey(), bgpTopology, nc, _c);
       while (queue.peek() != null) {
-        RouteAdvertisement<BgpRoute> remoteRouteAdvert = queue.remove();
-        BgpRoute remoteRoute = remoteRouteAdvert.getRoute();
-
-        BgpRoute.Builder transformedIncomingRouteBuilder =
-            BgpProtocolHelper.transformBgpRouteOnImport(
-                ourBgpConfig, sessionProperties, remoteRoute, _c.getConfigurationFormat());
-        if (transformedIncomingRouteBuilder == null) {
-          // Route could not be imported for core protocol reasons
-          continue;
-        }
+        messages.add(new IncomingBgpMessage(session, queue.remove()));
+      }
+    }
 
-        // Process route through import policy, if one exists
-        String importPolicyName = ourBgpConfig.getImportPolicy();
-        boolean acceptIncoming = true;
-        // TODO: ensure there is always an import policy
-        if (importPolicyName != null) {
-          RoutingPolicy importPolicy = _c.getRoutingPolicies().get(importPolicyName);
-          if (importPolicy != null) {
-            acceptIncoming =
-                importPolicy.process(
-                    remoteRoute,
-                    transformedIncomingRouteBuilder,
-                    remoteBgpConfig.getLocalIp(),
-                    ourConfigId.getRemotePeerPrefix(),
-                    _name,
-                    Direction.IN);
-          }
-        }
-        if (!acceptIncoming) {
-          // Route could not be imported due to routing policy
-          _prefixTracer.filtered(
-              remoteRoute.getNetwork(),
-              ourConfigId.getHostname(),
-              remoteBgpConfig.getLocalIp(),
-              remoteConfigId.getVrfName(),
-              importPolicyName,
-              Direction.IN);
-          continue;
-        }
-        BgpRoute transformedIncomingRoute = transformedIncomingRouteBuilder.build();
+    if (messages.size() >= parallelImportThreshold) {
+      importBgpMessagesInParallel(messages);
+    } else {
+      messages.forEach(this::importBgpMessage);
+    }
+
+    // Merge the imported routes, in order
+    for (IncomingBgpMessage message : messages) {
+      IncomingBgpSession session = message._session;
+      BgpRoute remoteRoute = message._advert.getRoute();
+      if (message._filtered) {
+        _prefixTracer.filtered(
+            remoteRoute.getNetwork(),
+            session._ourConfigId.getHostname(),
+            session._remoteBgpConfig.getLocalIp(),
+            session._remoteConfigId.getVrfName(),
+            session._importPolicyName,
+            Direction.IN);
+        continue;
+      }
+      BgpRoute transformedIncomingRoute = message._importedRoute;
+      if (transformedIncomingRoute == null) {
+        continue;
+      }
+      BgpMultipathRib targetRib =
+          session._sessionProperties.isEbgp() ? _ebgpStagingRib : _ibgpStagingRib;
 
-        if (remoteRouteAdvert.isWithdrawn()) {
-          // Note this route was removed
-          ribDeltas.get(targetRib).remove(transformedIncomingRoute, Reason.WITHDRAW);
-          _bgpBestPathRib.removeBackupRoute(transformedIncomingRoute);
-        } else {
-          // Merge into staging rib, note delta
-          ribDeltas.get(targetRib).from(targetRib.mergeRouteGetDelta(transformedIncomingRoute));
-          if (!remoteRouteAdvert.isWithdrawn()) {
-            markReceivedBgpAdvertisement(
-                ourConfigId,
-                remoteConfigId,
-                ourBgpConfig,
-                remoteBgpConfig,
-                sessionProperties,
-                transformedIncomingRoute);
-            _bgpBestPathRib.addBackupRoute(transformedIncomingRoute);
-            _prefixTracer.installed(
-                transformedIncomingRoute.getNetwork(),
-                remoteConfigId.getHostname(),
-                remoteBgpConfig.getLocalIp(),
-                remoteConfigId.getVrfName(),
-                importPolicyName);
-          }
-        }
+      if (message._advert.isWithdrawn()) {
+        // Note this route was removed
+        ribDeltas.get(targetRib).remove(transformedIncomingRoute, Reason.WITHDRAW);
+        _bgpBestPathRib.removeBackupRoute(transformedIncomingRoute);
+      } else {
+        // Merge into staging rib, note delta
+        ribDeltas.get(targetRib).from(targetRib.mergeRouteGetDelta(transformedIncomingRoute));
+        markReceivedBgpAdvertisement(
+            session._ourConfigId,
+            session._remoteConfigId,
+            session._ourBgpConfig,
+            session._remoteBgpConfig,
+            session._sessionProperties,
+            transformedIncomingRoute);
+        _bgpBestPathRib.addBackupRoute(transformedIncomingRoute);
+        _prefixTracer.installed(
+            transformedIncomingRoute.getNetwork(),
+            session._remoteConfigId.getHostname(),
+            session._remoteBgpConfig.getLocalIp(),
+            session._remoteConfigId.getVrfName(),
+            session._importPolicyName);
       }
     }
     // Return built deltas from RibDelta builders
@@ -2678,6 +2783,140 @@ public class VirtualRouter implements Serializable {
     _virtualEigrpProcesses.values().forEach(VirtualEigrpProcess::reInitForNewIteration);
   }
 
+  /**
+   * Whether the EGP-phase state of this router can be saved in an {@link IbdpCheckpoint}. The
+   * state of EIGRP processes and IS-IS is not saved.
+   */
+  boolean supportsCheckpoints() {
+    return _virtualEigrpProcesses.isEmpty() && _vrf.getIsisProcess() == null;
+  }
+
+  /**
+   * Return the state of this router that the EGP-phase iterations change, for an {@link
+   * IbdpCheckpoint}. Must be called between iterations.
+   */
+  IbdpCheckpoint.RouterState getCheckpointState() {
+    IbdpCheckpoint.RouterState state = new IbdpCheckpoint.RouterState();
+    state._mainRib = _mainRib;
+    state._generatedRib = _generatedRib;
+    state._bgpBestPathRib = _bgpBestPathRib;
+    state._bgpMultipathRib = _bgpMultipathRib;
+    state._ebgpBestPathRib = _ebgpBestPathRib;
+    state._ebgpMultipathRib = _ebgpMultipathRib;
+    state._ibgpBestPathRib = _ibgpBestPathRib;
+    state._ibgpMultipathRib = _ibgpMultipathRib;
+    state._ospfExternalType1Rib = _ospfExternalType1Rib;
+    state._ospfExternalType2Rib = _ospfExternalType2Rib;
+    state._bgpAggDeps = _bgpAggDeps;
+    state._prefixTracer = _prefixTracer;
+    state._receivedBgpAdvertisements = _receivedBgpAdvertisements;
+    state._sentBgpAdvertisements = _sentBgpAdvertisements;
+    state._bgpIncomingRoutes = new TreeMap<>();
+    _bgpIncomingRoutes.forEach(
+        (edge, queue) -> state._bgpIncomingRoutes.put(edge, copyQueue(queue)));
+    state._ospfExternalIncomingRoutes = new TreeMap<>();
+    _ospfExternalIncomingRoutes.forEach(
+        (prefix, queue) -> state._ospfExternalIncomingRoutes.put(prefix, copyQueue(queue)));
+    return state;
+  }
+
+  private static <R extends AbstractRoute> List<RouteAdvertisement<R>> copyQueue(
+      Queue<RouteAdvertisement<R>> queue) {
+    return new ArrayList<>(queue);
+  }
+
+  /**
+   * Replace the state of this router that the EGP-phase iterations change with the given state
+   * from an {@link IbdpCheckpoint}. Must be called after {@link #initForEgpComputation}, instead of
+   * initializing the BGP RIBs and queueing the initial BGP messages.
+   */
+  void restoreCheckpointState(IbdpCheckpoint.RouterState state) {
+    _mainRib = state._mainRib;
+    _generatedRib = state._generatedRib;
+    _bgpBestPathRib = state._bgpBestPathRib;
+    _bgpMultipathRib = state._bgpMultipathRib;
+    _ebgpBestPathRib = state._ebgpBestPathRib;
+    _ebgpMultipathRib = state._ebgpMultipathRib;
+    _ibgpBestPathRib = state._ibgpBestPathRib;
+    _ibgpMultipathRib = state._ibgpMultipathRib;
+    _ospfExternalType1Rib = state._ospfExternalType1Rib;
+    _ospfExternalType2Rib = state._ospfExternalType2Rib;
+    _bgpAggDeps = state._bgpAggDeps;
+    _prefixTracer = state._prefixTracer;
+    _receivedBgpAdvertisements = state._receivedBgpAdvertisements;
+    _sentBgpAdvertisements = state._sentBgpAdvertisements;
+    // Keep the queues themselves, which neighbors may hold on to
+    _bgpIncomingRoutes.forEach(
+        (edge, queue) -> {
+          queue.clear();
+          queue.addAll(state._bgpIncomingRoutes.getOrDefault(edge, ImmutableList.of()));
+        });
+    _ospfExternalIncomingRoutes.forEach(
+        (prefix, queue) -> {
+          queue.clear();
+          queue.addAll(state._ospfExternalIncomingRoutes.getOrDefault(prefix, ImmutableList.of()));
+        });
+  }
+
+  /**
+   * Release the state of this router that the given level of detail does not retain. Must only be
+   * called once the data plane has converged, after which the router can no longer take part in a
+   * computation.
+   */
+  void retain(DataPlaneDetail detail) {
+    if (detail.includes(DataPlaneDetail.FULL)) {
+      return;
+    }
+    // Protocol RIBs and the working state of the computation
+    _bgpAggDeps = null;
+    _bgpBestPathDeltaBuilder = null;
+    _bgpIncomingRoutes = null;
+    _bgpMultiPathDeltaBuilder = null;
+    _bgpPolicyCache = null;
+    _connectedRib = null;
+    _ebgpBestPathRib = null;
+    _ebgpMultipathRib = null;
+    _ebgpStagingRib = null;
+    _generatedRib = null;
+    _ibgpBestPathRib = null;
+    _ibgpMultipathRib = null;
+    _ibgpStagingRib = null;
+    _independentRib = null;
+    _isisIncomingRoutes = null;
+    _isisL1Rib = null;
+    _isisL1StagingRib = null;
+    _isisL2Rib = null;
+    _isisL2StagingRib = null;
+    _isisRib = null;
+    _localRib = null;
+    _mainRibRouteDeltaBuiler = null;
+    _ospfExternalDeltaBuiler = null;
+    _ospfExternalIncomingRoutes = null;
+    _ospfExternalType1Rib = null;
+    _ospfExternalType1StagingRib = null;
+    _ospfExternalType2Rib = null;
+    _ospfExternalType2StagingRib = null;
+    _ospfInterAreaRib = null;
+    _ospfInterAreaStagingRib = null;
+    _ospfIntraAreaRib = null;
+    _ospfIntraAreaStagingRib = null;
+    _ospfNeighbors = null;
+    _ospfRib = null;
+    _prefixTracer = null;
+    _ripInternalRib = null;
+    _ripInternalStagingRib = null;
+    _ripRib = null;
+    _staticInterfaceRib = null;
+    _staticNextHopRib = null;
+    _virtualEigrpProcesses = ImmutableMap.of();
+    if (!detail.includes(DataPlaneDetail.BGP)) {
+      _bgpBestPathRib = null;
+      _bgpMultipathRib = null;
+      _receivedBgpAdvertisements = null;
+      _sentBgpAdvertisements = null;
+    }
+  }
+
   /**
    * Merge internal EIGRP RIBs into a general EIGRP RIB, then merge that into the independent RIB
    */
@@ -2745,6 +2984,19 @@ public class VirtualRouter implements Serializable {
     return processedAll;
   }
 
+  /**
+   * Check if any incoming message queue of this router, including the EIGRP ones that {@link
+   * #hasProcessedAllMessages()} leaves out, is non-empty. Safe to call while neighbors are adding
+   * messages.
+   */
+  boolean hasPendingMessages() {
+    return !hasProcessedAllMessages()
+        || !_virtualEigrpProcesses
+            .values()
+            .stream()
+            .allMatch(VirtualEigrpProcess::hasProcessedAllMessages);
+  }
+
   /**
    * Queues initial round of outgoing BGP messages based on the state of the RIBs prior to any data
    * plane iterations.
@@ -3120,8 +3372,9 @@ public class VirtualRouter implements Serializable {
     }
 
     // Process transformed outgoing route by the export policy
-    boolean shouldExport =
-        exportPolicy.process(
+    BgpRoute transformedOutgoingRoute =
+        processBgpRoute(
+            exportPolicy,
             exportCandidate,
             transformedOutgoingRouteBuilder,
             remoteConfig.getLocalIp(),
@@ -3130,7 +3383,7 @@ public class VirtualRouter implements Serializable {
             Direction.OUT);
 
     VirtualRouter remoteVr = getRemoteBgpNeighborVR(remoteConfigId, allNodes);
-    if (!shouldExport) {
+    if (transformedOutgoingRoute == null) {
       // This route could not be exported due to export policy
       _prefixTracer.filtered(
           exportCandidate.getNetwork(),
@@ -3143,7 +3396,6 @@ public class VirtualRouter implements Serializable {
     }
 
     // Successfully exported route
-    BgpRoute transformedOutgoingRoute = transformedOutgoingRouteBuilder.build();
     _prefixTracer.sentTo(
         transformedOutgoingRoute.getNetwork(),
         requireNonNull(remoteVr).getHostname(),
@@ -3154,6 +3406,44 @@ public class VirtualRouter implements Serializable {
     return transformedOutgoingRoute;
   }
 
+  /**
+   * Run a BGP route through an import or export policy, using the policy cache if it is enabled.
+   *
+   * @return the output route if the policy accepted it, otherwise {@code null}
+   */
+  @Nullable
+  private BgpRoute processBgpRoute(
+      @Nonnull RoutingPolicy policy,
+      @Nonnull AbstractRoute inputRoute,
+      @Nonnull BgpRoute.Builder outputRoute,
+      @Nullable Ip peerAddress,
+      @Nullable Prefix peerPrefix,
+      @Nonnull String vrf,
+      @Nonnull Direction direction) {
+    if (_bgpPolicyCache != null) {
+      return _bgpPolicyCache.process(
+          policy, inputRoute, outputRoute, peerAddress, peerPrefix, vrf, direction);
+    }
+    return policy.process(inputRoute, outputRoute, peerAddress, peerPrefix, vrf, direction)
+        ? outputRoute.build()
+        : null;
+  }
+
+  /**
+   * Enable the cache of BGP import and export policy results
+   *
+   * @param maximumSize the maximum number of cached results, or 0 to disable the cache
+   */
+  void initBgpPolicyCache(int maximumSize) {
+    _bgpPolicyCache = maximumSize > 0 ? new BgpPolicyCache(maximumSize) : null;
+  }
+
+  /** Return the cache of BGP import and export policy results, or {@code null} if disabled */
+  @Nullable
+  BgpPolicyCache getBgpPolicyCache() {
+    return _bgpPolicyCache;
+  }
+
   Set<BgpAdvertisement> getReceivedBgpAdvertisements() {
     return _receivedBgpAdvertisements;
   }
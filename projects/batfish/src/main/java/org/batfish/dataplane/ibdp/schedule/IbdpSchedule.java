@@ -21,6 +21,12 @@ public abstract class IbdpSchedule implements Iterator<Map<String, Node>> {
 
   public enum Schedule {
     ALL,
+    /**
+     * Process only the nodes that have messages to process or routes to propagate, in the batches
+     * of {@link #NODE_COLORED}. Does not produce an {@link IbdpSchedule}; the engine drives it
+     * directly.
+     */
+    EVENT_DRIVEN,
     NODE_COLORED,
     NODE_SERIALIZED,
   }
@@ -88,6 +94,9 @@ public abstract class IbdpSchedule implements Iterator<Map<String, Node>> {
       case NODE_COLORED:
         Coloring coloring = settings.getColoringType();
         return new NodeColoredSchedule(allNodes, coloring, bgpTopology);
+      case EVENT_DRIVEN:
+        throw new BatfishException(
+            String.format("Schedule %s does not process nodes in batches", schedule));
       default:
         throw new BatfishException(String.format("Unsupported ibdp schedule: %s", schedule));
     }
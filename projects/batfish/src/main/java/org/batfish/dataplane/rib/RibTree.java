@@ -1,16 +1,23 @@
 package org.batfish.dataplane.rib;
 
+import static org.batfish.dataplane.rib.RibTreeNode.commonPrefixLength;
+import static org.batfish.dataplane.rib.RibTreeNode.networkBits;
+import static org.batfish.dataplane.rib.RouteAdvertisement.Reason.REPLACE;
+
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedSet;
 import javax.annotation.Nullable;
 import org.batfish.datamodel.AbstractRoute;
 import org.batfish.datamodel.Ip;
 import org.batfish.datamodel.IpSpace;
 import org.batfish.datamodel.IpWildcardSetIpSpace;
 import org.batfish.datamodel.Prefix;
+import org.batfish.dataplane.rib.RibDelta.Builder;
 import org.batfish.dataplane.rib.RouteAdvertisement.Reason;
 
 /**
@@ -19,15 +26,107 @@ import org.batfish.dataplane.rib.RouteAdvertisement.Reason;
  * <p>This data structure is a more restrictive version of a ddNF (disjoint difference Normal Form),
  * where the wildcard symbols can appear only after (to-the-right-of) non wildcard symbols in the
  * bit vector. E.g., 101010**, but not 1*001***
+ *
+ * <p>The tree is path-compressed: besides the root, it only has nodes for prefixes that have
+ * routes, and for the longest common prefixes at which two such prefixes branch apart. Nodes that
+ * stop being either after a removal are unlinked. Hence a longest prefix match visits at most one
+ * node per branch point instead of one per bit, and the shape of the tree only depends on the set
+ * of prefixes it holds.
  */
 class RibTree<R extends AbstractRoute> implements Serializable {
 
   private static final long serialVersionUID = 1L;
 
-  private RibTreeNode<R> _root;
+  private final AbstractRib<R> _owner;
+
+  private final RibTreeNode<R> _root;
 
   RibTree(AbstractRib<R> owner) {
-    _root = new RibTreeNode<>(Prefix.ZERO, owner);
+    _owner = owner;
+    _root = new RibTreeNode<>(0L, 0);
+  }
+
+  /**
+   * Return the node for the given prefix, or {@code null} if there is none
+   *
+   * @param bits the prefix's network bits
+   * @param prefixLength the prefix's length
+   */
+  @Nullable
+  private RibTreeNode<R> findNode(long bits, int prefixLength) {
+    RibTreeNode<R> node = _root;
+    while (node != null && node.getPrefixLength() < prefixLength) {
+      node = node.getChild(node.childBit(bits));
+    }
+    return node != null && node.getPrefixLength() == prefixLength && node.containsIp(bits)
+        ? node
+        : null;
+  }
+
+  /**
+   * Return the node for the given prefix, inserting it and possibly a branching node above it if
+   * there is none
+   *
+   * @param bits the prefix's network bits
+   * @param prefixLength the prefix's length
+   */
+  private RibTreeNode<R> findOrCreateNode(long bits, int prefixLength) {
+    RibTreeNode<R> parent = _root;
+    while (parent.getPrefixLength() < prefixLength) {
+      boolean branchRight = parent.childBit(bits);
+      RibTreeNode<R> node = parent.getChild(branchRight);
+      if (node == null) {
+        node = new RibTreeNode<>(bits, prefixLength);
+        parent.setChild(branchRight, node);
+        return node;
+      }
+      int nodePrefixLength = node.getPrefixLength();
+      int matchLength =
+          Math.min(
+              commonPrefixLength(bits, node.getNetworkBits()),
+              Math.min(prefixLength, nodePrefixLength));
+      if (matchLength < nodePrefixLength) {
+        RibTreeNode<R> newNode = new RibTreeNode<>(bits, prefixLength);
+        if (matchLength == prefixLength) {
+          // The prefix contains the node's prefix, so it goes between the parent and the node
+          newNode.setChild(newNode.childBit(node.getNetworkBits()), node);
+          parent.setChild(branchRight, newNode);
+        } else {
+          // The prefixes diverge, so they become siblings under their longest common prefix
+          RibTreeNode<R> branch = new RibTreeNode<>(networkBits(bits, matchLength), matchLength);
+          branch.setChild(branch.childBit(node.getNetworkBits()), node);
+          branch.setChild(branch.childBit(bits), newNode);
+          parent.setChild(branchRight, branch);
+        }
+        return newNode;
+      }
+      // The node's prefix contains the prefix, keep descending
+      parent = node;
+    }
+    return parent;
+  }
+
+  /**
+   * Unlink the node for the given prefix if it has neither routes nor two children, and then its
+   * parent if that in turn became redundant. The node must exist.
+   */
+  private void removeIfRedundant(long bits, int prefixLength) {
+    RibTreeNode<R> grandparent = null;
+    RibTreeNode<R> parent = null;
+    RibTreeNode<R> node = _root;
+    while (node.getPrefixLength() < prefixLength) {
+      grandparent = parent;
+      parent = node;
+      node = node.getChild(node.childBit(bits));
+    }
+    if (parent == null || !node.isRedundant()) {
+      return;
+    }
+    parent.setChild(parent.childBit(bits), node._left != null ? node._left : node._right);
+    if (grandparent != null && parent.isRedundant()) {
+      grandparent.setChild(
+          grandparent.childBit(bits), parent._left != null ? parent._left : parent._right);
+    }
   }
 
   /**
@@ -39,9 +138,25 @@ class RibTree<R extends AbstractRoute> implements Serializable {
   @Nullable
   RibDelta<R> removeRouteGetDelta(R route, Reason reason) {
     Prefix prefix = route.getNetwork();
-    int prefixLength = prefix.getPrefixLength();
     long bits = prefix.getStartIp().asLong();
-    return _root.removeRoute(route, bits, prefixLength, 0, reason);
+    RibTreeNode<R> node = findNode(bits, prefix.getPrefixLength());
+    if (node == null || !node.removeRoute(route)) {
+      return null;
+    }
+    Builder<R> b = new Builder<>(_owner).remove(route, reason);
+    if (!node.hasRoutes()) {
+      SortedSet<? extends R> backups =
+          _owner._backupRoutes == null
+              ? Collections.emptySortedSet()
+              : _owner._backupRoutes.getOrDefault(prefix, Collections.emptySortedSet());
+      if (backups.isEmpty()) {
+        removeIfRedundant(bits, prefix.getPrefixLength());
+      } else {
+        node.addRoute(backups.first());
+        b.add(backups.first());
+      }
+    }
+    return b.build();
   }
 
   /**
@@ -52,14 +167,37 @@ class RibTree<R extends AbstractRoute> implements Serializable {
    */
   boolean containsRoute(R route) {
     Prefix prefix = route.getNetwork();
-    int prefixLength = prefix.getPrefixLength();
-    long bits = prefix.getStartIp().asLong();
-    return _root.containsRoute(route, bits, prefixLength);
+    RibTreeNode<R> node = findNode(prefix.getStartIp().asLong(), prefix.getPrefixLength());
+    return node != null && node.containsRoute(route);
   }
 
+  /**
+   * Returns the routes with the longest prefix match for a given IP address
+   *
+   * @param address IP address
+   * @param maxPrefixLength only return routes with prefix length less than or equal to given value
+   * @return a set of routes
+   */
   Set<R> getLongestPrefixMatch(Ip address, int maxPrefixLength) {
-    long addressBits = address.asLong();
-    return _root.getLongestPrefixMatch(address, addressBits, 0, maxPrefixLength);
+    long ip = address.asLong();
+    /*
+     * Walk down the path of nodes whose prefixes contain the address, remembering the deepest node
+     * holding routes. A node whose prefix does not contain the address has no descendant that
+     * does, so the walk stops there.
+     */
+    RibTreeNode<R> longestMatchNode = null;
+    RibTreeNode<R> node = _root;
+    while (node != null && node.getPrefixLength() <= maxPrefixLength && node.containsIp(ip)) {
+      if (node.hasRoutes()) {
+        longestMatchNode = node;
+      }
+      if (node.getPrefixLength() == Prefix.MAX_PREFIX_LENGTH) {
+        break;
+      }
+      // Examine the bit after the node's prefix: 1 goes right, 0 goes left
+      node = node.getChild(node.childBit(ip));
+    }
+    return longestMatchNode == null ? ImmutableSet.of() : longestMatchNode.getRouteSet();
   }
 
   /**
@@ -83,9 +221,43 @@ class RibTree<R extends AbstractRoute> implements Serializable {
   @Nullable
   RibDelta<R> mergeRoute(R route) {
     Prefix prefix = route.getNetwork();
-    int prefixLength = prefix.getPrefixLength();
-    long bits = prefix.getStartIp().asLong();
-    return _root.mergeRoute(route, bits, prefixLength, 0);
+    RibTreeNode<R> node =
+        findOrCreateNode(prefix.getStartIp().asLong(), prefix.getPrefixLength());
+
+    // No routes with this prefix, so just add it. No comparison necessary
+    if (!node.hasRoutes()) {
+      node.addRoute(route);
+      return new Builder<>(_owner).add(route).build();
+    }
+
+    /*
+     * Check if the route we are adding is preferred to the routes we already have.
+     * We only need to compare to one route, because all routes already in this node have the
+     * same preference level. Hence, the route we are checking will be better than all,
+     * worse than all, or at the same preference level.
+     */
+    int preferenceComparison = _owner.comparePreference(route, node.anyRoute());
+    if (preferenceComparison < 0) { // less preferable, so route doesn't get added
+      return null;
+    }
+    if (preferenceComparison == 0) { // equal preference, so add for multipath routing
+      if (node.containsRoute(route)) {
+        // route is already here, so nothing to do
+        return null;
+      }
+      node.addRoute(route);
+      return new Builder<>(_owner).add(route).build();
+    }
+    // Last case, preferenceComparison > 0
+    /*
+     * Better than all pre-existing routes for this prefix, so
+     * replace them with this one.
+     */
+    RibDelta<R> delta =
+        new Builder<>(_owner).remove(node.getRoutes(), REPLACE).add(route).build();
+    node.clearRoutes();
+    node.addRoute(route);
+    return delta;
   }
 
   @Override
@@ -98,8 +270,17 @@ class RibTree<R extends AbstractRoute> implements Serializable {
     return (obj == this) || (obj instanceof RibTree && this._root.equals(((RibTree<?>) obj)._root));
   }
 
+  @Nullable
   public RibDelta<R> clearRoutes(Prefix prefix) {
-    return _root.clearRoutes(prefix);
+    long bits = prefix.getStartIp().asLong();
+    RibTreeNode<R> node = findNode(bits, prefix.getPrefixLength());
+    if (node == null) {
+      return null;
+    }
+    RibDelta<R> delta = new Builder<>(_owner).remove(node.getRoutes(), REPLACE).build();
+    node.clearRoutes();
+    removeIfRedundant(bits, prefix.getPrefixLength());
+    return delta;
   }
 
   public Map<Prefix, IpWildcardSetIpSpace> getMatchingIps() {
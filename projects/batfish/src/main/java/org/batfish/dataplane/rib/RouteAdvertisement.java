@@ -1,10 +1,14 @@
 package org.batfish.dataplane.rib;
 
+import java.io.Serializable;
 import java.util.Objects;
 import javax.annotation.Nonnull;
 import org.batfish.datamodel.AbstractRoute;
 
-public class RouteAdvertisement<R extends AbstractRoute> {
+public class RouteAdvertisement<R extends AbstractRoute> implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
   private R _route;
   private boolean _withdraw;
   private Reason _reason;
@@ -1,12 +1,15 @@
 package org.batfish.dataplane.topology;
 
+import java.io.Serializable;
 import java.util.Comparator;
 import java.util.Objects;
 import javax.annotation.Nonnull;
 import org.batfish.datamodel.BgpPeerConfigId;
 
 /** Directional, reversible BGP edge pointing to two {@link BgpPeerConfigId}. */
-public class BgpEdgeId implements Comparable<BgpEdgeId> {
+public class BgpEdgeId implements Comparable<BgpEdgeId>, Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   private BgpPeerConfigId _src;
   private BgpPeerConfigId _dst;
@@ -0,0 +1,343 @@
+package org.batfish.job;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.batfish.common.BatfishLogger;
+import org.batfish.common.ParseTreeSentences;
+import org.batfish.common.Version;
+import org.batfish.common.Warnings;
+import org.batfish.common.util.CompactSerialization;
+import org.batfish.config.Settings;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.ConfigurationFormat;
+import org.batfish.datamodel.answers.ConvertConfigurationAnswerElement;
+import org.batfish.datamodel.answers.ParseStatus;
+import org.batfish.vendor.VendorConfiguration;
+
+/**
+ * A content-addressed store of successful {@link ParseVendorConfigurationResult}s and {@link
+ * ConvertConfigurationResult}s, shared by all snapshots in a network.
+ *
+ * <p>Entries are keyed by a hash of the input file contents together with the Batfish version and
+ * every setting that can affect the result, so a snapshot that differs from a previous one in only
+ * a few files only needs to parse and convert those files. Failed results are never cached, so that
+ * their errors are reported in full for every snapshot.
+ *
+ * <p>Entries are written atomically, so concurrent initialization of several snapshots in the same
+ * network is safe. Unreadable entries are treated as misses.
+ *
+ * <p>Reading an entry updates its modification time, and {@link #prune(long)} evicts the entries
+ * that were least recently used until the cache fits in a given size. Entries for files that no
+ * longer appear in any snapshot, including those of deleted snapshots, are thus evicted first.
+ */
+public final class ConfigurationCache {
+
+  private static final String CONVERT_DIR = "convert";
+
+  private static final String PARSE_DIR = "parse";
+
+  private static final String TMP_SUFFIX = ".tmp";
+
+  /** The vendor-independent output of converting a single vendor configuration. */
+  private static final class ConvertEntry implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final ConvertConfigurationAnswerElement _answerElement;
+
+    private final Map<String, Configuration> _configurations;
+
+    private final Map<String, Warnings> _warningsByHost;
+
+    private ConvertEntry(
+        Map<String, Configuration> configurations,
+        Map<String, Warnings> warningsByHost,
+        ConvertConfigurationAnswerElement answerElement) {
+      _configurations = configurations;
+      _warningsByHost = warningsByHost;
+      _answerElement = answerElement;
+    }
+  }
+
+  /** The output of parsing a single file that did not fail to parse. */
+  private static final class ParseEntry implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Nullable private final ParseTreeSentences _parseTree;
+
+    @Nullable private final ParseStatus _status;
+
+    @Nullable private final VendorConfiguration _vc;
+
+    private final Warnings _warnings;
+
+    private ParseEntry(
+        @Nullable VendorConfiguration vc,
+        Warnings warnings,
+        @Nullable ParseTreeSentences parseTree,
+        @Nullable ParseStatus status) {
+      _vc = vc;
+      _warnings = warnings;
+      _parseTree = parseTree;
+      _status = status;
+    }
+  }
+
+  /**
+   * Returns the cache key for converting the serialized vendor configuration with the given {@code
+   * name} and contents.
+   */
+  @Nonnull
+  public static String convertKey(Settings settings, String name, byte[] serializedVendorConfig) {
+    Hasher hasher = newHasher(settings);
+    hasher.putString(name, UTF_8);
+    hasher.putBytes(serializedVendorConfig);
+    return hasher.hash().toString();
+  }
+
+  private static Hasher newHasher(Settings settings) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putString(Version.getVersion(), UTF_8);
+    // Settings that control which warnings are recorded
+    hasher.putString(settings.getLogLevel(), UTF_8);
+    hasher.putBoolean(settings.getPedanticRecord());
+    hasher.putBoolean(settings.getRedFlagRecord());
+    hasher.putBoolean(settings.getUnimplementedRecord());
+    return hasher;
+  }
+
+  /**
+   * Returns the cache key for parsing the file with the given {@code filename} (relative to the
+   * testrig base) and contents, in the given {@code format}.
+   */
+  @Nonnull
+  public static String parseKey(
+      Settings settings, String filename, String fileText, ConfigurationFormat format) {
+    Hasher hasher = newHasher(settings);
+    // Grammar settings
+    hasher.putBoolean(settings.getDisableUnrecognized());
+    hasher.putInt(settings.getMaxParserContextLines());
+    hasher.putInt(settings.getMaxParserContextTokens());
+    hasher.putInt(settings.getMaxParseTreePrintLength());
+    hasher.putBoolean(settings.getPrintParseTree());
+    hasher.putBoolean(settings.getPrintParseTreeLineNums());
+    hasher.putBoolean(settings.getThrowOnLexerError());
+    hasher.putBoolean(settings.getThrowOnParserError());
+    // Settings that control how a file is dispatched to a parser
+    hasher.putBoolean(settings.flattenOnTheFly());
+    hasher.putBoolean(settings.ignoreUnknown());
+    hasher.putBoolean(settings.ignoreUnsupported());
+    settings.ignoreFilesWithStrings().forEach(s -> hasher.putString(s, UTF_8).putByte((byte) 0));
+    hasher.putString(format.name(), UTF_8);
+    // The filename is used to guess missing hostnames and appears in warnings.
+    hasher.putString(filename, UTF_8).putByte((byte) 0);
+    hasher.putString(fileText, UTF_8);
+    return hasher.hash().toString();
+  }
+
+  private final Path _cacheDir;
+
+  private final Settings _settings;
+
+  /** Creates a cache whose entries are stored under {@code cacheDir}. */
+  public ConfigurationCache(Settings settings, Path cacheDir) {
+    _settings = settings;
+    _cacheDir = cacheDir;
+  }
+
+  private Path entryPath(String kind, String key) {
+    // Fan out on the first two characters to keep directory sizes manageable.
+    return _cacheDir.resolve(kind).resolve(key.substring(0, 2)).resolve(key);
+  }
+
+  /**
+   * Returns the cached result of converting the vendor configuration with the given {@code name}
+   * and cache {@code key}, or {@code null} if there is none.
+   */
+  @Nullable
+  public ConvertConfigurationResult loadConvertResult(String key, String name) {
+    long startTime = System.currentTimeMillis();
+    BatfishLogger logger = newLogger();
+    ConvertEntry entry = read(entryPath(CONVERT_DIR, key), ConvertEntry.class, logger);
+    if (entry == null) {
+      return null;
+    }
+    logger.infof("Reusing cached conversion of: \"%s\"\n", name);
+    return new ConvertConfigurationResult(
+        System.currentTimeMillis() - startTime,
+        logger.getHistory(),
+        entry._warningsByHost,
+        name,
+        entry._configurations,
+        entry._answerElement);
+  }
+
+  /**
+   * Returns the cached result of parsing the file with the given {@code filename} and cache {@code
+   * key}, or {@code null} if there is none.
+   */
+  @Nullable
+  public ParseVendorConfigurationResult loadParseResult(String key, String filename) {
+    long startTime = System.currentTimeMillis();
+    BatfishLogger logger = newLogger();
+    ParseEntry entry = read(entryPath(PARSE_DIR, key), ParseEntry.class, logger);
+    if (entry == null) {
+      return null;
+    }
+    logger.infof("Reusing cached parse of: '%s'\n", filename);
+    long elapsedTime = System.currentTimeMillis() - startTime;
+    if (entry._vc != null) {
+      return new ParseVendorConfigurationResult(
+          elapsedTime, logger.getHistory(), filename, entry._vc, entry._warnings, entry._parseTree);
+    }
+    return new ParseVendorConfigurationResult(
+        elapsedTime, logger.getHistory(), filename, entry._warnings, entry._status);
+  }
+
+  private BatfishLogger newLogger() {
+    return new BatfishLogger(_settings.getLogLevel(), _settings.getTimestamp());
+  }
+
+  @Nullable
+  private <S extends Serializable> S read(Path path, Class<S> entryClass, BatfishLogger logger) {
+    S entry;
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+      entry =
+          CompactSerialization.deserialize(
+              in, entryClass, Thread.currentThread().getContextClassLoader());
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException | ClassNotFoundException | ClassCastException e) {
+      logger.warnf("Ignoring unreadable configuration cache entry %s: %s\n", path, e);
+      return null;
+    }
+    try {
+      // Record the use, so that prune evicts this entry last.
+      Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (IOException e) {
+      // The entry was evicted concurrently; it has already been read.
+    }
+    return entry;
+  }
+
+  /**
+   * Deletes the least recently used entries until the total size of the cache is at most {@code
+   * maxBytes}.
+   */
+  public void prune(long maxBytes) {
+    List<Path> entries;
+    try (Stream<Path> paths = Files.walk(_cacheDir)) {
+      entries =
+          paths
+              .filter(path -> Files.isRegularFile(path) && !path.toString().endsWith(TMP_SUFFIX))
+              .collect(Collectors.toList());
+    } catch (NoSuchFileException e) {
+      return;
+    } catch (IOException | UncheckedIOException e) {
+      _settings.getLogger().warnf("Could not list configuration cache %s: %s\n", _cacheDir, e);
+      return;
+    }
+    Map<Path, BasicFileAttributes> attributes = new HashMap<>();
+    long totalBytes = 0;
+    for (Path entry : entries) {
+      try {
+        BasicFileAttributes entryAttributes =
+            Files.readAttributes(entry, BasicFileAttributes.class);
+        attributes.put(entry, entryAttributes);
+        totalBytes += entryAttributes.size();
+      } catch (IOException e) {
+        // The entry was replaced or evicted concurrently.
+      }
+    }
+    if (totalBytes <= maxBytes) {
+      return;
+    }
+    List<Path> leastRecentlyUsedFirst = new ArrayList<>(attributes.keySet());
+    leastRecentlyUsedFirst.sort(
+        Comparator.comparing((Path entry) -> attributes.get(entry).lastModifiedTime()));
+    int evicted = 0;
+    for (Path entry : leastRecentlyUsedFirst) {
+      if (totalBytes <= maxBytes) {
+        break;
+      }
+      try {
+        Files.deleteIfExists(entry);
+        totalBytes -= attributes.get(entry).size();
+        evicted++;
+      } catch (IOException e) {
+        _settings.getLogger().warnf("Could not evict configuration cache entry %s: %s\n", entry, e);
+      }
+    }
+    _settings.getLogger().infof("Evicted %s configuration cache entries\n", evicted);
+  }
+
+  /** Stores the given conversion {@code result} under {@code key}, unless it is a failure. */
+  public void storeConvertResult(String key, ConvertConfigurationResult result) {
+    if (result.getConfigurations() == null) {
+      return;
+    }
+    write(
+        entryPath(CONVERT_DIR, key),
+        new ConvertEntry(
+            result.getConfigurations(), result.getWarningsByHost(), result.getAnswerElement()));
+  }
+
+  /**
+   * Stores the given parse {@code result} under {@code key}, unless it is a failure. Must be called
+   * before the result is applied, since applying it may rename the parsed configuration.
+   */
+  public void storeParseResult(String key, ParseVendorConfigurationResult result) {
+    if (result.getFailureCause() != null) {
+      return;
+    }
+    write(
+        entryPath(PARSE_DIR, key),
+        new ParseEntry(
+            result.getVendorConfiguration(),
+            result.getWarnings(),
+            result.getParseTree(),
+            result.getStatus()));
+  }
+
+  private void write(Path path, Serializable entry) {
+    try {
+      Files.createDirectories(path.getParent());
+      Path tmp =
+          Files.createTempFile(path.getParent(), path.getFileName().toString(), TMP_SUFFIX);
+      try {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+          CompactSerialization.serialize(entry, out);
+        }
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } finally {
+        Files.deleteIfExists(tmp);
+      }
+    } catch (IOException e) {
+      // Failing to populate the cache only costs time on a later run.
+      _settings.getLogger().warnf("Could not write configuration cache entry %s: %s\n", path, e);
+    }
+  }
+}
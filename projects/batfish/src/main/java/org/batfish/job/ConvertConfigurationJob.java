@@ -2,6 +2,7 @@ package org.batfish.job;
 
 import java.util.HashMap;
 import java.util.Map;
+import javax.annotation.Nullable;
 import org.batfish.common.BatfishException;
 import org.batfish.common.Warnings;
 import org.batfish.config.Settings;
@@ -15,18 +16,46 @@ import org.batfish.vendor.VendorConfiguration;
 
 public class ConvertConfigurationJob extends BatfishJob<ConvertConfigurationResult> {
 
+  /** The cache in which to store a successful result, if any. */
+  @Nullable private final ConfigurationCache _cache;
+
+  @Nullable private final String _cacheKey;
+
   private Object _configObject;
 
   private String _name;
 
   public ConvertConfigurationJob(Settings settings, Object configObject, String name) {
+    this(settings, configObject, name, null, null);
+  }
+
+  /**
+   * Creates a job that additionally stores its result in {@code cache} under {@code cacheKey} if
+   * conversion does not fail.
+   */
+  public ConvertConfigurationJob(
+      Settings settings,
+      Object configObject,
+      String name,
+      @Nullable ConfigurationCache cache,
+      @Nullable String cacheKey) {
     super(settings);
+    _cache = cache;
+    _cacheKey = cacheKey;
     _configObject = configObject;
     _name = name;
   }
 
   @Override
   public ConvertConfigurationResult call() {
+    ConvertConfigurationResult result = convert();
+    if (_cache != null && _cacheKey != null) {
+      _cache.storeConvertResult(_cacheKey, result);
+    }
+    return result;
+  }
+
+  private ConvertConfigurationResult convert() {
     long startTime = System.currentTimeMillis();
     long elapsedTime;
     _logger.infof("Processing: \"%s\"", _name);
@@ -1,8 +1,10 @@
 package org.batfish.job;
 
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import javax.annotation.Nullable;
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.batfish.common.BatfishException;
 import org.batfish.common.ParseTreeSentences;
@@ -65,6 +67,12 @@ public class ParseVendorConfigurationJob extends BatfishJob<ParseVendorConfigura
     }
   }
 
+  /** The cache from which to reuse, and in which to store, a successful result, if any. */
+  @Nullable private final ConfigurationCache _cache;
+
+  /** The file to read when the job runs, if its text was not supplied up front. */
+  @Nullable private final Path _file;
+
   /** The name of the parsed file, relative to the testrig base. */
   private String _filename;
 
@@ -82,7 +90,50 @@ public class ParseVendorConfigurationJob extends BatfishJob<ParseVendorConfigura
       String filename,
       Warnings warnings,
       ConfigurationFormat configurationFormat) {
+    this(settings, fileText, filename, warnings, configurationFormat, null);
+  }
+
+  /**
+   * Creates a job that reuses a result from {@code cache} if present, and otherwise stores its
+   * result there if parsing does not fail.
+   */
+  public ParseVendorConfigurationJob(
+      Settings settings,
+      String fileText,
+      String filename,
+      Warnings warnings,
+      ConfigurationFormat configurationFormat,
+      @Nullable ConfigurationCache cache) {
+    this(settings, null, fileText, filename, warnings, configurationFormat, cache);
+  }
+
+  /**
+   * Creates a job that reads {@code file} only when it runs, so that the text of a file is held in
+   * memory only while that file is being parsed. Otherwise behaves like {@link
+   * #ParseVendorConfigurationJob(Settings, String, String, Warnings, ConfigurationFormat,
+   * ConfigurationCache)}.
+   */
+  public ParseVendorConfigurationJob(
+      Settings settings,
+      Path file,
+      String filename,
+      Warnings warnings,
+      ConfigurationFormat configurationFormat,
+      @Nullable ConfigurationCache cache) {
+    this(settings, file, null, filename, warnings, configurationFormat, cache);
+  }
+
+  private ParseVendorConfigurationJob(
+      Settings settings,
+      @Nullable Path file,
+      @Nullable String fileText,
+      String filename,
+      Warnings warnings,
+      ConfigurationFormat configurationFormat,
+      @Nullable ConfigurationCache cache) {
     super(settings);
+    _cache = cache;
+    _file = file;
     _fileText = fileText;
     _filename = filename;
     _ptSentences = new ParseTreeSentences();
@@ -90,9 +141,33 @@ public class ParseVendorConfigurationJob extends BatfishJob<ParseVendorConfigura
     _format = configurationFormat;
   }
 
-  @SuppressWarnings("fallthrough")
   @Override
   public ParseVendorConfigurationResult call() throws Exception {
+    if (_file != null) {
+      _fileText = Batfish.readConfigurationFile(_file);
+    }
+    try {
+      if (_cache == null) {
+        return parse();
+      }
+      String key = ConfigurationCache.parseKey(_settings, _filename, _fileText, _format);
+      ParseVendorConfigurationResult cached = _cache.loadParseResult(key, _filename);
+      if (cached != null) {
+        return cached;
+      }
+      ParseVendorConfigurationResult result = parse();
+      _cache.storeParseResult(key, result);
+      return result;
+    } finally {
+      if (_file != null) {
+        // Jobs are retained until all have finished; don't retain the text they read as well.
+        _fileText = null;
+      }
+    }
+  }
+
+  @SuppressWarnings("fallthrough")
+  private ParseVendorConfigurationResult parse() throws Exception {
     long startTime = System.currentTimeMillis();
     long elapsedTime;
     VendorConfiguration vc = null;
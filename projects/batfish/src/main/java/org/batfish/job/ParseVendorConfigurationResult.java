@@ -4,6 +4,7 @@ import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 import java.util.Map;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import org.batfish.common.BatfishException;
 import org.batfish.common.BatfishLogger;
 import org.batfish.common.BatfishLogger.BatfishLoggerHistory;
@@ -137,6 +138,21 @@ public class ParseVendorConfigurationResult
     return _filename;
   }
 
+  @Nullable
+  public ParseTreeSentences getParseTree() {
+    return _parseTree;
+  }
+
+  /** The parse status, if not determined by the parsed vendor configuration. */
+  @Nullable
+  public ParseStatus getStatus() {
+    return _status;
+  }
+
+  public Warnings getWarnings() {
+    return _warnings;
+  }
+
   @Override
   public BatfishLoggerHistory getHistory() {
     return _history;
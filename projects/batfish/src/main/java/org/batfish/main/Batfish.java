@@ -9,6 +9,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Suppliers;
 import com.google.common.base.Throwables;
 import com.google.common.base.Verify;
 import com.google.common.cache.Cache;
@@ -19,6 +20,8 @@ import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import io.opentracing.ActiveSpan;
 import io.opentracing.util.GlobalTracer;
 import java.io.File;
@@ -48,9 +51,15 @@ import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -88,12 +97,15 @@ import org.batfish.common.plugin.ExternalBgpAdvertisementPlugin;
 import org.batfish.common.plugin.IBatfish;
 import org.batfish.common.plugin.PluginClientType;
 import org.batfish.common.plugin.PluginConsumer;
+import org.batfish.common.plugin.PluginConsumer.Format;
 import org.batfish.common.topology.Layer1Topology;
 import org.batfish.common.topology.Layer2Topology;
 import org.batfish.common.topology.Layer3Topology;
 import org.batfish.common.topology.TopologyUtil;
 import org.batfish.common.util.BatfishObjectMapper;
+import org.batfish.common.util.BlockCompressedSerialization;
 import org.batfish.common.util.CommonUtil;
+import org.batfish.common.util.LazySortedMap;
 import org.batfish.config.Settings;
 import org.batfish.config.Settings.EnvironmentSettings;
 import org.batfish.config.Settings.TestrigSettings;
@@ -104,8 +116,10 @@ import org.batfish.datamodel.BgpAdvertisement.BgpAdvertisementType;
 import org.batfish.datamodel.Configuration;
 import org.batfish.datamodel.ConfigurationFormat;
 import org.batfish.datamodel.DataPlane;
+import org.batfish.datamodel.DataPlaneDetail;
 import org.batfish.datamodel.DeviceType;
 import org.batfish.datamodel.Edge;
+import org.batfish.datamodel.FailureScenario;
 import org.batfish.datamodel.Flow;
 import org.batfish.datamodel.FlowHistory;
 import org.batfish.datamodel.FlowTrace;
@@ -137,6 +151,7 @@ import org.batfish.datamodel.answers.AnswerStatus;
 import org.batfish.datamodel.answers.AnswerSummary;
 import org.batfish.datamodel.answers.ConvertConfigurationAnswerElement;
 import org.batfish.datamodel.answers.DataPlaneAnswerElement;
+import org.batfish.datamodel.answers.FailureScenariosAnswerElement;
 import org.batfish.datamodel.answers.FlattenVendorConfigurationAnswerElement;
 import org.batfish.datamodel.answers.InitInfoAnswerElement;
 import org.batfish.datamodel.answers.InitStepAnswerElement;
@@ -172,7 +187,9 @@ import org.batfish.grammar.juniper.JuniperFlattener;
 import org.batfish.grammar.vyos.VyosCombinedParser;
 import org.batfish.grammar.vyos.VyosFlattener;
 import org.batfish.job.BatfishJobExecutor;
+import org.batfish.job.ConfigurationCache;
 import org.batfish.job.ConvertConfigurationJob;
+import org.batfish.job.ConvertConfigurationResult;
 import org.batfish.job.FlattenVendorConfigurationJob;
 import org.batfish.job.ParseEnvironmentBgpTableJob;
 import org.batfish.job.ParseEnvironmentRoutingTableJob;
@@ -278,6 +295,8 @@ public class Batfish extends PluginConsumer implements IBatfish {
           envPath.resolve(BfConsts.RELPATH_COMPRESSED_DATA_PLANE_ANSWER));
       envSettings.setDataPlanePath(envPath.resolve(BfConsts.RELPATH_DATA_PLANE));
       envSettings.setDataPlaneAnswerPath(envPath.resolve(BfConsts.RELPATH_DATA_PLANE_ANSWER_PATH));
+      envSettings.setDataPlaneCheckpointPath(
+          envPath.resolve(BfConsts.RELPATH_DATA_PLANE_CHECKPOINT));
       envSettings.setParseEnvironmentBgpTablesAnswerPath(
           envPath.resolve(BfConsts.RELPATH_ENVIRONMENT_BGP_TABLES_ANSWER));
       envSettings.setParseEnvironmentRoutingTablesAnswerPath(
@@ -554,7 +573,10 @@ public class Batfish extends PluginConsumer implements IBatfish {
     _dataPlanePlugins = new HashMap<>();
     _storage =
         new BatfishStorage(
-            _settings.getStorageBase().resolve(_settings.getContainer()), _logger, this::newBatch);
+            _settings.getStorageBase().resolve(_settings.getContainer()),
+            _logger,
+            this::newBatch,
+            _settings.getStorageFormat());
   }
 
   private Answer analyze() {
@@ -675,7 +697,7 @@ public class Batfish extends PluginConsumer implements IBatfish {
     try (ActiveSpan initQuestionEnvSpan =
         GlobalTracer.get().buildSpan("Init question environment").startActive()) {
       assert initQuestionEnvSpan != null; // avoid not used warning
-      initQuestionEnvironments(diff, diffActive, dp);
+      initQuestionEnvironments(diff, diffActive, dp, question.getDataPlaneDetail());
     }
 
     AnswerElement answerElement = null;
@@ -1117,6 +1139,9 @@ public class Batfish extends PluginConsumer implements IBatfish {
     Topology topo = CommonUtil.synthesizeTopology(configs);
     DataPlanePlugin dataPlanePlugin = getDataPlanePlugin();
     ComputeDataPlaneResult result = dataPlanePlugin.computeDataPlane(false, configs, topo);
+    if (result._dataPlane == null) {
+      throw new BatfishException("Compressed data planes cannot be partitioned across workers");
+    }
 
     _storage.storeCompressedConfigurations(configs, _testrigSettings.getName());
     return new CompressDataPlaneResult(configs, result._dataPlane, result._answerElement);
@@ -1126,10 +1151,29 @@ public class Batfish extends PluginConsumer implements IBatfish {
   public DataPlaneAnswerElement computeDataPlane(boolean differentialContext) {
     checkEnvironmentExists();
     ComputeDataPlaneResult result = getDataPlanePlugin().computeDataPlane(differentialContext);
-    saveDataPlane(result._dataPlane, result._answerElement, false);
+    if (result._dataPlane == null) {
+      // This worker's share of a partitioned data plane must not be saved or answered from
+      _logger.info("Not saving this worker's share of the data plane, which its leader holds\n");
+    } else {
+      saveDataPlane(result._dataPlane, result._answerElement, false);
+    }
     return result._answerElement;
   }
 
+  /**
+   * Compute the changes to the FIBs of the current environment under each failure scenario listed
+   * in the given JSON file, within the memory budget set by {@link
+   * Settings#getFailureScenariosMb()}
+   */
+  FailureScenariosAnswerElement computeFailureScenarios(Path failureScenariosPath) {
+    checkEnvironmentExists();
+    List<FailureScenario> scenarios = parseFailureScenarios(failureScenariosPath);
+    int budgetMb = _settings.getFailureScenariosMb();
+    long budgetBytes =
+        budgetMb > 0 ? budgetMb * 1024L * 1024L : Runtime.getRuntime().maxMemory() / 2;
+    return getDataPlanePlugin().computeFailureScenarios(scenarios, budgetBytes);
+  }
+
   /* Write the dataplane to disk and cache, and write the answer element to disk.
    */
   private void saveDataPlane(
@@ -1154,8 +1198,13 @@ public class Batfish extends PluginConsumer implements IBatfish {
     try (ActiveSpan writeDataplane =
         GlobalTracer.get().buildSpan("Writing data plane").startActive()) {
       assert writeDataplane != null; // avoid unused warning
-      serializeObject(dataPlane, dataPlanePath);
+      if (!_settings.getMappedDataPlane()
+          || !getDataPlanePlugin().writeDataPlane(dataPlane, dataPlanePath)) {
+        serializeObject(dataPlane, dataPlanePath);
+      }
       serializeObject(answerElement, answerElementPath);
+    } catch (IOException e) {
+      throw new BatfishException("Failed to write data plane to " + dataPlanePath, e);
     }
     _logger.printElapsedTime();
   }
@@ -1244,14 +1293,18 @@ public class Batfish extends PluginConsumer implements IBatfish {
 
   private Map<String, Configuration> convertConfigurations(
       Map<String, GenericConfigObject> vendorConfigurations,
-      ConvertConfigurationAnswerElement answerElement) {
+      ConvertConfigurationAnswerElement answerElement,
+      @Nullable ConfigurationCache cache,
+      Map<String, String> cacheKeys) {
     _logger.info("\n*** CONVERTING VENDOR CONFIGURATIONS TO INDEPENDENT FORMAT ***\n");
     _logger.resetTimer();
     Map<String, Configuration> configurations = new TreeMap<>();
     List<ConvertConfigurationJob> jobs = new ArrayList<>();
     for (Entry<String, GenericConfigObject> config : vendorConfigurations.entrySet()) {
       GenericConfigObject vc = config.getValue();
-      ConvertConfigurationJob job = new ConvertConfigurationJob(_settings, vc, config.getKey());
+      String name = config.getKey();
+      ConvertConfigurationJob job =
+          new ConvertConfigurationJob(_settings, vc, name, cache, cacheKeys.get(name));
       jobs.add(job);
     }
     BatfishJobExecutor.runJobsInExecutor(
@@ -1724,20 +1777,103 @@ public class Batfish extends PluginConsumer implements IBatfish {
 
   public Map<String, Configuration> getConfigurations(
       Path serializedVendorConfigPath, ConvertConfigurationAnswerElement answerElement) {
+    ConfigurationCache cache = getConfigurationCache();
+    Map<String, Configuration> configurations;
+    if (cache == null) {
+      Map<String, GenericConfigObject> vendorConfigurations =
+          deserializeVendorConfigurations(serializedVendorConfigPath);
+      configurations =
+          convertConfigurations(
+              vendorConfigurations, answerElement, null, Collections.emptyMap());
+    } else {
+      configurations = getConfigurations(serializedVendorConfigPath, answerElement, cache);
+    }
+    postProcessConfigurations(configurations.values());
+    return configurations;
+  }
+
+  /**
+   * Converts the serialized vendor configurations in {@code serializedVendorConfigPath}, reusing
+   * cached conversions of identical files and deserializing only those that must be converted.
+   */
+  private Map<String, Configuration> getConfigurations(
+      Path serializedVendorConfigPath,
+      ConvertConfigurationAnswerElement answerElement,
+      ConfigurationCache cache) {
+    _logger.info("\n*** LOOKING UP CACHED CONVERSIONS ***\n");
+    _logger.resetTimer();
+    List<Path> serializedConfigs;
+    try (Stream<Path> paths = Files.list(serializedVendorConfigPath)) {
+      serializedConfigs = paths.collect(Collectors.toList());
+    } catch (IOException e) {
+      throw new BatfishException("Error reading vendor configs directory", e);
+    }
+    Map<String, ConvertConfigurationResult> cachedResults = new ConcurrentSkipListMap<>();
+    Map<String, String> cacheKeys = new ConcurrentHashMap<>();
+    Map<Path, String> namesToConvert = new ConcurrentHashMap<>();
+    serializedConfigs
+        .parallelStream()
+        .forEach(
+            serializedConfig -> {
+              String name = serializedConfig.getFileName().toString();
+              String key;
+              try {
+                key =
+                    ConfigurationCache.convertKey(
+                        _settings, name, Files.readAllBytes(serializedConfig));
+              } catch (IOException e) {
+                throw new BatfishException("Error reading vendor config: " + serializedConfig, e);
+              }
+              ConvertConfigurationResult cached = cache.loadConvertResult(key, name);
+              if (cached != null) {
+                cachedResults.put(name, cached);
+              } else {
+                cacheKeys.put(name, key);
+                namesToConvert.put(serializedConfig, name);
+              }
+            });
+    _logger.infof(
+        "Reusing cached conversions of %d of %d vendor configurations\n",
+        cachedResults.size(), serializedConfigs.size());
+    _logger.printElapsedTime();
+
     Map<String, GenericConfigObject> vendorConfigurations =
-        deserializeVendorConfigurations(serializedVendorConfigPath);
+        deserializeObjects(namesToConvert, GenericConfigObject.class);
     Map<String, Configuration> configurations =
-        convertConfigurations(vendorConfigurations, answerElement);
-
-    postProcessConfigurations(configurations.values());
+        convertConfigurations(vendorConfigurations, answerElement, cache, cacheKeys);
+    cachedResults.values().forEach(r -> r.applyTo(configurations, _logger, answerElement));
+    // Conversion is the last step to use the cache, so bound it now that this snapshot's entries
+    // are the most recently used.
+    cache.prune(_settings.getMaxConfigurationCacheMb() * 1024L * 1024L);
     return configurations;
   }
 
+  /**
+   * Returns the cache of parse and conversion results shared by all snapshots in the current
+   * network, or {@code null} if caching is disabled.
+   */
+  @Nullable
+  private ConfigurationCache getConfigurationCache() {
+    if (!_settings.getUseConfigurationCache()
+        || _settings.getStorageBase() == null
+        || _settings.getContainer() == null) {
+      return null;
+    }
+    Path containerDir = _settings.getStorageBase().resolve(_settings.getContainer());
+    return new ConfigurationCache(
+        _settings, containerDir.resolve(BfConsts.RELPATH_CONFIGURATION_CACHE_DIR));
+  }
+
   @Override
   public String getContainerName() {
     return _settings.getContainer();
   }
 
+  @Override
+  public Path getDataPlaneCheckpointPath() {
+    return _testrigSettings.getEnvironmentSettings().getDataPlaneCheckpointPath();
+  }
+
   @Override
   public DataPlanePlugin getDataPlanePlugin() {
     DataPlanePlugin plugin = _dataPlanePlugins.get(_settings.getDataPlaneEngineName());
@@ -2264,7 +2400,8 @@ public class Batfish extends PluginConsumer implements IBatfish {
     return answerElement;
   }
 
-  private void initQuestionEnvironment(boolean dp, boolean differentialContext) {
+  private void initQuestionEnvironment(
+      boolean dp, boolean differentialContext, DataPlaneDetail requiredDetail) {
     EnvironmentSettings envSettings = _testrigSettings.getEnvironmentSettings();
     if (!environmentExists(_testrigSettings)) {
       Path envPath = envSettings.getEnvPath();
@@ -2281,6 +2418,18 @@ public class Batfish extends PluginConsumer implements IBatfish {
       if (!dataPlaneDependenciesExist(_testrigSettings)) {
         computeDataPlane(differentialContext);
       }
+      // Every data plane retains the main RIBs, so only load it to check for more detail
+      if (requiredDetail != DataPlaneDetail.MAIN_RIB) {
+        DataPlaneDetail detail = loadDataPlane().getDetail();
+        if (!detail.includes(requiredDetail)) {
+          throw new BatfishException(
+              String.format(
+                  "The question requires a data plane retaining %s detail, but the data plane of "
+                      + "this environment retains only %s. Recompute it with a data plane "
+                      + "retention of at least %s.",
+                  requiredDetail, detail, requiredDetail));
+        }
+      }
 
       if (!compressedDataPlaneDependenciesExist(_testrigSettings)) {
         // computeCompressedDataPlane();
@@ -2288,15 +2437,16 @@ public class Batfish extends PluginConsumer implements IBatfish {
     }
   }
 
-  private void initQuestionEnvironments(boolean diff, boolean diffActive, boolean dp) {
+  private void initQuestionEnvironments(
+      boolean diff, boolean diffActive, boolean dp, DataPlaneDetail requiredDetail) {
     if (diff || !diffActive) {
       pushBaseEnvironment();
-      initQuestionEnvironment(dp, false);
+      initQuestionEnvironment(dp, false, requiredDetail);
       popEnvironment();
     }
     if (diff || diffActive) {
       pushDeltaEnvironment();
-      initQuestionEnvironment(dp, true);
+      initQuestionEnvironment(dp, true, requiredDetail);
       popEnvironment();
     }
   }
@@ -2385,6 +2535,15 @@ public class Batfish extends PluginConsumer implements IBatfish {
     return loadConfigurations(snapshot);
   }
 
+  @Override
+  public SortedMap<String, Configuration> loadConfigurations(Set<String> nodes) {
+    SortedMap<String, Configuration> configurations = loadConfigurations();
+    if (configurations instanceof LazySortedMap<?, ?>) {
+      ((LazySortedMap<String, Configuration>) configurations).prefetch(nodes);
+    }
+    return configurations;
+  }
+
   SortedMap<String, Configuration> loadCompressedConfigurations(NetworkSnapshot snapshot) {
     // Do we already have configurations in the cache?
     SortedMap<String, Configuration> configurations =
@@ -2413,25 +2572,128 @@ public class Batfish extends PluginConsumer implements IBatfish {
    * features.
    */
   SortedMap<String, Configuration> loadConfigurations(NetworkSnapshot snapshot) {
-    // Do we already have configurations in the cache?
-    SortedMap<String, Configuration> configurations = _cachedConfigurations.getIfPresent(snapshot);
-    if (configurations != null) {
-      return configurations;
+    return getOrLoad(
+        _cachedConfigurations,
+        snapshot,
+        () -> {
+          _logger.debugf("Loading configurations for %s, cache miss", snapshot);
+
+          // See if we have an up-to-date, environment-specific configurations on disk.
+          String testrig = snapshot.getSnapshot().getTestrig();
+          LazySortedMap<String, Configuration> stored = _storage.loadConfigurations(testrig);
+          if (stored != null) {
+            _logger.debugf("Loaded configurations for %s off disk", snapshot);
+            return applyEnvironmentLazily(repairOnLoadFailure(testrig, stored));
+          }
+          // Otherwise, we have to parse the configurations. Fall back to old, hacky code.
+          return parseConfigurationsAndApplyEnvironment();
+        });
+  }
+
+  /**
+   * Returns the value cached for {@code snapshot}, first loading it with {@code loader} and caching
+   * it on a miss. Exceptions thrown by {@code loader} propagate unwrapped.
+   */
+  private static <V> V getOrLoad(
+      Cache<NetworkSnapshot, V> cache, NetworkSnapshot snapshot, Callable<V> loader) {
+    try {
+      return cache.get(snapshot, loader);
+    } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new BatfishException("Error loading " + snapshot, e.getCause());
     }
-    _logger.debugf("Loading configurations for %s, cache miss", snapshot);
+  }
 
-    // Next, see if we have an up-to-date, environment-specific configurations on disk.
-    configurations = _storage.loadConfigurations(snapshot.getSnapshot().getTestrig());
-    if (configurations != null) {
-      _logger.debugf("Loaded configurations for %s off disk", snapshot);
-      applyEnvironment(configurations);
-    } else {
-      // Otherwise, we have to parse the configurations. Fall back to old, hacky code.
-      configurations = parseConfigurationsAndApplyEnvironment();
+  /**
+   * Returns a view of {@code stored}, the configurations of {@code testrig} as indexed on disk, in
+   * which a configuration that cannot be deserialized (e.g., because its file is corrupt or was
+   * written by an incompatible version of a class) is reconverted instead. Configurations are
+   * loaded lazily, so such failures surface on first access rather than when the testrig is
+   * indexed, and the testrig is repaired at that point. It is repaired at most once per returned
+   * map, and once a repair starts every configuration not yet loaded is read from the repaired
+   * testrig instead of {@code stored}.
+   */
+  private LazySortedMap<String, Configuration> repairOnLoadFailure(
+      String testrig, LazySortedMap<String, Configuration> stored) {
+    // Capture the testrig now; the returned map may outlive the current testrig settings.
+    TestrigSettings testrigSettings = _testrigSettings;
+    // Loads from stored hold the read lock, so the repair does not rewrite files under them
+    ReadWriteLock lock = new ReentrantReadWriteLock();
+    AtomicBoolean repairStarted = new AtomicBoolean();
+    Supplier<SortedMap<String, Configuration>> repaired =
+        Suppliers.memoize(
+            () -> {
+              repairStarted.set(true);
+              lock.writeLock().lock();
+              try {
+                _logger.infof("Repairing configurations for testrig %s", testrig);
+                repairIndependentConfigurations(testrigSettings);
+              } finally {
+                lock.writeLock().unlock();
+              }
+              SortedMap<String, Configuration> configurations =
+                  _storage.loadConfigurations(testrig);
+              Verify.verify(
+                  configurations != null,
+                  "Configurations should not be null when loaded immediately after repair.");
+              return configurations;
+            });
+    SortedMap<String, Supplier<Configuration>> loaders = new TreeMap<>();
+    for (String hostname : stored.keySet()) {
+      loaders.put(
+          hostname,
+          () -> {
+            lock.readLock().lock();
+            try {
+              if (!repairStarted.get()) {
+                return stored.get(hostname);
+              }
+            } catch (BatfishException e) {
+              _logger.warnf(
+                  "Failed to load configuration for %s, repairing testrig %s: %s\n",
+                  hostname, testrig, e.getMessage());
+            } finally {
+              // Released before repairing, since the repair takes the write lock
+              lock.readLock().unlock();
+            }
+            Configuration configuration = repaired.get().get(hostname);
+            Verify.verify(
+                configuration != null,
+                "Configuration for %s should not be null after repair.",
+                hostname);
+            return configuration;
+          });
     }
+    return new LazySortedMap<>(loaders);
+  }
 
-    _cachedConfigurations.put(snapshot, configurations);
-    return configurations;
+  /**
+   * Reconverts the serialized vendor configurations of the given testrig and stores the results in
+   * place of its vendor-independent configurations. Unlike {@link #repairConfigurations()}, this
+   * reads and writes only the given testrig, whatever the current testrig is.
+   *
+   * @throws BatfishException if the serialized vendor configurations are out of date, in which case
+   *     the testrig must be reparsed
+   */
+  private void repairIndependentConfigurations(TestrigSettings testrigSettings) {
+    Path parseAnswerPath = testrigSettings.getParseAnswerPath();
+    if (!Files.exists(parseAnswerPath)
+        || !Version.isCompatibleVersion(
+            "Service",
+            "Old parsed configurations",
+            deserializeObject(parseAnswerPath, ParseVendorConfigurationAnswerElement.class)
+                .getVersion())) {
+      throw new BatfishException(
+          String.format(
+              "Cannot repair configurations of testrig %s: its parsed configurations are out of "
+                  + "date",
+              testrigSettings.getName()));
+    }
+    ConvertConfigurationAnswerElement answerElement = new ConvertConfigurationAnswerElement();
+    answerElement.setVersion(Version.getVersion());
+    Map<String, Configuration> configurations =
+        getConfigurations(testrigSettings.getSerializeVendorPath(), answerElement);
+    _storage.storeConfigurations(configurations, answerElement, testrigSettings.getName());
   }
 
   @Nonnull
@@ -2443,8 +2705,7 @@ public class Batfish extends PluginConsumer implements IBatfish {
     Verify.verify(
         configurations != null,
         "Configurations should not be null when loaded immediately after repair.");
-    applyEnvironment(configurations);
-    return configurations;
+    return applyEnvironmentLazily(configurations);
   }
 
   @Override
@@ -2484,22 +2745,31 @@ public class Batfish extends PluginConsumer implements IBatfish {
             : _testrigSettings.getEnvironmentSettings().getDataPlanePath();
 
     NetworkSnapshot snapshot = getNetworkSnapshot();
-    DataPlane dp = cache.getIfPresent(snapshot);
-    if (dp == null) {
-      /*
-       * Data plane should exist after loading answer element, as it triggers
-       * repair if necessary. However, it might not be cached if it was not
-       * repaired, so we still might need to load it from disk.
-       */
-      loadDataPlaneAnswerElement(compressed);
-      dp = cache.getIfPresent(_testrigSettings);
-      if (dp == null) {
-        newBatch("Loading data plane from disk", 0);
-        dp = deserializeObject(path, DataPlane.class);
-        cache.put(snapshot, dp);
-      }
-    }
-    return dp;
+    return getOrLoad(
+        cache,
+        snapshot,
+        () -> {
+          /*
+           * Data plane should exist after loading answer element, as it triggers
+           * repair if necessary. However, it might not be cached if it was not
+           * repaired, so we still might need to load it from disk.
+           */
+          loadDataPlaneAnswerElement(compressed);
+          DataPlane dp = cache.getIfPresent(snapshot);
+          if (dp != null) {
+            return dp;
+          }
+          newBatch("Loading data plane from disk", 0);
+          try {
+            dp = getDataPlanePlugin().readDataPlane(path);
+          } catch (IOException e) {
+            throw new BatfishException("Failed to read data plane from " + path, e);
+          }
+          if (dp == null) {
+            dp = deserializeObject(path, DataPlane.class);
+          }
+          return dp;
+        });
   }
 
   private DataPlaneAnswerElement loadDataPlaneAnswerElement(boolean compressed) {
@@ -2806,6 +3076,16 @@ public class Batfish extends PluginConsumer implements IBatfish {
     return config;
   }
 
+  private List<FailureScenario> parseFailureScenarios(Path failureScenariosPath) {
+    String failureScenariosText = CommonUtil.readFile(failureScenariosPath);
+    try {
+      return BatfishObjectMapper.mapper()
+          .readValue(failureScenariosText, new TypeReference<List<FailureScenario>>() {});
+    } catch (IOException e) {
+      throw new BatfishException("Failed to parse failure scenarios", e);
+    }
+  }
+
   private SortedSet<Edge> parseEdgeBlacklist(Path edgeBlacklistPath) {
     String edgeBlacklistText = CommonUtil.readFile(edgeBlacklistPath);
     SortedSet<Edge> edges;
@@ -2920,22 +3200,53 @@ public class Batfish extends PluginConsumer implements IBatfish {
       Map<Path, String> configurationData,
       ParseVendorConfigurationAnswerElement answerElement,
       ConfigurationFormat configurationFormat) {
-    _logger.info("\n*** PARSING VENDOR CONFIGURATION FILES ***\n");
-    _logger.resetTimer();
-    SortedMap<String, VendorConfiguration> vendorConfigurations = new TreeMap<>();
+    Path testRigPath = _settings.getActiveTestrigSettings().getTestRigPath();
+    ConfigurationCache cache = getConfigurationCache();
     List<ParseVendorConfigurationJob> jobs = new ArrayList<>();
     for (Entry<Path, String> vendorFile : configurationData.entrySet()) {
       Path currentFile = vendorFile.getKey();
       String fileText = vendorFile.getValue();
 
       Warnings warnings = buildWarnings(_settings);
-      String filename =
-          _settings.getActiveTestrigSettings().getTestRigPath().relativize(currentFile).toString();
+      String filename = testRigPath.relativize(currentFile).toString();
+      ParseVendorConfigurationJob job =
+          new ParseVendorConfigurationJob(
+              _settings, fileText, filename, warnings, configurationFormat, cache);
+      jobs.add(job);
+    }
+    return runParseJobs(jobs, answerElement);
+  }
+
+  /**
+   * Parses the given {@code files}. Unlike {@link #parseVendorConfigurations(Map,
+   * ParseVendorConfigurationAnswerElement, ConfigurationFormat)}, the text of each file is read by
+   * the job that parses it, so only the files currently being parsed are held in memory and parsing
+   * starts without waiting for every file to be read.
+   */
+  private SortedMap<String, VendorConfiguration> parseVendorConfigurationFiles(
+      List<Path> files,
+      ParseVendorConfigurationAnswerElement answerElement,
+      ConfigurationFormat configurationFormat) {
+    Path testRigPath = _settings.getActiveTestrigSettings().getTestRigPath();
+    ConfigurationCache cache = getConfigurationCache();
+    List<ParseVendorConfigurationJob> jobs = new ArrayList<>();
+    for (Path currentFile : files) {
+      Warnings warnings = buildWarnings(_settings);
+      String filename = testRigPath.relativize(currentFile).toString();
       ParseVendorConfigurationJob job =
           new ParseVendorConfigurationJob(
-              _settings, fileText, filename, warnings, configurationFormat);
+              _settings, currentFile, filename, warnings, configurationFormat, cache);
       jobs.add(job);
     }
+    return runParseJobs(jobs, answerElement);
+  }
+
+  private SortedMap<String, VendorConfiguration> runParseJobs(
+      List<ParseVendorConfigurationJob> jobs,
+      ParseVendorConfigurationAnswerElement answerElement) {
+    _logger.info("\n*** PARSING VENDOR CONFIGURATION FILES ***\n");
+    _logger.resetTimer();
+    SortedMap<String, VendorConfiguration> vendorConfigurations = new TreeMap<>();
     BatfishJobExecutor.runJobsInExecutor(
         _settings,
         _logger,
@@ -3341,17 +3652,19 @@ public class Batfish extends PluginConsumer implements IBatfish {
     nodeIface.setBlacklisted(true);
   }
 
-  private void processInterfaceBlacklist(
-      Map<String, Configuration> configurations, ValidateEnvironmentAnswerElement veae) {
-    Set<NodeInterfacePair> blacklistInterfaces = getInterfaceBlacklist();
+  private static void processInterfaceBlacklist(
+      Set<NodeInterfacePair> blacklistInterfaces,
+      Map<String, Configuration> configurations,
+      ValidateEnvironmentAnswerElement veae) {
     for (NodeInterfacePair p : blacklistInterfaces) {
       blacklistInterface(configurations, veae, p);
     }
   }
 
-  private void processNodeBlacklist(
-      Map<String, Configuration> configurations, ValidateEnvironmentAnswerElement veae) {
-    SortedSet<String> blacklistNodes = getNodeBlacklist();
+  private static void processNodeBlacklist(
+      Set<String> blacklistNodes,
+      Map<String, Configuration> configurations,
+      ValidateEnvironmentAnswerElement veae) {
     for (String hostname : blacklistNodes) {
       Configuration node = configurations.get(hostname);
       if (node != null) {
@@ -3388,15 +3701,19 @@ public class Batfish extends PluginConsumer implements IBatfish {
         newBatch("Reading network configuration files", configFilePaths.size());
     for (Path file : configFilePaths) {
       _logger.debugf("Reading: \"%s\"\n", file);
-      String fileTextRaw = CommonUtil.readFile(file.toAbsolutePath());
-      String fileText = fileTextRaw + ((fileTextRaw.length() != 0) ? "\n" : "");
-      configurationData.put(file, fileText);
+      configurationData.put(file, readConfigurationFile(file));
       completed.incrementAndGet();
     }
     _logger.printElapsedTime();
     return configurationData;
   }
 
+  /** Reads the configuration file at {@code file}, terminating non-empty text with a newline. */
+  public static String readConfigurationFile(Path file) {
+    String fileTextRaw = CommonUtil.readFile(file.toAbsolutePath());
+    return fileTextRaw + ((fileTextRaw.length() != 0) ? "\n" : "");
+  }
+
   @Nullable
   @Override
   public String readExternalBgpAnnouncementsFile() {
@@ -3697,8 +4014,8 @@ public class Batfish extends PluginConsumer implements IBatfish {
    */
   private void updateBlacklistedAndInactiveConfigs(
       Map<String, Configuration> configurations, ValidateEnvironmentAnswerElement veae) {
-    processNodeBlacklist(configurations, veae);
-    processInterfaceBlacklist(configurations, veae);
+    processNodeBlacklist(getNodeBlacklist(), configurations, veae);
+    processInterfaceBlacklist(getInterfaceBlacklist(), configurations, veae);
     // We do not process the edge blacklist here. Instead, we rely on these edges being explicitly
     // deleted from the Topology (aka list of edges) that is used along with configurations in
     // answering questions.
@@ -3727,6 +4044,68 @@ public class Batfish extends PluginConsumer implements IBatfish {
         veae, _testrigSettings.getEnvironmentSettings().getValidateEnvironmentAnswerPath());
   }
 
+  /**
+   * Returns a view of {@code configurationsWithoutEnvironment} in which the environment is applied
+   * to each configuration when it is first accessed, with the same results as {@link
+   * #applyEnvironment(Map)}. Only nodes that are accessed, plus any nodes named in the environment
+   * blacklists, are loaded.
+   *
+   * <p>Resolving IPsec VPN endpoints requires the whole network, so accessing a node that has IPsec
+   * VPNs loads every configuration once.
+   */
+  private LazySortedMap<String, Configuration> applyEnvironmentLazily(
+      SortedMap<String, Configuration> configurationsWithoutEnvironment) {
+    // Capture the environment now; the returned map may outlive the current testrig settings.
+    SortedSet<String> nodeBlacklist = getNodeBlacklist();
+    SortedSet<NodeInterfacePair> interfaceBlacklist = getInterfaceBlacklist();
+
+    // Per-node steps that precede IPsec VPN resolution in updateBlacklistedAndInactiveConfigs.
+    SortedMap<String, Supplier<Configuration>> blacklistedLoaders = new TreeMap<>();
+    for (String hostname : configurationsWithoutEnvironment.keySet()) {
+      blacklistedLoaders.put(
+          hostname,
+          () -> {
+            Map<String, Configuration> node =
+                ImmutableMap.of(hostname, configurationsWithoutEnvironment.get(hostname));
+            // Validation is performed once for the whole network below.
+            ValidateEnvironmentAnswerElement ignored = new ValidateEnvironmentAnswerElement();
+            processNodeBlacklist(nodeBlacklist, node, ignored);
+            processInterfaceBlacklist(interfaceBlacklist, node, ignored);
+            disableUnusableVlanInterfaces(node);
+            return node.get(hostname);
+          });
+    }
+    LazySortedMap<String, Configuration> blacklisted = new LazySortedMap<>(blacklistedLoaders);
+
+    // Only loads the blacklisted nodes.
+    ValidateEnvironmentAnswerElement veae = new ValidateEnvironmentAnswerElement();
+    processNodeBlacklist(nodeBlacklist, blacklisted, veae);
+    processInterfaceBlacklist(interfaceBlacklist, blacklisted, veae);
+    serializeObject(
+        veae, _testrigSettings.getEnvironmentSettings().getValidateEnvironmentAnswerPath());
+
+    Supplier<Boolean> vpnsResolved =
+        Suppliers.memoize(
+            () -> {
+              disableUnusableVpnInterfaces(blacklisted);
+              return true;
+            });
+    SortedMap<String, Supplier<Configuration>> loaders = new TreeMap<>();
+    for (String hostname : blacklisted.keySet()) {
+      loaders.put(
+          hostname,
+          () -> {
+            Configuration c = blacklisted.get(hostname);
+            if (!c.getIpsecVpns().isEmpty()) {
+              vpnsResolved.get();
+            }
+            postProcessForEnvironment(ImmutableMap.of(hostname, c));
+            return c;
+          });
+    }
+    return new LazySortedMap<>(loaders);
+  }
+
   private void repairEnvironmentBgpTables() {
     EnvironmentSettings envSettings = _testrigSettings.getEnvironmentSettings();
     Path answerPath = envSettings.getParseEnvironmentBgpTablesAnswerPath();
@@ -3885,6 +4264,12 @@ public class Batfish extends PluginConsumer implements IBatfish {
       action = true;
     }
 
+    Path failureScenariosPath = _settings.getFailureScenariosPath();
+    if (failureScenariosPath != null) {
+      answer.addAnswerElement(computeFailureScenarios(failureScenariosPath));
+      action = true;
+    }
+
     if (_settings.getValidateEnvironment()) {
       answer.append(validateEnvironment());
       action = true;
@@ -4107,14 +4492,15 @@ public class Batfish extends PluginConsumer implements IBatfish {
       Path outputPath,
       ParseVendorConfigurationAnswerElement answerElement,
       SortedMap<String, VendorConfiguration> overlayHostConfigurations) {
-    Map<Path, String> configurationData =
-        readConfigurationFiles(testRigPath, BfConsts.RELPATH_CONFIGURATIONS_DIR);
+    List<Path> configurationFiles =
+        listAllFiles(testRigPath.resolve(BfConsts.RELPATH_CONFIGURATIONS_DIR));
     Map<String, VendorConfiguration> vendorConfigurations;
     try (ActiveSpan parseNetworkConfigsSpan =
         GlobalTracer.get().buildSpan("Parse network configs").startActive()) {
       assert parseNetworkConfigsSpan != null; // avoid unused warning
       vendorConfigurations =
-          parseVendorConfigurations(configurationData, answerElement, ConfigurationFormat.UNKNOWN);
+          parseVendorConfigurationFiles(
+              configurationFiles, answerElement, ConfigurationFormat.UNKNOWN);
     }
     if (vendorConfigurations == null) {
       throw new BatfishException("Exiting due to parser errors");
@@ -4159,6 +4545,24 @@ public class Batfish extends PluginConsumer implements IBatfish {
     _logger.printElapsedTime();
   }
 
+  /**
+   * Serializes the given object to a file with the given output name. Writes {@link
+   * Format#BLOCK_LZ4} if that is the configured storage format, so that large objects such as data
+   * planes are compressed on all cores.
+   */
+  @Override
+  public void serializeObject(Serializable object, Path outputFile) {
+    if (_settings.getStorageFormat() != Format.BLOCK_LZ4 || _settings.getSerializeToText()) {
+      super.serializeObject(object, outputFile);
+      return;
+    }
+    try {
+      BlockCompressedSerialization.serialize(object, outputFile);
+    } catch (IOException e) {
+      throw new BatfishException("Failed to serialize object to output file: " + outputFile, e);
+    }
+  }
+
   public <S extends Serializable> void serializeObjects(Map<Path, S> objectsByPath) {
     if (objectsByPath.isEmpty()) {
       return;
@@ -1,12 +1,15 @@
 package org.batfish.main;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static org.batfish.common.plugin.PluginConsumer.DEFAULT_HEADER_LENGTH_BYTES;
 import static org.batfish.common.plugin.PluginConsumer.detectFormat;
 
 import com.google.common.base.Throwables;
 import com.google.common.io.Closer;
+import java.io.BufferedOutputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
@@ -17,12 +20,11 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 import java.util.zip.GZIPInputStream;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -35,30 +37,62 @@ import org.batfish.common.Version;
 import org.batfish.common.plugin.PluginConsumer.Format;
 import org.batfish.common.topology.Layer1Topology;
 import org.batfish.common.util.BatfishObjectMapper;
+import org.batfish.common.util.BlockCompressedSerialization;
 import org.batfish.common.util.CommonUtil;
+import org.batfish.common.util.CompactSerialization;
+import org.batfish.common.util.InterningObjectInputStream;
+import org.batfish.common.util.LazySortedMap;
 import org.batfish.datamodel.Configuration;
 import org.batfish.datamodel.Topology;
 import org.batfish.datamodel.answers.ConvertConfigurationAnswerElement;
 
 /** A utility class that abstracts the underlying file system storage used by {@link Batfish}. */
-final class BatfishStorage {
+public final class BatfishStorage {
   private final BatfishLogger _logger;
   private final Path _containerDir;
   private final BiFunction<String, Integer, AtomicInteger> _newBatch;
+  private final Format _storageFormat;
 
-  /** Create a new {@link BatfishStorage} instance that uses the given root path as a container. */
+  /**
+   * Create a new {@link BatfishStorage} instance that uses the given root path as a container and
+   * the default {@link Format#LZ4} storage format.
+   */
   public BatfishStorage(
       Path containerDir,
       BatfishLogger logger,
       BiFunction<String, Integer, AtomicInteger> newBatch) {
+    this(containerDir, logger, newBatch, Format.LZ4);
+  }
+
+  /**
+   * Create a new {@link BatfishStorage} instance that uses the given root path as a container and
+   * writes serialized objects in the given {@code storageFormat}, which must be {@link Format#LZ4},
+   * {@link Format#COMPACT}, or {@link Format#BLOCK_LZ4}. Files in any supported format can be read
+   * regardless.
+   */
+  public BatfishStorage(
+      Path containerDir,
+      BatfishLogger logger,
+      BiFunction<String, Integer, AtomicInteger> newBatch,
+      Format storageFormat) {
+    checkArgument(
+        storageFormat == Format.LZ4
+            || storageFormat == Format.COMPACT
+            || storageFormat == Format.BLOCK_LZ4,
+        "Unsupported storage format: %s",
+        storageFormat);
     _containerDir = containerDir;
     _logger = logger;
     _newBatch = newBatch;
+    _storageFormat = storageFormat;
   }
 
   /**
    * Returns the compressed configuration files for the given testrig. If a serialized copy of these
    * configurations is not already present, then this function returns {@code null}.
+   *
+   * <p>The returned map is a {@link LazySortedMap}: each configuration is deserialized on first
+   * access.
    */
   @Nullable
   public SortedMap<String, Configuration> loadCompressedConfigurations(String testrig) {
@@ -70,15 +104,18 @@ final class BatfishStorage {
   /**
    * Returns the configuration files for the given testrig. If a serialized copy of these
    * configurations is not already present, then this function returns {@code null}.
+   *
+   * <p>The returned map is a {@link LazySortedMap}: each configuration is deserialized on first
+   * access, so callers interested in only a few nodes do not pay to load the whole testrig.
    */
   @Nullable
-  public SortedMap<String, Configuration> loadConfigurations(String testrig) {
+  public LazySortedMap<String, Configuration> loadConfigurations(String testrig) {
     Path testrigDir = getTestrigDir(testrig);
     Path indepDir = testrigDir.resolve(BfConsts.RELPATH_VENDOR_INDEPENDENT_CONFIG_DIR);
     return loadConfigurations(testrig, indepDir);
   }
 
-  private SortedMap<String, Configuration> loadConfigurations(String testrig, Path indepDir) {
+  private LazySortedMap<String, Configuration> loadConfigurations(String testrig, Path indepDir) {
     // If the directory that would contain these configs does not even exist, no cache exists.
     if (!Files.exists(indepDir)) {
       _logger.debugf("Unable to load configs for %s from disk: no cache directory", testrig);
@@ -93,22 +130,25 @@ final class BatfishStorage {
       return null;
     }
 
-    _logger.info("\n*** DESERIALIZING VENDOR-INDEPENDENT CONFIGURATION STRUCTURES ***\n");
-    Map<Path, String> namesByPath = new TreeMap<>();
+    _logger.info("\n*** INDEXING VENDOR-INDEPENDENT CONFIGURATION STRUCTURES ***\n");
+    SortedMap<String, Supplier<Configuration>> loaders = new TreeMap<>();
     try (DirectoryStream<Path> stream = Files.newDirectoryStream(indepDir)) {
       for (Path serializedConfig : stream) {
         String name = serializedConfig.getFileName().toString();
-        namesByPath.put(serializedConfig, name);
+        loaders.put(
+            name,
+            () -> {
+              _logger.debugf(
+                  "Reading %s '%s' from '%s'\n",
+                  Configuration.class.getName(), name, serializedConfig);
+              return deserializeObject(serializedConfig, Configuration.class, true);
+            });
       }
     } catch (IOException e) {
       throw new BatfishException(
           "Error reading vendor-independent configs directory: '" + indepDir + "'", e);
     }
-    try {
-      return deserializeObjects(namesByPath, Configuration.class);
-    } catch (BatfishException e) {
-      return null;
-    }
+    return new LazySortedMap<>(loaders);
   }
 
   @Nullable
@@ -118,7 +158,7 @@ final class BatfishStorage {
       return null;
     }
     try {
-      return deserializeObject(ccaePath, ConvertConfigurationAnswerElement.class);
+      return deserializeObject(ccaePath, ConvertConfigurationAnswerElement.class, false);
     } catch (BatfishException e) {
       _logger.errorf(
           "Failed to deserialize ConvertConfigurationAnswerElement: %s",
@@ -212,7 +252,7 @@ final class BatfishStorage {
     // Save the convert configuration answer element.
     Path ccaePath = testrigDir.resolve(BfConsts.RELPATH_CONVERT_ANSWER_PATH);
     CommonUtil.deleteIfExists(ccaePath);
-    serializeObject(convertAnswerElement, ccaePath);
+    serializeObject(convertAnswerElement, ccaePath, _storageFormat);
 
     Path outputDir = testrigDir.resolve(BfConsts.RELPATH_VENDOR_INDEPENDENT_CONFIG_DIR);
 
@@ -242,7 +282,7 @@ final class BatfishStorage {
         .forEach(
             e -> {
               Path currentOutputPath = outputDir.resolve(e.getKey());
-              serializeObject(e.getValue(), currentOutputPath);
+              serializeObject(e.getValue(), currentOutputPath, _storageFormat);
               progressCount.incrementAndGet();
             });
   }
@@ -250,28 +290,41 @@ final class BatfishStorage {
   /**
    * Returns a single object of the given class deserialized from the given file. Uses the {@link
    * BatfishStorage} default file encoding including serialization format and compression.
+   *
+   * <p>If {@code intern} is set, strings and immutable value objects in the result are replaced by
+   * canonical instances shared with every other object loaded this way (see {@link
+   * org.batfish.common.util.ValueInterner}). This is worthwhile for the configurations of a
+   * snapshot, which repeat the same names, prefixes and communities across thousands of nodes.
    */
-  private static <S extends Serializable> S deserializeObject(Path inputFile, Class<S> outputClass)
-      throws BatfishException {
+  private static <S extends Serializable> S deserializeObject(
+      Path inputFile, Class<S> outputClass, boolean intern) throws BatfishException {
     try (Closer closer = Closer.create()) {
       FileInputStream fis = closer.register(new FileInputStream(inputFile.toFile()));
       PushbackInputStream pbstream = new PushbackInputStream(fis, DEFAULT_HEADER_LENGTH_BYTES);
       Format f = detectFormat(pbstream);
-      ObjectInputStream ois;
-      if (f == Format.GZIP) {
-        GZIPInputStream gis =
-            closer.register(new GZIPInputStream(pbstream, 8192 /* enlarge buffer */));
-        ois = new ObjectInputStream(gis);
+      InputStream in;
+      if (f == Format.COMPACT) {
+        return CompactSerialization.deserialize(
+            pbstream, outputClass, Thread.currentThread().getContextClassLoader(), intern);
+      } else if (f == Format.BLOCK_LZ4) {
+        return BlockCompressedSerialization.deserialize(
+            inputFile, outputClass, Thread.currentThread().getContextClassLoader(), intern);
+      } else if (f == Format.GZIP) {
+        in = closer.register(new GZIPInputStream(pbstream, 8192 /* enlarge buffer */));
       } else if (f == Format.LZ4) {
-        LZ4FrameInputStream lis = closer.register(new LZ4FrameInputStream(pbstream));
-        ois = new ObjectInputStream(lis);
+        in = closer.register(new LZ4FrameInputStream(pbstream));
       } else if (f == Format.JAVA_SERIALIZED) {
-        ois = new ObjectInputStream(pbstream);
+        in = pbstream;
       } else {
         throw new BatfishException(
             String.format("Could not detect format of the file %s", inputFile));
       }
-      closer.register(ois);
+      ObjectInputStream ois =
+          closer.register(
+              intern
+                  ? new InterningObjectInputStream(
+                      in, Thread.currentThread().getContextClassLoader())
+                  : new ObjectInputStream(in));
       return outputClass.cast(ois.readObject());
     } catch (IOException | ClassNotFoundException | ClassCastException e) {
       throw new BatfishException(
@@ -282,37 +335,21 @@ final class BatfishStorage {
     }
   }
 
-  private <S extends Serializable> SortedMap<String, S> deserializeObjects(
-      Map<Path, String> namesByPath, Class<S> outputClass) {
-    String outputClassName = outputClass.getName();
-    AtomicInteger completed =
-        _newBatch.apply(
-            String.format("Deserializing objects of type '%s' from files", outputClassName),
-            namesByPath.size());
-    return new TreeMap<>(
-        namesByPath
-            .entrySet()
-            .parallelStream()
-            .collect(
-                Collectors.toMap(
-                    Entry::getValue,
-                    entry -> {
-                      Path inputPath = entry.getKey();
-                      String name = entry.getValue();
-                      _logger.debugf(
-                          "Reading %s '%s' from '%s'\n", outputClassName, name, inputPath);
-                      S output = deserializeObject(inputPath, outputClass);
-                      completed.incrementAndGet();
-                      return output;
-                    })));
-  }
-
   /**
-   * Writes a single object of the given class to the given file. Uses the {@link BatfishStorage}
-   * default file encoding including serialization format and compression.
+   * Writes a single object of the given class to the given file, using the given {@link Format}
+   * for serialization and compression.
    */
-  private static void serializeObject(Serializable object, Path outputFile) {
+  private static void serializeObject(Serializable object, Path outputFile, Format format) {
     try {
+      if (format == Format.COMPACT) {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(outputFile))) {
+          CompactSerialization.serialize(object, out);
+        }
+        return;
+      } else if (format == Format.BLOCK_LZ4) {
+        BlockCompressedSerialization.serialize(object, outputFile);
+        return;
+      }
       try (OutputStream out = Files.newOutputStream(outputFile);
           LZ4FrameOutputStream gos = new LZ4FrameOutputStream(out);
           ObjectOutputStream oos = new ObjectOutputStream(gos)) {
@@ -1,8 +1,6 @@
 package org.batfish.main;
 
 import com.google.common.base.Throwables;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.uber.jaeger.Configuration.ReporterConfiguration;
 import com.uber.jaeger.Configuration.SamplerConfiguration;
@@ -58,8 +56,6 @@ import org.batfish.common.Version;
 import org.batfish.common.util.CommonUtil;
 import org.batfish.config.ConfigurationLocator;
 import org.batfish.config.Settings;
-import org.batfish.datamodel.Configuration;
-import org.batfish.datamodel.DataPlane;
 import org.batfish.datamodel.answers.Answer;
 import org.batfish.datamodel.answers.AnswerStatus;
 import org.batfish.datamodel.collections.BgpAdvertisementsByVrf;
@@ -115,12 +111,9 @@ public class Driver {
 
   private static Settings _mainSettings = null;
 
-  private static ConcurrentMap<String, Task> _taskLog;
-
-  private static final Cache<NetworkSnapshot, DataPlane> CACHED_COMPRESSED_DATA_PLANES =
-      buildDataPlaneCache();
+  private static SnapshotCache _snapshotCache;
 
-  private static final Cache<NetworkSnapshot, DataPlane> CACHED_DATA_PLANES = buildDataPlaneCache();
+  private static ConcurrentMap<String, Task> _taskLog;
 
   private static final Map<NetworkSnapshot, SortedMap<String, BgpAdvertisementsByVrf>>
       CACHED_ENVIRONMENT_BGP_TABLES = buildEnvironmentBgpTablesCache();
@@ -128,12 +121,6 @@ public class Driver {
   private static final Map<NetworkSnapshot, SortedMap<String, RoutesByVrf>>
       CACHED_ENVIRONMENT_ROUTING_TABLES = buildEnvironmentRoutingTablesCache();
 
-  private static final Cache<NetworkSnapshot, SortedMap<String, Configuration>> CACHED_TESTRIGS =
-      buildTestrigCache();
-
-  private static final Cache<NetworkSnapshot, SortedMap<String, Configuration>>
-      CACHED_COMPRESSED_TESTRIGS = buildTestrigCache();
-
   private static final int COORDINATOR_CHECK_INTERVAL_MS = 1 * 60 * 1000; // 1 min
 
   private static final int COORDINATOR_POLL_TIMEOUT_MS = 30 * 1000; // 30 secs
@@ -144,21 +131,13 @@ public class Driver {
 
   static Logger httpServerLogger = Logger.getLogger(HttpServer.class.getName());
 
-  private static final int MAX_CACHED_DATA_PLANES = 2;
-
   private static final int MAX_CACHED_ENVIRONMENT_BGP_TABLES = 4;
 
   private static final int MAX_CACHED_ENVIRONMENT_ROUTING_TABLES = 4;
 
-  private static final int MAX_CACHED_TESTRIGS = 5;
-
   static Logger networkListenerLogger =
       Logger.getLogger("org.glassfish.grizzly.http.server.NetworkListener");
 
-  private static Cache<NetworkSnapshot, DataPlane> buildDataPlaneCache() {
-    return CacheBuilder.newBuilder().maximumSize(MAX_CACHED_DATA_PLANES).weakValues().build();
-  }
-
   private static Map<NetworkSnapshot, SortedMap<String, BgpAdvertisementsByVrf>>
       buildEnvironmentBgpTablesCache() {
     return Collections.synchronizedMap(new LRUMap<>(MAX_CACHED_ENVIRONMENT_BGP_TABLES));
@@ -169,8 +148,18 @@ public class Driver {
     return Collections.synchronizedMap(new LRUMap<>(MAX_CACHED_ENVIRONMENT_ROUTING_TABLES));
   }
 
-  private static Cache<NetworkSnapshot, SortedMap<String, Configuration>> buildTestrigCache() {
-    return CacheBuilder.newBuilder().maximumSize(MAX_CACHED_TESTRIGS).build();
+  /**
+   * Returns the cache of configurations and data planes shared by all tasks run by this process,
+   * creating it with the budget from the main settings on first use.
+   */
+  static synchronized SnapshotCache getSnapshotCache() {
+    if (_snapshotCache == null) {
+      int budgetMb = _mainSettings == null ? 0 : _mainSettings.getSnapshotCacheMb();
+      long budgetBytes =
+          budgetMb > 0 ? budgetMb * 1024L * 1024L : Runtime.getRuntime().maxMemory() / 2;
+      _snapshotCache = new SnapshotCache(budgetBytes);
+    }
+    return _snapshotCache;
   }
 
   private static synchronized boolean claimIdle() {
@@ -544,13 +533,14 @@ public class Driver {
     final BatfishLogger logger = settings.getLogger();
 
     try {
+      SnapshotCache snapshotCache = getSnapshotCache();
       final Batfish batfish =
           new Batfish(
               settings,
-              CACHED_COMPRESSED_TESTRIGS,
-              CACHED_TESTRIGS,
-              CACHED_COMPRESSED_DATA_PLANES,
-              CACHED_DATA_PLANES,
+              snapshotCache.getCompressedConfigurations(),
+              snapshotCache.getConfigurations(),
+              snapshotCache.getCompressedDataPlanes(),
+              snapshotCache.getDataPlanes(),
               CACHED_ENVIRONMENT_BGP_TABLES,
               CACHED_ENVIRONMENT_ROUTING_TABLES);
 
@@ -41,7 +41,11 @@ public class Service {
       return new JSONArray(
           Arrays.asList(
               BfConsts.SVC_SUCCESS_KEY,
-              (new JSONObject().put("idle", Driver.getIdle())).toString()));
+              new JSONObject()
+                  .put("idle", Driver.getIdle())
+                  .put("snapshotCacheMaxBytes", Driver.getSnapshotCache().getMaxBytes())
+                  .put("snapshotCache", new JSONObject(Driver.getSnapshotCache().getStats()))
+                  .toString()));
     } catch (Exception e) {
       return new JSONArray(Arrays.asList(BfConsts.SVC_FAILURE_KEY, e.getMessage()));
     }
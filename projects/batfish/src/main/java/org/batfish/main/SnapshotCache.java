@@ -0,0 +1,524 @@
+package org.batfish.main;
+
+import static java.math.RoundingMode.CEILING;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.AbstractCache;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.math.LongMath;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import javax.annotation.Nullable;
+import org.batfish.common.NetworkSnapshot;
+import org.batfish.common.util.LazySortedMap;
+import org.batfish.datamodel.AbstractRoute;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.DataPlane;
+import org.batfish.datamodel.GenericRib;
+import org.batfish.datamodel.Vrf;
+
+/**
+ * The in-memory cache of snapshot configurations and data planes kept by a worker.
+ *
+ * <p>All entries share a single budget on their estimated retained heap size, so that one large
+ * snapshot can evict several small ones and vice versa. Entries are held strongly until evicted.
+ * The per-kind views returned by {@link #getConfigurations()}, {@link #getDataPlanes()} and so on
+ * are what {@link Batfish} reads and writes; each records its own hit, miss, eviction and load time
+ * statistics. Batfish loads entries through {@link Cache#get(Object, Callable)}, which times each
+ * load whether it succeeds or fails.
+ *
+ * <p>Sizes are estimated from counts of the largest structures in each value, since walking the
+ * object graph would cost as much as the load, and weighed in KiB. Each configuration or data plane
+ * node in a lazily loaded value weighs a flat estimate until it loads; the entry is then weighed
+ * again with the node's own estimate.
+ */
+public final class SnapshotCache {
+
+  /** The kinds of value stored in the cache. */
+  public enum Kind {
+    COMPRESSED_CONFIGURATIONS,
+    COMPRESSED_DATA_PLANES,
+    CONFIGURATIONS,
+    DATA_PLANES
+  }
+
+  private static final class Key {
+    private final Kind _kind;
+
+    private final NetworkSnapshot _snapshot;
+
+    private Key(Kind kind, NetworkSnapshot snapshot) {
+      _kind = kind;
+      _snapshot = snapshot;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return _kind == other._kind && _snapshot.equals(other._snapshot);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(_kind.ordinal(), _snapshot);
+    }
+  }
+
+  /** Statistics for one kind of value. */
+  private static final class KindStats {
+    private final LongAdder _evictions = new LongAdder();
+
+    private final LongAdder _hits = new LongAdder();
+
+    private final LongAdder _loadFailures = new LongAdder();
+
+    private final LongAdder _loads = new LongAdder();
+
+    private final LongAdder _loadNanos = new LongAdder();
+
+    private final LongAdder _misses = new LongAdder();
+  }
+
+  /** A view of the entries of one {@link Kind}. */
+  private final class View<V> extends AbstractCache<NetworkSnapshot, V> {
+
+    private final Kind _kind;
+
+    private final KindStats _stats;
+
+    private final Class<V> _valueClass;
+
+    private View(Kind kind, Class<V> valueClass) {
+      _kind = kind;
+      _valueClass = valueClass;
+      _stats = _statsByKind.get(kind);
+    }
+
+    @Override
+    @Nullable
+    public V getIfPresent(Object key) {
+      if (!(key instanceof NetworkSnapshot)) {
+        _stats._misses.increment();
+        return null;
+      }
+      NetworkSnapshot snapshot = (NetworkSnapshot) key;
+      Object value = _cache.getIfPresent(new Key(_kind, snapshot));
+      if (value == null) {
+        _stats._misses.increment();
+        return null;
+      }
+      _stats._hits.increment();
+      return _valueClass.cast(value);
+    }
+
+    /**
+     * Returns the value for {@code key}, first loading it with {@code loader} and storing it if it
+     * is absent. Unlike the underlying cache, concurrent loads of the same key are not merged, so
+     * that a loader may itself read and write the cache.
+     */
+    @Override
+    public V get(NetworkSnapshot key, Callable<? extends V> loader) throws ExecutionException {
+      V value = getIfPresent(key);
+      if (value != null) {
+        return value;
+      }
+      long startTime = System.nanoTime();
+      boolean loaded = false;
+      try {
+        value = loader.call();
+        if (value == null) {
+          throw new InvalidCacheLoadException("Loader returned null for " + key);
+        }
+        loaded = true;
+      } catch (RuntimeException e) {
+        throw new UncheckedExecutionException(e);
+      } catch (Error e) {
+        throw new ExecutionError(e);
+      } catch (Exception e) {
+        throw new ExecutionException(e);
+      } finally {
+        _stats._loadNanos.add(System.nanoTime() - startTime);
+        (loaded ? _stats._loads : _stats._loadFailures).increment();
+      }
+      put(key, value);
+      return value;
+    }
+
+    @Override
+    public void invalidate(Object key) {
+      if (key instanceof NetworkSnapshot) {
+        _cache.invalidate(new Key(_kind, (NetworkSnapshot) key));
+      }
+    }
+
+    @Override
+    public void put(NetworkSnapshot key, V value) {
+      _cache.put(new Key(_kind, key), value);
+    }
+
+    @Override
+    public long size() {
+      return _cache.asMap().keySet().stream().filter(k -> k._kind == _kind).count();
+    }
+
+    @Override
+    public CacheStats stats() {
+      return new CacheStats(
+          _stats._hits.sum(),
+          _stats._misses.sum(),
+          _stats._loads.sum(),
+          _stats._loadFailures.sum(),
+          _stats._loadNanos.sum(),
+          _stats._evictions.sum());
+    }
+  }
+
+  /**
+   * The running estimate of the size of a lazily loaded value in the cache, which grows as the
+   * configurations or data plane nodes in its lazy maps load.
+   */
+  private final class LazyWeight {
+
+    private final AtomicLong _bytes;
+
+    private final Key _key;
+
+    /* Hostnames of the loaded configurations or nodes, whose estimates replaced the flat one. */
+    private final Set<String> _loaded;
+
+    private final Object _value;
+
+    private LazyWeight(Key key, Object value) {
+      _key = key;
+      _value = value;
+      _bytes = new AtomicLong();
+      _loaded = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Replaces the flat estimate of the given node with its own, computed by {@code delta} as the
+     * difference, unless already done.
+     */
+    private boolean count(String hostname, LongSupplier delta) {
+      if (!_loaded.add(hostname)) {
+        return false;
+      }
+      _bytes.addAndGet(delta.getAsLong());
+      return true;
+    }
+
+    /** Called when a node loads after the value was weighed, to weigh the entry again. */
+    private void loaded(String hostname, LongSupplier delta) {
+      if (count(hostname, delta) && _lazyWeights.get(_key) == this) {
+        // Replacing the value with itself makes the cache weigh it again
+        _cache.asMap().replace(_key, _value, _value);
+      }
+    }
+  }
+
+  /* Rough retained sizes, in bytes, of the structures that dominate configurations and RIBs. */
+  private static final long ACL_LINE_BYTES = 512L;
+
+  private static final long CONFIGURATION_BYTES = 16L * 1024;
+
+  private static final long INTERFACE_BYTES = 2L * 1024;
+
+  private static final long LAZY_CONFIGURATION_BYTES = 256L * 1024;
+
+  private static final long LAZY_DATA_PLANE_NODE_BYTES = 512L * 1024;
+
+  private static final long ROUTE_BYTES = 512L;
+
+  private static final long ROUTE_FILTER_LINE_BYTES = 256L;
+
+  private static final long ROUTING_POLICY_BYTES = 4L * 1024;
+
+  private static final long VRF_BYTES = 4L * 1024;
+
+  /* The unit of the weights of the underlying cache, so that an entry may weigh up to 2 TiB. */
+  private static final long WEIGHT_UNIT_BYTES = 1024L;
+
+  /**
+   * Returns the estimated retained size in bytes of the given configurations. Values of a {@link
+   * LazySortedMap} are not loaded to weigh them: those not loaded yet weigh a flat estimate.
+   */
+  @VisibleForTesting
+  static long estimateConfigurationsBytes(Map<String, Configuration> configurations) {
+    if (configurations instanceof LazySortedMap) {
+      LazySortedMap<String, Configuration> lazy =
+          (LazySortedMap<String, Configuration>) configurations;
+      return lazy.keySet()
+          .stream()
+          .map(lazy::getIfLoaded)
+          .mapToLong(c -> c == null ? LAZY_CONFIGURATION_BYTES : estimateBytes(c))
+          .sum();
+    }
+    return configurations.values().stream().mapToLong(SnapshotCache::estimateBytes).sum();
+  }
+
+  private static long estimateBytes(Configuration c) {
+    long bytes = CONFIGURATION_BYTES;
+    bytes += c.getInterfaces().size() * INTERFACE_BYTES;
+    bytes +=
+        c.getIpAccessLists().values().stream().mapToLong(acl -> acl.getLines().size()).sum()
+            * ACL_LINE_BYTES;
+    bytes +=
+        c.getRouteFilterLists().values().stream().mapToLong(rfl -> rfl.getLines().size()).sum()
+            * ROUTE_FILTER_LINE_BYTES;
+    bytes += c.getRoutingPolicies().size() * ROUTING_POLICY_BYTES;
+    for (Vrf vrf : c.getVrfs().values()) {
+      bytes += VRF_BYTES + vrf.getStaticRoutes().size() * ROUTE_BYTES;
+    }
+    return bytes;
+  }
+
+  /**
+   * Returns the estimated retained size in bytes of the given data plane, dominated by its main RIB
+   * and FIB entries. Data planes whose RIBs are loaded on demand weigh a flat estimate per node.
+   */
+  @VisibleForTesting
+  static long estimateDataPlaneBytes(DataPlane dataPlane) {
+    SortedMap<String, SortedMap<String, GenericRib<AbstractRoute>>> ribs = dataPlane.getRibs();
+    if (ribs instanceof LazySortedMap) {
+      return ribs.size() * LAZY_DATA_PLANE_NODE_BYTES;
+    }
+    long bytes = 0L;
+    for (SortedMap<String, GenericRib<AbstractRoute>> vrfRibs : ribs.values()) {
+      for (GenericRib<AbstractRoute> rib : vrfRibs.values()) {
+        bytes += VRF_BYTES + rib.getRoutes().size() * ROUTE_BYTES;
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * Returns the estimated retained size in bytes of a loaded node of a lazily loaded data plane.
+   * Its RIBs are weighed by their prefixes, which they know without decoding their routes.
+   */
+  private static long estimateLoadedNodeBytes(DataPlane dataPlane, String hostname) {
+    long bytes = 0L;
+    for (GenericRib<AbstractRoute> rib : dataPlane.getRibs().get(hostname).values()) {
+      bytes += VRF_BYTES + rib.getPrefixes().size() * ROUTE_BYTES;
+    }
+    return bytes;
+  }
+
+  @SuppressWarnings("unchecked")
+  private long weigh(Key key, Object value) {
+    LazyWeight lazyWeight = _lazyWeights.get(key);
+    if (lazyWeight != null && lazyWeight._value == value) {
+      return lazyWeight._bytes.get();
+    }
+    switch (key._kind) {
+      case COMPRESSED_CONFIGURATIONS:
+      case CONFIGURATIONS:
+        Map<String, Configuration> configurations = (Map<String, Configuration>) value;
+        if (configurations instanceof LazySortedMap) {
+          return weighLazyConfigurations(key, (LazySortedMap<String, Configuration>) value);
+        }
+        _lazyWeights.remove(key);
+        return estimateConfigurationsBytes(configurations);
+      case COMPRESSED_DATA_PLANES:
+      case DATA_PLANES:
+        DataPlane dataPlane = (DataPlane) value;
+        if (dataPlane.getRibs() instanceof LazySortedMap) {
+          return weighLazyDataPlane(key, dataPlane);
+        }
+        _lazyWeights.remove(key);
+        return estimateDataPlaneBytes(dataPlane);
+      default:
+        throw new IllegalArgumentException("Unsupported cache kind: " + key._kind);
+    }
+  }
+
+  /**
+   * Weighs lazily loaded configurations, and arranges for them to be weighed again as each
+   * configuration loads.
+   */
+  private long weighLazyConfigurations(Key key, LazySortedMap<String, Configuration> value) {
+    LazyWeight lazyWeight = new LazyWeight(key, value);
+    _lazyWeights.put(key, lazyWeight);
+    value.addLoadListener(
+        (hostname, c) ->
+            lazyWeight.loaded(hostname, () -> estimateBytes(c) - LAZY_CONFIGURATION_BYTES));
+    for (String hostname : value.keySet()) {
+      lazyWeight._bytes.addAndGet(LAZY_CONFIGURATION_BYTES);
+      Configuration c = value.getIfLoaded(hostname);
+      if (c != null) {
+        lazyWeight.count(hostname, () -> estimateBytes(c) - LAZY_CONFIGURATION_BYTES);
+      }
+    }
+    return lazyWeight._bytes.get();
+  }
+
+  /**
+   * Weighs a data plane whose RIBs are loaded lazily, and arranges for it to be weighed again as
+   * the RIBs or FIBs of each node load.
+   */
+  private long weighLazyDataPlane(Key key, DataPlane value) {
+    LazyWeight lazyWeight = new LazyWeight(key, value);
+    _lazyWeights.put(key, lazyWeight);
+    Function<String, LongSupplier> delta =
+        hostname -> () -> estimateLoadedNodeBytes(value, hostname) - LAZY_DATA_PLANE_NODE_BYTES;
+    List<Map<String, ?>> lazyMaps = ImmutableList.of(value.getRibs(), value.getFibs());
+    for (Map<String, ?> lazyMap : lazyMaps) {
+      if (lazyMap instanceof LazySortedMap) {
+        ((LazySortedMap<String, ?>) lazyMap)
+            .addLoadListener((hostname, v) -> lazyWeight.loaded(hostname, delta.apply(hostname)));
+      }
+    }
+    for (String hostname : value.getRibs().keySet()) {
+      lazyWeight._bytes.addAndGet(LAZY_DATA_PLANE_NODE_BYTES);
+      for (Map<String, ?> lazyMap : lazyMaps) {
+        if (lazyMap instanceof LazySortedMap
+            && ((LazySortedMap<String, ?>) lazyMap).getIfLoaded(hostname) != null) {
+          lazyWeight.count(hostname, delta.apply(hostname));
+        }
+      }
+    }
+    return lazyWeight._bytes.get();
+  }
+
+  private final Cache<Key, Object> _cache;
+
+  /* Running estimates of the lazily loaded values in the cache, which grow as the values load. */
+  private final ConcurrentMap<Key, LazyWeight> _lazyWeights;
+
+  private final long _maxBytes;
+
+  private final Map<Kind, KindStats> _statsByKind;
+
+  /* Estimated size in bytes of each entry currently in the cache, for reporting. */
+  private final ConcurrentMap<Key, Long> _weights;
+
+  /** Creates a cache whose entries have a total estimated size of at most {@code maxBytes}. */
+  public SnapshotCache(long maxBytes) {
+    _maxBytes = maxBytes;
+    _statsByKind = new EnumMap<>(Kind.class);
+    for (Kind kind : Kind.values()) {
+      _statsByKind.put(kind, new KindStats());
+    }
+    _weights = new ConcurrentHashMap<>();
+    _lazyWeights = new ConcurrentHashMap<>();
+    _cache =
+        CacheBuilder.newBuilder()
+            // A single segment, so that one entry may use the whole budget
+            .concurrencyLevel(1)
+            .maximumWeight(maxBytes / WEIGHT_UNIT_BYTES)
+            .<Key, Object>weigher(
+                (key, value) -> {
+                  long bytes = weigh(key, value);
+                  _weights.put(key, bytes);
+                  return Ints.saturatedCast(LongMath.divide(bytes, WEIGHT_UNIT_BYTES, CEILING));
+                })
+            .removalListener(
+                notification -> {
+                  Key key = notification.getKey();
+                  if (notification.getCause() == RemovalCause.REPLACED) {
+                    // The weigher has already recorded the weight of the new value.
+                    return;
+                  }
+                  _weights.remove(key);
+                  _lazyWeights.computeIfPresent(
+                      key, (k, w) -> w._value == notification.getValue() ? null : w);
+                  if (notification.wasEvicted()) {
+                    _statsByKind.get(key._kind)._evictions.increment();
+                  }
+                })
+            .build();
+  }
+
+  public Cache<NetworkSnapshot, SortedMap<String, Configuration>> getCompressedConfigurations() {
+    return configurationsView(Kind.COMPRESSED_CONFIGURATIONS);
+  }
+
+  public Cache<NetworkSnapshot, DataPlane> getCompressedDataPlanes() {
+    return new View<>(Kind.COMPRESSED_DATA_PLANES, DataPlane.class);
+  }
+
+  public Cache<NetworkSnapshot, SortedMap<String, Configuration>> getConfigurations() {
+    return configurationsView(Kind.CONFIGURATIONS);
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private Cache<NetworkSnapshot, SortedMap<String, Configuration>> configurationsView(Kind kind) {
+    return new View(kind, SortedMap.class);
+  }
+
+  public Cache<NetworkSnapshot, DataPlane> getDataPlanes() {
+    return new View<>(Kind.DATA_PLANES, DataPlane.class);
+  }
+
+  /** Returns the total estimated size in bytes of the entries of the given {@code kind}. */
+  public long getEstimatedBytes(Kind kind) {
+    return _weights
+        .entrySet()
+        .stream()
+        .filter(e -> e.getKey()._kind == kind)
+        .mapToLong(Map.Entry::getValue)
+        .sum();
+  }
+
+  public long getMaxBytes() {
+    return _maxBytes;
+  }
+
+  /**
+   * Returns a summary of the statistics of each kind of entry, suitable for reporting as JSON: kind
+   * -&gt; statistic name -&gt; value.
+   */
+  public Map<String, Map<String, Object>> getStats() {
+    ImmutableMap.Builder<String, Map<String, Object>> stats = ImmutableMap.builder();
+    for (Kind kind : Kind.values()) {
+      KindStats kindStats = _statsByKind.get(kind);
+      long hits = kindStats._hits.sum();
+      long misses = kindStats._misses.sum();
+      long loads = kindStats._loads.sum() + kindStats._loadFailures.sum();
+      stats.put(
+          kind.toString(),
+          ImmutableMap.<String, Object>builder()
+              .put("hits", hits)
+              .put("misses", misses)
+              .put("hitRate", hits + misses == 0 ? 1.0 : (double) hits / (hits + misses))
+              .put("evictions", kindStats._evictions.sum())
+              .put("loads", loads)
+              .put("loadFailures", kindStats._loadFailures.sum())
+              .put(
+                  "averageLoadMs",
+                  loads == 0
+                      ? 0L
+                      : TimeUnit.NANOSECONDS.toMillis(kindStats._loadNanos.sum() / loads))
+              .put("estimatedBytes", getEstimatedBytes(kind))
+              .build());
+    }
+    return stats.build();
+  }
+}
@@ -1,8 +1,10 @@
 package org.batfish.specifier;
 
+import com.google.common.base.Suppliers;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Supplier;
 import javax.annotation.Nonnull;
 import org.batfish.common.util.CommonUtil;
 import org.batfish.datamodel.Configuration;
@@ -17,20 +19,33 @@ public class SpecifierContextImpl implements SpecifierContext {
 
   private final @Nonnull Map<String, Configuration> _configs;
 
-  private final @Nonnull Map<String, Map<String, IpSpace>> _interfaceOwnedIps;
+  /*
+   * Owned IPs require every configuration, so they are computed only when a specifier asks for
+   * them. Specifiers that only need node names can then be resolved without loading every node.
+   */
+  private final @Nonnull Supplier<Map<Ip, Map<String, Set<String>>>> _ipInterfaceOwners;
 
-  private final @Nonnull Map<String, Map<String, IpSpace>> _vrfOwnedIps;
+  private final @Nonnull Supplier<Map<String, Map<String, IpSpace>>> _interfaceOwnedIps;
+
+  private final @Nonnull Supplier<Map<String, Map<String, IpSpace>>> _vrfOwnedIps;
 
   public SpecifierContextImpl(
       @Nonnull Batfish batfish, @Nonnull Map<String, Configuration> configs) {
     _batfish = batfish;
     _configs = configs;
-    Map<Ip, Map<String, Set<String>>> ipInterfaceOwners =
-        CommonUtil.computeIpInterfaceOwners(CommonUtil.computeNodeInterfaces(configs), true);
-    _interfaceOwnedIps = CommonUtil.computeInterfaceOwnedIpSpaces(ipInterfaceOwners);
+    _ipInterfaceOwners =
+        Suppliers.memoize(
+            () ->
+                CommonUtil.computeIpInterfaceOwners(
+                    CommonUtil.computeNodeInterfaces(configs), true));
+    _interfaceOwnedIps =
+        Suppliers.memoize(
+            () -> CommonUtil.computeInterfaceOwnedIpSpaces(_ipInterfaceOwners.get()));
     _vrfOwnedIps =
-        CommonUtil.computeVrfOwnedIpSpaces(
-            CommonUtil.computeIpVrfOwners(ipInterfaceOwners, configs));
+        Suppliers.memoize(
+            () ->
+                CommonUtil.computeVrfOwnedIpSpaces(
+                    CommonUtil.computeIpVrfOwners(_ipInterfaceOwners.get(), configs)));
   }
 
   @Nonnull
@@ -52,11 +67,11 @@ public class SpecifierContextImpl implements SpecifierContext {
 
   @Override
   public Map<String, Map<String, IpSpace>> getInterfaceOwnedIps() {
-    return _interfaceOwnedIps;
+    return _interfaceOwnedIps.get();
   }
 
   @Override
   public Map<String, Map<String, IpSpace>> getVrfOwnedIps() {
-    return _vrfOwnedIps;
+    return _vrfOwnedIps.get();
   }
 }
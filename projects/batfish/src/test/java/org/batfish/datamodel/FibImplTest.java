@@ -0,0 +1,77 @@
+package org.batfish.datamodel;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.anEmptyMap;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.sameInstance;
+
+import org.batfish.dataplane.rib.Rib;
+import org.junit.Test;
+
+/** Tests of {@link FibImpl} */
+public class FibImplTest {
+
+  private static final ConnectedRoute CONNECTED =
+      new ConnectedRoute(Prefix.parse("1.1.1.0/24"), "i1");
+
+  private static final StaticRoute RECURSIVE =
+      StaticRoute.builder()
+          .setNetwork(Prefix.parse("10.0.0.0/8"))
+          .setNextHopIp(new Ip("1.1.1.1"))
+          .setAdministrativeCost(1)
+          .build();
+
+  private static final StaticRoute MORE_SPECIFIC =
+      StaticRoute.builder()
+          .setNetwork(Prefix.parse("10.1.0.0/16"))
+          .setNextHopInterface("i2")
+          .setAdministrativeCost(1)
+          .build();
+
+  private static final StaticRoute DEFAULT =
+      StaticRoute.builder()
+          .setNetwork(Prefix.ZERO)
+          .setNextHopInterface("i0")
+          .setAdministrativeCost(1)
+          .build();
+
+  private static Rib rib(AbstractRoute... routes) {
+    Rib rib = new Rib();
+    for (AbstractRoute route : routes) {
+      rib.mergeRoute(route);
+    }
+    return rib;
+  }
+
+  @Test
+  public void testGetNextHopInterfaces() {
+    Fib fib = new FibImpl(rib(CONNECTED, RECURSIVE, MORE_SPECIFIC, DEFAULT));
+
+    assertThat(fib.getNextHopInterfaces(new Ip("0.0.0.0")).keySet(), contains("i0"));
+    assertThat(fib.getNextHopInterfaces(new Ip("1.1.1.255")).keySet(), contains("i1"));
+    assertThat(fib.getNextHopInterfaces(new Ip("1.1.2.0")).keySet(), contains("i0"));
+    assertThat(fib.getNextHopInterfaces(new Ip("10.0.0.0")).keySet(), contains("i1"));
+    assertThat(fib.getNextHopInterfaces(new Ip("10.1.2.3")).keySet(), contains("i2"));
+    assertThat(fib.getNextHopInterfaces(new Ip("10.2.0.0")).keySet(), contains("i1"));
+    assertThat(fib.getNextHopInterfaces(new Ip("255.255.255.255")).keySet(), contains("i0"));
+  }
+
+  @Test
+  public void testGetNextHopInterfacesByRoute() {
+    Fib fib = new FibImpl(rib(CONNECTED, RECURSIVE, MORE_SPECIFIC));
+
+    assertThat(fib.getNextHopInterfacesByRoute(new Ip("10.255.0.1")).keySet(), contains(RECURSIVE));
+    assertThat(fib.getNextHopInterfacesByRoute(new Ip("11.0.0.0")), anEmptyMap());
+    assertThat(fib.getNextHopInterfaces(new Ip("9.255.255.255")), anEmptyMap());
+  }
+
+  @Test
+  public void testLookupsShareResults() {
+    Fib fib = new FibImpl(rib(CONNECTED, RECURSIVE, MORE_SPECIFIC));
+
+    // Both addresses match the /8 only, on either side of the /16
+    assertThat(
+        fib.getNextHopInterfaces(new Ip("10.0.0.1")),
+        sameInstance(fib.getNextHopInterfaces(new Ip("10.200.0.1"))));
+  }
+}
@@ -0,0 +1,77 @@
+package org.batfish.dataplane;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+import org.batfish.datamodel.Edge;
+import org.batfish.datamodel.FlowTraceHop;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/** Tests of {@link FlowTraceHopPath} */
+public class FlowTraceHopPathTest {
+
+  @Rule public ExpectedException _thrown = ExpectedException.none();
+
+  private static FlowTraceHop hop(String node1, String node2) {
+    return new FlowTraceHop(new Edge(node1, "i1", node2, "i2"), ImmutableSortedSet.of(), null);
+  }
+
+  @Test
+  public void testAppend() {
+    FlowTraceHop h1 = hop("a", "b");
+    FlowTraceHop h2 = hop("b", "c");
+    FlowTraceHop h3 = hop("b", "d");
+    FlowTraceHopPath prefix = FlowTraceHopPath.EMPTY.append(h1);
+    FlowTraceHopPath left = prefix.append(h2);
+    FlowTraceHopPath right = prefix.append(h3);
+
+    assertThat(FlowTraceHopPath.EMPTY, empty());
+    assertThat(prefix, contains(h1));
+    assertThat(left, contains(h1, h2));
+    assertThat(right, contains(h1, h3));
+    // Branches share the hops before the branch point
+    assertThat(left.get(0), sameInstance(right.get(0)));
+    assertThat(left, equalTo(ImmutableList.of(h1, h2)));
+    assertThat(left.hashCode(), equalTo(ImmutableList.of(h1, h2).hashCode()));
+  }
+
+  @Test
+  public void testReplaceLastHop() {
+    FlowTraceHop h1 = hop("a", "b");
+    FlowTraceHop h2 = hop("b", "c");
+    FlowTraceHop h3 = hop("b", "d");
+    FlowTraceHopPath path = FlowTraceHopPath.EMPTY.append(h1).append(h2);
+
+    assertThat(path.replaceLastHop(h3), contains(h1, h3));
+    assertThat(path, contains(h1, h2));
+  }
+
+  @Test
+  public void testReadBeforeAndAfterExtending() {
+    FlowTraceHop h1 = hop("a", "b");
+    FlowTraceHop h2 = hop("b", "c");
+    FlowTraceHop h3 = hop("c", "d");
+    FlowTraceHopPath prefix = FlowTraceHopPath.EMPTY.append(h1).append(h2);
+
+    // Reading the prefix collects its hops; paths extending it afterwards still see their own
+    assertThat(prefix.get(1), sameInstance(h2));
+    FlowTraceHopPath path = prefix.append(h3);
+    assertThat(path.get(2), sameInstance(h3));
+    assertThat(path, contains(h1, h2, h3));
+    assertThat(ImmutableList.copyOf(path.listIterator(1)), contains(h2, h3));
+    assertThat(prefix, contains(h1, h2));
+  }
+
+  @Test
+  public void testGetOutOfBounds() {
+    _thrown.expect(IndexOutOfBoundsException.class);
+    FlowTraceHopPath.EMPTY.append(hop("a", "b")).get(1);
+  }
+}
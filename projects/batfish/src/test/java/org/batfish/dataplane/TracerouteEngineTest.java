@@ -2,6 +2,8 @@ package org.batfish.dataplane;
 
 import static java.util.Collections.singletonList;
 import static org.batfish.datamodel.FlowDisposition.ACCEPTED;
+import static org.batfish.datamodel.FlowDisposition.DENIED_IN;
+import static org.batfish.datamodel.FlowDisposition.NEIGHBOR_UNREACHABLE_OR_EXITS_NETWORK;
 import static org.batfish.datamodel.FlowDisposition.NO_ROUTE;
 import static org.batfish.datamodel.matchers.FlowTraceMatchers.hasDisposition;
 import static org.hamcrest.Matchers.contains;
@@ -16,20 +18,29 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Lists;
 import java.io.IOException;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import org.batfish.common.BatfishException;
 import org.batfish.datamodel.Configuration;
 import org.batfish.datamodel.ConfigurationFormat;
+import org.batfish.datamodel.ConnectedRoute;
 import org.batfish.datamodel.DataPlane;
+import org.batfish.datamodel.Edge;
 import org.batfish.datamodel.Fib;
 import org.batfish.datamodel.Flow;
 import org.batfish.datamodel.FlowDisposition;
 import org.batfish.datamodel.FlowHistory;
 import org.batfish.datamodel.FlowHistory.FlowHistoryInfo;
 import org.batfish.datamodel.FlowTrace;
+import org.batfish.datamodel.FlowTraceHop;
+import org.batfish.datamodel.HeaderSpace;
 import org.batfish.datamodel.Interface;
 import org.batfish.datamodel.InterfaceAddress;
 import org.batfish.datamodel.Ip;
@@ -38,6 +49,7 @@ import org.batfish.datamodel.IpAccessListLine;
 import org.batfish.datamodel.LineAction;
 import org.batfish.datamodel.MockFib;
 import org.batfish.datamodel.NetworkFactory;
+import org.batfish.datamodel.Prefix;
 import org.batfish.datamodel.SourceNat;
 import org.batfish.datamodel.Vrf;
 import org.batfish.datamodel.acl.TrueExpr;
@@ -394,6 +406,159 @@ public class TracerouteEngineTest {
     assertThat(trace.getDisposition(), equalTo(FlowDisposition.DENIED_OUT));
   }
 
+  /** Two nodes on one subnet, the second of which denies sources in 1.1.1.0/24 */
+  private DataPlane sourceFilterDataPlane() throws IOException {
+    NetworkFactory nf = new NetworkFactory();
+    Configuration.Builder cb =
+        nf.configurationBuilder().setConfigurationFormat(ConfigurationFormat.CISCO_IOS);
+    Vrf.Builder vb = nf.vrfBuilder().setName(Configuration.DEFAULT_VRF_NAME);
+    Interface.Builder ib = nf.interfaceBuilder().setActive(true);
+
+    Configuration c1 = cb.setHostname("c1").build();
+    ib.setOwner(c1)
+        .setName("c1i")
+        .setVrf(vb.setOwner(c1).build())
+        .setAddress(new InterfaceAddress("10.0.0.1/24"))
+        .build();
+
+    // c2 denies sources in 1.1.1.0/24
+    Configuration c2 = cb.setHostname("c2").build();
+    IpAccessList incomingFilter =
+        nf.aclBuilder()
+            .setOwner(c2)
+            .setName("incomingAcl")
+            .setLines(
+                ImmutableList.of(
+                    IpAccessListLine.rejectingHeaderSpace(
+                        HeaderSpace.builder()
+                            .setSrcIps(Prefix.parse("1.1.1.0/24").toIpSpace())
+                            .build()),
+                    IpAccessListLine.ACCEPT_ALL))
+            .build();
+    ib.setOwner(c2)
+        .setName("c2i")
+        .setVrf(vb.setOwner(c2).build())
+        .setIncomingFilter(incomingFilter)
+        .setAddress(new InterfaceAddress("10.0.0.2/24"))
+        .build();
+
+    Batfish batfish =
+        BatfishTestUtils.getBatfish(
+            ImmutableSortedMap.of(c1.getHostname(), c1, c2.getHostname(), c2), _tempFolder);
+    batfish.computeDataPlane(false);
+    return batfish.loadDataPlane();
+  }
+
+  /** Flows from c1 of {@link #sourceFilterDataPlane()}, from both sides of its filter */
+  private static Set<Flow> sourceFilterFlows() {
+    ImmutableSet.Builder<Flow> flows = ImmutableSet.builder();
+    for (String srcIp : ImmutableList.of("1.1.1.1", "1.1.1.2", "2.2.2.1", "2.2.2.2")) {
+      for (String dstIp : ImmutableList.of("10.0.0.2", "10.0.0.3")) {
+        flows.add(
+            Flow.builder()
+                .setIngressNode("c1")
+                .setTag("tag")
+                .setSrcIp(new Ip(srcIp))
+                .setDstIp(new Ip(dstIp))
+                .build());
+      }
+    }
+    return flows.build();
+  }
+
+  /**
+   * Flows that differ only in fields no device inspects are traced together, and split where a
+   * filter tells them apart; either way, each flow gets the traces it would get alone.
+   */
+  @Test
+  public void testBatchedFlowsMatchSingleFlows() throws IOException {
+    DataPlane dp = sourceFilterDataPlane();
+    Set<Flow> flows = sourceFilterFlows();
+
+    SortedMap<Flow, Set<FlowTrace>> batched =
+        TracerouteEngineImpl.getInstance().processFlows(dp, flows, dp.getFibs(), false);
+
+    assertThat(batched.keySet(), equalTo(flows));
+    for (Flow flow : flows) {
+      assertThat(
+          batched.get(flow),
+          equalTo(
+              TracerouteEngineImpl.getInstance()
+                  .processFlows(dp, ImmutableSet.of(flow), dp.getFibs(), false)
+                  .get(flow)));
+    }
+    Flow denied =
+        Flow.builder()
+            .setIngressNode("c1")
+            .setTag("tag")
+            .setSrcIp(new Ip("1.1.1.2"))
+            .setDstIp(new Ip("10.0.0.2"))
+            .build();
+    Flow accepted =
+        Flow.builder()
+            .setIngressNode("c1")
+            .setTag("tag")
+            .setSrcIp(new Ip("2.2.2.2"))
+            .setDstIp(new Ip("10.0.0.2"))
+            .build();
+    assertThat(batched.get(denied), contains(hasDisposition(FlowDisposition.DENIED_IN)));
+    assertThat(batched.get(accepted), contains(hasDisposition(ACCEPTED)));
+  }
+
+  /** Each flow of {@link #sourceFilterFlows()} gets exactly its own trace when streaming */
+  @Test
+  public void testStreaming() throws IOException {
+    DataPlane dp = sourceFilterDataPlane();
+    Set<Flow> flows = sourceFilterFlows();
+    Map<Flow, Set<FlowTrace>> streamed = new ConcurrentHashMap<>();
+
+    TracerouteEngineImpl.getInstance()
+        .processFlows(
+            dp,
+            flows,
+            dp.getFibs(),
+            false,
+            (flow, trace) -> streamed.computeIfAbsent(flow, f -> new TreeSet<>()).add(trace));
+
+    SortedSet<String> routes =
+        ImmutableSortedSet.of(
+            new ConnectedRoute(Prefix.parse("10.0.0.0/24"), "c1i") + "_fnhip:null");
+    Edge toC2 = new Edge("c1", "c1i", "c2", "c2i");
+    FlowTrace accepted =
+        new FlowTrace(
+            ACCEPTED,
+            ImmutableList.of(new FlowTraceHop(toC2, routes, null, "{incomingAcl}{line:1}", null)),
+            ACCEPTED.toString());
+    FlowTrace denied =
+        new FlowTrace(
+            DENIED_IN,
+            ImmutableList.of(new FlowTraceHop(toC2, routes, null)),
+            "DENIED_IN{incomingAcl}{line:0}");
+    FlowTrace exits =
+        new FlowTrace(
+            NEIGHBOR_UNREACHABLE_OR_EXITS_NETWORK,
+            ImmutableList.of(
+                new FlowTraceHop(
+                    new Edge(
+                        "c1", "c1i", Configuration.NODE_NONE_NAME, Interface.NULL_INTERFACE_NAME),
+                    routes,
+                    null)),
+            NEIGHBOR_UNREACHABLE_OR_EXITS_NETWORK.toString());
+    ImmutableMap.Builder<Flow, Set<FlowTrace>> expected = ImmutableMap.builder();
+    for (Flow flow : flows) {
+      FlowTrace trace;
+      if (flow.getDstIp().equals(new Ip("10.0.0.3"))) {
+        trace = exits;
+      } else if (Prefix.parse("1.1.1.0/24").containsIp(flow.getSrcIp())) {
+        trace = denied;
+      } else {
+        trace = accepted;
+      }
+      expected.put(flow, ImmutableSet.of(trace));
+    }
+    assertThat(streamed, equalTo(expected.build()));
+  }
+
   /** When ingress node is non-existent, don't crash with null-pointer. */
   @Test(expected = BatfishException.class)
   public void testTracerouteOutsideNetwork() throws IOException {
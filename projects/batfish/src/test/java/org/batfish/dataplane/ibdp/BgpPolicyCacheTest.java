@@ -0,0 +1,125 @@
+package org.batfish.dataplane.ibdp;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import com.google.common.collect.ImmutableList;
+import org.batfish.datamodel.BgpRoute;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.ConfigurationFormat;
+import org.batfish.datamodel.Ip;
+import org.batfish.datamodel.NetworkFactory;
+import org.batfish.datamodel.OriginType;
+import org.batfish.datamodel.Prefix;
+import org.batfish.datamodel.RoutingProtocol;
+import org.batfish.datamodel.routing_policy.Environment.Direction;
+import org.batfish.datamodel.routing_policy.RoutingPolicy;
+import org.batfish.datamodel.routing_policy.expr.PeerAddressNextHop;
+import org.batfish.datamodel.routing_policy.statement.SetNextHop;
+import org.batfish.datamodel.routing_policy.statement.Statement;
+import org.batfish.datamodel.routing_policy.statement.Statements;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests of {@link BgpPolicyCache} */
+public class BgpPolicyCacheTest {
+
+  private static final BgpRoute ROUTE =
+      new BgpRoute.Builder()
+          .setNetwork(Prefix.parse("1.1.1.0/24"))
+          .setNextHopIp(new Ip("2.2.2.2"))
+          .setOriginatorIp(new Ip("2.2.2.2"))
+          .setOriginType(OriginType.IGP)
+          .setProtocol(RoutingProtocol.BGP)
+          .setReceivedFromIp(new Ip("2.2.2.2"))
+          .build();
+
+  private static final Ip PEER1 = new Ip("3.3.3.1");
+
+  private static final Ip PEER2 = new Ip("3.3.3.2");
+
+  private BgpPolicyCache _cache;
+
+  private Configuration _c;
+
+  private RoutingPolicy.Builder _rpb;
+
+  @Before
+  public void setup() {
+    NetworkFactory nf = new NetworkFactory();
+    _c = nf.configurationBuilder().setConfigurationFormat(ConfigurationFormat.CISCO_IOS).build();
+    nf.vrfBuilder().setName(Configuration.DEFAULT_VRF_NAME).setOwner(_c).build();
+    _rpb = nf.routingPolicyBuilder().setOwner(_c);
+    _cache = new BgpPolicyCache(100);
+  }
+
+  private RoutingPolicy policy(Statement... statements) {
+    return _rpb.setStatements(ImmutableList.copyOf(statements)).build();
+  }
+
+  private BgpRoute process(RoutingPolicy policy, Ip peer) {
+    return _cache.process(
+        policy,
+        ROUTE,
+        new BgpRoute.Builder()
+            .setNetwork(ROUTE.getNetwork())
+            .setOriginatorIp(ROUTE.getOriginatorIp())
+            .setOriginType(ROUTE.getOriginType())
+            .setProtocol(RoutingProtocol.BGP)
+            .setReceivedFromIp(ROUTE.getReceivedFromIp()),
+        peer,
+        new Prefix(peer, Prefix.MAX_PREFIX_LENGTH),
+        Configuration.DEFAULT_VRF_NAME,
+        Direction.OUT);
+  }
+
+  @Test
+  public void testSharedAcrossPeers() {
+    RoutingPolicy policy = policy(Statements.ExitAccept.toStaticStatement());
+
+    BgpRoute first = process(policy, PEER1);
+    BgpRoute second = process(policy, PEER2);
+
+    assertThat(second, equalTo(first));
+    assertThat(_cache.getLookups(), equalTo(2L));
+    assertThat(_cache.getHits(), equalTo(1L));
+  }
+
+  @Test
+  public void testRejected() {
+    RoutingPolicy policy = policy(Statements.ExitReject.toStaticStatement());
+
+    assertThat(process(policy, PEER1), nullValue());
+    assertThat(process(policy, PEER2), nullValue());
+    assertThat(_cache.getHits(), equalTo(1L));
+  }
+
+  @Test
+  public void testPeerSpecific() {
+    RoutingPolicy policy =
+        policy(
+            new SetNextHop(PeerAddressNextHop.getInstance(), false),
+            Statements.ExitAccept.toStaticStatement());
+
+    assertThat(process(policy, PEER1).getNextHopIp(), equalTo(PEER1));
+    assertThat(process(policy, PEER2).getNextHopIp(), equalTo(PEER2));
+    assertThat(_cache.getHits(), equalTo(0L));
+
+    // Results are still cached per peer
+    assertThat(process(policy, PEER1).getNextHopIp(), equalTo(PEER1));
+    assertThat(_cache.getLookups(), equalTo(3L));
+    assertThat(_cache.getHits(), equalTo(1L));
+  }
+
+  @Test
+  public void testPoliciesNotShared() {
+    RoutingPolicy accept = policy(Statements.ExitAccept.toStaticStatement());
+    RoutingPolicy reject = policy(Statements.ExitReject.toStaticStatement());
+
+    process(accept, PEER1);
+
+    assertThat(process(reject, PEER1), nullValue());
+    assertThat(_cache.getHits(), equalTo(0L));
+  }
+}
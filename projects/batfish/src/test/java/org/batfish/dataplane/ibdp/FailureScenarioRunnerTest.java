@@ -0,0 +1,269 @@
+package org.batfish.dataplane.ibdp;
+
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.lang3.SerializationUtils;
+import org.batfish.common.BatfishException;
+import org.batfish.common.BatfishLogger;
+import org.batfish.common.plugin.DataPlanePlugin;
+import org.batfish.common.plugin.ITracerouteEngine;
+import org.batfish.datamodel.AbstractRoute;
+import org.batfish.datamodel.BgpAdvertisement;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.DataPlane;
+import org.batfish.datamodel.Edge;
+import org.batfish.datamodel.FailureScenario;
+import org.batfish.datamodel.Flow;
+import org.batfish.datamodel.FlowTrace;
+import org.batfish.datamodel.Topology;
+import org.batfish.datamodel.answers.FailureScenariosAnswerElement;
+import org.batfish.datamodel.answers.FailureScenariosAnswerElement.FibChange;
+import org.batfish.datamodel.answers.FailureScenariosAnswerElement.ScenarioResult;
+import org.batfish.datamodel.collections.NodeInterfacePair;
+import org.batfish.main.Batfish;
+import org.batfish.main.BatfishTestUtils;
+import org.batfish.main.TestrigText;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests of {@link FailureScenarioRunner} */
+public class FailureScenarioRunnerTest {
+
+  private static final String TESTRIGS_PREFIX = "org/batfish/grammar/cisco/testrigs/";
+
+  @Rule public TemporaryFolder _folder = new TemporaryFolder();
+
+  @Rule public ExpectedException _thrown = ExpectedException.none();
+
+  private IncrementalDataPlane _base;
+
+  private Batfish _batfish;
+
+  private Map<String, Configuration> _configurations;
+
+  private Edge _r2r3;
+
+  private Topology _topology;
+
+  private static IncrementalBdpEngine engine() {
+    return new IncrementalBdpEngine(
+        new IncrementalDataPlaneSettings(),
+        new BatfishLogger(BatfishLogger.LEVELSTR_WARN, false),
+        (a, b) -> new AtomicInteger());
+  }
+
+  @Before
+  public void setup() throws IOException {
+    _batfish =
+        BatfishTestUtils.getBatfishFromTestrigText(
+            TestrigText.builder()
+                .setConfigurationText(
+                    TESTRIGS_PREFIX + "ebgp-accept-routerid-match",
+                    ImmutableList.of("r1", "r2", "r3"))
+                .build(),
+            _folder);
+    _configurations = SerializationUtils.clone(new TreeMap<>(_batfish.loadConfigurations()));
+    _topology = _batfish.getEnvironmentTopology();
+    _r2r3 =
+        _topology
+            .getEdges()
+            .stream()
+            .filter(e -> e.getNode1().equals("r2") && e.getNode2().equals("r3"))
+            .findFirst()
+            .get();
+    _base =
+        (IncrementalDataPlane)
+            engine()
+                .computeDataPlane(false, _configurations, _topology, ImmutableSet.of())
+                ._dataPlane;
+  }
+
+  /** Compute the scenario from scratch and diff the FIBs of all nodes */
+  private List<FibChange> fullRecomputation(FailureScenario scenario) {
+    Map<String, Configuration> configurations =
+        SerializationUtils.clone(new TreeMap<>(scenario.applyTo(_configurations)));
+    DataPlane dp =
+        engine()
+            .computeDataPlane(
+                false,
+                configurations,
+                scenario.applyTo(_topology),
+                ImmutableSet.of())
+            ._dataPlane;
+    return FibChange.diffFibs(_base.getFibs(), dp.getFibs(), _configurations.keySet());
+  }
+
+  private FailureScenariosAnswerElement run(FailureScenario... scenarios) {
+    return new FailureScenarioRunner(
+            _base,
+            ImmutableSet.of(),
+            new IncrementalDataPlaneSettings(),
+            new BatfishLogger(BatfishLogger.LEVELSTR_WARN, false),
+            1L << 30)
+        .run(ImmutableList.copyOf(scenarios));
+  }
+
+  @Test
+  public void testMatchesFullRecomputation() {
+    FailureScenario none = new FailureScenario("none", null, null, null);
+    FailureScenario link = new FailureScenario("link", ImmutableSortedSet.of(_r2r3), null, null);
+    FailureScenario iface =
+        new FailureScenario("iface", null, ImmutableSortedSet.of(_r2r3.getInterface2()), null);
+    FailureScenario node = new FailureScenario("node", null, null, ImmutableSortedSet.of("r1"));
+
+    FailureScenariosAnswerElement answer = run(none, link, iface, node);
+
+    ScenarioResult noneResult = answer.getScenarios().get("none");
+    assertThat(noneResult.getFibChanges(), empty());
+    assertThat(noneResult.getRecomputedNodes(), equalTo(0));
+    for (FailureScenario scenario : ImmutableList.of(link, iface, node)) {
+      ScenarioResult result = answer.getScenarios().get(scenario.getName());
+      assertThat(result.getError(), nullValue());
+      assertThat(result.getFibChanges(), not(empty()));
+      assertThat(result.getFibChanges(), equalTo(fullRecomputation(scenario)));
+    }
+  }
+
+  @Test
+  public void testScenarioConfigurations() {
+    NodeInterfacePair r3Iface = _r2r3.getInterface2();
+    Map<String, Configuration> configurations =
+        new FailureScenario("iface", null, ImmutableSortedSet.of(r3Iface), null)
+            .applyTo(_configurations);
+
+    // Unfailed nodes share the configurations of the base
+    assertThat(configurations.get("r1"), sameInstance(_configurations.get("r1")));
+    assertThat(configurations.get("r2"), sameInstance(_configurations.get("r2")));
+    assertThat(
+        configurations.get("r3").getInterfaces().get(r3Iface.getInterface()).getActive(),
+        equalTo(false));
+    assertThat(
+        _configurations.get("r3").getInterfaces().get(r3Iface.getInterface()).getActive(),
+        equalTo(true));
+  }
+
+  @Test
+  public void testScenarioTopology() {
+    Topology topology =
+        new FailureScenario("link", ImmutableSortedSet.of(_r2r3), null, null).applyTo(_topology);
+
+    assertThat(topology.getEdges().size(), lessThan(_topology.getEdges().size()));
+    assertThat(topology.getEdges(), not(hasItem(_r2r3)));
+    assertThat(
+        topology.getEdges(),
+        not(hasItem(new Edge(_r2r3.getInterface2(), _r2r3.getInterface1()))));
+    assertThat(_topology.getEdges(), hasItem(_r2r3));
+  }
+
+  /**
+   * A plugin that computes each data plane from scratch, and so uses the default {@link
+   * DataPlanePlugin#computeFailureScenarios}
+   */
+  private static final class FromScratchPlugin extends DataPlanePlugin {
+
+    @Override
+    public ComputeDataPlaneResult computeDataPlane(boolean differentialContext) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ComputeDataPlaneResult computeDataPlane(
+        boolean differentialContext, Map<String, Configuration> configurations, Topology topology) {
+      return engine().computeDataPlane(false, configurations, topology, ImmutableSet.of());
+    }
+
+    @Override
+    public Set<BgpAdvertisement> getAdvertisements() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<Flow> getHistoryFlows(DataPlane dataPlane) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<FlowTrace> getHistoryFlowTraces(DataPlane dataPlane) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ITracerouteEngine getTracerouteEngine() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SortedMap<String, SortedMap<String, SortedSet<AbstractRoute>>> getRoutes(
+        DataPlane dataPlane) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void processFlows(Set<Flow> flows, DataPlane dataPlane, boolean ignoreAcls) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getName() {
+      return "fromscratch";
+    }
+  }
+
+  @Test
+  public void testDefaultMatchesFullRecomputation() {
+    FailureScenario link = new FailureScenario("link", ImmutableSortedSet.of(_r2r3), null, null);
+    FailureScenario node = new FailureScenario("node", null, null, ImmutableSortedSet.of("r1"));
+    FailureScenario bad = new FailureScenario("bad", null, null, ImmutableSortedSet.of("r4"));
+    DataPlanePlugin plugin = new FromScratchPlugin();
+    plugin.initialize(_batfish);
+
+    FailureScenariosAnswerElement answer =
+        plugin.computeFailureScenarios(ImmutableList.of(link, node, bad), 1L << 30);
+
+    for (FailureScenario scenario : ImmutableList.of(link, node)) {
+      ScenarioResult result = answer.getScenarios().get(scenario.getName());
+      assertThat(result.getError(), nullValue());
+      assertThat(result.getRecomputedNodes(), equalTo(_configurations.size()));
+      assertThat(result.getFibChanges(), equalTo(fullRecomputation(scenario)));
+    }
+    assertThat(answer.getScenarios().get("bad").getError(), notNullValue());
+  }
+
+  @Test
+  public void testUndefinedNode() {
+    FailureScenariosAnswerElement answer =
+        run(new FailureScenario("bad", null, null, ImmutableSortedSet.of("r4")));
+
+    assertThat(answer.getScenarios().get("bad").getError(), notNullValue());
+  }
+
+  @Test
+  public void testDuplicateNames() {
+    _thrown.expect(BatfishException.class);
+    run(
+        new FailureScenario("dup", null, null, null),
+        new FailureScenario("dup", null, null, ImmutableSortedSet.of("r1")));
+  }
+}
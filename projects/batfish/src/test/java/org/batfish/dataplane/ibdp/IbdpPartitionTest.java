@@ -0,0 +1,221 @@
+package org.batfish.dataplane.ibdp;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.lang3.SerializationUtils;
+import org.batfish.common.BatfishException;
+import org.batfish.common.BatfishLogger;
+import org.batfish.common.plugin.DataPlanePlugin.ComputeDataPlaneResult;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.Topology;
+import org.batfish.datamodel.answers.IncrementalBdpAnswerElement;
+import org.batfish.main.Batfish;
+import org.batfish.main.BatfishTestUtils;
+import org.batfish.main.TestrigText;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests of data plane computations partitioned with {@link IbdpPartition} */
+public class IbdpPartitionTest {
+
+  private static final String TESTRIGS_PREFIX = "org/batfish/grammar/cisco/testrigs/";
+
+  private static final int TIMEOUT_MS = 60_000;
+
+  @Rule public TemporaryFolder _folder = new TemporaryFolder();
+
+  @Rule public ExpectedException _thrown = ExpectedException.none();
+
+  private SortedMap<String, Configuration> _configurations;
+
+  private Topology _topology;
+
+  private static IncrementalBdpEngine engine() {
+    return new IncrementalBdpEngine(
+        new IncrementalDataPlaneSettings(),
+        new BatfishLogger(BatfishLogger.LEVELSTR_WARN, false),
+        (a, b) -> new AtomicInteger());
+  }
+
+  @Before
+  public void setup() throws IOException {
+    Batfish batfish =
+        BatfishTestUtils.getBatfishFromTestrigText(
+            TestrigText.builder()
+                .setConfigurationText(
+                    TESTRIGS_PREFIX + "ebgp-accept-routerid-match",
+                    ImmutableList.of("r1", "r2", "r3"))
+                .build(),
+            _folder);
+    _configurations = new TreeMap<>(batfish.loadConfigurations());
+    _topology = batfish.getEnvironmentTopology();
+  }
+
+  /** Run the computation over the given number of partitions, each with its own configurations */
+  private List<ComputeDataPlaneResult> computePartitioned(int numPartitions) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(numPartitions);
+    try (ServerSocket serverSocket = new ServerSocket(0, 0, InetAddress.getLoopbackAddress())) {
+      InetSocketAddress leader =
+          new InetSocketAddress(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+      List<Callable<ComputeDataPlaneResult>> workers = new ArrayList<>();
+      for (int worker = 0; worker < numPartitions; worker++) {
+        boolean leads = worker == 0;
+        workers.add(
+            () -> {
+              try (PartitionTransport transport =
+                  leads
+                      ? SocketPartitionTransport.lead(serverSocket, numPartitions, TIMEOUT_MS)
+                      : SocketPartitionTransport.join(leader, TIMEOUT_MS)) {
+                return engine()
+                    .computePartitionedDataPlane(
+                        SerializationUtils.clone(new TreeMap<>(_configurations)),
+                        _topology,
+                        ImmutableSet.of(),
+                        transport);
+              }
+            });
+      }
+      List<ComputeDataPlaneResult> results = new ArrayList<>();
+      for (Future<ComputeDataPlaneResult> future : executor.invokeAll(workers)) {
+        results.add(future.get());
+      }
+      return results;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void assertMatchesUnpartitioned(int numPartitions) throws Exception {
+    ComputeDataPlaneResult unpartitioned =
+        engine()
+            .computeDataPlane(
+                false,
+                SerializationUtils.clone(new TreeMap<>(_configurations)),
+                _topology,
+                ImmutableSet.of());
+    IncrementalBdpAnswerElement expectedAnswer =
+        (IncrementalBdpAnswerElement) unpartitioned._answerElement;
+
+    List<ComputeDataPlaneResult> results = computePartitioned(numPartitions);
+
+    // The leader gathers the whole data plane, and the other workers return none
+    assertThat(
+        IncrementalBdpEngine.getRoutes(results.get(0)._dataPlane),
+        equalTo(IncrementalBdpEngine.getRoutes(unpartitioned._dataPlane)));
+    for (ComputeDataPlaneResult result : results) {
+      if (result != results.get(0)) {
+        assertThat(result._dataPlane, nullValue());
+      }
+      IncrementalBdpAnswerElement answer = (IncrementalBdpAnswerElement) result._answerElement;
+      assertThat(
+          answer.getMainRibRoutesByIteration().get(answer.getDependentRoutesIterations()),
+          equalTo(
+              expectedAnswer
+                  .getMainRibRoutesByIteration()
+                  .get(expectedAnswer.getDependentRoutesIterations())));
+    }
+  }
+
+  @Test
+  public void testOnePartitionPerNode() throws Exception {
+    assertMatchesUnpartitioned(3);
+  }
+
+  @Test
+  public void testTwoPartitions() throws Exception {
+    assertMatchesUnpartitioned(2);
+  }
+
+  @Test
+  public void testSinglePartition() throws Exception {
+    assertMatchesUnpartitioned(1);
+  }
+
+  private static IncrementalDataPlaneSettings partitionSettings(String leader, boolean lead) {
+    IncrementalDataPlaneSettings settings = new IncrementalDataPlaneSettings();
+    settings.getConfig().setProperty(IncrementalDataPlaneSettings.PROP_PARTITIONS, 2);
+    settings.getConfig().setProperty(IncrementalDataPlaneSettings.PROP_PARTITION_LEADER, leader);
+    settings.getConfig().setProperty(IncrementalDataPlaneSettings.PROP_PARTITION_LEAD, lead);
+    return settings;
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket serverSocket = new ServerSocket(0)) {
+      return serverSocket.getLocalPort();
+    }
+  }
+
+  /** Connect a leader and a worker with the given leader setting */
+  private static void assertConnects(String leaderSetting) throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      // The worker retries until the leader listens
+      Future<PartitionTransport> worker =
+          executor.submit(
+              () ->
+                  IncrementalDataPlanePlugin.connectPartitions(
+                      partitionSettings(leaderSetting, false)));
+      try (PartitionTransport leader =
+              IncrementalDataPlanePlugin.connectPartitions(partitionSettings(leaderSetting, true));
+          PartitionTransport joined = worker.get()) {
+        assertThat(leader.getPartition(), equalTo(0));
+        assertThat(joined.getPartition(), equalTo(1));
+        assertThat(joined.getNumPartitions(), equalTo(2));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testConnectPartitionsFromSettings() throws Exception {
+    assertConnects("localhost:" + freePort());
+  }
+
+  @Test
+  public void testConnectPartitionsOnLoopbackByDefault() throws Exception {
+    assertConnects(":" + freePort());
+  }
+
+  @Test
+  public void testConnectPartitionsTimesOut() throws Exception {
+    IncrementalDataPlaneSettings settings = partitionSettings(":" + freePort(), true);
+    settings.getConfig().setProperty(IncrementalDataPlaneSettings.PROP_PARTITION_TIMEOUT_MS, 100);
+
+    // No worker joins
+    _thrown.expect(SocketTimeoutException.class);
+    IncrementalDataPlanePlugin.connectPartitions(settings);
+  }
+
+  @Test
+  public void testConnectPartitionsWithoutLeaderPort() throws IOException {
+    _thrown.expect(BatfishException.class);
+    IncrementalDataPlaneSettings settings = new IncrementalDataPlaneSettings();
+    settings.getConfig().setProperty(IncrementalDataPlaneSettings.PROP_PARTITIONS, 2);
+    settings
+        .getConfig()
+        .setProperty(IncrementalDataPlaneSettings.PROP_PARTITION_LEADER, "localhost");
+    IncrementalDataPlanePlugin.connectPartitions(settings);
+  }
+}
@@ -0,0 +1,102 @@
+package org.batfish.dataplane.ibdp;
+
+import static org.batfish.datamodel.Configuration.DEFAULT_VRF_NAME;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.graph.MutableValueGraph;
+import com.google.common.graph.ValueGraphBuilder;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.batfish.datamodel.BgpActivePeerConfig;
+import org.batfish.datamodel.BgpPeerConfigId;
+import org.batfish.datamodel.BgpSessionProperties;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.ConfigurationFormat;
+import org.batfish.datamodel.Edge;
+import org.batfish.datamodel.NetworkFactory;
+import org.batfish.datamodel.Prefix;
+import org.batfish.datamodel.Topology;
+import org.batfish.datamodel.Vrf;
+import org.junit.Test;
+
+/** Tests of {@link IbdpPartitioner} */
+public class IbdpPartitionerTest {
+
+  private static final BgpSessionProperties SESSION =
+      BgpSessionProperties.from(
+          BgpActivePeerConfig.builder().build(), BgpActivePeerConfig.builder().build());
+
+  /** Return nodes r1 to r4, of which the given ones run OSPF */
+  private static SortedMap<String, Configuration> network(String... ospfNodes) {
+    NetworkFactory nf = new NetworkFactory();
+    Configuration.Builder cb =
+        nf.configurationBuilder().setConfigurationFormat(ConfigurationFormat.CISCO_IOS);
+    SortedMap<String, Configuration> configurations = new TreeMap<>();
+    for (int i = 1; i <= 4; i++) {
+      Configuration c = cb.setHostname("r" + i).build();
+      nf.vrfBuilder().setOwner(c).setName(DEFAULT_VRF_NAME).build();
+      configurations.put(c.getHostname(), c);
+    }
+    for (String hostname : ospfNodes) {
+      Vrf vrf = configurations.get(hostname).getDefaultVrf();
+      nf.ospfProcessBuilder().setVrf(vrf).build();
+    }
+    return configurations;
+  }
+
+  private static void addSession(
+      MutableValueGraph<BgpPeerConfigId, BgpSessionProperties> bgpTopology,
+      String node1,
+      String node2) {
+    BgpPeerConfigId id1 =
+        new BgpPeerConfigId(node1, DEFAULT_VRF_NAME, Prefix.parse("10.0.0.0/32"), false);
+    BgpPeerConfigId id2 =
+        new BgpPeerConfigId(node2, DEFAULT_VRF_NAME, Prefix.parse("10.0.0.1/32"), false);
+    bgpTopology.putEdgeValue(id1, id2, SESSION);
+    bgpTopology.putEdgeValue(id2, id1, SESSION);
+  }
+
+  @Test
+  public void testIgpNeighborsShareAPartition() {
+    // r1-r2 is the only link with OSPF on both ends
+    Topology topology =
+        new Topology(
+            ImmutableSortedSet.of(
+                new Edge("r1", "i", "r2", "i"),
+                new Edge("r2", "i", "r1", "i"),
+                new Edge("r2", "j", "r3", "j"),
+                new Edge("r3", "j", "r2", "j")));
+    assertThat(
+        IbdpPartitioner.partition(
+            network("r1", "r2"),
+            topology,
+            ValueGraphBuilder.directed().build(),
+            2),
+        equalTo(ImmutableMap.of("r1", 0, "r2", 0, "r3", 1, "r4", 1)));
+  }
+
+  @Test
+  public void testMinimizesCutSessions() {
+    MutableValueGraph<BgpPeerConfigId, BgpSessionProperties> bgpTopology =
+        ValueGraphBuilder.directed().build();
+    addSession(bgpTopology, "r1", "r3");
+    addSession(bgpTopology, "r2", "r4");
+    assertThat(
+        IbdpPartitioner.partition(network(), new Topology(ImmutableSortedSet.of()), bgpTopology, 2),
+        equalTo(ImmutableMap.of("r1", 0, "r2", 1, "r3", 0, "r4", 1)));
+  }
+
+  @Test
+  public void testMorePartitionsThanNodes() {
+    assertThat(
+        IbdpPartitioner.partition(
+            network(),
+            new Topology(ImmutableSortedSet.of()),
+            ValueGraphBuilder.directed().build(),
+            6),
+        equalTo(ImmutableMap.of("r1", 0, "r2", 1, "r3", 2, "r4", 3)));
+  }
+}
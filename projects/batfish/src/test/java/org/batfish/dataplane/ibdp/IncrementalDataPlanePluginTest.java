@@ -9,16 +9,22 @@ import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.in;
 import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.graph.ValueGraph;
+import com.google.common.util.concurrent.Uninterruptibles;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -30,8 +36,10 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import org.apache.commons.lang3.SerializationUtils;
 import org.batfish.common.BatfishLogger;
 import org.batfish.common.plugin.DataPlanePlugin;
 import org.batfish.common.plugin.DataPlanePlugin.ComputeDataPlaneResult;
@@ -60,9 +68,11 @@ import org.batfish.datamodel.RoutingProtocol;
 import org.batfish.datamodel.StaticRoute;
 import org.batfish.datamodel.Topology;
 import org.batfish.datamodel.Vrf;
+import org.batfish.datamodel.answers.IncrementalBdpAnswerElement;
 import org.batfish.datamodel.collections.RoutesByVrf;
 import org.batfish.datamodel.routing_policy.RoutingPolicy;
 import org.batfish.datamodel.routing_policy.statement.SetDefaultPolicy;
+import org.batfish.dataplane.ibdp.schedule.IbdpSchedule.Schedule;
 import org.batfish.dataplane.rib.BgpBestPathRib;
 import org.batfish.dataplane.rib.BgpMultipathRib;
 import org.batfish.main.Batfish;
@@ -402,6 +412,32 @@ public class IncrementalDataPlanePluginTest {
     dataPlanePlugin.computeDataPlane(false);
   }
 
+  @Test
+  public void testBgpRecomputation() throws IOException {
+    String testrigName = "ibgp-reject-routerid-match";
+    List<String> configurationNames = ImmutableList.of("r1", "r2", "r3", "r4");
+
+    Batfish batfish =
+        BatfishTestUtils.getBatfishFromTestrigText(
+            TestrigText.builder()
+                .setConfigurationText(TESTRIGS_PREFIX + testrigName, configurationNames)
+                .build(),
+            _folder);
+    IncrementalDataPlanePlugin dataPlanePlugin = new IncrementalDataPlanePlugin();
+    dataPlanePlugin.initialize(batfish);
+
+    /*
+     * The first computation switches to a more restrictive schedule when it revisits a state. That
+     * must not carry over, or the second computation would be reported as oscillating.
+     */
+    ComputeDataPlaneResult first = dataPlanePlugin.computeDataPlane(false);
+    ComputeDataPlaneResult second = dataPlanePlugin.computeDataPlane(false);
+
+    assertThat(
+        dataPlanePlugin.getRoutes(second._dataPlane),
+        equalTo(dataPlanePlugin.getRoutes(first._dataPlane)));
+  }
+
   @Test
   public void testBgpTieBreaker() {
     String hostname = "r1";
@@ -514,6 +550,236 @@ public class IncrementalDataPlanePluginTest {
     assertThat(r1Loopback0Prefix, in(r3Prefixes));
   }
 
+  @Test
+  public void testEventDrivenSchedule() throws IOException {
+    String testrigName = "ebgp-accept-routerid-match";
+    List<String> configurationNames = ImmutableList.of("r1", "r2", "r3");
+
+    Batfish batfish =
+        BatfishTestUtils.getBatfishFromTestrigText(
+            TestrigText.builder()
+                .setConfigurationText(TESTRIGS_PREFIX + testrigName, configurationNames)
+                .build(),
+            _folder);
+    Map<String, Configuration> configurations = batfish.loadConfigurations();
+    Topology topology = batfish.getEnvironmentTopology();
+    IncrementalDataPlaneSettings eventDrivenSettings = new IncrementalDataPlaneSettings();
+    eventDrivenSettings.setScheduleName(Schedule.EVENT_DRIVEN);
+
+    DataPlane lockStep =
+        new IncrementalBdpEngine(
+                new IncrementalDataPlaneSettings(),
+                new BatfishLogger(BatfishLogger.LEVELSTR_DEBUG, false),
+                (a, b) -> new AtomicInteger())
+            .computeDataPlane(
+                false,
+                SerializationUtils.clone(new TreeMap<>(configurations)),
+                topology,
+                ImmutableSet.of())
+            ._dataPlane;
+    DataPlane eventDriven =
+        new IncrementalBdpEngine(
+                eventDrivenSettings,
+                new BatfishLogger(BatfishLogger.LEVELSTR_DEBUG, false),
+                (a, b) -> new AtomicInteger())
+            .computeDataPlane(
+                false,
+                SerializationUtils.clone(new TreeMap<>(configurations)),
+                topology,
+                ImmutableSet.of())
+            ._dataPlane;
+
+    assertThat(
+        IncrementalBdpEngine.getRoutes(eventDriven),
+        equalTo(IncrementalBdpEngine.getRoutes(lockStep)));
+  }
+
+  @Test
+  public void testParallelBgpImport() throws IOException {
+    String testrigName = "ebgp-accept-routerid-match";
+    List<String> configurationNames = ImmutableList.of("r1", "r2", "r3");
+
+    Batfish batfish =
+        BatfishTestUtils.getBatfishFromTestrigText(
+            TestrigText.builder()
+                .setConfigurationText(TESTRIGS_PREFIX + testrigName, configurationNames)
+                .build(),
+            _folder);
+    Map<String, Configuration> configurations = batfish.loadConfigurations();
+    Topology topology = batfish.getEnvironmentTopology();
+    IncrementalDataPlaneSettings parallelSettings = new IncrementalDataPlaneSettings();
+    parallelSettings
+        .getConfig()
+        .setProperty(IncrementalDataPlaneSettings.PROP_PARALLEL_BGP_IMPORT, true);
+    parallelSettings
+        .getConfig()
+        .setProperty(IncrementalDataPlaneSettings.PROP_PARALLEL_BGP_IMPORT_THRESHOLD, 1);
+
+    DataPlane sequential =
+        new IncrementalBdpEngine(
+                new IncrementalDataPlaneSettings(),
+                new BatfishLogger(BatfishLogger.LEVELSTR_DEBUG, false),
+                (a, b) -> new AtomicInteger())
+            .computeDataPlane(
+                false,
+                SerializationUtils.clone(new TreeMap<>(configurations)),
+                topology,
+                ImmutableSet.of())
+            ._dataPlane;
+    DataPlane parallel =
+        new IncrementalBdpEngine(
+                parallelSettings,
+                new BatfishLogger(BatfishLogger.LEVELSTR_DEBUG, false),
+                (a, b) -> new AtomicInteger())
+            .computeDataPlane(
+                false,
+                SerializationUtils.clone(new TreeMap<>(configurations)),
+                topology,
+                ImmutableSet.of())
+            ._dataPlane;
+
+    assertThat(
+        IncrementalBdpEngine.getRoutes(parallel),
+        equalTo(IncrementalBdpEngine.getRoutes(sequential)));
+  }
+
+  @Test
+  public void testBgpPolicyCache() throws IOException {
+    String testrigName = "ebgp-accept-routerid-match";
+    List<String> configurationNames = ImmutableList.of("r1", "r2", "r3");
+
+    Batfish batfish =
+        BatfishTestUtils.getBatfishFromTestrigText(
+            TestrigText.builder()
+                .setConfigurationText(TESTRIGS_PREFIX + testrigName, configurationNames)
+                .build(),
+            _folder);
+    Map<String, Configuration> configurations = batfish.loadConfigurations();
+    Topology topology = batfish.getEnvironmentTopology();
+    IncrementalDataPlaneSettings cachedSettings = new IncrementalDataPlaneSettings();
+    cachedSettings
+        .getConfig()
+        .setProperty(IncrementalDataPlaneSettings.PROP_BGP_POLICY_CACHE_SIZE, 1000);
+
+    DataPlane uncached =
+        new IncrementalBdpEngine(
+                new IncrementalDataPlaneSettings(),
+                new BatfishLogger(BatfishLogger.LEVELSTR_DEBUG, false),
+                (a, b) -> new AtomicInteger())
+            .computeDataPlane(
+                false,
+                SerializationUtils.clone(new TreeMap<>(configurations)),
+                topology,
+                ImmutableSet.of())
+            ._dataPlane;
+    ComputeDataPlaneResult cached =
+        new IncrementalBdpEngine(
+                cachedSettings,
+                new BatfishLogger(BatfishLogger.LEVELSTR_DEBUG, false),
+                (a, b) -> new AtomicInteger())
+            .computeDataPlane(
+                false,
+                SerializationUtils.clone(new TreeMap<>(configurations)),
+                topology,
+                ImmutableSet.of());
+
+    assertThat(
+        IncrementalBdpEngine.getRoutes(cached._dataPlane),
+        equalTo(IncrementalBdpEngine.getRoutes(uncached)));
+    assertThat(
+        ((IncrementalBdpAnswerElement) cached._answerElement).getBgpPolicyCacheLookups(),
+        greaterThan(0L));
+  }
+
+  @Test
+  public void testResumeFromCheckpoint() throws IOException {
+    String testrigName = "ebgp-accept-routerid-match";
+    List<String> configurationNames = ImmutableList.of("r1", "r2", "r3");
+
+    Batfish batfish =
+        BatfishTestUtils.getBatfishFromTestrigText(
+            TestrigText.builder()
+                .setConfigurationText(TESTRIGS_PREFIX + testrigName, configurationNames)
+                .build(),
+            _folder);
+    Map<String, Configuration> configurations = batfish.loadConfigurations();
+    Topology topology = batfish.getEnvironmentTopology();
+    Path checkpointPath = _folder.getRoot().toPath().resolve("checkpoint");
+    IncrementalDataPlaneSettings checkpointSettings = new IncrementalDataPlaneSettings();
+    checkpointSettings
+        .getConfig()
+        .setProperty(IncrementalDataPlaneSettings.PROP_CHECKPOINT_INTERVAL_MS, 1L);
+
+    ComputeDataPlaneResult uninterrupted =
+        new IncrementalBdpEngine(
+                new IncrementalDataPlaneSettings(),
+                new BatfishLogger(BatfishLogger.LEVELSTR_DEBUG, false),
+                (a, b) -> new AtomicInteger())
+            .computeDataPlane(
+                false,
+                SerializationUtils.clone(new TreeMap<>(configurations)),
+                topology,
+                ImmutableSet.of());
+
+    // Interrupt the computation in its second iteration, after the first one checkpointed
+    IncrementalBdpEngine interruptedEngine =
+        new IncrementalBdpEngine(
+            checkpointSettings,
+            new BatfishLogger(BatfishLogger.LEVELSTR_DEBUG, false),
+            (description, jobs) -> {
+              if (description.startsWith("Iteration 2:")) {
+                throw new IllegalStateException("interrupted");
+              }
+              if (description.endsWith("Check if fixed-point reached")) {
+                Uninterruptibles.sleepUninterruptibly(2, TimeUnit.MILLISECONDS);
+              }
+              return new AtomicInteger();
+            });
+    interruptedEngine.setCheckpointPath(checkpointPath);
+    try {
+      interruptedEngine.computeDataPlane(
+          false,
+          SerializationUtils.clone(new TreeMap<>(configurations)),
+          topology,
+          ImmutableSet.of());
+      fail("computation was not interrupted");
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage(), equalTo("interrupted"));
+    }
+    assertTrue(Files.exists(checkpointPath));
+
+    List<String> resumedBatches = new ArrayList<>();
+    IncrementalBdpEngine resumedEngine =
+        new IncrementalBdpEngine(
+            checkpointSettings,
+            new BatfishLogger(BatfishLogger.LEVELSTR_DEBUG, false),
+            (description, jobs) -> {
+              resumedBatches.add(description);
+              return new AtomicInteger();
+            });
+    resumedEngine.setCheckpointPath(checkpointPath);
+    ComputeDataPlaneResult resumed =
+        resumedEngine.computeDataPlane(
+            false,
+            SerializationUtils.clone(new TreeMap<>(configurations)),
+            topology,
+            ImmutableSet.of());
+
+    assertThat(
+        IncrementalBdpEngine.getRoutes(resumed._dataPlane),
+        equalTo(IncrementalBdpEngine.getRoutes(uninterrupted._dataPlane)));
+    assertThat(
+        ((IncrementalBdpAnswerElement) resumed._answerElement).getDependentRoutesIterations(),
+        equalTo(
+            ((IncrementalBdpAnswerElement) uninterrupted._answerElement)
+                .getDependentRoutesIterations()));
+    // The resumed computation started from the checkpoint, not from the initial BGP messages
+    assertThat(resumedBatches, not(hasItem("Queue initial bgp messages")));
+    assertThat(resumedBatches, not(hasItem(startsWith("Iteration 1:"))));
+    // A finished computation leaves no checkpoint behind
+    assertFalse(Files.exists(checkpointPath));
+  }
+
   @Test
   public void testContainsRoute() {
     String hostname = "r1";
@@ -0,0 +1,227 @@
+package org.batfish.dataplane.ibdp;
+
+import static org.batfish.datamodel.Configuration.DEFAULT_VRF_NAME;
+import static org.batfish.datamodel.matchers.AbstractRouteMatchers.hasPrefix;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.ImmutableSortedSet;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.batfish.common.BatfishException;
+import org.batfish.datamodel.AbstractRoute;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.ConfigurationFormat;
+import org.batfish.datamodel.DataPlane;
+import org.batfish.datamodel.DataPlaneDetail;
+import org.batfish.datamodel.Fib;
+import org.batfish.datamodel.ForwardingAnalysisImpl;
+import org.batfish.datamodel.GenericRib;
+import org.batfish.datamodel.InterfaceAddress;
+import org.batfish.datamodel.Ip;
+import org.batfish.datamodel.NetworkFactory;
+import org.batfish.datamodel.Prefix;
+import org.batfish.datamodel.StaticRoute;
+import org.batfish.datamodel.Vrf;
+import org.batfish.main.Batfish;
+import org.batfish.main.BatfishTestUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedDataPlaneTest {
+
+  @Rule public TemporaryFolder _folder = new TemporaryFolder();
+
+  @Rule public ExpectedException _thrown = ExpectedException.none();
+
+  private IncrementalDataPlane _dp;
+
+  private Path _path;
+
+  @Before
+  public void setup() throws IOException {
+    NetworkFactory nf = new NetworkFactory();
+    Configuration.Builder cb =
+        nf.configurationBuilder().setConfigurationFormat(ConfigurationFormat.CISCO_IOS);
+    Configuration n1 = cb.setHostname("n1").build();
+    Configuration n2 = cb.setHostname("n2").build();
+    Vrf.Builder vb = nf.vrfBuilder().setName(DEFAULT_VRF_NAME);
+    Vrf v1 = vb.setOwner(n1).build();
+    Vrf v2 = vb.setOwner(n2).build();
+    nf.interfaceBuilder()
+        .setOwner(n1)
+        .setVrf(v1)
+        .setActive(true)
+        .setAddress(new InterfaceAddress("10.0.0.1/24"))
+        .build();
+    nf.interfaceBuilder()
+        .setOwner(n2)
+        .setVrf(v2)
+        .setActive(true)
+        .setAddress(new InterfaceAddress("10.0.0.2/24"))
+        .build();
+    // Enough nested prefixes to span several pages of the routes columns
+    ImmutableSortedSet.Builder<StaticRoute> staticRoutes = ImmutableSortedSet.naturalOrder();
+    StaticRoute.Builder sb =
+        StaticRoute.builder().setNextHopIp(new Ip("10.0.0.2")).setAdministrativeCost(1);
+    staticRoutes.add(sb.setNetwork(Prefix.ZERO).build());
+    for (int i = 1; i <= 2 * MappedRoutes.PAGE_SIZE; i++) {
+      staticRoutes.add(sb.setNetwork(Prefix.parse(String.format("10.%d.0.0/16", i))).build());
+      staticRoutes.add(sb.setNetwork(Prefix.parse(String.format("10.%d.%d.0/24", i, i))).build());
+    }
+    v1.setStaticRoutes(staticRoutes.build());
+
+    Batfish batfish =
+        BatfishTestUtils.getBatfish(
+            ImmutableSortedMap.of(n1.getHostname(), n1, n2.getHostname(), n2),
+            _folder);
+    batfish.getSettings().setDataplaneEngineName(IncrementalDataPlanePlugin.PLUGIN_NAME);
+    _dp = (IncrementalDataPlane) batfish.getDataPlanePlugin().computeDataPlane(false)._dataPlane;
+    _path = _folder.newFile().toPath();
+    MappedDataPlane.write(_dp, _path);
+  }
+
+  @Test
+  public void testIsMappedDataPlane() throws IOException {
+    assertTrue(MappedDataPlane.isMappedDataPlane(_path));
+    assertFalse(MappedDataPlane.isMappedDataPlane(_folder.newFile().toPath()));
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    MappedDataPlane mapped = MappedDataPlane.open(_path);
+
+    assertThat(mapped.getConfigurations().keySet(), contains("n1", "n2"));
+    assertThat(
+        mapped.getRibs().get("n1").get(DEFAULT_VRF_NAME).getRoutes(),
+        hasItem(hasPrefix(Prefix.parse("10.0.0.0/24"))));
+    assertThat(
+        IncrementalBdpEngine.getRoutes(mapped), equalTo(IncrementalBdpEngine.getRoutes(_dp)));
+    assertThat(
+        mapped.getFibs().get("n2").get(DEFAULT_VRF_NAME).getNextHopInterfaces(),
+        equalTo(_dp.getFibs().get("n2").get(DEFAULT_VRF_NAME).getNextHopInterfaces()));
+    assertThat(mapped.getIpOwners(), equalTo(_dp.getIpOwners()));
+    assertThat(mapped.getIpVrfOwners(), equalTo(_dp.getIpVrfOwners()));
+    assertThat(mapped.getTopologyEdges(), equalTo(_dp.getTopologyEdges()));
+    assertThat(mapped.getBgpRoutes(false), equalTo(_dp.getBgpRoutes(false)));
+    assertThat(mapped.getPrefixTracingInfoSummary(), equalTo(_dp.getPrefixTracingInfoSummary()));
+    assertThat(
+        ((ForwardingAnalysisImpl) mapped.getForwardingAnalysis()).getArpReplies(),
+        equalTo(((ForwardingAnalysisImpl) _dp.getForwardingAnalysis()).getArpReplies()));
+    assertThat(mapped.getBgpTopology(), nullValue());
+  }
+
+  @Test
+  public void testLeanRoundTrip() throws IOException {
+    Object routes = IncrementalBdpEngine.getRoutes(_dp);
+    Object fibs = _dp.getFibs().get("n2").get(DEFAULT_VRF_NAME).getNextHopInterfaces();
+    IncrementalDataPlane lean = _dp.retain(DataPlaneDetail.MAIN_RIB);
+    Path leanPath = _folder.newFile().toPath();
+    MappedDataPlane.write(lean, leanPath);
+    MappedDataPlane mapped = MappedDataPlane.open(leanPath);
+
+    assertThat(lean.getDetail(), equalTo(DataPlaneDetail.MAIN_RIB));
+    assertThat(mapped.getDetail(), equalTo(DataPlaneDetail.MAIN_RIB));
+    assertThat(IncrementalBdpEngine.getRoutes(lean), equalTo(routes));
+    assertThat(IncrementalBdpEngine.getRoutes(mapped), equalTo(routes));
+    assertThat(
+        mapped.getFibs().get("n2").get(DEFAULT_VRF_NAME).getNextHopInterfaces(),
+        equalTo(fibs));
+    assertThat(Files.size(leanPath), lessThan(Files.size(_path)));
+
+    _thrown.expect(BatfishException.class);
+    mapped.getBgpRoutes(false);
+  }
+
+  @Test
+  public void testLookupsMatchComputedDataPlane() throws IOException {
+    MappedDataPlane mapped = MappedDataPlane.open(_path);
+    GenericRib<AbstractRoute> rib = _dp.getRibs().get("n1").get(DEFAULT_VRF_NAME);
+    GenericRib<AbstractRoute> mappedRib = mapped.getRibs().get("n1").get(DEFAULT_VRF_NAME);
+    Fib fib = _dp.getFibs().get("n1").get(DEFAULT_VRF_NAME);
+    Fib mappedFib = mapped.getFibs().get("n1").get(DEFAULT_VRF_NAME);
+
+    assertThat(mappedRib.getPrefixes(), equalTo(rib.getPrefixes()));
+    assertThat(mappedRib.getMatchingIps(), equalTo(rib.getMatchingIps()));
+    assertThat(mappedRib.getRoutableIps(), equalTo(rib.getRoutableIps()));
+    for (Prefix prefix : rib.getPrefixes()) {
+      for (Ip ip : ImmutableList.of(prefix.getStartIp(), prefix.getEndIp())) {
+        assertThat(mappedRib.longestPrefixMatch(ip), equalTo(rib.longestPrefixMatch(ip)));
+        assertThat(mappedRib.longestPrefixMatch(ip, 16), equalTo(rib.longestPrefixMatch(ip, 16)));
+        assertThat(mappedFib.getNextHopInterfaces(ip), equalTo(fib.getNextHopInterfaces(ip)));
+        assertThat(
+            mappedFib.getNextHopInterfacesByRoute(ip),
+            equalTo(fib.getNextHopInterfacesByRoute(ip)));
+      }
+    }
+    assertThat(mappedFib.getNextHopInterfaces(), equalTo(fib.getNextHopInterfaces()));
+    assertThat(
+        mappedFib.getRoutesByNextHopInterface(), equalTo(fib.getRoutesByNextHopInterface()));
+    assertThat(mappedRib.getRoutes(), equalTo(rib.getRoutes()));
+  }
+
+  @Test
+  public void testRewriteLeavesOpenDataPlaneReadable() throws IOException {
+    Object routes = IncrementalBdpEngine.getRoutes(_dp);
+    MappedDataPlane mapped = MappedDataPlane.open(_path);
+    MappedDataPlane.write(_dp.retain(DataPlaneDetail.MAIN_RIB), _path);
+
+    // The open data plane still reads the file it mapped, which the new one replaced in one step
+    assertThat(mapped.getDetail(), equalTo(DataPlaneDetail.FULL));
+    assertThat(IncrementalBdpEngine.getRoutes(mapped), equalTo(routes));
+    assertThat(MappedDataPlane.open(_path).getDetail(), equalTo(DataPlaneDetail.MAIN_RIB));
+    try (Stream<Path> files = Files.list(_path.getParent())) {
+      // No temporary file is left next to the data plane
+      assertThat(
+          files
+              .filter(f -> f.getFileName().toString().startsWith(_path.getFileName().toString()))
+              .collect(Collectors.toList()),
+          contains(_path));
+    }
+  }
+
+  @Test
+  public void testJavaSerializationReopensFile() throws IOException, ClassNotFoundException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(MappedDataPlane.open(_path));
+    }
+    Object copy;
+    try (ObjectInputStream in =
+        new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      copy = in.readObject();
+    }
+
+    assertThat(copy, instanceOf(MappedDataPlane.class));
+    assertThat(((DataPlane) copy).getConfigurations().keySet(), contains("n1", "n2"));
+  }
+
+  @Test
+  public void testPluginReadsOnlyMappedFiles() throws IOException {
+    IncrementalDataPlanePlugin plugin = new IncrementalDataPlanePlugin();
+
+    assertThat(plugin.readDataPlane(_path), instanceOf(MappedDataPlane.class));
+    Path other = _folder.newFile().toPath();
+    Files.write(other, new byte[] {1, 2, 3});
+    assertThat(plugin.readDataPlane(other), nullValue());
+  }
+}
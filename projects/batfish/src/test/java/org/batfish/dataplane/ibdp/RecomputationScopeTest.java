@@ -0,0 +1,179 @@
+package org.batfish.dataplane.ibdp;
+
+import static org.batfish.common.util.CommonUtil.computeIpNodeOwners;
+import static org.batfish.datamodel.Configuration.DEFAULT_VRF_NAME;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.lang3.SerializationUtils;
+import org.batfish.common.BatfishLogger;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.ConfigurationFormat;
+import org.batfish.datamodel.DataPlane;
+import org.batfish.datamodel.Edge;
+import org.batfish.datamodel.InterfaceAddress;
+import org.batfish.datamodel.Ip;
+import org.batfish.datamodel.NetworkFactory;
+import org.batfish.datamodel.Prefix;
+import org.batfish.datamodel.StaticRoute;
+import org.batfish.datamodel.Topology;
+import org.batfish.datamodel.Vrf;
+import org.junit.Test;
+
+/** Tests for {@link RecomputationScope}. */
+public class RecomputationScopeTest {
+
+  /**
+   * Return two linked nodes r1 and r2, where only r2 may run OSPF, and an isolated node r3. r1 has
+   * a static route via r2.
+   */
+  private static SortedMap<String, Configuration> network(boolean r2RunsOspf) {
+    NetworkFactory nf = new NetworkFactory();
+    Configuration.Builder cb =
+        nf.configurationBuilder().setConfigurationFormat(ConfigurationFormat.CISCO_IOS);
+    SortedMap<String, Configuration> configurations = new TreeMap<>();
+    String[] addresses = {"10.0.0.0/31", "10.0.0.1/31", "10.0.1.0/31"};
+    for (int i = 0; i < addresses.length; i++) {
+      Configuration c = cb.setHostname("r" + (i + 1)).build();
+      Vrf vrf = nf.vrfBuilder().setOwner(c).setName(DEFAULT_VRF_NAME).build();
+      nf.interfaceBuilder()
+          .setOwner(c)
+          .setVrf(vrf)
+          .setName("i")
+          .setAddress(new InterfaceAddress(addresses[i]))
+          .setActive(true)
+          .build();
+      configurations.put(c.getHostname(), c);
+    }
+    configurations
+        .get("r1")
+        .getDefaultVrf()
+        .getStaticRoutes()
+        .add(
+            StaticRoute.builder()
+                .setNetwork(Prefix.parse("1.1.1.0/24"))
+                .setNextHopIp(new Ip("10.0.0.1"))
+                .build());
+    if (r2RunsOspf) {
+      nf.ospfProcessBuilder().setVrf(configurations.get("r2").getDefaultVrf()).build();
+    }
+    return configurations;
+  }
+
+  private static Topology topology(boolean linked) {
+    return new Topology(
+        linked
+            ? ImmutableSortedSet.of(new Edge("r1", "i", "r2", "i"), new Edge("r2", "i", "r1", "i"))
+            : ImmutableSortedSet.of());
+  }
+
+  private static IncrementalBdpEngine engine() {
+    return new IncrementalBdpEngine(
+        new IncrementalDataPlaneSettings(),
+        new BatfishLogger(BatfishLogger.LEVELSTR_DEBUG, false),
+        (a, b) -> new AtomicInteger());
+  }
+
+  private static SortedMap<String, Configuration> copy(Map<String, Configuration> configurations) {
+    SortedMap<String, Configuration> copy = new TreeMap<>();
+    for (Entry<String, Configuration> entry : configurations.entrySet()) {
+      copy.put(entry.getKey(), SerializationUtils.clone(entry.getValue()));
+    }
+    return copy;
+  }
+
+  private static SortedSet<String> affectedNodes(
+      Map<String, Configuration> baseConfigurations,
+      Topology baseTopology,
+      Map<String, Configuration> configurations,
+      Topology topology) {
+    IncrementalDataPlane base =
+        (IncrementalDataPlane)
+            engine()
+                .computeDataPlane(false, baseConfigurations, baseTopology, ImmutableSet.of())
+                ._dataPlane;
+    return RecomputationScope.affectedNodes(
+        base,
+        ImmutableSet.of(),
+        configurations,
+        topology,
+        computeIpNodeOwners(configurations, true),
+        ImmutableSet.of());
+  }
+
+  @Test
+  public void testUnchangedSnapshot() {
+    SortedMap<String, Configuration> base = network(false);
+    assertThat(affectedNodes(base, topology(true), copy(base), topology(true)), empty());
+  }
+
+  @Test
+  public void testChangedConfiguration() {
+    SortedMap<String, Configuration> base = network(false);
+    SortedMap<String, Configuration> delta = copy(base);
+    delta.get("r1").getDefaultVrf().getStaticRoutes().clear();
+    assertThat(affectedNodes(base, topology(true), delta, topology(true)), contains("r1"));
+  }
+
+  @Test
+  public void testChangedConfigurationAffectsIgpNeighbor() {
+    SortedMap<String, Configuration> base = network(true);
+    SortedMap<String, Configuration> delta = copy(base);
+    delta.get("r1").getDefaultVrf().getStaticRoutes().clear();
+    assertThat(affectedNodes(base, topology(true), delta, topology(true)), contains("r1", "r2"));
+  }
+
+  @Test
+  public void testRemovedEdge() {
+    SortedMap<String, Configuration> base = network(false);
+    assertThat(
+        affectedNodes(base, topology(true), copy(base), topology(false)), contains("r1", "r2"));
+  }
+
+  @Test
+  public void testRecomputationReusesUnaffectedNodes() {
+    SortedMap<String, Configuration> baseConfigurations = network(false);
+    IncrementalDataPlane base =
+        (IncrementalDataPlane)
+            engine()
+                .computeDataPlane(false, baseConfigurations, topology(true), ImmutableSet.of())
+                ._dataPlane;
+    SortedMap<String, Configuration> delta = copy(baseConfigurations);
+    delta
+        .get("r1")
+        .getDefaultVrf()
+        .getStaticRoutes()
+        .add(
+            StaticRoute.builder()
+                .setNetwork(Prefix.parse("2.2.2.0/24"))
+                .setNextHopIp(new Ip("10.0.0.1"))
+                .build());
+
+    IncrementalDataPlane recomputed =
+        (IncrementalDataPlane)
+            engine()
+                .computeDataPlane(
+                    true, delta, topology(true), ImmutableSet.of(), base, ImmutableSet.of())
+                ._dataPlane;
+    DataPlane full =
+        engine().computeDataPlane(true, copy(delta), topology(true), ImmutableSet.of())._dataPlane;
+
+    assertThat(
+        IncrementalBdpEngine.getRoutes(recomputed), equalTo(IncrementalBdpEngine.getRoutes(full)));
+    assertThat(recomputed.getNodes().get("r1"), not(sameInstance(base.getNodes().get("r1"))));
+    assertThat(recomputed.getNodes().get("r2"), sameInstance(base.getNodes().get("r2")));
+    assertThat(recomputed.getNodes().get("r3"), sameInstance(base.getNodes().get("r3")));
+  }
+}
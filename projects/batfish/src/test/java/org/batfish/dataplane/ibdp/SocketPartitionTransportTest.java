@@ -0,0 +1,169 @@
+package org.batfish.dataplane.ibdp;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.Nullable;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/** Tests of {@link SocketPartitionTransport} */
+public class SocketPartitionTransportTest {
+
+  private static final int TIMEOUT_MS = 60_000;
+
+  @Rule public ExpectedException _thrown = ExpectedException.none();
+
+  /** The messages received in the last round by a partition */
+  private static final class Received {
+
+    private final List<Serializable> _messages;
+
+    private final int _partition;
+
+    private Received(int partition, List<Serializable> messages) {
+      _partition = partition;
+      _messages = messages;
+    }
+  }
+
+  /**
+   * Over two rounds, send each partition the message "sender->receiver", except partition 1, which
+   * is sent nothing
+   */
+  private static Received exchange(PartitionTransport transport) throws IOException {
+    try (PartitionTransport t = transport) {
+      List<Serializable> received = null;
+      for (int round = 0; round < 2; round++) {
+        List<String> outgoing = new ArrayList<>();
+        for (int p = 0; p < t.getNumPartitions(); p++) {
+          outgoing.add(p == 1 ? null : t.getPartition() + "->" + p);
+        }
+        received = t.exchange(outgoing);
+      }
+      return new Received(t.getPartition(), received);
+    }
+  }
+
+  /** Run the exchange over the given number of partitions, and key the results by partition */
+  private static SortedMap<Integer, List<Serializable>> run(int numPartitions) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(numPartitions);
+    try (ServerSocket serverSocket = new ServerSocket(0, 0, InetAddress.getLoopbackAddress())) {
+      InetSocketAddress leader =
+          new InetSocketAddress(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+      List<Callable<Received>> workers = new ArrayList<>();
+      workers.add(
+          () -> exchange(SocketPartitionTransport.lead(serverSocket, numPartitions, TIMEOUT_MS)));
+      for (int worker = 1; worker < numPartitions; worker++) {
+        workers.add(() -> exchange(SocketPartitionTransport.join(leader, TIMEOUT_MS)));
+      }
+      SortedMap<Integer, List<Serializable>> received = new TreeMap<>();
+      for (Future<Received> future : executor.invokeAll(workers)) {
+        received.put(future.get()._partition, future.get()._messages);
+      }
+      return received;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testExchange() throws Exception {
+    SortedMap<Integer, List<Serializable>> received = run(3);
+
+    assertThat(received.keySet(), contains(0, 1, 2));
+    assertThat(received.get(0), equalTo(ImmutableList.of("0->0", "1->0", "2->0")));
+    assertThat(received.get(1), equalTo(Arrays.asList(null, null, null)));
+    assertThat(received.get(2), equalTo(ImmutableList.of("0->2", "1->2", "2->2")));
+  }
+
+  @Test
+  public void testSinglePartition() throws Exception {
+    SortedMap<Integer, List<Serializable>> received = run(1);
+
+    assertThat(received.keySet(), contains(0));
+    assertThat(received.get(0), equalTo(ImmutableList.of("0->0")));
+  }
+
+  /**
+   * Connect a leader and a worker with the given timeout, and return the result of the leader's
+   * first exchange, in which the worker sends the given message, if any
+   */
+  private static List<Serializable> leaderReceives(@Nullable Serializable message, int timeoutMs)
+      throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try (ServerSocket serverSocket = new ServerSocket(0, 0, InetAddress.getLoopbackAddress())) {
+      InetSocketAddress address =
+          new InetSocketAddress(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+      Future<PartitionTransport> worker =
+          executor.submit(() -> SocketPartitionTransport.join(address, TIMEOUT_MS));
+      try (PartitionTransport leader = SocketPartitionTransport.lead(serverSocket, 2, timeoutMs);
+          PartitionTransport joined = worker.get()) {
+        if (message != null) {
+          // Fails once the leader closes the connection
+          executor.submit(() -> joined.exchange(Arrays.asList(message, null)));
+        }
+        return leader.exchange(Arrays.asList(null, null));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testIsAllowed() {
+    assertTrue(SocketPartitionTransport.isAllowed("org.batfish.datamodel.BgpRoute"));
+    assertTrue(SocketPartitionTransport.isAllowed("java.util.ArrayList"));
+    assertTrue(SocketPartitionTransport.isAllowed("[I"));
+    assertTrue(SocketPartitionTransport.isAllowed("[[Ljava.lang.String;"));
+    assertFalse(SocketPartitionTransport.isAllowed("java.net.URL"));
+    assertFalse(
+        SocketPartitionTransport.isAllowed(
+            "org.apache.commons.collections.functors.InvokerTransformer"));
+    assertFalse(SocketPartitionTransport.isAllowed("[Lorg.apache.commons.Foo;"));
+  }
+
+  @Test
+  public void testRejectsDisallowedClasses() throws Exception {
+    _thrown.expect(InvalidClassException.class);
+    leaderReceives(new URL("http://example.com"), TIMEOUT_MS);
+  }
+
+  @Test
+  public void testReadTimesOut() throws Exception {
+    // The worker never sends its messages
+    _thrown.expect(SocketTimeoutException.class);
+    leaderReceives(null, 100);
+  }
+
+  @Test
+  public void testAcceptTimesOut() throws Exception {
+    try (ServerSocket serverSocket = new ServerSocket(0, 0, InetAddress.getLoopbackAddress())) {
+      // No worker joins
+      _thrown.expect(SocketTimeoutException.class);
+      SocketPartitionTransport.lead(serverSocket, 2, 100);
+    }
+  }
+}
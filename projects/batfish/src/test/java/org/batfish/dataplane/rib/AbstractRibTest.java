@@ -370,4 +370,49 @@ public class AbstractRibTest {
     _rib.clearRoutes(Prefix.parse("1.1.1.1/32"));
     assertThat(_rib.getRoutes(), hasSize(0));
   }
+
+  /** Test that a prefix only sharing the length and leading bits of a stored prefix is not found */
+  @Test
+  public void testClearRoutesOfSiblingPrefix() {
+    StaticRoute r = new StaticRoute(Prefix.parse("10.0.0.0/9"), Ip.ZERO, null, 1, 0L, 1);
+    _rib.mergeRoute(r);
+
+    assertThat(_rib.clearRoutes(Prefix.parse("10.128.0.0/9")), is(nullValue()));
+    assertThat(_rib.getRoutes(), contains(r));
+  }
+
+  /**
+   * Test that the longest prefix match ignores the nodes at which prefixes branch apart, which
+   * hold no routes
+   */
+  @Test
+  public void testLongestPrefixMatchBetweenBranches() {
+    StaticRoute r1 = new StaticRoute(Prefix.parse("10.0.0.0/24"), Ip.ZERO, null, 1, 0L, 1);
+    StaticRoute r2 = new StaticRoute(Prefix.parse("10.0.1.0/24"), Ip.ZERO, null, 1, 0L, 1);
+    _rib.mergeRoute(_mostGeneralRoute);
+    _rib.mergeRoute(r1);
+    _rib.mergeRoute(r2);
+
+    assertThat(_rib.longestPrefixMatch(new Ip("10.0.1.1")), contains(r2));
+    assertThat(_rib.longestPrefixMatch(new Ip("10.0.2.1")), contains(_mostGeneralRoute));
+  }
+
+  /** Test that removing routes leaves the RIB equal to one that never had them */
+  @Test
+  public void testRemoveRouteRestoresEquality() {
+    List<StaticRoute> routes = setupOverlappingRoutes();
+    AbstractRib<StaticRoute> rib2 = new StaticRib();
+    routes.forEach(rib2::mergeRoute);
+
+    StaticRoute r1 = new StaticRoute(Prefix.parse("10.1.1.0/24"), Ip.ZERO, null, 1, 0L, 1);
+    StaticRoute r2 = new StaticRoute(Prefix.parse("10.1.0.0/24"), Ip.ZERO, null, 1, 0L, 1);
+    _rib.mergeRoute(r1);
+    _rib.mergeRoute(r2);
+    assertThat(_rib, not(equalTo(rib2)));
+
+    _rib.removeRoute(r1);
+    _rib.removeRoute(r2);
+    assertThat(_rib, equalTo(rib2));
+    assertThat(_rib.hashCode(), equalTo(rib2.hashCode()));
+  }
 }
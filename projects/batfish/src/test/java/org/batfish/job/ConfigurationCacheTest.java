@@ -0,0 +1,205 @@
+package org.batfish.job;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.batfish.common.BatfishLogger;
+import org.batfish.common.Warnings;
+import org.batfish.config.Settings;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.ConfigurationFormat;
+import org.batfish.datamodel.answers.ConvertConfigurationAnswerElement;
+import org.batfish.datamodel.answers.ParseStatus;
+import org.batfish.datamodel.answers.ParseVendorConfigurationAnswerElement;
+import org.batfish.vendor.VendorConfiguration;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ConfigurationCacheTest {
+
+  private static final String CONFIG_TEXT =
+      "!\nversion 15.2\nhostname r1\n!\ninterface Loopback0\n!\n";
+
+  private static final String FILENAME = "configs/r1.cfg";
+
+  @Rule public TemporaryFolder _folder = new TemporaryFolder();
+
+  private ConfigurationCache _cache;
+
+  private Path _cacheDir;
+
+  private Settings _settings;
+
+  @Before
+  public void setup() throws IOException {
+    _settings = new Settings();
+    _settings.setLogger(new BatfishLogger(BatfishLogger.LEVELSTR_WARN, false));
+    _cacheDir = _folder.newFolder().toPath();
+    _cache = new ConfigurationCache(_settings, _cacheDir);
+  }
+
+  private String parseKey(String text) {
+    return ConfigurationCache.parseKey(_settings, FILENAME, text, ConfigurationFormat.UNKNOWN);
+  }
+
+  private ParseVendorConfigurationResult parse(String text) throws Exception {
+    return new ParseVendorConfigurationJob(
+            _settings, text, FILENAME, new Warnings(), ConfigurationFormat.UNKNOWN, _cache)
+        .call();
+  }
+
+  @Test
+  public void testParseKeyDependsOnInputs() {
+    String key =
+        ConfigurationCache.parseKey(_settings, FILENAME, CONFIG_TEXT, ConfigurationFormat.UNKNOWN);
+
+    assertThat(
+        ConfigurationCache.parseKey(_settings, FILENAME, CONFIG_TEXT, ConfigurationFormat.UNKNOWN),
+        equalTo(key));
+    assertThat(
+        ConfigurationCache.parseKey(
+            _settings, FILENAME, CONFIG_TEXT + "!\n", ConfigurationFormat.UNKNOWN),
+        not(equalTo(key)));
+    assertThat(
+        ConfigurationCache.parseKey(
+            _settings, "configs/r2.cfg", CONFIG_TEXT, ConfigurationFormat.UNKNOWN),
+        not(equalTo(key)));
+    assertThat(
+        ConfigurationCache.parseKey(
+            _settings, FILENAME, CONFIG_TEXT, ConfigurationFormat.CISCO_IOS),
+        not(equalTo(key)));
+
+    _settings.setDisableUnrecognized(!_settings.getDisableUnrecognized());
+    assertThat(
+        ConfigurationCache.parseKey(_settings, FILENAME, CONFIG_TEXT, ConfigurationFormat.UNKNOWN),
+        not(equalTo(key)));
+  }
+
+  @Test
+  public void testParseResultRoundTrip() throws Exception {
+    ParseVendorConfigurationResult result = parse(CONFIG_TEXT);
+    assertThat(result.getFailureCause(), nullValue());
+
+    ParseVendorConfigurationResult cached =
+        _cache.loadParseResult(parseKey(CONFIG_TEXT), FILENAME);
+
+    assertThat(cached, notNullValue());
+    VendorConfiguration vc = cached.getVendorConfiguration();
+    assertThat(vc.getHostname(), equalTo("r1"));
+    assertThat(vc.getFilename(), equalTo(FILENAME));
+
+    ParseVendorConfigurationAnswerElement answerElement =
+        new ParseVendorConfigurationAnswerElement();
+    Map<String, VendorConfiguration> vendorConfigurations = new TreeMap<>();
+    cached.applyTo(vendorConfigurations, _settings.getLogger(), answerElement);
+    assertThat(vendorConfigurations.keySet(), contains("r1"));
+    assertThat(answerElement.getParseStatus().get(FILENAME), equalTo(ParseStatus.PASSED));
+  }
+
+  @Test
+  public void testParseStatusRoundTrip() throws Exception {
+    parse("");
+
+    ParseVendorConfigurationResult cached = _cache.loadParseResult(parseKey(""), FILENAME);
+
+    assertThat(cached, notNullValue());
+    assertThat(cached.getVendorConfiguration(), nullValue());
+    assertThat(cached.getStatus(), equalTo(ParseStatus.EMPTY));
+  }
+
+  @Test
+  public void testFailedParseNotCached() throws Exception {
+    String text = CONFIG_TEXT + "not a cisco command\n";
+    _settings.setDisableUnrecognized(true);
+    ParseVendorConfigurationResult result = parse(text);
+    assertThat(result.getFailureCause(), notNullValue());
+
+    assertThat(_cache.loadParseResult(parseKey(text), FILENAME), nullValue());
+  }
+
+  @Test
+  public void testCachedParseReused() throws Exception {
+    parse(CONFIG_TEXT);
+
+    ParseVendorConfigurationResult result = parse(CONFIG_TEXT);
+
+    assertThat(result.getVendorConfiguration().getHostname(), equalTo("r1"));
+    assertThat(
+        result.getHistory().toString(BatfishLogger.LEVEL_INFO), containsString("Reusing cached"));
+  }
+
+  @Test
+  public void testPruneEvictsLeastRecentlyUsed() throws Exception {
+    String otherText = CONFIG_TEXT.replace("r1", "r2");
+    parse(CONFIG_TEXT);
+    parse(otherText);
+    List<Path> entries;
+    try (Stream<Path> paths = Files.walk(_cacheDir)) {
+      entries = paths.filter(Files::isRegularFile).collect(Collectors.toList());
+    }
+    long usedBytes = 0;
+    for (Path entry : entries) {
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(0));
+      usedBytes += Files.size(entry);
+    }
+    // Make the r2 entry the most recently used.
+    assertThat(_cache.loadParseResult(parseKey(otherText), FILENAME), notNullValue());
+
+    _cache.prune(usedBytes - 1);
+
+    assertThat(_cache.loadParseResult(parseKey(CONFIG_TEXT), FILENAME), nullValue());
+    assertThat(_cache.loadParseResult(parseKey(otherText), FILENAME), notNullValue());
+  }
+
+  @Test
+  public void testPruneWithinBound() throws Exception {
+    parse(CONFIG_TEXT);
+
+    _cache.prune(Long.MAX_VALUE);
+
+    assertThat(_cache.loadParseResult(parseKey(CONFIG_TEXT), FILENAME), notNullValue());
+  }
+
+  @Test
+  public void testMissingEntry() {
+    assertThat(_cache.loadParseResult("cdef", FILENAME), nullValue());
+    assertThat(_cache.loadConvertResult("cdef", "r1"), nullValue());
+  }
+
+  @Test
+  public void testConvertResultRoundTrip() throws Exception {
+    VendorConfiguration vc = parse(CONFIG_TEXT).getVendorConfiguration();
+    String key =
+        ConfigurationCache.convertKey(_settings, "r1", "r1".getBytes(StandardCharsets.UTF_8));
+    ConvertConfigurationResult result =
+        new ConvertConfigurationJob(_settings, vc, "r1", _cache, key).call();
+    assertThat(result.getFailureCause(), nullValue());
+
+    ConvertConfigurationResult cached = _cache.loadConvertResult(key, "r1");
+
+    assertThat(cached, notNullValue());
+    Map<String, Configuration> configurations = new TreeMap<>();
+    cached.applyTo(configurations, _settings.getLogger(), new ConvertConfigurationAnswerElement());
+    assertThat(configurations.keySet(), equalTo(result.getConfigurations().keySet()));
+    assertThat(
+        configurations.get("r1").getInterfaces().keySet(),
+        equalTo(result.getConfigurations().get("r1").getInterfaces().keySet()));
+  }
+}
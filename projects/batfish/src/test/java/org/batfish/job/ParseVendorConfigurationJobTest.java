@@ -0,0 +1,41 @@
+package org.batfish.job;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.batfish.common.Warnings;
+import org.batfish.config.Settings;
+import org.batfish.datamodel.ConfigurationFormat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ParseVendorConfigurationJobTest {
+
+  @Rule public TemporaryFolder _folder = new TemporaryFolder();
+
+  @Test
+  public void testParseFromFile() throws Exception {
+    Path file = _folder.newFile("r1.cfg").toPath();
+    // No trailing newline; one is added when the file is read.
+    Files.write(file, "!\nversion 15.2\nhostname r1".getBytes(StandardCharsets.UTF_8));
+
+    ParseVendorConfigurationResult result =
+        new ParseVendorConfigurationJob(
+                new Settings(),
+                file,
+                "configs/r1.cfg",
+                new Warnings(),
+                ConfigurationFormat.UNKNOWN,
+                null)
+            .call();
+
+    assertThat(result.getFailureCause(), nullValue());
+    assertThat(result.getVendorConfiguration().getHostname(), equalTo("r1"));
+    assertThat(result.getVendorConfiguration().getFilename(), equalTo("configs/r1.cfg"));
+  }
+}
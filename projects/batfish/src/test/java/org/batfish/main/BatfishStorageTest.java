@@ -8,12 +8,16 @@ import static org.junit.Assert.assertThat;
 
 import com.google.common.collect.Sets;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.batfish.common.BatfishLogger;
+import org.batfish.common.BfConsts;
 import org.batfish.common.Version;
+import org.batfish.common.plugin.PluginConsumer.Format;
 import org.batfish.datamodel.Configuration;
 import org.batfish.datamodel.ConfigurationFormat;
 import org.batfish.datamodel.answers.ConvertConfigurationAnswerElement;
@@ -50,6 +54,62 @@ public class BatfishStorageTest {
     assertThat(deserialized.keySet(), equalTo(Sets.newHashSet("node1")));
   }
 
+  @Test
+  public void roundTripBlockLz4ConfigurationsSucceeds() {
+    BatfishStorage storage =
+        new BatfishStorage(
+            _containerDir, _logger, (m, n) -> new AtomicInteger(), Format.BLOCK_LZ4);
+    Map<String, Configuration> configs = new HashMap<>();
+    configs.put("node1", new Configuration("node1", ConfigurationFormat.CISCO_IOS));
+
+    storage.storeConfigurations(configs, new ConvertConfigurationAnswerElement(), "sometr");
+    Map<String, Configuration> deserialized = _storage.loadConfigurations("sometr");
+    assertThat(deserialized, not(nullValue()));
+    assertThat(
+        deserialized.get("node1").getConfigurationFormat(),
+        equalTo(ConfigurationFormat.CISCO_IOS));
+  }
+
+  @Test
+  public void roundTripCompactConfigurationsSucceeds() {
+    BatfishStorage storage =
+        new BatfishStorage(_containerDir, _logger, (m, n) -> new AtomicInteger(), Format.COMPACT);
+    Map<String, Configuration> configs = new HashMap<>();
+    configs.put("node1", new Configuration("node1", ConfigurationFormat.CISCO_IOS));
+
+    storage.storeConfigurations(configs, new ConvertConfigurationAnswerElement(), "sometr");
+    // Compact files are readable regardless of the configured storage format.
+    Map<String, Configuration> deserialized = _storage.loadConfigurations("sometr");
+    assertThat(deserialized, not(nullValue()));
+    assertThat(deserialized.keySet(), equalTo(Sets.newHashSet("node1")));
+    assertThat(
+        deserialized.get("node1").getConfigurationFormat(),
+        equalTo(ConfigurationFormat.CISCO_IOS));
+  }
+
+  @Test
+  public void loadConfigurationsIsLazy() throws IOException {
+    Map<String, Configuration> configs = new HashMap<>();
+    configs.put("node1", new Configuration("node1", ConfigurationFormat.CISCO_IOS));
+    configs.put("node2", new Configuration("node2", ConfigurationFormat.CISCO_IOS));
+    _storage.storeConfigurations(configs, new ConvertConfigurationAnswerElement(), "sometr");
+
+    // Corrupt node2. Since only node1 is read, loading must still succeed.
+    Path node2 =
+        _containerDir.resolve(
+            Paths.get(
+                BfConsts.RELPATH_TESTRIGS_DIR,
+                "sometr",
+                BfConsts.RELPATH_VENDOR_INDEPENDENT_CONFIG_DIR,
+                "node2"));
+    Files.write(node2, new byte[] {0, 1, 2, 3});
+
+    Map<String, Configuration> deserialized = _storage.loadConfigurations("sometr");
+    assertThat(deserialized, not(nullValue()));
+    assertThat(deserialized.keySet(), equalTo(Sets.newHashSet("node1", "node2")));
+    assertThat(deserialized.get("node1").getHostname(), equalTo("node1"));
+  }
+
   @Test
   public void loadMissingConfigurationsReturnsNull() {
     assertThat(_storage.loadConfigurations("nonexistent"), nullValue());
@@ -1,8 +1,10 @@
 package org.batfish.main;
 
+import static java.util.stream.Collectors.toList;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasKey;
@@ -32,6 +34,7 @@ import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import org.batfish.common.BatfishException;
+import org.batfish.common.BfConsts;
 import org.batfish.common.topology.Layer1Edge;
 import org.batfish.common.topology.Layer1Node;
 import org.batfish.common.topology.Layer1Topology;
@@ -203,6 +206,59 @@ public class BatfishTest {
     assertThat(ipOwners.get(vrrpAddress), equalTo(Collections.singleton("r2")));
   }
 
+  @Test
+  public void testLoadConfigurationsRepairsCorruptFile() throws IOException {
+    String testrigResourcePrefix = "org/batfish/grammar/cisco/testrigs/vrrp_multiple_best";
+    Batfish batfish =
+        BatfishTestUtils.getBatfishFromTestrigText(
+            TestrigText.builder()
+                .setConfigurationText(testrigResourcePrefix, ImmutableList.of("r1", "r2"))
+                .build(),
+            _folder);
+    // Serialize the configurations without loading (and caching) them.
+    batfish.loadConvertConfigurationAnswerElementOrReparse();
+    Path r1File =
+        batfish
+            .getTestrigSettings()
+            .getBasePath()
+            .resolve(BfConsts.RELPATH_VENDOR_INDEPENDENT_CONFIG_DIR)
+            .resolve("r1");
+    Files.write(r1File, "not a configuration".getBytes(StandardCharsets.UTF_8));
+
+    Map<String, Configuration> configurations = batfish.loadConfigurations();
+
+    assertThat(configurations.get("r1").getHostname(), equalTo("r1"));
+    assertThat(configurations.get("r2").getHostname(), equalTo("r2"));
+  }
+
+  @Test
+  public void testLoadConfigurationsRepairsCorruptFilesLoadedInParallel() throws IOException {
+    String testrigResourcePrefix = "org/batfish/grammar/cisco/testrigs/vrrp_multiple_best";
+    Batfish batfish =
+        BatfishTestUtils.getBatfishFromTestrigText(
+            TestrigText.builder()
+                .setConfigurationText(testrigResourcePrefix, ImmutableList.of("r1", "r2"))
+                .build(),
+            _folder);
+    batfish.loadConvertConfigurationAnswerElementOrReparse();
+    Path configsDir =
+        batfish
+            .getTestrigSettings()
+            .getBasePath()
+            .resolve(BfConsts.RELPATH_VENDOR_INDEPENDENT_CONFIG_DIR);
+    for (String hostname : ImmutableList.of("r1", "r2")) {
+      Files.write(
+          configsDir.resolve(hostname), "not a configuration".getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Iterating loads the configurations in parallel, so one may fail while the other repairs
+    Map<String, Configuration> configurations = batfish.loadConfigurations();
+
+    assertThat(
+        configurations.values().stream().map(Configuration::getHostname).collect(toList()),
+        contains("r1", "r2"));
+  }
+
   @Test
   public void testNoFileUnderPath() throws IOException {
     Path emptyFolder = _folder.newFolder("emptyFolder").toPath();
@@ -0,0 +1,183 @@
+package org.batfish.main;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+import org.batfish.common.NetworkSnapshot;
+import org.batfish.common.Snapshot;
+import org.batfish.common.util.LazySortedMap;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.ConfigurationFormat;
+import org.batfish.datamodel.NetworkFactory;
+import org.batfish.main.SnapshotCache.Kind;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SnapshotCacheTest {
+
+  private static final NetworkSnapshot S1 = new NetworkSnapshot("net", new Snapshot("s1", "env"));
+
+  private static final NetworkSnapshot S2 = new NetworkSnapshot("net", new Snapshot("s2", "env"));
+
+  private static final NetworkSnapshot S3 = new NetworkSnapshot("net", new Snapshot("s3", "env"));
+
+  private SortedMap<String, Configuration> _configs;
+
+  private long _configsBytes;
+
+  @Before
+  public void setup() {
+    Configuration c =
+        new NetworkFactory()
+            .configurationBuilder()
+            .setConfigurationFormat(ConfigurationFormat.CISCO_IOS)
+            .setHostname("n1")
+            .build();
+    _configs = ImmutableSortedMap.of("n1", c);
+    _configsBytes = SnapshotCache.estimateConfigurationsBytes(_configs);
+  }
+
+  @Test
+  public void testBudgetSharedAcrossKinds() {
+    SnapshotCache cache = new SnapshotCache(_configsBytes * 2 + _configsBytes / 2);
+    Cache<NetworkSnapshot, SortedMap<String, Configuration>> configs = cache.getConfigurations();
+    Cache<NetworkSnapshot, SortedMap<String, Configuration>> compressed =
+        cache.getCompressedConfigurations();
+
+    configs.put(S1, _configs);
+    compressed.put(S2, _configs);
+    assertThat(cache.getEstimatedBytes(Kind.CONFIGURATIONS), equalTo(_configsBytes));
+    assertThat(cache.getEstimatedBytes(Kind.COMPRESSED_CONFIGURATIONS), equalTo(_configsBytes));
+
+    // A third entry exceeds the budget and evicts the least recently used one.
+    configs.put(S3, _configs);
+
+    assertThat(configs.getIfPresent(S1), nullValue());
+    assertThat(compressed.getIfPresent(S2), notNullValue());
+    assertThat(configs.getIfPresent(S3), notNullValue());
+    assertThat(configs.stats().evictionCount(), equalTo(1L));
+    assertThat(compressed.stats().evictionCount(), equalTo(0L));
+    assertThat(cache.getEstimatedBytes(Kind.CONFIGURATIONS), equalTo(_configsBytes));
+  }
+
+  @Test
+  public void testHitsMissesAndLoads() throws ExecutionException {
+    SnapshotCache cache = new SnapshotCache(Long.MAX_VALUE);
+    Cache<NetworkSnapshot, SortedMap<String, Configuration>> configs = cache.getConfigurations();
+
+    assertThat(configs.get(S1, () -> _configs), equalTo(_configs));
+    assertThat(configs.getIfPresent(S1), equalTo(_configs));
+    assertThat(configs.getIfPresent(S1), equalTo(_configs));
+
+    CacheStats stats = configs.stats();
+    assertThat(stats.hitCount(), equalTo(2L));
+    assertThat(stats.missCount(), equalTo(1L));
+    assertThat(stats.loadSuccessCount(), equalTo(1L));
+    assertThat(cache.getStats().get(Kind.CONFIGURATIONS.toString()).get("hits"), equalTo(2L));
+    assertThat(cache.getDataPlanes().stats().requestCount(), equalTo(0L));
+  }
+
+  @Test
+  public void testFailedLoad() throws ExecutionException {
+    SnapshotCache cache = new SnapshotCache(Long.MAX_VALUE);
+    Cache<NetworkSnapshot, SortedMap<String, Configuration>> configs = cache.getConfigurations();
+    IllegalStateException failure = new IllegalStateException("failed to load");
+
+    try {
+      configs.get(
+          S1,
+          () -> {
+            throw failure;
+          });
+      fail("expected the load to fail");
+    } catch (UncheckedExecutionException e) {
+      assertThat(e.getCause(), sameInstance(failure));
+    }
+
+    // Nothing was cached, and the failure is not counted as a load of the next value.
+    assertThat(configs.size(), equalTo(0L));
+    assertThat(configs.stats().loadExceptionCount(), equalTo(1L));
+    assertThat(configs.stats().loadSuccessCount(), equalTo(0L));
+    assertThat(configs.get(S1, () -> _configs), equalTo(_configs));
+    assertThat(configs.stats().loadExceptionCount(), equalTo(1L));
+    assertThat(configs.stats().loadSuccessCount(), equalTo(1L));
+    assertThat(
+        cache.getStats().get(Kind.CONFIGURATIONS.toString()).get("loadFailures"), equalTo(1L));
+  }
+
+  @Test
+  public void testLazyConfigurationsWeighedWithoutLoading() {
+    SortedMap<String, Supplier<Configuration>> suppliers = new TreeMap<>();
+    suppliers.put(
+        "n1",
+        () -> {
+          throw new AssertionError("should not be loaded");
+        });
+
+    SnapshotCache cache = new SnapshotCache(Long.MAX_VALUE);
+    cache.getConfigurations().put(S1, new LazySortedMap<>(suppliers));
+
+    assertThat(cache.getConfigurations().size(), equalTo(1L));
+  }
+
+  @Test
+  public void testLazyConfigurationsReweighedAsTheyLoad() {
+    SortedMap<String, Supplier<Configuration>> suppliers = new TreeMap<>();
+    suppliers.put("n1", () -> _configs.get("n1"));
+    suppliers.put("n2", () -> _configs.get("n1"));
+    LazySortedMap<String, Configuration> lazy = new LazySortedMap<>(suppliers);
+    long lazyBytes = SnapshotCache.estimateConfigurationsBytes(lazy);
+
+    SnapshotCache cache = new SnapshotCache(Long.MAX_VALUE);
+    cache.getConfigurations().put(S1, lazy);
+    assertThat(cache.getEstimatedBytes(Kind.CONFIGURATIONS), equalTo(lazyBytes));
+
+    // Loading a configuration replaces its flat estimate with its own.
+    lazy.get("n1");
+    assertThat(
+        cache.getEstimatedBytes(Kind.CONFIGURATIONS),
+        equalTo(lazyBytes / 2 + _configsBytes));
+    lazy.get("n1");
+    assertThat(
+        cache.getEstimatedBytes(Kind.CONFIGURATIONS),
+        equalTo(lazyBytes / 2 + _configsBytes));
+
+    // Loads of a value no longer in the cache are ignored.
+    cache.getConfigurations().invalidate(S1);
+    lazy.get("n2");
+    assertThat(cache.getEstimatedBytes(Kind.CONFIGURATIONS), equalTo(0L));
+  }
+
+  @Test
+  public void testEntriesLargerThanTwoGiB() {
+    SortedMap<String, Supplier<Configuration>> suppliers = new TreeMap<>();
+    for (int i = 0; i < 16 * 1024; i++) {
+      suppliers.put("n" + i, () -> _configs.get("n1"));
+    }
+    LazySortedMap<String, Configuration> lazy = new LazySortedMap<>(suppliers);
+    long lazyBytes = SnapshotCache.estimateConfigurationsBytes(lazy);
+    assertThat(lazyBytes, greaterThan((long) Integer.MAX_VALUE));
+
+    // Room for one such entry but not two, which requires weighing them beyond the range of int.
+    SnapshotCache cache = new SnapshotCache(lazyBytes + lazyBytes / 2);
+    cache.getConfigurations().put(S1, lazy);
+    cache.getConfigurations().put(S2, new LazySortedMap<>(suppliers));
+
+    assertThat(cache.getConfigurations().getIfPresent(S1), nullValue());
+    assertThat(cache.getConfigurations().getIfPresent(S2), notNullValue());
+    assertThat(cache.getEstimatedBytes(Kind.CONFIGURATIONS), equalTo(lazyBytes));
+  }
+}
@@ -19,6 +19,7 @@ import org.batfish.common.plugin.IBatfish;
 import org.batfish.common.plugin.Plugin;
 import org.batfish.datamodel.BgpAdvertisement;
 import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.DataPlaneDetail;
 import org.batfish.datamodel.PrefixSpace;
 import org.batfish.datamodel.answers.AnswerElement;
 import org.batfish.datamodel.questions.NodesSpecifier;
@@ -241,6 +242,11 @@ public class BgpAdvertisementsQuestionPlugin extends QuestionPlugin {
       return true;
     }
 
+    @Override
+    public DataPlaneDetail getDataPlaneDetail() {
+      return DataPlaneDetail.BGP;
+    }
+
     @JsonProperty(PROP_EBGP)
     public boolean getEbgp() {
       return _ebgp;
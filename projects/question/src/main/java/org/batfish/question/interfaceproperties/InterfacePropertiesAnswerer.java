@@ -81,8 +81,8 @@ public class InterfacePropertiesAnswerer extends Answerer {
   @Override
   public AnswerElement answer() {
     InterfacePropertiesQuestion question = (InterfacePropertiesQuestion) _question;
-    Map<String, Configuration> configurations = _batfish.loadConfigurations();
     Set<String> nodes = question.getNodeRegex().getMatchingNodes(_batfish);
+    Map<String, Configuration> configurations = _batfish.loadConfigurations(nodes);
 
     TableMetadata tableMetadata = createTableMetadata(question);
     TableAnswerElement answer = new TableAnswerElement(tableMetadata);
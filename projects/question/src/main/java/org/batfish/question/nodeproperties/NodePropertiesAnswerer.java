@@ -70,8 +70,8 @@ public class NodePropertiesAnswerer extends Answerer {
   @Override
   public AnswerElement answer() {
     NodePropertiesQuestion question = (NodePropertiesQuestion) _question;
-    Map<String, Configuration> configurations = _batfish.loadConfigurations();
     Set<String> nodes = question.getNodeRegex().getMatchingNodes(_batfish);
+    Map<String, Configuration> configurations = _batfish.loadConfigurations(nodes);
 
     TableMetadata tableMetadata = createTableMetadata(question);
 
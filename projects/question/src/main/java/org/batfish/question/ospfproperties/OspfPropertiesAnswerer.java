@@ -79,8 +79,8 @@ public class OspfPropertiesAnswerer extends Answerer {
   @Override
   public AnswerElement answer() {
     OspfPropertiesQuestion question = (OspfPropertiesQuestion) _question;
-    Map<String, Configuration> configurations = _batfish.loadConfigurations();
     Set<String> nodes = question.getNodeRegex().getMatchingNodes(_batfish);
+    Map<String, Configuration> configurations = _batfish.loadConfigurations(nodes);
 
     TableMetadata tableMetadata = createTableMetadata(question);
     TableAnswerElement answer = new TableAnswerElement(tableMetadata);
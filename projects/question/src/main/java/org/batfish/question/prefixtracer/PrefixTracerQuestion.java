@@ -5,6 +5,7 @@ import static com.google.common.base.MoreObjects.firstNonNull;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import javax.annotation.Nullable;
+import org.batfish.datamodel.DataPlaneDetail;
 import org.batfish.datamodel.Prefix;
 import org.batfish.datamodel.questions.NodesSpecifier;
 import org.batfish.datamodel.questions.Question;
@@ -39,6 +40,11 @@ public class PrefixTracerQuestion extends Question {
     return true;
   }
 
+  @Override
+  public DataPlaneDetail getDataPlaneDetail() {
+    return DataPlaneDetail.FULL;
+  }
+
   /**
    * Returns the short name of this question, used in place of the classname to identify this
    * question.
@@ -123,16 +123,22 @@ public class RoutesAnswerer extends Answerer {
       @Nullable Map<Ip, Set<String>> ipOwners) {
     HashMultiset<Row> rows = HashMultiset.create();
     Pattern compiledVrfRegex = Pattern.compile(vrfRegex);
-    ribs.forEach(
-        (node, vrfMap) -> {
-          if (matchingNodes.contains(node)) {
-            vrfMap.forEach(
-                (vrfName, rib) -> {
-                  if (compiledVrfRegex.matcher(vrfName).matches()) {
-                    rows.addAll(getRowsForAbstractRoutes(node, vrfName, rib.getRoutes(), ipOwners));
-                  }
-                });
+    // Look up only matching nodes and VRFs, since the data plane may load RIBs on demand.
+    matchingNodes.forEach(
+        node -> {
+          SortedMap<String, GenericRib<AbstractRoute>> vrfMap = ribs.get(node);
+          if (vrfMap == null) {
+            return;
           }
+          vrfMap
+              .keySet()
+              .stream()
+              .filter(vrfName -> compiledVrfRegex.matcher(vrfName).matches())
+              .forEach(
+                  vrfName ->
+                      rows.addAll(
+                          getRowsForAbstractRoutes(
+                              node, vrfName, vrfMap.get(vrfName).getRoutes(), ipOwners)));
         });
     return rows;
   }
@@ -12,6 +12,7 @@ import java.util.function.Function;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
+import org.batfish.datamodel.DataPlaneDetail;
 import org.batfish.datamodel.questions.NodesSpecifier;
 import org.batfish.datamodel.questions.Question;
 
@@ -86,6 +87,11 @@ public class RoutesQuestion extends Question {
     return true;
   }
 
+  @Override
+  public DataPlaneDetail getDataPlaneDetail() {
+    return _protocol == MAIN ? DataPlaneDetail.MAIN_RIB : DataPlaneDetail.BGP;
+  }
+
   @Override
   public String getName() {
     return QUESTION_NAME;